@@ -21,13 +21,18 @@ import net.freelabs.maestro.broker.process.start.MainProcessData;
 import net.freelabs.maestro.broker.process.start.StartResMapper;
 import net.freelabs.maestro.broker.env.EnvironmentMapper;
 import net.freelabs.maestro.broker.env.EnvironmentHandler;
+import net.freelabs.maestro.broker.metrics.BrokerMetrics;
+import net.freelabs.maestro.broker.metrics.MetricsServer;
+import net.freelabs.maestro.broker.metrics.ProcSampler;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -40,16 +45,17 @@ import net.freelabs.maestro.broker.services.ServiceManager;
 import net.freelabs.maestro.broker.services.ServiceNode.SRV_CONF_STATUS;
 import net.freelabs.maestro.broker.shutdown.Shutdown;
 import net.freelabs.maestro.broker.shutdown.ShutdownNotifier;
+import net.freelabs.maestro.broker.tasks.SubstEnvTask;
 import net.freelabs.maestro.broker.tasks.TaskHandler;
 import net.freelabs.maestro.broker.tasks.TaskMapper;
-import net.freelabs.maestro.core.generated.BusinessContainer;
 import net.freelabs.maestro.core.generated.Container;
 import net.freelabs.maestro.core.generated.ContainerEnvironment;
-import net.freelabs.maestro.core.generated.DataContainer;
+import net.freelabs.maestro.core.generated.Metrics;
+import net.freelabs.maestro.core.generated.Sampling;
 import net.freelabs.maestro.core.generated.StartRes;
 import net.freelabs.maestro.core.generated.StopRes;
 import net.freelabs.maestro.core.generated.Tasks;
-import net.freelabs.maestro.core.generated.WebContainer;
+import net.freelabs.maestro.core.serializer.EnvSerializer;
 import net.freelabs.maestro.core.serializer.JAXBSerializer;
 import net.freelabs.maestro.core.zookeeper.ZkConnectionWatcher;
 import net.freelabs.maestro.core.zookeeper.ZkNamingService;
@@ -60,6 +66,8 @@ import org.apache.zookeeper.AsyncCallback.StatCallback;
 import org.apache.zookeeper.AsyncCallback.StringCallback;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.ConnectionLossException;
+import org.apache.zookeeper.KeeperException.NoNodeException;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
 import static org.apache.zookeeper.Watcher.Event.EventType.NodeCreated;
@@ -97,6 +105,11 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
      * container.
      */
     private final String conConfNode;
+    /**
+     * The path of the zNode that holds the resolved environment of the
+     * container dependencies.
+     */
+    private final String envNode;
     /**
      * An object to handle execution of operations on another thread.
      */
@@ -113,6 +126,11 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
      * The znode of the container service to the naming service.
      */
     private final ZkNamingServiceNode conZkSrvNode;
+    /**
+     * Lock held while the service node is updated and its data is sent to
+     * zookeeper, so that updates are sent in the order they are made.
+     */
+    private final Object srvNodeLock = new Object();
     /**
      * Service Manager. Stores all the data for services-dependencies of the
      * container.
@@ -126,6 +144,19 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
      * Indicates weather the container is initialized.
      */
     private volatile boolean conInitialized;
+    /**
+     * Indicates weather the processes of the container have been started.
+     * Updates of the services after start, do not start them again.
+     */
+    private volatile boolean procsStarted;
+    /**
+     * Lock to serialize the reconfiguration of the container processes.
+     */
+    private final Object reconfLock = new Object();
+    /**
+     * Serves the broker metrics, if declared.
+     */
+    private MetricsServer metricsServer;
     /**
      * Manages process execution.
      */
@@ -158,12 +189,15 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
      * namespace.
      * @param shutdownNode the node the signals the shutdown.
      * @param conConfNode the node with the initial container configuration.
+     * @param envNode the node with the resolved environment of the container
+     * dependencies.
      */
-    public Broker(String zkHosts, int zkSessionTimeout, String zkContainerPath, String zkNamingService, String shutdownNode, String conConfNode) {
+    public Broker(String zkHosts, int zkSessionTimeout, String zkContainerPath, String zkNamingService, String shutdownNode, String conConfNode, String envNode) {
         super(zkHosts, zkSessionTimeout);
         this.zkContainerPath = zkContainerPath;
         this.shutdownNode = shutdownNode;
         this.conConfNode = conConfNode;
+        this.envNode = envNode;
         containerName = resolveConPath(zkContainerPath);
         brokerConf = new BrokerConf();
         brokerConf.brokerDir = BrokerConf.SERVICES_DIR + File.separator + containerName + "-service";
@@ -185,6 +219,7 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
      */
     @Override
     public void boot() {
+        BrokerMetrics.markStarted();
         // connect to zookeeper
         boolean connected = connectToZk();
         // if succeeded
@@ -205,7 +240,9 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
     private boolean connectToZk() {
         boolean connected = false;
         try {
+            long start = System.nanoTime();
             connect();
+            BrokerMetrics.ZK_OP_DURATION.observe(BrokerMetrics.secondsSince(start), "connect");
             connected = true;
         } catch (IOException ex) {
             LOG.error("Something went wrong: " + ex);
@@ -234,11 +271,23 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
     }
 
     /**
-     * Sets a watch on the zookeeper shutdown node. When the shutdown zNode is
-     * created execution is terminated.
+     * Sets a watch on the zookeeper shutdown nodes. When the shutdown zNode of
+     * the application or the shutdown zNode of the container is created
+     * execution is terminated.
      */
     private void setShutDownWatch() {
-        zk.exists(shutdownNode, shutDownWatcher, shutDownCallback, null);
+        setShutDownWatch(shutdownNode);
+        // the shutdown node of the container, used to stop in dependency order
+        setShutDownWatch(shutdownNode + "-" + containerName);
+    }
+
+    /**
+     * Sets a watch on a zookeeper shutdown node.
+     *
+     * @param path the path of the shutdown node.
+     */
+    private void setShutDownWatch(String path) {
+        zk.exists(path, shutDownWatcher, shutDownCallback, null);
     }
 
     /**
@@ -248,7 +297,7 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
     private final StatCallback shutDownCallback = (int rc, String path, Object ctx, Stat stat) -> {
         switch (KeeperException.Code.get(rc)) {
             case CONNECTIONLOSS:
-                setShutDownWatch();
+                setShutDownWatch(path);
                 break;
             case NONODE:
                 LOG.info("Watch registered on: " + path);
@@ -388,7 +437,7 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
      * Gets the container description.
      */
     private void getConDescription() {
-        zk.getData(conConfNode, false, getConDescriptionCallback, null);
+        zk.getData(conConfNode, false, timed(getConDescriptionCallback), null);
     }
 
     /**
@@ -429,6 +478,8 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
     private void processConDescription(byte[] data) {
         // deserialize container 
         container = deserializeConType(data);
+        // serve metrics if declared
+        startMetricsServer();
         /* initialize the services manager to manage services-dependencies
         The dependencies are retrieved from the current cotnainer configuration,
         from "connectWith" field.        
@@ -440,11 +491,25 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
         setZkConNodeData(data);
     }
 
+    /**
+     * Starts serving the broker metrics, if declared in the container
+     * description.
+     */
+    private void startMetricsServer() {
+        Metrics metrics = container.getMetrics();
+        if (metrics != null) {
+            metricsServer = new MetricsServer(metrics.getPort());
+            if (!metricsServer.start()) {
+                metricsServer = null;
+            }
+        }
+    }
+
     /**
      * Sets data to the container's zNode.
      */
     private void setZkConNodeData(byte[] data) {
-        zk.setData(zkContainerPath, data, -1, setConZkNodeDataCallback, data);
+        zk.setData(zkContainerPath, data, -1, timed("setData", setConZkNodeDataCallback), data);
     }
 
     /**
@@ -561,7 +626,7 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
      * namespace.
      */
     private void serviceExists(String servicePath) {
-        zk.exists(servicePath, serviceWatcher, serviceExistsCallback, null);
+        zk.exists(servicePath, serviceWatcher, timed("exists", serviceExistsCallback), null);
     }
 
     /**
@@ -619,7 +684,7 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
      * @param zkPath the path of the container to the zookeeper namespace.
      */
     private void getZkSrvData(String zkPath) {
-        zk.getData(zkPath, serviceWatcher, getServiceDataCallback, null);
+        zk.getData(zkPath, serviceWatcher, timed(getServiceDataCallback), null);
     }
 
     /**
@@ -651,7 +716,7 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
      * Processes data retrieved from a service zNode.
      * <p>
      * De-serializes the service node, gets the zNode path of the container
-     * offering that service.
+     * offering that service and sets the service as processed.
      *
      * @param data the data from a service zNode to process.
      * @param path the path of the service zNode.
@@ -664,68 +729,16 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
         // store service info to the service manager 
         srvMngr.setSrvStateStatus(srvPath, node.getStatus());
         srvMngr.setSrvZkConPath(srvPath, zkConPath);
-        // GET CONFIGURATION DATA FROM the container of the retrieved zkPath.
-        getConData(zkConPath);
-    }
-
-    /**
-     * Gets data from the container zNode.
-     *
-     * @param zkPath the path of the container zNode.
-     */
-    private void getConData(String zkPath) {
-        zk.getData(zkPath, setConWatcher, getConDataDataCallback, null);
-    }
-
-    /**
-     * The callback to be used with
-     * {@link #getConData(java.lang.String) getConData(String)} method.
-     */
-    private final DataCallback getConDataDataCallback = (int rc, String path, Object ctx, byte[] data, Stat stat) -> {
-        switch (KeeperException.Code.get(rc)) {
-            case CONNECTIONLOSS:
-                LOG.warn("Connection loss was detected");
-                getConData(path);
-                break;
-            case NONODE:
-                LOG.error("CANNOT GET DATA from CONTAINER. Container node DOES NOT EXIST: " + path);
-                break;
-            case OK:
-                LOG.info("Getting data from container: " + path);
-
-                // process retrieved data from requested service zNode
-                executorService.execute(() -> {
-                    processConData(data, path);
-                });
-
-                break;
-            default:
-                LOG.error("Something went wrong: ",
-                        KeeperException.create(KeeperException.Code.get(rc), path));
-        }
-    };
-
-    /**
-     * Processes data retrieved from container zNode.
-     *
-     * @param data the data of the container zNode.
-     * @param zkConpath the path of the container zNode.
-     */
-    private void processConData(byte[] data, String zkConPath) {
-        LOG.info("Processing container data: {}", zkConPath);
-        // deserialize container data 
-        Container srvCon = deserializeDependency(zkConPath, data);
-        // get cotnainer name
-        String conName = resolveConPath(zkConPath);
-        // save configuration to file named after the container
-        createConfFile(srvCon, conName);
-        // save container to service node
-        srvMngr.setSrvNodeCon(zkConPath, srvCon);
-        // set the service conf status of service-dependency to PROCESSED
-        srvMngr.setSrvConfStatusProc(ns.resolveSrvName(conName));
-        LOG.info("Service: {}\tStatus: {}.", conName, SRV_CONF_STATUS.PROCESSED.toString());
+        /* The environment of the service is published to the resolved 
+        environment zNode of this container before the service registers to 
+        the naming service. No need to fetch the container description.
+         */
+        srvMngr.setSrvConfStatusProc(srvPath);
+        LOG.info("Service: {}\tStatus: {}.", resolveConPath(zkConPath), SRV_CONF_STATUS.PROCESSED.toString());
         // check if container is initialized in order to start processes
-        checkInit();
+        executorService.execute(() -> {
+            checkInit();
+        });
     }
 
     /**
@@ -745,6 +758,10 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
      * services-dependencies are initialized and bootstraps the process(es).
      */
     private synchronized void checkInit() {
+        // processes are reconfigured on updates, not started again
+        if (procsStarted) {
+            return;
+        }
         if (srvMngr.hasServices()) {
             // if container is not initialized
             if (!conInitialized) {
@@ -754,6 +771,7 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
                     LOG.info("Container INITIALIZED!");
                     // check if srvs are initialized
                     if (srvMngr.areSrvInitialized()) {
+                        procsStarted = true;
                         // start processes
                         start();
                     }
@@ -761,6 +779,7 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
             } else // check if srvs are initialized
             {
                 if (srvMngr.areSrvInitialized()) {
+                    procsStarted = true;
                     // start processes
                     executorService.execute(() -> {
                         start();
@@ -769,6 +788,7 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
             }
         } else {
             conInitialized = true;
+            procsStarted = true;
             LOG.info("Container INITIALIZED!");
             // execute in new thread
             executorService.execute(() -> {
@@ -792,10 +812,13 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
         initProcGroups();
         // initialize tasks
         taskHandler = initTaskHandler();
-        // execute tasks
-        taskHandler.execPreStartTasks();
-        // execute START processes
-        procMngr.exec_start_procs();
+        // execute tasks, START processes only if no critical task failed
+        if (taskHandler.execPreStartTasks()) {
+            // execute START processes
+            procMngr.exec_start_procs();
+        } else {
+            LOG.error("Pre-start task execution FAILED. Start-group processes NOT executed.");
+        }
     }
 
     /**
@@ -858,6 +881,8 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
         });
         // set configuration to process manager
         procMngr.setStartGroupHandler(startGroupHandler);
+        procMngr.setRestartPolicy(res.getRestart());
+        procMngr.setReload(res.getReload());
     }
 
     /**
@@ -911,25 +936,53 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
     private Map<String, String> initProcsEnv() {
         // get the environment obj of the container obj associated with Broker
         ContainerEnvironment conEnv = container.getEnv();
-        // create map of container names and environment objs for dependencies
-        Map<String, ContainerEnvironment> depConEnvMap = new HashMap<>();
-        // get container objs from dependencies
-        srvMngr.getConsOfSrvs().stream().forEach((con) -> {
-            // get container name
-            String name = con.getName();
-            // get the environment obj according to the container type
-            ContainerEnvironment env = con.getEnv();
-            // add to map
-            depConEnvMap.put(name, env);
-        });
-        // create environment mapper to map declared environments to env objects
-        EnvironmentMapper envMap = new EnvironmentMapper(conEnv, container.getName(), depConEnvMap);
+        // get the resolved environment of the dependencies
+        Map<String, String> depsEnv = getResolvedEnv();
+        // create environment mapper to map declared environment to env object
+        EnvironmentMapper envMap = new EnvironmentMapper(conEnv, container.getName());
         // create handler to act on env objects
-        envHandler = new EnvironmentHandler(envMap.getConEnv(), envMap.getDepConEnvMap());
+        envHandler = new EnvironmentHandler(envMap.getConEnv(), depsEnv);
         // create environment for processes
         return envHandler.createProcsEnv();
     }
 
+    /**
+     * <p>
+     * Gets the resolved environment of the container dependencies.
+     * <p>
+     * The resolved environment zNode holds the prefixed environment variables
+     * of all the dependencies. A watch is set to monitor for updates.
+     *
+     * @return the resolved environment of the dependencies. Empty if there was
+     * an error.
+     */
+    private Map<String, String> getResolvedEnv() {
+        Map<String, String> depsEnv = new HashMap<>();
+        while (true) {
+            try {
+                long start = System.nanoTime();
+                byte[] data = zk.getData(envNode, setConWatcher, null);
+                BrokerMetrics.ZK_OP_DURATION.observe(BrokerMetrics.secondsSince(start), "getData");
+                depsEnv = EnvSerializer.deserialize(data);
+                LOG.info("Got resolved environment of dependencies: {} bytes", data == null ? 0 : data.length);
+                break;
+            } catch (InterruptedException ex) {
+                LOG.warn("Thread Interrupted. Stopping.");
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ConnectionLossException ex) {
+                LOG.warn("Connection loss was detected. Retrying...");
+            } catch (NoNodeException ex) {
+                LOG.error("Resolved environment node does NOT EXIST: {}", envNode);
+                break;
+            } catch (KeeperException ex) {
+                LOG.error("Something went wrong: ", ex);
+                break;
+            }
+        }
+        return depsEnv;
+    }
+
     /**
      * <p>
      * Creates and initializes an executor for tasks.
@@ -983,7 +1036,7 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
             // get the port the proc is listening
             int procPort = getHostPort();
             // create and init the object that stores all the process configuration
-            MainProcessData pdata = new MainProcessData(rm.getMainRes(), env, "localhost", procPort);
+            MainProcessData pdata = new MainProcessData(rm.getMainRes(), env, "localhost", procPort, container.getStart().getProbe());
             // create and init handler for main process execution
             pHandler = new MainProcessHandler(pdata);
         }
@@ -1022,7 +1075,8 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
 
     /**
      * Monitors the running service and updates the zk service node status
-     * accordingly in case it stops.
+     * accordingly in case it stops. A stopped service is restarted if its
+     * restart policy allows it.
      *
      * @param procHandler the {@link MainProcessHandler MainProcessHandler}
      * object.
@@ -1030,17 +1084,64 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
     private void monService() {
         // run in a new thread
         new Thread(() -> {
+            // sample the resource usage while the main process runs
+            ProcSampler sampler = startSampler();
             procMngr.waitForMainProc();
+            if (sampler != null) {
+                sampler.stop();
+            }
             if (!Thread.interrupted()) {
                 // change service status to NOT RUNNING if stopped for no reason
                 if (!SHUTDOWN.isSignaledShutDown()) {
                     updateZkSrvStatus(conZkSrvNode::setStatusNotRunning);
+                    // restart according to policy, on success monitoring starts again
+                    procMngr.restart_start_procs();
                 }
             }
         }
         ).start();
     }
 
+    /**
+     * Starts sampling the resource usage of the main process tree, if
+     * sampling is declared. The summary is published to the service node.
+     *
+     * @return the started sampler or null if sampling is not declared or the
+     * main process pid is not available.
+     */
+    private ProcSampler startSampler() {
+        Sampling sampling = container.getStart().getSampling();
+        if (sampling == null) {
+            return null;
+        }
+        int pid = procMngr.getMainProcPid();
+        if (pid == -1) {
+            LOG.error("Pid of main process NOT available. Sampling NOT started.");
+            return null;
+        }
+        ProcSampler sampler = new ProcSampler(pid, sampling, this::publishUsage);
+        sampler.start();
+        return sampler;
+    }
+
+    /**
+     * Publishes the summary of the resource usage of the main process tree to
+     * the service node.
+     *
+     * @param usage the summary of the resource usage.
+     */
+    private void publishUsage(String usage) {
+        // get the service path
+        String servicePath = ns.resolveSrvName(containerName);
+        synchronized (srvNodeLock) {
+            conZkSrvNode.setUsage(usage);
+            // serialize data
+            byte[] updatedData = ns.serializeZkSrvNode(servicePath, conZkSrvNode);
+            // update service node data
+            setZNodeData(servicePath, updatedData);
+        }
+    }
+
     /**
      *
      * @return the port at which the main process runs.
@@ -1058,20 +1159,27 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
     private void updateZkSrvStatus(Updatable updatableObj) {
         // get the service path
         String servicePath = ns.resolveSrvName(containerName);
-        // update status
-        updatableObj.updateStatus();
-        LOG.info("Updating service status to {}: {}", conZkSrvNode.getStatus(), servicePath);
-        // serialize data
-        byte[] updatedData = ns.serializeZkSrvNode(servicePath, conZkSrvNode);
-        // update service node data
-        setZNodeData(servicePath, updatedData);
+        synchronized (srvNodeLock) {
+            // update status
+            updatableObj.updateStatus();
+            BrokerMetrics.markStatus(conZkSrvNode.getStatus());
+            // export the restarts of the service
+            if (procMngr != null) {
+                conZkSrvNode.setRestarts(procMngr.getRestartCount());
+            }
+            LOG.info("Updating service status to {}: {}", conZkSrvNode.getStatus(), servicePath);
+            // serialize data
+            byte[] updatedData = ns.serializeZkSrvNode(servicePath, conZkSrvNode);
+            // update service node data
+            setZNodeData(servicePath, updatedData);
+        }
     }
 
     /**
      * Sets data to a zNode.
      */
     private void setZNodeData(String zNodePath, byte[] data) {
-        zk.setData(zNodePath, data, -1, setZNodeDataDataCallback, data);
+        zk.setData(zNodePath, data, -1, timed("setData", setZNodeDataDataCallback), data);
     }
 
     /**
@@ -1096,31 +1204,89 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
     };
 
     /**
-     * Watcher to be used in
-     * {@link  #setConWatch(java.lang.String) setConWatch(String)} method.
+     * Watcher to be used in {@link #getResolvedEnv() getResolvedEnv} method.
+     * Monitors the resolved environment of the dependencies for changes.
      */
     private final Watcher setConWatcher = (WatchedEvent event) -> {
         LOG.info(event.getType() + ", " + event.getPath());
 
         if (event.getType() == NodeDataChanged) {
             LOG.info("Watched event: " + event.getType() + " for " + event.getPath() + " ACTIVATED.");
-            /**
-             *
-             * CODE FOR RETRIEVING UPDATES ON CONTAINER STATE REQUIRES
-             * RECONFIGURING NOT IMPLEMENTED YET
-             *
-             */
-            // RE-SET WATCH TO KEEP MONITORING THE CONTAINER
+            // re-set the watch and reconfigure processes with the new environment
+            executorService.execute(() -> {
+                reconfigure();
+            });
         }
     };
 
+    /**
+     * <p>
+     * Reconfigures the container processes when the resolved environment of
+     * the dependencies changes, e.g. when a dependency restarts with a new IP.
+     * <p>
+     * The environment is resolved again, which re-sets the watch. The
+     * environment shared with the process handlers is updated in place, so that
+     * processes executed later use the new values. Only the declared files
+     * that depend on changed variables are rendered again and, if any file was
+     * rewritten, the main process is reloaded without a restart.
+     */
+    private void reconfigure() {
+        synchronized (reconfLock) {
+            // get the new environment of the dependencies and re-set the watch
+            Map<String, String> depsEnv = getResolvedEnv();
+            // the environment is resolved on start, if not started yet
+            if (envHandler == null || procMngr == null || SHUTDOWN.isSignaledShutDown()) {
+                LOG.info("Processes NOT started. Reconfiguration skipped.");
+                return;
+            }
+            // create the new environment for processes
+            EnvironmentMapper envMap = new EnvironmentMapper(container.getEnv(), container.getName());
+            Map<String, String> newEnv = new EnvironmentHandler(envMap.getConEnv(), depsEnv).createProcsEnv();
+            Map<String, String> procsEnv = envHandler.getProcsEnv();
+            if (newEnv.equals(procsEnv)) {
+                LOG.info("Environment of dependencies UNCHANGED. Reconfiguration skipped.");
+                return;
+            }
+            LOG.info("Environment of dependencies CHANGED. Reconfiguring processes.");
+            procsEnv.clear();
+            procsEnv.putAll(newEnv);
+            // render again the declared files affected by the change
+            Tasks tasks = container.getTasks();
+            if (tasks == null || tasks.getSubstEnv().isEmpty()) {
+                return;
+            }
+            // run the substEnv tasks in the order of their dependencies
+            TaskHandler substEnvHandler = new TaskHandler();
+            List<SubstEnvTask> substEnvTasks = new ArrayList<>();
+            tasks.getSubstEnv().stream().forEach((substEnv) -> {
+                SubstEnvTask substEnvTask = new SubstEnvTask(substEnv, procsEnv);
+                substEnvTasks.add(substEnvTask);
+                substEnvHandler.addPreStartTask(substEnvTask);
+            });
+            if (!substEnvHandler.execPreStartTasks()) {
+                LOG.error("Update of configuration files FAILED.");
+            }
+            Set<String> updatedFiles = new HashSet<>();
+            substEnvTasks.stream().forEach((substEnvTask) -> {
+                updatedFiles.addAll(substEnvTask.getUpdatedFiles());
+            });
+            if (updatedFiles.isEmpty()) {
+                LOG.info("NO configuration file affected by the change.");
+            } else {
+                LOG.info("Updated configuration files: {}", updatedFiles);
+                // apply the new configuration to the running main process
+                procMngr.reload_main_proc();
+            }
+        }
+    }
+
     /**
      * Gets data from the requested service zNode.
      *
      * @param zkPath the path of the container to the zookeeper namespace.
      */
     private void getZkSrvUpdatedData(String zkPath) {
-        zk.getData(zkPath, serviceWatcher, getZkSrvUpdatedDataDataCallback, null);
+        zk.getData(zkPath, serviceWatcher, timed(getZkSrvUpdatedDataDataCallback), null);
     }
 
     /**
@@ -1157,14 +1323,45 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
         srvMngr.setSrvStateStatus(path, srvNode.getStatus());
         // log
         LOG.info("Status of service {} is: {}", path, srvNode.getStatus().toString());
-        /* check if all services are initialized. If the container is already initialized
-        and a status update from a service is received, that means that a service
-        from another container failed OR updated its configurations (NOT IMPLEMENTED
-        YET). Hence, reconfiguring is needed (NOT IMPLEMENTED YET)
+        /* check if all services are initialized. If the processes are already
+        started, a status update means that a service from another container 
+        failed or restarted. A restarted service publishes its new environment 
+        to the resolved environment zNode, which triggers the reconfiguration.
          */
         checkInit();
     }
 
+    /**
+     * Wraps a callback of a getData operation to record the latency of the
+     * operation. Must be called when the operation is issued.
+     *
+     * @param cb the callback to wrap.
+     * @return the wrapped callback.
+     */
+    private DataCallback timed(DataCallback cb) {
+        long start = System.nanoTime();
+        return (int rc, String path, Object ctx, byte[] data, Stat stat) -> {
+            BrokerMetrics.ZK_OP_DURATION.observe(BrokerMetrics.secondsSince(start), "getData");
+            cb.processResult(rc, path, ctx, data, stat);
+        };
+    }
+
+    /**
+     * Wraps a callback of an operation that returns a stat to record the
+     * latency of the operation. Must be called when the operation is issued.
+     *
+     * @param op the name of the operation.
+     * @param cb the callback to wrap.
+     * @return the wrapped callback.
+     */
+    private StatCallback timed(String op, StatCallback cb) {
+        long start = System.nanoTime();
+        return (int rc, String path, Object ctx, Stat stat) -> {
+            BrokerMetrics.ZK_OP_DURATION.observe(BrokerMetrics.secondsSince(start), op);
+            cb.processResult(rc, path, ctx, stat);
+        };
+    }
+
     /**
      * Resolves a container path to the container name.
      *
@@ -1225,43 +1422,6 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
      */
     protected abstract Container deserializeConType(byte[] data);
 
-    /**
-     * De-serialiazes a container.
-     *
-     * @param path the path of the container.
-     * @param data the data to deserialize.
-     * @return a {@link Container Container} object.
-     */
-    private Container deserializeDependency(String path, byte[] data) {
-        Container con = null;
-        // get the type of the container
-        String type = getContainerType(path);
-        // de-serialize the container according to the container type       
-        try {
-            if (type.equalsIgnoreCase("WebContainer")) {
-                WebContainer webCon = JAXBSerializer.deserializeToWebContainer(data);
-                con = webCon;
-            } else if (type.equalsIgnoreCase("BusinessContainer")) {
-                BusinessContainer businessCon = JAXBSerializer.deserializeToBusinessContainer(data);
-                con = businessCon;
-            } else if (type.equalsIgnoreCase("DataContainer")) {
-                DataContainer dataCon = JAXBSerializer.deserializeToDataContainer(data);
-                con = dataCon;
-            }
-
-            if (con != null) {
-                LOG.info("De-serialized dependency: {}. Printing: \n {}", resolveConPath(path),
-                        JAXBSerializer.deserializeToString(data));
-            } else {
-                LOG.error("De-serialization of dependency {} FAILED", path);
-            }
-        } catch (JAXBException ex) {
-            LOG.error("De-serialization of dependency FAILED: " + ex);
-        }
-
-        return con;
-    }
-
     /**
      * Serializes container configuration.
      *
@@ -1321,6 +1481,10 @@ public abstract class Broker extends ZkConnectionWatcher implements Shutdown, Li
         notifier.shutDown();
         // shut down the executorService to stop any still running threads
         shutdownExecutor();
+        // stop serving metrics
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
         try {
             // close zk client session
             closeSession();
@@ -24,6 +24,7 @@ public final class BrokerConf {
     public static final String PROGRAM_DIR = "/opt/maestro";
     public static final String RESTORE_DIR = PROGRAM_DIR + "/restore";
     public static final String SERVICES_DIR = PROGRAM_DIR + "/servicesConf";
+    public static final String CACHE_DIR = PROGRAM_DIR + "/cache";
     public String brokerDir;
     
 }
@@ -37,7 +37,7 @@ public class Bootstrap {
     /**
      * @param args args[0] -> zkHosts, args[1] -> zkSessionTimeout, args[2] ->
      * zkContainerPath, args[3] -> namingService, args[4] -> shutdownNode,
-     * args[5] -> userConfNode
+     * args[5] -> userConfNode, args[6] -> envNode
      */
     public static void main(String[] args) {
         Broker broker = null;
@@ -50,7 +50,8 @@ public class Bootstrap {
                     args[2], // zkContainerPath
                     args[3], // namingService
                     args[4], // shutdownNode
-                    args[5] // userConfNode
+                    args[5], // userConfNode
+                    args[6] // envNode
             );
             // get the container name
             String name = broker.resolveConPath(args[2]);// zkContainerPath
@@ -62,7 +63,8 @@ public class Bootstrap {
                     args[2], // zkContainerPath
                     args[3], // namingService
                     args[4], // shutdownNode
-                    args[5] // userConfNode
+                    args[5], // userConfNode
+                    args[6] // envNode
             );
             // get the container name
             String name = broker.resolveConPath(args[2]);// zkContainerPath
@@ -74,7 +76,8 @@ public class Bootstrap {
                     args[2], // zkContainerPath
                     args[3], // namingService
                     args[4], // shutdownNode
-                    args[5] // userConfNode
+                    args[5], // userConfNode
+                    args[6] // envNode
             );
             // get the container name
             String name = broker.resolveConPath(args[2]);// zkContainerPath
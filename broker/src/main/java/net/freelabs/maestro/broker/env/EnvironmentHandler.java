@@ -36,11 +36,11 @@ public final class EnvironmentHandler {
     private final Environment conEnv;
 
     /**
-     * A map, with the name of the containers dependencies to the container
-     * associated with the Broker and the objects holding the environment for
-     * the {@link Container container} objects of the dependencies.
+     * The resolved environment of the dependencies of the container associated
+     * with the Broker. The environment variable names are prefixed with the
+     * name of the dependency.
      */
-    private final Map<String, Environment> depConEnvMap;
+    private final Map<String, String> depsEnv;
     /**
      * The created environment for the container processes.
      */
@@ -56,14 +56,12 @@ public final class EnvironmentHandler {
      *
      * @param conEnv the object holding the environment for the {@link Container
      * container} object associated with the Broker.
-     * @param depConEnvMap a map, with the name of the containers dependencies
-     * to the container associated with the Broker and the objects holding the
-     * environment for the {@link Container container} objects of the
-     * dependencies.
+     * @param depsEnv the resolved environment of the dependencies of the
+     * container associated with the Broker.
      */
-    public EnvironmentHandler(Environment conEnv, Map<String, Environment> depConEnvMap) {
+    public EnvironmentHandler(Environment conEnv, Map<String, String> depsEnv) {
         this.conEnv = conEnv;
-        this.depConEnvMap = depConEnvMap;
+        this.depsEnv = depsEnv;
     }
 
     /**
@@ -108,8 +106,8 @@ public final class EnvironmentHandler {
     }
 
     /**
-     * Extracts the environment from the services-dependencies of the main
-     * container service.
+     * Returns the environment from the services-dependencies of the main
+     * container service, as resolved to the environment zNode.
      *
      * @return a map with all the environment variables defines in services-
      * dependencies.
@@ -117,27 +115,10 @@ public final class EnvironmentHandler {
     private Map<String, String> getDependenciesEnv() {
         LOG.info("Extracting environment from dependencies.");
         // holds the global key-value entries for all container
-        Map<String, String> dependenciesEnv = new HashMap<>();
-        // holds data per repetition
-        Map<String, String> env;
-
-        // iterate through the container dependencies
-        for (Map.Entry<String, Environment> entry : depConEnvMap.entrySet()) {
-            String depName = entry.getKey();
-            Environment envObj = entry.getValue();
-            // get environment
-            env = envObj.getEnvMap(depName);
-            // print extracted environment
-            LOG.info("Environment of dependency: {}", depName);
-            for (Map.Entry<String, String> e : env.entrySet()) {
-                String key = e.getKey();
-                String value = e.getValue();
-                LOG.info("{}={}", key, value);
-            }
-            // add map to dependencies map
-            dependenciesEnv.putAll(env);
-            // remove everything
-            env.clear();
+        Map<String, String> dependenciesEnv = new HashMap<>(depsEnv);
+        // print extracted environment
+        for (Map.Entry<String, String> e : dependenciesEnv.entrySet()) {
+            LOG.info("{}={}", e.getKey(), e.getValue());
         }
         return dependenciesEnv;
     }
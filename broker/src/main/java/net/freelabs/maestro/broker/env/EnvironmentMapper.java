@@ -42,6 +42,18 @@ public class EnvironmentMapper {
      */
     private Map<String, Environment> depConEnvMap;
 
+    /**
+     * Constructor.
+     *
+     * @param conEnv the environment of the container associated with the
+     * Broker.
+     * @param conName the name of the container associated with the Broker.
+     */
+    public EnvironmentMapper(ContainerEnvironment conEnv, String conName) {
+        this.conEnv = new Environment(conName, conEnv);
+        this.depConEnvMap = new HashMap<>();
+    }
+
     public EnvironmentMapper(ContainerEnvironment conEnv, String conName, Map<String, ContainerEnvironment> depConEnvMap) {
         this.conEnv = new Environment(conName, conEnv);
         this.depConEnvMap = new HashMap<>();
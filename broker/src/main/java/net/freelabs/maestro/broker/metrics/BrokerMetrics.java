@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.freelabs.maestro.core.zookeeper.ZkNamingServiceNode.SRV_STATE_STATUS;
+
+/**
+ *
+ * <p>
+ * Class that holds the metrics of the broker.
+ * <p>
+ * The metrics are updated from any thread without locking and are exported
+ * in the Prometheus text format by a {@link MetricsServer MetricsServer}.
+ */
+public final class BrokerMetrics {
+
+    /**
+     * The upper bounds (seconds) of the buckets of zookeeper operations.
+     */
+    private static final double[] ZK_BOUNDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5};
+    /**
+     * The upper bounds (seconds) of the buckets of tasks and processes.
+     */
+    private static final double[] EXEC_BOUNDS = {0.01, 0.05, 0.1, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300};
+    /**
+     * The time (nanoseconds) the broker was loaded.
+     */
+    private static final long BOOT_TIME = System.nanoTime();
+    /**
+     * Whether the time to the first initialization was recorded.
+     */
+    private static final AtomicBoolean FIRST_INITIALIZED = new AtomicBoolean();
+    /**
+     * Whether the broker is running.
+     */
+    public static final Gauge BROKER_UP = new Gauge("maestro_broker_up",
+            "Whether the broker is running.");
+    /**
+     * The time the broker started.
+     */
+    public static final Gauge BROKER_START_TIME = new Gauge("maestro_broker_start_time_seconds",
+            "Start time of the broker since unix epoch in seconds.");
+    /**
+     * The current status of the service.
+     */
+    public static final Gauge SERVICE_STATUS = new Gauge("maestro_service_status",
+            "Current status of the service, 1 for the current status.", "status");
+    /**
+     * The transitions of the service status.
+     */
+    public static final Counter SERVICE_TRANSITIONS = new Counter("maestro_service_transitions_total",
+            "Transitions of the service status.", "status");
+    /**
+     * The time from broker start until the service was first initialized.
+     */
+    public static final Gauge TIME_TO_INITIALIZED = new Gauge("maestro_time_to_initialized_seconds",
+            "Time from broker start until the service was first initialized.");
+    /**
+     * The restarts of the main process.
+     */
+    public static final Counter RESTARTS = new Counter("maestro_main_process_restarts_total",
+            "Restarts of the main process by its restart policy.");
+    /**
+     * The latencies of zookeeper operations.
+     */
+    public static final Histogram ZK_OP_DURATION = new Histogram("maestro_zk_op_duration_seconds",
+            "Latency of zookeeper operations.", ZK_BOUNDS, "op");
+    /**
+     * The durations of tasks.
+     */
+    public static final Histogram TASK_DURATION = new Histogram("maestro_task_duration_seconds",
+            "Execution time of tasks.", EXEC_BOUNDS, "task", "success");
+    /**
+     * The durations of processes, until they exited or, for the main process,
+     * until it was initialized. Processes are labeled with their group and
+     * position, e.g. start.preMain.0, to keep the number of series bounded.
+     */
+    public static final Histogram PROCESS_DURATION = new Histogram("maestro_process_duration_seconds",
+            "Execution time of processes, until initialized for the main process.", EXEC_BOUNDS, "process", "success");
+    /**
+     * All the metrics, in the order they are exported.
+     */
+    private static final List<Metric<?>> METRICS = Arrays.asList(BROKER_UP, BROKER_START_TIME,
+            SERVICE_STATUS, SERVICE_TRANSITIONS, TIME_TO_INITIALIZED, RESTARTS,
+            ZK_OP_DURATION, TASK_DURATION, PROCESS_DURATION);
+
+    /**
+     * Prevents instantiation.
+     */
+    private BrokerMetrics() {
+    }
+
+    /**
+     * Records that the broker started.
+     */
+    public static void markStarted() {
+        BROKER_UP.set(1);
+        BROKER_START_TIME.set(System.currentTimeMillis() / 1000.0);
+    }
+
+    /**
+     * Records a transition of the service status. The time to the first
+     * initialization is recorded too.
+     *
+     * @param status the new status of the service.
+     */
+    public static void markStatus(SRV_STATE_STATUS status) {
+        for (SRV_STATE_STATUS s : SRV_STATE_STATUS.values()) {
+            SERVICE_STATUS.set(s == status ? 1 : 0, s.toString());
+        }
+        SERVICE_TRANSITIONS.inc(status.toString());
+        if (status == SRV_STATE_STATUS.INITIALIZED && FIRST_INITIALIZED.compareAndSet(false, true)) {
+            TIME_TO_INITIALIZED.set(secondsSince(BOOT_TIME));
+        }
+    }
+
+    /**
+     * Returns the seconds elapsed since a time.
+     *
+     * @param start the time (nanoseconds) as returned by
+     * {@link System#nanoTime() nanoTime}.
+     * @return the elapsed seconds.
+     */
+    public static double secondsSince(long start) {
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    /**
+     *
+     * @return all the metrics in the Prometheus text format.
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder();
+        METRICS.stream().forEach((metric) -> {
+            metric.write(out);
+        });
+        return out.toString();
+    }
+}
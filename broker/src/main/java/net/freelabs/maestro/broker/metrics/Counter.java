@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * Class that represents a counter, a metric that only increases.
+ */
+public final class Counter extends Metric<LongAdder> {
+
+    /**
+     * Constructor.
+     *
+     * @param name the name of the counter.
+     * @param help the description of the counter.
+     * @param labelNames the names of the labels.
+     */
+    Counter(String name, String help, String... labelNames) {
+        super(name, help, labelNames);
+    }
+
+    /**
+     * Increments the counter by one.
+     *
+     * @param labelValues the values of the labels.
+     */
+    public void inc(String... labelValues) {
+        getSeries(labelValues).increment();
+    }
+
+    @Override
+    protected LongAdder newSeries() {
+        return new LongAdder();
+    }
+
+    @Override
+    protected String getType() {
+        return "counter";
+    }
+
+    @Override
+    protected void writeSeries(StringBuilder out, String labels, LongAdder s) {
+        writeSample(out, getName(), labels, s.sum());
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Class that represents a gauge, a metric that holds the latest value set.
+ * The value is stored as the bits of a double in an {@link AtomicLong
+ * AtomicLong}.
+ */
+public final class Gauge extends Metric<AtomicLong> {
+
+    /**
+     * Constructor.
+     *
+     * @param name the name of the gauge.
+     * @param help the description of the gauge.
+     * @param labelNames the names of the labels.
+     */
+    Gauge(String name, String help, String... labelNames) {
+        super(name, help, labelNames);
+    }
+
+    /**
+     * Sets the value of the gauge.
+     *
+     * @param value the new value.
+     * @param labelValues the values of the labels.
+     */
+    public void set(double value, String... labelValues) {
+        getSeries(labelValues).set(Double.doubleToRawLongBits(value));
+    }
+
+    @Override
+    protected AtomicLong newSeries() {
+        return new AtomicLong(Double.doubleToRawLongBits(0));
+    }
+
+    @Override
+    protected String getType() {
+        return "gauge";
+    }
+
+    @Override
+    protected void writeSeries(StringBuilder out, String labels, AtomicLong s) {
+        writeSample(out, getName(), labels, Double.longBitsToDouble(s.get()));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * Class that represents a histogram, a metric that counts observed values in
+ * buckets of fixed upper bounds, along with their count and sum.
+ */
+public final class Histogram extends Metric<Histogram.Series> {
+
+    /**
+     * The upper bounds of the buckets, in ascending order.
+     */
+    private final double[] bounds;
+
+    /**
+     * The observations of a series.
+     */
+    static final class Series {
+
+        /**
+         * The observations per bucket, the last one is unbounded.
+         */
+        private final LongAdder[] buckets;
+        /**
+         * The sum of the observed values.
+         */
+        private final DoubleAdder sum = new DoubleAdder();
+
+        /**
+         * Constructor.
+         *
+         * @param size the number of bounded buckets.
+         */
+        private Series(int size) {
+            buckets = new LongAdder[size + 1];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name the name of the histogram.
+     * @param help the description of the histogram.
+     * @param bounds the upper bounds of the buckets, in ascending order.
+     * @param labelNames the names of the labels.
+     */
+    Histogram(String name, String help, double[] bounds, String... labelNames) {
+        super(name, help, labelNames);
+        this.bounds = bounds;
+    }
+
+    /**
+     * Records an observed value.
+     *
+     * @param value the observed value.
+     * @param labelValues the values of the labels.
+     */
+    public void observe(double value, String... labelValues) {
+        Series s = getSeries(labelValues);
+        int i = 0;
+        while (i < bounds.length && value > bounds[i]) {
+            i++;
+        }
+        s.buckets[i].increment();
+        s.sum.add(value);
+    }
+
+    @Override
+    protected Series newSeries() {
+        return new Series(bounds.length);
+    }
+
+    @Override
+    protected String getType() {
+        return "histogram";
+    }
+
+    @Override
+    protected void writeSeries(StringBuilder out, String labels, Series s) {
+        String sep = labels.isEmpty() ? "" : ",";
+        // buckets are cumulative
+        long count = 0;
+        for (int i = 0; i < s.buckets.length; i++) {
+            count += s.buckets[i].sum();
+            double bound = i < bounds.length ? bounds[i] : Double.POSITIVE_INFINITY;
+            writeSample(out, getName() + "_bucket", labels + sep + "le=\"" + format(bound) + "\"", count);
+        }
+        writeSample(out, getName() + "_sum", labels, s.sum.sum());
+        writeSample(out, getName() + "_count", labels, count);
+    }
+}
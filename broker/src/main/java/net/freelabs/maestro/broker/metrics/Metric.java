@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *
+ * <p>
+ * Class that represents a family of metrics with the same name and label
+ * names, exported in the Prometheus text format.
+ * <p>
+ * Every combination of label values is a series, created on first use. The
+ * lookup of an existing series does not lock, so updates from many threads
+ * do not contend.
+ *
+ * @param <T> the type of a series.
+ */
+abstract class Metric<T> {
+
+    /**
+     * The name of the metric.
+     */
+    private final String name;
+    /**
+     * The description of the metric.
+     */
+    private final String help;
+    /**
+     * The names of the labels.
+     */
+    private final String[] labelNames;
+    /**
+     * The series of the metric, by label values.
+     */
+    private final Map<List<String>, T> series = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param name the name of the metric.
+     * @param help the description of the metric.
+     * @param labelNames the names of the labels.
+     */
+    Metric(String name, String help, String... labelNames) {
+        this.name = name;
+        this.help = help;
+        this.labelNames = labelNames;
+    }
+
+    /**
+     * Returns the series with the given label values, creating it if needed.
+     *
+     * @param labelValues the values of the labels, in the order of the label
+     * names.
+     * @return the series.
+     */
+    protected final T getSeries(String... labelValues) {
+        if (labelValues.length != labelNames.length) {
+            throw new IllegalArgumentException("Expected " + labelNames.length + " label values for " + name);
+        }
+        List<String> key = Arrays.asList(labelValues);
+        T s = series.get(key);
+        if (s == null) {
+            s = series.computeIfAbsent(key, (k) -> newSeries());
+        }
+        return s;
+    }
+
+    /**
+     *
+     * @return the name of the metric.
+     */
+    protected final String getName() {
+        return name;
+    }
+
+    /**
+     *
+     * @return a new series of the metric.
+     */
+    protected abstract T newSeries();
+
+    /**
+     *
+     * @return the type of the metric: counter, gauge or histogram.
+     */
+    protected abstract String getType();
+
+    /**
+     * Writes the samples of a series.
+     *
+     * @param out the output.
+     * @param labels the formatted labels of the series, e.g. op="get", empty
+     * if none.
+     * @param s the series.
+     */
+    protected abstract void writeSeries(StringBuilder out, String labels, T s);
+
+    /**
+     * Writes the metric in the Prometheus text format.
+     *
+     * @param out the output.
+     */
+    final void write(StringBuilder out) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(getType()).append('\n');
+        series.forEach((labelValues, s) -> {
+            StringBuilder labels = new StringBuilder();
+            for (int i = 0; i < labelNames.length; i++) {
+                if (i > 0) {
+                    labels.append(',');
+                }
+                labels.append(labelNames[i]).append("=\"").append(escape(labelValues.get(i))).append('"');
+            }
+            writeSeries(out, labels.toString(), s);
+        });
+    }
+
+    /**
+     * Writes a sample.
+     *
+     * @param out the output.
+     * @param name the name of the sample.
+     * @param labels the formatted labels, empty if none.
+     * @param value the value of the sample.
+     */
+    protected static void writeSample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    /**
+     * Formats a value of a sample.
+     *
+     * @param value the value.
+     * @return the formatted value.
+     */
+    protected static String format(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        }
+        if (value == (long) value) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * Escapes a label value.
+     *
+     * @param value the label value.
+     * @return the escaped label value.
+     */
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Class whose instances serve the {@link BrokerMetrics broker metrics} in the
+ * Prometheus text format at the /metrics path, on the HTTP server of the JDK.
+ */
+public final class MetricsServer {
+
+    /**
+     * The port to listen to.
+     */
+    private final int port;
+    /**
+     * The HTTP server.
+     */
+    private HttpServer server;
+    /**
+     * The content type of the Prometheus text format.
+     */
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsServer.class);
+
+    /**
+     * Constructor.
+     *
+     * @param port the port to listen to.
+     */
+    public MetricsServer(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Starts serving the metrics. Requests are served on the dispatcher
+     * thread of the server, which must be stopped on shutdown.
+     *
+     * @return true if the server started.
+     */
+    public boolean start() {
+        try {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+            server.createContext("/metrics", this::handle);
+            server.start();
+            LOG.info("Serving metrics on port {}.", port);
+            return true;
+        } catch (IOException ex) {
+            LOG.error("FAILED to start metrics server on port {}: {}", port, ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Stops serving the metrics.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Handles a request for the metrics.
+     *
+     * @param exchange the request and the response.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = BrokerMetrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import net.freelabs.maestro.core.generated.Sampling;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * <p>
+ * Class whose instances sample the resource usage of a process and its
+ * descendants from the /proc file system.
+ * <p>
+ * On every sample the cpu usage and the threads are read from
+ * /proc/&lt;pid&gt;/stat, the resident memory from /proc/&lt;pid&gt;/status
+ * and the disk traffic from /proc/&lt;pid&gt;/io, for every process of the
+ * tree. The values are kept in {@link SampleRing rings} of the latest
+ * {@link #WINDOW WINDOW} samples.
+ * <p>
+ * A summary of the window is handed to a publisher at most once per publish
+ * interval, and only if it changed. The summary holds min/avg/max/p99 of every
+ * metric, for example:
+ * <pre>
+ * cpu%=0.5/2.1/9.8/9.1 rssKB=51200/52010/53248/53248 threads=12/12/14/14 readBps=0/0/4096/4096 writeBps=0/512/8192/8192 n=120
+ * </pre>
+ */
+public final class ProcSampler {
+
+    /**
+     * The pid of the root process of the tree.
+     */
+    private final int pid;
+    /**
+     * The time (seconds) between samples.
+     */
+    private final int interval;
+    /**
+     * The minimum time (seconds) between publications of the summary.
+     */
+    private final int publishInterval;
+    /**
+     * Receives the summary of the samples.
+     */
+    private final Consumer<String> publisher;
+    /**
+     * The cpu usage (percent of one cpu) of the process tree.
+     */
+    private final SampleRing cpu = new SampleRing(WINDOW);
+    /**
+     * The resident memory (kB) of the process tree.
+     */
+    private final SampleRing rss = new SampleRing(WINDOW);
+    /**
+     * The number of threads of the process tree.
+     */
+    private final SampleRing threads = new SampleRing(WINDOW);
+    /**
+     * The rate (bytes/sec) the process tree reads from storage.
+     */
+    private final SampleRing readRate = new SampleRing(WINDOW);
+    /**
+     * The rate (bytes/sec) the process tree writes to storage.
+     */
+    private final SampleRing writeRate = new SampleRing(WINDOW);
+    /**
+     * Buffer to read files from /proc, reused by every read.
+     */
+    private final byte[] buf = new byte[8192];
+    /**
+     * Runs the sampling.
+     */
+    private ScheduledExecutorService scheduler;
+    /**
+     * The cpu ticks of the process tree at the previous sample, -1 if none.
+     */
+    private long lastTicks = -1;
+    /**
+     * The bytes read by the process tree at the previous sample.
+     */
+    private long lastRead;
+    /**
+     * The bytes written by the process tree at the previous sample.
+     */
+    private long lastWrite;
+    /**
+     * The time (nanoseconds) of the previous sample.
+     */
+    private long lastTime;
+    /**
+     * The time (nanoseconds) the summary was last published.
+     */
+    private long lastPublish;
+    /**
+     * The latest summary.
+     */
+    private volatile String summary = "";
+    /**
+     * The number of samples kept for every metric.
+     */
+    private static final int WINDOW = 120;
+    /**
+     * The clock ticks per second of the cpu times in /proc (USER_HZ).
+     */
+    private static final int CLOCK_TICKS = 100;
+    /**
+     * The root of the /proc file system.
+     */
+    private static final Path PROC_DIR = Paths.get("/proc");
+    /**
+     * The maximum time (seconds) to wait for a running sample to finish on
+     * stop.
+     */
+    private static final long STOP_TIMEOUT = 5;
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(ProcSampler.class);
+    /**
+     * Indicates weather the kernel lists the children of every thread.
+     */
+    private static final boolean CHILDREN_SUPPORTED = isChildrenSupported();
+
+    /**
+     * Constructor.
+     *
+     * @param pid the pid of the root process of the tree.
+     * @param sampling the declared sampling configuration.
+     * @param publisher receives the summary of the samples.
+     */
+    public ProcSampler(int pid, Sampling sampling, Consumer<String> publisher) {
+        this.pid = pid;
+        this.interval = Math.max(1, sampling.getInterval());
+        this.publishInterval = Math.max(interval, sampling.getPublishInterval());
+        this.publisher = publisher;
+    }
+
+    /**
+     * Starts sampling on a daemon thread.
+     */
+    public void start() {
+        lastPublish = System.nanoTime();
+        scheduler = Executors.newSingleThreadScheduledExecutor((r) -> {
+            Thread t = new Thread(r, "Sampler-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            // an exception would cancel the scheduled sampling
+            try {
+                sample();
+            } catch (RuntimeException ex) {
+                LOG.error("Sampling FAILED: " + ex);
+            }
+        }, 0, interval, TimeUnit.SECONDS);
+        LOG.info("Sampling process {} every {} seconds.", pid, interval);
+    }
+
+    /**
+     * Stops sampling and waits for a running sample to finish, so that no
+     * summary is published after the method returns.
+     */
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            try {
+                if (!scheduler.awaitTermination(STOP_TIMEOUT, TimeUnit.SECONDS)) {
+                    LOG.warn("Sampling of process {} did not stop in time.", pid);
+                }
+            } catch (InterruptedException ex) {
+                LOG.warn("Thread Interrupted. Stopping.");
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     *
+     * @return the latest summary of the samples, empty if not published yet.
+     */
+    public String getSummary() {
+        return summary;
+    }
+
+    /**
+     * Takes a sample of the process tree and publishes the summary, if due.
+     */
+    private void sample() {
+        long ticks = 0;
+        long rssKb = 0;
+        long threadCount = 0;
+        long readBytes = 0;
+        long writeBytes = 0;
+        List<Integer> tree = getProcessTree();
+        if (tree.isEmpty()) {
+            return;
+        }
+        for (int p : tree) {
+            Path procDir = PROC_DIR.resolve(String.valueOf(p));
+            try {
+                // fields after the command name, which may contain spaces
+                String stat = read(procDir.resolve("stat"));
+                String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+                // utime, stime, cutime, cstime
+                ticks += Long.parseLong(fields[11]) + Long.parseLong(fields[12])
+                        + Long.parseLong(fields[13]) + Long.parseLong(fields[14]);
+                threadCount += Long.parseLong(fields[17]);
+                rssKb += getValue(read(procDir.resolve("status")), "VmRSS:");
+            } catch (IOException | RuntimeException ex) {
+                // the process exited since the tree was read
+                continue;
+            }
+            try {
+                String io = read(procDir.resolve("io"));
+                readBytes += getValue(io, "read_bytes:");
+                writeBytes += getValue(io, "write_bytes:");
+            } catch (IOException ex) {
+                // io is not readable without the required permissions
+            }
+        }
+        long now = System.nanoTime();
+        if (lastTicks != -1) {
+            double elapsed = (now - lastTime) / 1e9;
+            // counters of exited processes are lost, do not report negative values
+            cpu.add(Math.max(0, ticks - lastTicks) * 100.0 / CLOCK_TICKS / elapsed);
+            readRate.add(Math.max(0, readBytes - lastRead) / elapsed);
+            writeRate.add(Math.max(0, writeBytes - lastWrite) / elapsed);
+        }
+        rss.add(rssKb);
+        threads.add(threadCount);
+        lastTicks = ticks;
+        lastRead = readBytes;
+        lastWrite = writeBytes;
+        lastTime = now;
+        // publish at most once per publish interval
+        if (now - lastPublish >= TimeUnit.SECONDS.toNanos(publishInterval)) {
+            lastPublish = now;
+            String newSummary = summarize();
+            if (!newSummary.equals(summary)) {
+                summary = newSummary;
+                publisher.accept(newSummary);
+            }
+        }
+    }
+
+    /**
+     * Creates a summary of the samples.
+     *
+     * @return the summary of the samples.
+     */
+    private String summarize() {
+        return new StringBuilder()
+                .append(format("cpu%", cpu, "%.1f")).append(' ')
+                .append(format("rssKB", rss, "%.0f")).append(' ')
+                .append(format("threads", threads, "%.0f")).append(' ')
+                .append(format("readBps", readRate, "%.0f")).append(' ')
+                .append(format("writeBps", writeRate, "%.0f")).append(' ')
+                .append("n=").append(rss.getCount())
+                .toString();
+    }
+
+    /**
+     * Formats the min/avg/max/p99 of a metric.
+     *
+     * @param name the name of the metric.
+     * @param ring the samples of the metric.
+     * @param valueFormat the format of a value.
+     * @return the formatted metric.
+     */
+    private static String format(String name, SampleRing ring, String valueFormat) {
+        return name + "=" + String.format(Locale.ROOT, valueFormat + "/" + valueFormat + "/" + valueFormat + "/" + valueFormat,
+                ring.getMin(), ring.getAvg(), ring.getMax(), ring.getPercentile(99));
+    }
+
+    /**
+     * <p>
+     * Returns the pids of the root process and all its descendants.
+     * <p>
+     * The children of every thread are read from /proc/&lt;pid&gt;/task. If
+     * the kernel does not provide them, the parents of all processes are
+     * read instead.
+     *
+     * @return the pids of the process tree, empty if the root process exited.
+     */
+    private List<Integer> getProcessTree() {
+        if (!CHILDREN_SUPPORTED) {
+            return scanProcessTree();
+        }
+        List<Integer> tree = new ArrayList<>();
+        tree.add(pid);
+        for (int i = 0; i < tree.size(); i++) {
+            int p = tree.get(i);
+            try (DirectoryStream<Path> tasks = Files.newDirectoryStream(PROC_DIR.resolve(p + "/task"))) {
+                for (Path task : tasks) {
+                    for (String child : read(task.resolve("children")).trim().split("\\s+")) {
+                        if (!child.isEmpty()) {
+                            tree.add(Integer.parseInt(child));
+                        }
+                    }
+                }
+            } catch (NoSuchFileException ex) {
+                if (p == pid) {
+                    // the root process exited
+                    return new ArrayList<>();
+                }
+            } catch (IOException ex) {
+                LOG.debug("Cannot read tasks of process {}: {}", p, ex.getMessage());
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Returns the pids of the root process and all its descendants, by
+     * reading the parent of every process.
+     *
+     * @return the pids of the process tree, empty if the root process exited.
+     */
+    private List<Integer> scanProcessTree() {
+        Map<Integer, List<Integer>> children = new HashMap<>();
+        try (DirectoryStream<Path> procs = Files.newDirectoryStream(PROC_DIR, "[0-9]*")) {
+            for (Path proc : procs) {
+                try {
+                    String stat = read(proc.resolve("stat"));
+                    int ppid = Integer.parseInt(stat.substring(stat.lastIndexOf(')') + 2).split(" ")[1]);
+                    children.computeIfAbsent(ppid, (k) -> new ArrayList<>()).add(Integer.parseInt(proc.getFileName().toString()));
+                } catch (IOException | RuntimeException ex) {
+                    // the process exited
+                }
+            }
+        } catch (IOException ex) {
+            LOG.error("FAILED to read processes: " + ex);
+        }
+        List<Integer> tree = new ArrayList<>();
+        if (Files.exists(PROC_DIR.resolve(String.valueOf(pid)))) {
+            tree.add(pid);
+            for (int i = 0; i < tree.size(); i++) {
+                tree.addAll(children.getOrDefault(tree.get(i), new ArrayList<>()));
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Reads a file of the /proc file system.
+     *
+     * @param file the file to read.
+     * @return the contents of the file, up to the size of the buffer.
+     * @throws IOException if the file cannot be read.
+     */
+    private String read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            int n = 0;
+            int r;
+            while (n < buf.length && (r = in.read(buf, n, buf.length - n)) > 0) {
+                n += r;
+            }
+            return new String(buf, 0, n, StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Returns the numeric value of a "key: value" line.
+     *
+     * @param text the text with the lines.
+     * @param key the key of the line, including the colon.
+     * @return the value or 0 if the key is not found.
+     */
+    private static long getValue(String text, String key) {
+        int i = text.indexOf(key);
+        if (i == -1) {
+            return 0;
+        }
+        i += key.length();
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        long value = 0;
+        while (i < text.length() && Character.isDigit(text.charAt(i))) {
+            value = value * 10 + (text.charAt(i++) - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Checks if the kernel lists the children of every thread in
+     * /proc/&lt;pid&gt;/task/&lt;tid&gt;/children.
+     *
+     * @return true if the children of threads are listed.
+     */
+    private static boolean isChildrenSupported() {
+        try (DirectoryStream<Path> tasks = Files.newDirectoryStream(PROC_DIR.resolve("self/task"))) {
+            for (Path task : tasks) {
+                return Files.exists(task.resolve("children"));
+            }
+        } catch (IOException ex) {
+            LOG.debug("Cannot read tasks of process: {}", ex.getMessage());
+        }
+        return false;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.metrics;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Class whose instances keep the latest values of a metric in a fixed-size
+ * ring of primitives. Once full, every new value overwrites the oldest.
+ * <p>
+ * The running sum is updated on every value, the minimum, maximum and
+ * percentiles are computed over the window when requested. Instances are
+ * not thread-safe.
+ */
+final class SampleRing {
+
+    /**
+     * The values of the window.
+     */
+    private final double[] values;
+    /**
+     * Scratch array to compute percentiles, without allocating.
+     */
+    private final double[] sorted;
+    /**
+     * The index to write the next value.
+     */
+    private int next;
+    /**
+     * The number of values in the window.
+     */
+    private int count;
+    /**
+     * The sum of the values in the window.
+     */
+    private double sum;
+
+    /**
+     * Constructor.
+     *
+     * @param size the number of values kept.
+     */
+    SampleRing(int size) {
+        values = new double[size];
+        sorted = new double[size];
+    }
+
+    /**
+     * Adds a value to the window, replacing the oldest if full.
+     *
+     * @param value the value to add.
+     */
+    void add(double value) {
+        if (count == values.length) {
+            sum -= values[next];
+        } else {
+            count++;
+        }
+        values[next] = value;
+        sum += value;
+        next = (next + 1) % values.length;
+        // recompute the sum once per cycle to drop rounding errors
+        if (next == 0) {
+            sum = 0;
+            for (double v : values) {
+                sum += v;
+            }
+        }
+    }
+
+    /**
+     *
+     * @return the number of values in the window.
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     *
+     * @return the latest value or 0 if empty.
+     */
+    double getLast() {
+        return count == 0 ? 0 : values[(next - 1 + values.length) % values.length];
+    }
+
+    /**
+     *
+     * @return the minimum value of the window or 0 if empty.
+     */
+    double getMin() {
+        if (count == 0) {
+            return 0;
+        }
+        double min = Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    /**
+     *
+     * @return the maximum value of the window or 0 if empty.
+     */
+    double getMax() {
+        if (count == 0) {
+            return 0;
+        }
+        double max = -Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    /**
+     *
+     * @return the average of the window or 0 if empty.
+     */
+    double getAvg() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Returns a percentile of the window, using the nearest rank.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the percentile of the window or 0 if empty.
+     */
+    double getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        System.arraycopy(values, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return sorted[Math.max(0, Math.min(rank, count) - 1)];
+    }
+
+    /**
+     * Removes all values from the window.
+     */
+    void clear() {
+        next = 0;
+        count = 0;
+        sum = 0;
+    }
+}
@@ -19,6 +19,7 @@ package net.freelabs.maestro.broker.process;
 import java.lang.reflect.Field;
 import java.util.List;
 import java.util.Map;
+import net.freelabs.maestro.broker.metrics.BrokerMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -152,7 +153,9 @@ public abstract class ProcessHandler {
             boolean initialized = init();
             // execute process if it is correctly initialized
             if (initialized) {
+                long startTime = System.nanoTime();
                 success = start();
+                BrokerMetrics.PROCESS_DURATION.observe(BrokerMetrics.secondsSince(startTime), getProcId(), String.valueOf(success));
                 // execute code depending on process execution sucess or not
                 if (success) {
                     if (execOnSuccess != null) {
@@ -185,6 +188,17 @@ public abstract class ProcessHandler {
         return (pData != null);
     }
 
+    /**
+     *
+     * @return the id of the resource of the process, from its group and
+     * position. Used as a metric label, so never the command line, which is
+     * unbounded and may hold arguments.
+     */
+    private String getProcId() {
+        String id = pData.getRes().getId();
+        return id != null ? id : "unknown";
+    }
+
     /**
      * <p>
      * Returns the process pid through reflection.
@@ -16,8 +16,15 @@
  */
 package net.freelabs.maestro.broker.process;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static net.freelabs.maestro.broker.Broker.SHUTDOWN;
+import net.freelabs.maestro.broker.metrics.BrokerMetrics;
 import net.freelabs.maestro.broker.process.start.StartGroupProcessHandler;
 import net.freelabs.maestro.broker.process.stop.StopGroupProcessHandler;
+import net.freelabs.maestro.core.generated.Reload;
+import net.freelabs.maestro.core.generated.RestartPolicy;
+import net.freelabs.maestro.core.generated.RestartPolicyType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,6 +42,35 @@ public final class ProcessManager {
      * Process manager for processes defined in stop section.
      */
     private StopGroupProcessHandler stopGroupHandler;
+    /**
+     * The restart policy of the main process. May be null.
+     */
+    private RestartPolicy restartPolicy;
+    /**
+     * The declared reload of the main process. May be null.
+     */
+    private Reload reload;
+    /**
+     * The total number of restarts of the main process.
+     */
+    private final AtomicInteger restartCount = new AtomicInteger();
+    /**
+     * The number of consecutive restarts of the main process, reset when the
+     * process runs for {@link #STABLE_PERIOD STABLE_PERIOD}.
+     */
+    private int consecutiveRestarts;
+    /**
+     * The time (nanoseconds) the main process was last started.
+     */
+    private long lastStart;
+    /**
+     * The time (minutes) the main process must run to be considered stable.
+     */
+    private static final long STABLE_PERIOD = 5;
+    /**
+     * The maximum time (seconds) to wait before a restart.
+     */
+    private static final long MAX_BACKOFF = 300;
     /**
      * A Logger object.
      */
@@ -62,12 +98,40 @@ public final class ProcessManager {
         this.stopGroupHandler = stopGroupHandler;
     }
 
+    /**
+     * Sets the restart policy of the main process.
+     *
+     * @param restartPolicy the restart policy, may be null.
+     */
+    public void setRestartPolicy(RestartPolicy restartPolicy) {
+        this.restartPolicy = restartPolicy;
+    }
+
+    /**
+     * Sets the reload of the main process, used when its configuration
+     * changes.
+     *
+     * @param reload the declared reload, may be null.
+     */
+    public void setReload(Reload reload) {
+        this.reload = reload;
+    }
+
+    /**
+     *
+     * @return the total number of restarts of the main process.
+     */
+    public int getRestartCount() {
+        return restartCount.get();
+    }
+
     /**
      * Executes processes defined in start section.
      */
     public void exec_start_procs() {
         LOG.info("Executing start-group processes.");
         if (isStartHandlerInit()) {
+            lastStart = System.nanoTime();
             boolean success = startGroupHandler.exec_group_procs();
             if (success) {
                 LOG.info("Start-group processes executed SUCCESSFULLY.");
@@ -77,6 +141,89 @@ public final class ProcessManager {
         }
     }
 
+    /**
+     * <p>
+     * Restarts the main process after it stopped, according to the restart
+     * policy: never, on-failure (non zero exit code) or always.
+     * <p>
+     * The start group is executed again, after waiting for a time that doubles
+     * with every consecutive restart. Restarts stop after the maximum number
+     * of consecutive retries. The count of consecutive restarts is reset if
+     * the process ran for {@link #STABLE_PERIOD STABLE_PERIOD}.
+     * <p>
+     * The method blocks.
+     *
+     * @return true if the main process was restarted and initialized.
+     */
+    public boolean restart_start_procs() {
+        if (restartPolicy == null || restartPolicy.getPolicy() == RestartPolicyType.NEVER || !isStartHandlerInit()) {
+            return false;
+        }
+        // the process ran long enough, start counting again
+        if (System.nanoTime() - lastStart >= TimeUnit.MINUTES.toNanos(STABLE_PERIOD)) {
+            consecutiveRestarts = 0;
+        }
+        while (true) {
+            int exitCode = startGroupHandler.getMainExitCode();
+            if (restartPolicy.getPolicy() == RestartPolicyType.ON_FAILURE && exitCode == 0) {
+                LOG.info("Main process exited normally. NOT restarting.");
+                return false;
+            }
+            if (consecutiveRestarts >= restartPolicy.getMaxRetries()) {
+                LOG.error("Main process restarted {} times in a row. NOT restarting.", consecutiveRestarts);
+                return false;
+            }
+            // double the waiting time with every consecutive restart
+            long delay = Math.min(restartPolicy.getBackoff() * (1L << Math.min(consecutiveRestarts, 20)), MAX_BACKOFF);
+            LOG.warn("Restarting main process in {} seconds. Retry {} of {}. Exit code: {}",
+                    delay, consecutiveRestarts + 1, restartPolicy.getMaxRetries(), exitCode);
+            try {
+                TimeUnit.SECONDS.sleep(delay);
+            } catch (InterruptedException ex) {
+                LOG.warn("Thread Interrupted. Stopping.");
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (SHUTDOWN.isSignaledShutDown()) {
+                return false;
+            }
+            consecutiveRestarts++;
+            restartCount.incrementAndGet();
+            BrokerMetrics.RESTARTS.inc();
+            lastStart = System.nanoTime();
+            if (startGroupHandler.exec_group_procs()) {
+                LOG.info("Main process restarted SUCCESSFULLY. Total restarts: {}", restartCount.get());
+                return true;
+            }
+            // stop a process that started but did not initialize, before retrying
+            startGroupHandler.stopMainProc();
+        }
+    }
+
+    /**
+     * Reloads the configuration of the main process without restarting it,
+     * through the declared reload command or signal.
+     * <p>
+     * The method blocks.
+     *
+     * @return true if the main process was reloaded.
+     */
+    public boolean reload_main_proc() {
+        if (reload == null) {
+            LOG.warn("NO reload declared for main process. Configuration changes apply on next start.");
+            return false;
+        }
+        if (!isStartHandlerInit()) {
+            LOG.error("Start-group processes handler NOT INITIALIZED.");
+            return false;
+        }
+        boolean success = startGroupHandler.reloadMainProc(reload);
+        if (success) {
+            LOG.info("Main process reloaded SUCCESSFULLY.");
+        }
+        return success;
+    }
+
     /**
      * Executes processes defined in stop section.
      */
@@ -103,6 +250,14 @@ public final class ProcessManager {
         return startGroupHandler.isMainProcRunning();
     }
 
+    /**
+     *
+     * @return the pid of the main process or -1 if not available.
+     */
+    public int getMainProcPid() {
+        return isStartHandlerInit() ? startGroupHandler.getMainProcPid() : -1;
+    }
+
     /**
      * Waits until the main process stops running.
      */
@@ -36,6 +36,19 @@ public final class Resource {
      * Abort all remaining resource execution if resource execution fails.
      */
     private final boolean abortOnFail;
+    /**
+     * The name of the resource, used to declare execution order. May be null.
+     */
+    private final String name;
+    /**
+     * The names of the resources that must be executed before this resource.
+     */
+    private final List<String> after;
+    /**
+     * A stable id of the resource, from its group and position, e.g.
+     * start.preMain.0. Used to label metrics. May be null.
+     */
+    private final String id;
 
     /**
      * Constructor.
@@ -45,8 +58,27 @@ public final class Resource {
      * execution fails.
      */
     public Resource(String res, boolean abortOnFail) {
+        this(res, abortOnFail, null, new ArrayList<>(), null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param res the resource.
+     * @param abortOnFail Abort all descending processes execution if resource
+     * execution fails.
+     * @param name the name of the resource. May be null.
+     * @param after the names of the resources that must be executed before
+     * this resource.
+     * @param id a stable id of the resource, from its group and position, e.g.
+     * start.preMain.0. May be null.
+     */
+    public Resource(String res, boolean abortOnFail, String name, List<String> after, String id) {
         this.res = res;
         this.abortOnFail = abortOnFail;
+        this.name = name;
+        this.after = after;
+        this.id = id;
     }
 
     /**
@@ -106,5 +138,39 @@ public final class Resource {
     public boolean isAbortOnFail() {
         return abortOnFail;
     }
+
+    /**
+     *
+     * @return the name of the resource or null if not declared.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     *
+     * @return the names of the resources that must be executed before this
+     * resource.
+     */
+    public List<String> getAfter() {
+        return after;
+    }
+
+    /**
+     *
+     * @return a stable id of the resource, from its group and position, e.g.
+     * start.preMain.0. May be null.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     *
+     * @return true if the resource declares a name or an execution order.
+     */
+    public boolean isOrdered() {
+        return name != null || !after.isEmpty();
+    }
     
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.process.start;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * <p>
+ * Class whose instances watch the output of a process for a line that
+ * matches a pattern, e.g. "Server started".
+ * <p>
+ * The output streams of the process are pumped on daemon threads and
+ * forwarded unchanged to the output of the broker. Complete lines are matched
+ * against the pattern until the first match. The last
+ * {@link #RING_SIZE RING_SIZE} lines are kept in a ring buffer, to report
+ * them if the pattern is never matched. Memory use is bounded: lines longer
+ * than {@link #MAX_LINE MAX_LINE} bytes are truncated for matching.
+ */
+final class LogWatcher {
+
+    /**
+     * The number of last output lines kept.
+     */
+    private static final int RING_SIZE = 50;
+    /**
+     * The maximum length (bytes) of a line kept for matching.
+     */
+    private static final int MAX_LINE = 8192;
+    /**
+     * The size of the buffer used to read the output.
+     */
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * The pattern to match.
+     */
+    private final Pattern pattern;
+    /**
+     * The last output lines.
+     */
+    private final String[] ring = new String[RING_SIZE];
+    /**
+     * The position of the next line in the ring.
+     */
+    private int next;
+    /**
+     * The number of lines in the ring.
+     */
+    private int count;
+    /**
+     * Indicates a line matched the pattern.
+     */
+    private volatile boolean matched;
+    /**
+     * Executes when a line matches the pattern.
+     */
+    private volatile Runnable onMatch;
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(LogWatcher.class);
+
+    /**
+     * Constructor.
+     *
+     * @param regex the regular expression to match.
+     */
+    LogWatcher(String regex) {
+        pattern = Pattern.compile(regex);
+    }
+
+    /**
+     * Starts a daemon thread that forwards an output stream of a process and
+     * watches its lines. The thread stops when the stream ends.
+     *
+     * @param in the output stream of the process.
+     * @param out the stream to forward the output to.
+     * @param name the name of the thread.
+     */
+    void pump(InputStream in, OutputStream out, String name) {
+        Thread t = new Thread(() -> {
+            byte[] buf = new byte[BUFFER_SIZE];
+            byte[] line = new byte[MAX_LINE];
+            int lineLen = 0;
+            try {
+                int len;
+                while ((len = in.read(buf)) != -1) {
+                    // forward output unchanged
+                    out.write(buf, 0, len);
+                    out.flush();
+                    // split lines, keep only the head of long lines
+                    for (int i = 0; i < len; i++) {
+                        byte b = buf[i];
+                        if (b == '\n') {
+                            onLine(line, lineLen);
+                            lineLen = 0;
+                        } else if (lineLen < MAX_LINE) {
+                            line[lineLen++] = b;
+                        }
+                    }
+                }
+                if (lineLen > 0) {
+                    onLine(line, lineLen);
+                }
+            } catch (IOException ex) {
+                LOG.debug("Process output stream closed: {}", ex.getMessage());
+            }
+        }, name);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Handles a complete line of output.
+     *
+     * @param line the buffer with the line.
+     * @param len the length of the line.
+     */
+    private void onLine(byte[] line, int len) {
+        // strip carriage return
+        if (len > 0 && line[len - 1] == '\r') {
+            len--;
+        }
+        String str = new String(line, 0, len, Charset.defaultCharset());
+        synchronized (this) {
+            ring[next] = str;
+            next = (next + 1) % RING_SIZE;
+            if (count < RING_SIZE) {
+                count++;
+            }
+        }
+        if (!matched && pattern.matcher(str).find()) {
+            matched = true;
+            Runnable r = onMatch;
+            if (r != null) {
+                r.run();
+            }
+        }
+    }
+
+    /**
+     * @return true if a line matched the pattern.
+     */
+    boolean isMatched() {
+        return matched;
+    }
+
+    /**
+     * Sets code to execute when a line matches the pattern.
+     *
+     * @param onMatch the code to execute.
+     */
+    void setOnMatch(Runnable onMatch) {
+        this.onMatch = onMatch;
+    }
+
+    /**
+     * @return the pattern to match.
+     */
+    String getPattern() {
+        return pattern.pattern();
+    }
+
+    /**
+     * @return the last output lines, oldest first.
+     */
+    synchronized List<String> getTail() {
+        List<String> tail = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tail.add(ring[(next - count + i + RING_SIZE) % RING_SIZE]);
+        }
+        return tail;
+    }
+}
@@ -19,16 +19,20 @@ package net.freelabs.maestro.broker.process.start;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.net.SocketException;
-import java.net.SocketTimeoutException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import static net.freelabs.maestro.broker.Broker.SHUTDOWN;
+import net.freelabs.maestro.broker.process.Resource;
 import net.freelabs.maestro.broker.shutdown.Shutdown;
 import net.freelabs.maestro.broker.shutdown.ShutdownNotifier;
+import net.freelabs.maestro.core.generated.Probe;
+import net.freelabs.maestro.core.generated.ProbeType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,9 +71,13 @@ public final class MainProcMon implements Shutdown {
      */
     private CountDownLatch initSignal;
     /**
-     * Time to wait for initialization before aborting process.
+     * Default time to wait for initialization before aborting process.
      */
     private static final int INIT_TIMEOUT = (int) TimeUnit.MINUTES.toMillis(2);
+    /**
+     * Indicates the shutdown of the broker is monitored.
+     */
+    private boolean shutdownWatched;
     /**
      * Latch that is used to wait for the process while running.
      */
@@ -79,28 +87,42 @@ public final class MainProcMon implements Shutdown {
      * connection and check process initialization. The host is the localhost.
      */
     private final InetSocketAddress isa;
+    /**
+     * The data of the main process.
+     */
+    private final MainProcessData pData;
+    /**
+     * Watches the process output, if readiness is declared by a log pattern.
+     */
+    private LogWatcher watcher;
+    /**
+     * The readiness probe of the process.
+     */
+    private volatile ReadinessProbe probe;
     /**
      * A Logger object.
      */
     private static final Logger LOG = LoggerFactory.getLogger(MainProcMon.class);
     /**
-     * List of threads to interrupt during shutdown.
+     * List of threads to interrupt during shutdown. Threads are added on every
+     * restart while the list may be iterated on shutdown.
      */
     private final List<Thread> interruptThreads;
 
     /**
      * Constructor.
      *
-     * @param procPort the port at which the process is listening.
+     * @param pData the data of the main process.
      */
-    public MainProcMon(int procPort) {
+    public MainProcMon(MainProcessData pData) {
+        this.pData = pData;
         // cerate interrupted thread list and add current thread 
-        interruptThreads = new ArrayList<>();
+        interruptThreads = new CopyOnWriteArrayList<>();
         interruptThreads.add(Thread.currentThread());
         // set initial process state 
         curState = STATE.NOT_RUNNING;
         // inittialize the host port socketAddress object.
-        isa = new InetSocketAddress(InetAddress.getLoopbackAddress(), procPort);
+        isa = new InetSocketAddress(InetAddress.getLoopbackAddress(), pData.getProcPort());
     }
 
     /**
@@ -118,8 +140,17 @@ public final class MainProcMon implements Shutdown {
      */
     public void start(Process _proc) {
         this._proc = _proc;
-        // start thread that monitors for shutdown, SHUTDOWN is static from Broker
-        waitForShutdown(SHUTDOWN);
+        // the process may be restarted, clear the previous initialization
+        initialized = false;
+        // watch the process output, if readiness is declared by a log pattern
+        if (pData.isOutputWatched()) {
+            watchOutput();
+        }
+        // start thread that monitors for shutdown once, SHUTDOWN is static from Broker
+        if (!shutdownWatched) {
+            shutdownWatched = true;
+            waitForShutdown(SHUTDOWN);
+        }
         // set state to running 
         setRunning(true);
         // start monitoring running
@@ -193,16 +224,18 @@ public final class MainProcMon implements Shutdown {
      */
     protected void monProcRun() {
         new Thread(() -> {
-            interruptThreads.add(Thread.currentThread());
-            if (_proc != null) {
-                try {
+            registerInterrupt();
+            try {
+                if (_proc != null) {
                     _proc.waitFor();
                     // set not running status
                     setRunning(false);
-                } catch (InterruptedException ex) {
-                    LOG.warn("Thread interrupted. Stopping.");
-                    Thread.currentThread().interrupt();
                 }
+            } catch (InterruptedException ex) {
+                LOG.warn("Thread interrupted. Stopping.");
+                Thread.currentThread().interrupt();
+            } finally {
+                unregisterInterrupt();
             }
         }).start();
     }
@@ -229,57 +262,76 @@ public final class MainProcMon implements Shutdown {
      * <p>
      * Checks the initialization condition and sets the init process status.
      * <p>
-     * A new thread is created which handles the initialization condition. In
-     * order to determine if the process is initialized and ready a
-     * {@link java.net.Socket socket} is created and tries to make a connection,
-     * within a {@link #INIT_TIMEOUT timeout} limit as long as the process is
-     * running. If the connection succeeds, the process is set initialized. If
-     * not, the connection is re-tried until timed out. If the connection times
-     * out the process is set not initialized.
+     * A {@link ReadinessProbe readiness probe} is submitted to the
+     * {@link ProbeMultiplexer probe multiplexer}, as declared for the process:
+     * a connection to the process port (default), an HTTP GET request, a
+     * command or a pattern to match on the process output. The probe is
+     * retried with exponential backoff as long as the process is running,
+     * within a timeout limit. If the probe succeeds, the process is set
+     * initialized. If it times out, or the multiplexer stops, the process is
+     * set not initialized.
      * <p>
+     * The method does not block.
      */
     private void checkInit() {
-        new Thread(() -> {
-            interruptThreads.add(Thread.currentThread());
-            // create a socket 
-            Socket client = new Socket();
-            long start = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-            long end = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-            while (running) {
-                LOG.info("Waiting server: {} on port: {}", isa.getHostName(), isa.getPort());
-                if (end - start < INIT_TIMEOUT) {
-                    try {
-                        // try to connect 
-                        client.connect(isa, INIT_TIMEOUT);
-                        // connection succeeded so set process status to initialized
-                        setInitialized(true);
-                        break;
-                    } catch (SocketTimeoutException ex) {
-                        LOG.error("Process initialization TIMEOUT!");
-                        setInitialized(false);
-                        break;
-                    } catch (SocketException ex) {
-                        // create a new socket as the socket is now closed.
-                        client = new Socket();
-                    } catch (IOException ex) {
-                        // catch the exception to allow loop to continue                        
-                    }
-                    try {
-                        TimeUnit.SECONDS.sleep(2);
-                    } catch (InterruptedException ex1) {
-                        LOG.warn("Thread interrupted. Stopping: {}", ex1.getMessage());
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                } else {
-                    LOG.error("Process initialization TIMEOUT!");
-                    // set process status to NOT initialized
-                    setInitialized(false);
-                    break;
+        probe = createProbe();
+        try {
+            ProbeMultiplexer.getInstance().submit(probe);
+        } catch (IOException ex) {
+            LOG.error("FAILED to start readiness probe: {}", ex.getMessage());
+            setInitialized(false);
+        }
+    }
+
+    /**
+     * Creates the {@link LogWatcher watcher} of the process output and starts
+     * forwarding the process output streams to the broker output streams. An
+     * invalid pattern is matched literally.
+     */
+    private void watchOutput() {
+        String regex = pData.getProbe().getValue() == null ? "" : pData.getProbe().getValue();
+        try {
+            watcher = new LogWatcher(regex);
+        } catch (PatternSyntaxException ex) {
+            LOG.error("Invalid readiness log pattern: {}. Matching literally.", ex.getMessage());
+            watcher = new LogWatcher(Pattern.quote(regex));
+        }
+        watcher.pump(_proc.getInputStream(), System.out, "Main-Proc-Stdout");
+        watcher.pump(_proc.getErrorStream(), System.err, "Main-Proc-Stderr");
+    }
+
+    /**
+     * Creates the readiness probe declared for the process.
+     *
+     * @return the readiness probe.
+     */
+    private ReadinessProbe createProbe() {
+        Probe spec = pData.getProbe();
+        long timeout = spec != null ? TimeUnit.SECONDS.toMillis(spec.getTimeout()) : INIT_TIMEOUT;
+        // probe as long as the process is running
+        BooleanSupplier alive = () -> running;
+        Consumer<Boolean> onResult = (ready) -> {
+            if (!ready) {
+                LOG.error("Process initialization TIMEOUT!");
+                if (watcher != null) {
+                    LOG.error("Last lines of process output: {}", watcher.getTail());
                 }
-                end = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-            }// end while
-        }).start();
+            }
+            setInitialized(ready);
+        };
+        ProbeType type = spec != null ? spec.getType() : ProbeType.TCP;
+        switch (type) {
+            case HTTP:
+                String path = spec.getValue() == null || spec.getValue().trim().isEmpty() ? "/" : spec.getValue().trim();
+                return ReadinessProbe.http(isa, path, timeout, alive, onResult);
+            case EXEC:
+                List<String> cmdArgs = new Resource(spec.getValue(), false).getResCmdArgs();
+                return ReadinessProbe.exec(cmdArgs, pData.getEnvironment(), timeout, alive, onResult);
+            case LOG:
+                return ReadinessProbe.log(watcher, timeout, alive, onResult);
+            default:
+                return ReadinessProbe.tcp(isa, timeout, alive, onResult);
+        }
     }
 
     /**
@@ -298,6 +350,16 @@ public final class MainProcMon implements Shutdown {
         return running;
     }
 
+    /**
+     *
+     * @return the exit code of the main process or -1 if the process was not
+     * started or is still running.
+     */
+    public int getExitCode() {
+        Process p = _proc;
+        return p != null && !p.isAlive() ? p.exitValue() : -1;
+    }
+
     /**
      * Sets {@link #initialized initialized} field, calls {@link #transition()
      * transition} to calculate next state and {@link #action() action} to apply
@@ -331,7 +393,7 @@ public final class MainProcMon implements Shutdown {
      * The method blocks.
      */
     public void waitProc() {
-        interruptThreads.add(Thread.currentThread());
+        registerInterrupt();
         try {
             if (running) {
                 runningSignal.await();
@@ -341,11 +403,36 @@ public final class MainProcMon implements Shutdown {
         } catch (InterruptedException ex) {
             LOG.warn("Thread interrupted. Stopping. ");
             Thread.currentThread().interrupt();
+        } finally {
+            unregisterInterrupt();
         }
     }
 
+    /**
+     * Adds the current thread to the threads to interrupt during shutdown.
+     * Threads that have finished are removed, so that the list does not grow
+     * with every restart.
+     */
+    private void registerInterrupt() {
+        interruptThreads.removeIf((t) -> !t.isAlive());
+        interruptThreads.add(Thread.currentThread());
+    }
+
+    /**
+     * Removes the current thread from the threads to interrupt during
+     * shutdown, once it no longer waits for the process.
+     */
+    private void unregisterInterrupt() {
+        interruptThreads.remove(Thread.currentThread());
+    }
+
     @Override
     public void shutdown(ShutdownNotifier notifier) {
+        // stop probing the process
+        ReadinessProbe p = probe;
+        if (p != null) {
+            p.cancel();
+        }
         // interrupt threads to initiate shutdown
         interruptThreads.stream()
                 .filter((t) -> (t != null))
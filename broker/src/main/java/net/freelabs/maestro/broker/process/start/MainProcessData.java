@@ -19,6 +19,8 @@ package net.freelabs.maestro.broker.process.start;
 import java.util.Map;
 import net.freelabs.maestro.broker.process.ProcessData;
 import net.freelabs.maestro.broker.process.Resource;
+import net.freelabs.maestro.core.generated.Probe;
+import net.freelabs.maestro.core.generated.ProbeType;
 
 /**
  *
@@ -34,11 +36,20 @@ public final class MainProcessData extends ProcessData {
      * The IP of the host where the process is running.
      */
     private final String prochost;
+    /**
+     * The readiness probe declared for the process. May be null.
+     */
+    private final Probe probe;
 
     public MainProcessData(Resource res, Map<String, String> env, String prochost, int procPort) {
+        this(res, env, prochost, procPort, null);
+    }
+
+    public MainProcessData(Resource res, Map<String, String> env, String prochost, int procPort, Probe probe) {
         super(res, env);
         this.prochost = prochost;
         this.procPort = procPort;
+        this.probe = probe;
     }
     
 
@@ -51,4 +62,17 @@ public final class MainProcessData extends ProcessData {
         return prochost;
     }
 
+    public Probe getProbe() {
+        return probe;
+    }
+
+    /**
+     *
+     * @return true if readiness is declared by a pattern on the process
+     * output, so the output must be watched by the broker.
+     */
+    public boolean isOutputWatched() {
+        return probe != null && probe.getType() == ProbeType.LOG;
+    }
+
 }
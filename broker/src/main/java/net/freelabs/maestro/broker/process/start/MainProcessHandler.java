@@ -18,7 +18,11 @@ package net.freelabs.maestro.broker.process.start;
 
 import java.io.IOException;
 import java.lang.ProcessBuilder.Redirect;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import net.freelabs.maestro.broker.process.ProcessHandler;
+import net.freelabs.maestro.core.generated.Reload;
 
 /**
  *
@@ -46,7 +50,7 @@ public final class MainProcessHandler extends ProcessHandler {
         super(pData);
         mainPData = pData;
         // create the main process monitor
-        mainProcMon = new MainProcMon(pData.getProcPort());
+        mainProcMon = new MainProcMon(pData);
     }
 
     /**
@@ -55,16 +59,20 @@ public final class MainProcessHandler extends ProcessHandler {
      * <p>
      * The method Overrides the {@link ProcessHandler#init() init} method.
      * <p>
-     * Redirects the stderr and stdout stream to the parent process.
+     * Redirects the stderr and stdout stream to the parent process. If
+     * readiness is declared by a log pattern, the streams are piped to the
+     * broker instead, which forwards them.
      *
      * @return true if process initialized without errors.
      */
     @Override
     protected boolean init() {
         boolean initialized = super.init();
-        // redirect error stream and output stream
-        pb.redirectError(Redirect.INHERIT);
-        pb.redirectOutput(Redirect.INHERIT);
+        // redirect error stream and output stream, unless the broker watches them
+        if (!mainPData.isOutputWatched()) {
+            pb.redirectError(Redirect.INHERIT);
+            pb.redirectOutput(Redirect.INHERIT);
+        }
         return initialized;
     }
 
@@ -96,7 +104,9 @@ public final class MainProcessHandler extends ProcessHandler {
     @Override
     public void stop() {
         LOG.warn("STOPPING main process.");
-        _proc.destroyForcibly();
+        if (_proc != null) {
+            _proc.destroyForcibly();
+        }
     }
 
     /**
@@ -128,6 +138,72 @@ public final class MainProcessHandler extends ProcessHandler {
        return mainProcMon.isRunning();
     }
 
+    /**
+     *
+     * @return the exit code of the main process or -1 if the process was not
+     * started or is still running.
+     */
+    public int getExitCode() {
+        return mainProcMon.getExitCode();
+    }
+
+    /**
+     * <p>
+     * Reloads the configuration of the running main process, without
+     * restarting it.
+     * <p>
+     * If a reload command is declared, the command is executed with the
+     * current environment of the process. Otherwise, the declared signal is
+     * sent to the main process.
+     * <p>
+     * The method blocks until the command exits or the timeout expires.
+     *
+     * @param reload the declared reload of the main process.
+     * @return true if the main process was reloaded.
+     */
+    public boolean reload(Reload reload) {
+        if (!mainProcMon.isRunning()) {
+            LOG.warn("Main process NOT running. Reload skipped.");
+            return false;
+        }
+        List<String> cmd;
+        String reloadCmd = reload.getValue() == null ? "" : reload.getValue().trim();
+        if (!reloadCmd.isEmpty()) {
+            cmd = Arrays.asList("/bin/sh", "-c", reloadCmd);
+        } else {
+            int pid = getProcPid();
+            if (pid == -1) {
+                LOG.error("FAILED to get pid of main process. Reload skipped.");
+                return false;
+            }
+            cmd = Arrays.asList("kill", "-s", reload.getSignal(), String.valueOf(pid));
+        }
+        LOG.info("Reloading main process: {}", cmd);
+        boolean reloaded = false;
+        ProcessBuilder reloadPb = new ProcessBuilder(cmd);
+        reloadPb.environment().putAll(pData.getEnvironment());
+        reloadPb.redirectError(Redirect.INHERIT);
+        reloadPb.redirectOutput(Redirect.INHERIT);
+        try {
+            Process reloadProc = reloadPb.start();
+            if (reloadProc.waitFor(reload.getTimeout(), TimeUnit.SECONDS)) {
+                reloaded = reloadProc.exitValue() == 0;
+                if (!reloaded) {
+                    LOG.error("Reload of main process FAILED. Exit code: {}", reloadProc.exitValue());
+                }
+            } else {
+                reloadProc.destroyForcibly();
+                LOG.error("Reload of main process TIMED OUT after {} seconds.", reload.getTimeout());
+            }
+        } catch (IOException ex) {
+            LOG.error("FAILED to reload main process: " + ex);
+        } catch (InterruptedException ex) {
+            LOG.warn("Thread Interrupted. Stopping.");
+            Thread.currentThread().interrupt();
+        }
+        return reloaded;
+    }
+
     /**
      * Blocks until the main process stops running.
      */
@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.process.start;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import net.freelabs.maestro.broker.process.start.ReadinessProbe.OUTCOME;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * <p>
+ * Class that drives {@link ReadinessProbe readiness probes} on a single
+ * thread.
+ * <p>
+ * Network probes use non-blocking channels registered with one
+ * {@link Selector Selector}. The thread sleeps in the selector until a channel
+ * is ready or the next probe needs attention, so any number of probes are
+ * multiplexed without blocking on a connect or a sleep.
+ * <p>
+ * There is one instance per broker, created on first use. A probe that throws
+ * fails on its own. If the selector fails, the thread stops and every pending
+ * or later submitted probe of the instance fails, so that no caller waits for
+ * a result forever. The next call to {@link #getInstance() getInstance}
+ * creates a new instance.
+ */
+final class ProbeMultiplexer implements Runnable {
+
+    /**
+     * The single instance of the class.
+     */
+    private static ProbeMultiplexer instance;
+    /**
+     * The selector of the probe channels.
+     */
+    private final Selector selector;
+    /**
+     * The probes submitted by other threads, not yet picked up.
+     */
+    private final Queue<ReadinessProbe> submitted = new ConcurrentLinkedQueue<>();
+    /**
+     * The active probes. Accessed only by the multiplexer thread.
+     */
+    private final List<ReadinessProbe> probes = new ArrayList<>();
+    /**
+     * Set when the multiplexer thread stopped.
+     */
+    private volatile boolean stopped;
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(ProbeMultiplexer.class);
+
+    /**
+     * Constructor.
+     *
+     * @param selector the selector of the probe channels.
+     */
+    private ProbeMultiplexer(Selector selector) {
+        this.selector = selector;
+    }
+
+    /**
+     * Returns the single instance of the class. The multiplexer thread is
+     * started on first call.
+     *
+     * @return the multiplexer.
+     * @throws IOException if the selector cannot be opened.
+     */
+    static synchronized ProbeMultiplexer getInstance() throws IOException {
+        if (instance == null) {
+            instance = new ProbeMultiplexer(Selector.open());
+            Thread t = new Thread(instance, "Probe-Thread");
+            t.setDaemon(true);
+            t.start();
+        }
+        return instance;
+    }
+
+    /**
+     * Submits a probe. The first attempt is made immediately.
+     *
+     * @param probe the probe.
+     */
+    void submit(ReadinessProbe probe) {
+        probe.attach(this);
+        submitted.add(probe);
+        if (stopped) {
+            // the thread may have drained the queue already
+            failSubmitted();
+        } else {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Wakes up the multiplexer thread, e.g. to drop a cancelled probe.
+     */
+    void wakeup() {
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // sleep until a channel is ready or a probe needs attention
+                long timeout = getSelectTimeout();
+                if (timeout > 0) {
+                    selector.select(timeout);
+                } else if (timeout == 0) {
+                    selector.selectNow();
+                } else {
+                    selector.select();
+                }
+                try {
+                    processSelected();
+                    // pick up submitted probes
+                    ReadinessProbe probe;
+                    while ((probe = submitted.poll()) != null) {
+                        LOG.info("Waiting for process to become ready: {}", probe.getDescription());
+                        probes.add(probe);
+                    }
+                    processProbes();
+                } catch (RuntimeException ex) {
+                    LOG.error("Something went wrong: {}", ex.getMessage());
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOG.error("Something went wrong: {}. Stopping readiness probes.", ex.getMessage());
+        } finally {
+            stop();
+        }
+    }
+
+    /**
+     * Stops the multiplexer. Every pending and submitted probe fails and the
+     * next call to {@link #getInstance() getInstance} creates a new instance.
+     */
+    private void stop() {
+        stopped = true;
+        synchronized (ProbeMultiplexer.class) {
+            if (instance == this) {
+                instance = null;
+            }
+        }
+        for (ReadinessProbe probe : new ArrayList<>(probes)) {
+            if (probe.isDropped()) {
+                probe.close();
+                probes.remove(probe);
+            } else {
+                finish(probe, false);
+            }
+        }
+        failSubmitted();
+        try {
+            selector.close();
+        } catch (IOException ex) {
+            LOG.debug("Could not close selector: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Fails the submitted probes not yet picked up. Called once the
+     * multiplexer stopped.
+     */
+    private void failSubmitted() {
+        ReadinessProbe probe;
+        while ((probe = submitted.poll()) != null) {
+            if (!probe.isDropped()) {
+                finish(probe, false);
+            }
+        }
+    }
+
+    /**
+     * @return the time (milliseconds) until a probe needs attention, 0 if a
+     * probe needs attention now or -1 if there are no probes.
+     */
+    private long getSelectTimeout() {
+        if (probes.isEmpty()) {
+            return -1;
+        }
+        long now = System.nanoTime();
+        long wakeUp = Long.MAX_VALUE;
+        for (ReadinessProbe probe : probes) {
+            wakeUp = Math.min(wakeUp, probe.getWakeUp() - now);
+        }
+        // round up so that the probe is due when the selector returns
+        return wakeUp <= 0 ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(wakeUp + 999_999));
+    }
+
+    /**
+     * Handles the channels that are ready for I/O.
+     */
+    private void processSelected() {
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            ReadinessProbe probe = (ReadinessProbe) key.attachment();
+            if (!key.isValid() || !probes.contains(probe) || !probe.isInAttempt()) {
+                continue;
+            }
+            OUTCOME outcome;
+            try {
+                outcome = probe.onSelected(key);
+            } catch (IOException ex) {
+                // connection refused or reset, the process is not ready
+                outcome = OUTCOME.FAILED;
+            } catch (RuntimeException ex) {
+                LOG.error("Probe FAILED: {}. {}", probe.getDescription(), ex.getMessage());
+                finish(probe, false);
+                continue;
+            }
+            apply(probe, outcome, System.nanoTime());
+        }
+    }
+
+    /**
+     * Drops, expires, polls or starts attempts of the probes, as needed.
+     */
+    private void processProbes() {
+        for (ReadinessProbe probe : new ArrayList<>(probes)) {
+            try {
+                processProbe(probe);
+            } catch (RuntimeException ex) {
+                LOG.error("Probe FAILED: {}. {}", probe.getDescription(), ex.getMessage());
+                finish(probe, false);
+            }
+        }
+    }
+
+    /**
+     * Drops, expires, polls or starts an attempt of a probe, as needed.
+     *
+     * @param probe the probe.
+     */
+    private void processProbe(ReadinessProbe probe) {
+        long now = System.nanoTime();
+        if (probe.isDropped()) {
+            probe.close();
+            probes.remove(probe);
+        } else if (probe.isInAttempt()) {
+            OUTCOME outcome = probe.poll();
+            if (outcome == OUTCOME.PENDING && probe.isAttemptExpired(now)) {
+                outcome = OUTCOME.FAILED;
+            }
+            apply(probe, outcome, now);
+        } else if (probe.isAttemptDue(now)) {
+            if (probe.isExpired(now)) {
+                finish(probe, false);
+                return;
+            }
+            probe.beginAttempt(now);
+            OUTCOME outcome;
+            try {
+                outcome = probe.start(selector);
+            } catch (IOException ex) {
+                LOG.debug("Probe attempt FAILED: {}", ex.getMessage());
+                outcome = OUTCOME.FAILED;
+            }
+            apply(probe, outcome, now);
+        }
+    }
+
+    /**
+     * Applies the outcome of an attempt.
+     *
+     * @param probe the probe.
+     * @param outcome the outcome of the attempt.
+     * @param now the current time (nanoseconds).
+     */
+    private void apply(ReadinessProbe probe, OUTCOME outcome, long now) {
+        switch (outcome) {
+            case READY:
+                finish(probe, true);
+                break;
+            case FAILED:
+                if (probe.isExpired(now)) {
+                    finish(probe, false);
+                } else {
+                    probe.failAttempt(now);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Removes a probe and delivers its result.
+     *
+     * @param probe the probe.
+     * @param ready true if the process is ready.
+     */
+    private void finish(ReadinessProbe probe, boolean ready) {
+        probes.remove(probe);
+        if (ready) {
+            LOG.info("Process ready: {} after {} attempt(s).", probe.getDescription(), probe.getAttempts());
+        } else {
+            LOG.error("Process NOT ready: {} after {} attempt(s).", probe.getDescription(), probe.getAttempts());
+        }
+        try {
+            probe.complete(ready);
+        } catch (RuntimeException ex) {
+            LOG.error("Something went wrong: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.process.start;
+
+import java.util.List;
+import net.freelabs.maestro.broker.process.ProcessHandler;
+import net.freelabs.maestro.broker.process.Resource;
+import net.freelabs.maestro.broker.utils.DagExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * <p>
+ * Class that executes a group of processes, such as the pre-main or post-main
+ * processes.
+ * <p>
+ * If no process of the group declares a name or an execution order, the
+ * processes are executed one after the other, in the order declared. Otherwise,
+ * every process is executed as soon as the processes declared in its
+ * <i>after</i> attribute have been executed, and independent processes are
+ * executed concurrently. The group then takes as long as its longest chain.
+ * <p>
+ * If a process fails and the process is set to abort on failure, no more
+ * processes are started and the group fails.
+ */
+final class ProcessGraphExecutor {
+
+    /**
+     * The maximum time (minutes) to wait for a process to be executed.
+     */
+    private static final long PROC_TIMEOUT = 5;
+    /**
+     * Executes the processes as a graph. A process runs after the processes
+     * declared in its <i>after</i> attribute.
+     */
+    private static final DagExecutor<ProcessHandler> EXECUTOR = new DagExecutor<>("Process", "Processes",
+            (procHandler) -> getRes(procHandler).getName(), ProcessGraphExecutor::getName,
+            (procHandler) -> getRes(procHandler).getAfter(), null, PROC_TIMEOUT);
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(ProcessGraphExecutor.class);
+
+    /**
+     * Private constructor. Class provides static methods.
+     */
+    private ProcessGraphExecutor() {
+    }
+
+    /**
+     * <p>
+     * Executes a group of processes.
+     * <p>
+     * The method blocks.
+     *
+     * @param handlers the handlers of the processes.
+     * @param group the name of the group, for logging.
+     * @return true if no process set to abort on failure failed.
+     */
+    static boolean execute(List<ProcessHandler> handlers, String group) {
+        boolean ordered = handlers.stream().anyMatch((handler) -> getRes(handler).isOrdered());
+        return ordered ? execGraph(handlers, group) : execSequential(handlers);
+    }
+
+    /**
+     * Executes processes one after the other.
+     *
+     * @param handlers the handlers of the processes.
+     * @return true if no process set to abort on failure failed.
+     */
+    private static boolean execSequential(List<ProcessHandler> handlers) {
+        for (ProcessHandler procHandler : handlers) {
+            // execute process and get success value
+            boolean success = procHandler.execute();
+            // if there was an error and user concurs exit
+            if (!success && getRes(procHandler).isAbortOnFail()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Executes processes as a graph, according to their declared order.
+     *
+     * @param handlers the handlers of the processes.
+     * @param group the name of the group, for logging.
+     * @return true if no process set to abort on failure failed.
+     */
+    private static boolean execGraph(List<ProcessHandler> handlers, String group) {
+        // processes mostly wait, so create a thread per process
+        return EXECUTOR.execute(handlers, handlers.size(), ProcessHandler::execute, (procHandler, success, duration) -> {
+            // if there was an error and user concurs abort
+            if (!success && getRes(procHandler).isAbortOnFail()) {
+                LOG.error("Process {} FAILED. Aborting {} process execution.", getName(procHandler), group);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * @param procHandler a process handler.
+     * @return the resource of the process.
+     */
+    private static Resource getRes(ProcessHandler procHandler) {
+        return procHandler.getpData().getRes();
+    }
+
+    /**
+     * @param procHandler a process handler.
+     * @return the name of the process or its description if no name is
+     * declared.
+     */
+    private static String getName(ProcessHandler procHandler) {
+        Resource res = getRes(procHandler);
+        return res.getName() != null ? res.getName() : res.getDescription();
+    }
+}
@@ -0,0 +1,641 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.process.start;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ *
+ * <p>
+ * Class whose instances check if a process is ready to serve.
+ * <p>
+ * A probe makes attempts until one succeeds or the deadline expires. Between
+ * failed attempts it backs off exponentially, starting at
+ * {@link #INITIAL_BACKOFF INITIAL_BACKOFF} milliseconds, so that a fast
+ * process is detected almost immediately. Probes never block: they are driven
+ * by a {@link ProbeMultiplexer ProbeMultiplexer} thread.
+ * <p>
+ * The available probes are: a TCP connect to the process port, an HTTP GET
+ * that expects a 2xx or 3xx status, a command that must exit with 0 and a
+ * pattern that must match a line of the process output.
+ */
+abstract class ReadinessProbe {
+
+    /**
+     * The outcome of an attempt.
+     */
+    enum OUTCOME {
+        PENDING, READY, FAILED
+    };
+    /**
+     * The initial time (milliseconds) to wait after a failed attempt.
+     */
+    static final long INITIAL_BACKOFF = 5;
+    /**
+     * The maximum time (milliseconds) to wait after a failed attempt.
+     */
+    static final long MAX_BACKOFF = 1000;
+    /**
+     * The maximum time (milliseconds) an attempt may take.
+     */
+    static final long ATTEMPT_TIMEOUT = 2000;
+    /**
+     * A description of the probe, for logging.
+     */
+    private final String description;
+    /**
+     * Returns false when probing is no longer needed, i.e. the process
+     * stopped.
+     */
+    private final BooleanSupplier alive;
+    /**
+     * Receives the result of the probe: true if ready, false if timed out.
+     */
+    private final Consumer<Boolean> onResult;
+    /**
+     * The time (nanoseconds) the probe times out.
+     */
+    private final long deadline;
+    /**
+     * The current time (milliseconds) to wait after a failed attempt.
+     */
+    private long backoff = INITIAL_BACKOFF;
+    /**
+     * The time (nanoseconds) of the next attempt.
+     */
+    private long nextAttempt;
+    /**
+     * The time (nanoseconds) the current attempt times out.
+     */
+    private long attemptDeadline;
+    /**
+     * Indicates an attempt is in progress.
+     */
+    private boolean inAttempt;
+    /**
+     * The number of attempts made.
+     */
+    private int attempts;
+    /**
+     * Indicates the probe was cancelled.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Constructor.
+     *
+     * @param description a description of the probe, for logging.
+     * @param timeout the time (milliseconds) to wait for the process to become
+     * ready.
+     * @param alive returns false when probing is no longer needed.
+     * @param onResult receives the result of the probe.
+     */
+    ReadinessProbe(String description, long timeout, BooleanSupplier alive, Consumer<Boolean> onResult) {
+        this.description = description;
+        this.alive = alive;
+        this.onResult = onResult;
+        long now = System.nanoTime();
+        deadline = now + TimeUnit.MILLISECONDS.toNanos(timeout);
+        nextAttempt = now;
+    }
+
+    /**
+     * Starts an attempt.
+     *
+     * @param selector the selector to register channels with.
+     * @return the outcome of the attempt, if already known.
+     * @throws IOException if the attempt cannot start.
+     */
+    protected abstract OUTCOME start(Selector selector) throws IOException;
+
+    /**
+     * Handles a channel of the attempt that is ready for I/O.
+     *
+     * @param key the key of the channel.
+     * @return the outcome of the attempt.
+     * @throws IOException if I/O fails.
+     */
+    protected OUTCOME onSelected(SelectionKey key) throws IOException {
+        return OUTCOME.PENDING;
+    }
+
+    /**
+     * Checks the progress of an attempt that is not driven by a channel.
+     *
+     * @return the outcome of the attempt.
+     */
+    protected OUTCOME poll() {
+        return OUTCOME.PENDING;
+    }
+
+    /**
+     * @return the interval (milliseconds) to {@link #poll() poll} an attempt in
+     * progress or -1 if the attempt is driven by a channel.
+     */
+    protected long getPollInterval() {
+        return -1;
+    }
+
+    /**
+     * @return the maximum time (milliseconds) an attempt may take.
+     */
+    protected long getAttemptTimeout() {
+        return ATTEMPT_TIMEOUT;
+    }
+
+    /**
+     * Called when the probe is submitted to a multiplexer. Probes driven by
+     * external events use it to wake up the multiplexer.
+     *
+     * @param mux the multiplexer that drives the probe.
+     */
+    protected void attach(ProbeMultiplexer mux) {
+    }
+
+    /**
+     * Releases the resources of the current attempt.
+     */
+    protected abstract void close();
+
+    /**
+     * Cancels the probe. No result is delivered.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true if the probe must be dropped without a result.
+     */
+    boolean isDropped() {
+        return cancelled || !alive.getAsBoolean();
+    }
+
+    /**
+     * @return a description of the probe.
+     */
+    String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the number of attempts made.
+     */
+    int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @param now the current time (nanoseconds).
+     * @return true if the probe has timed out.
+     */
+    boolean isExpired(long now) {
+        return now - deadline >= 0;
+    }
+
+    /**
+     * @return true if an attempt is in progress.
+     */
+    boolean isInAttempt() {
+        return inAttempt;
+    }
+
+    /**
+     * @return the time (nanoseconds) the probe needs attention next.
+     */
+    long getWakeUp() {
+        if (!inAttempt) {
+            return nextAttempt;
+        }
+        long pollInterval = getPollInterval();
+        if (pollInterval < 0) {
+            return attemptDeadline;
+        }
+        return Math.min(attemptDeadline, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pollInterval));
+    }
+
+    /**
+     * @param now the current time (nanoseconds).
+     * @return true if the next attempt is due.
+     */
+    boolean isAttemptDue(long now) {
+        return !inAttempt && now - nextAttempt >= 0;
+    }
+
+    /**
+     * @param now the current time (nanoseconds).
+     * @return true if the current attempt has timed out.
+     */
+    boolean isAttemptExpired(long now) {
+        return inAttempt && now - attemptDeadline >= 0;
+    }
+
+    /**
+     * Marks the start of an attempt.
+     *
+     * @param now the current time (nanoseconds).
+     */
+    void beginAttempt(long now) {
+        inAttempt = true;
+        attempts++;
+        attemptDeadline = Math.min(now + TimeUnit.MILLISECONDS.toNanos(getAttemptTimeout()), deadline);
+    }
+
+    /**
+     * Marks the end of a failed attempt and schedules the next one.
+     *
+     * @param now the current time (nanoseconds).
+     */
+    void failAttempt(long now) {
+        close();
+        inAttempt = false;
+        nextAttempt = now + TimeUnit.MILLISECONDS.toNanos(backoff);
+        backoff = Math.min(backoff * 2, MAX_BACKOFF);
+    }
+
+    /**
+     * Delivers the result of the probe.
+     *
+     * @param ready true if the process is ready.
+     */
+    void complete(boolean ready) {
+        close();
+        inAttempt = false;
+        onResult.accept(ready);
+    }
+
+    /**
+     * Creates a probe that connects to a port.
+     *
+     * @param isa the address to connect to.
+     * @param timeout the time (milliseconds) to wait for the process.
+     * @param alive returns false when probing is no longer needed.
+     * @param onResult receives the result of the probe.
+     * @return the probe.
+     */
+    static ReadinessProbe tcp(InetSocketAddress isa, long timeout, BooleanSupplier alive, Consumer<Boolean> onResult) {
+        return new TcpProbe(isa, timeout, alive, onResult);
+    }
+
+    /**
+     * Creates a probe that sends an HTTP GET request to a port.
+     *
+     * @param isa the address to connect to.
+     * @param path the path of the request.
+     * @param timeout the time (milliseconds) to wait for the process.
+     * @param alive returns false when probing is no longer needed.
+     * @param onResult receives the result of the probe.
+     * @return the probe.
+     */
+    static ReadinessProbe http(InetSocketAddress isa, String path, long timeout, BooleanSupplier alive, Consumer<Boolean> onResult) {
+        return new HttpProbe(isa, path, timeout, alive, onResult);
+    }
+
+    /**
+     * Creates a probe that executes a command.
+     *
+     * @param cmdArgs the command and its arguments.
+     * @param env the environment of the command.
+     * @param timeout the time (milliseconds) to wait for the process.
+     * @param alive returns false when probing is no longer needed.
+     * @param onResult receives the result of the probe.
+     * @return the probe.
+     */
+    static ReadinessProbe exec(List<String> cmdArgs, Map<String, String> env, long timeout, BooleanSupplier alive, Consumer<Boolean> onResult) {
+        return new ExecProbe(cmdArgs, env, timeout, alive, onResult);
+    }
+
+    /**
+     * Creates a probe that waits for a line of the process output to match a
+     * pattern.
+     *
+     * @param watcher the watcher of the process output.
+     * @param timeout the time (milliseconds) to wait for the process.
+     * @param alive returns false when probing is no longer needed.
+     * @param onResult receives the result of the probe.
+     * @return the probe.
+     */
+    static ReadinessProbe log(LogWatcher watcher, long timeout, BooleanSupplier alive, Consumer<Boolean> onResult) {
+        return new LogProbe(watcher, timeout, alive, onResult);
+    }
+
+    /**
+     * A probe that connects to a port with a non-blocking channel.
+     */
+    private static class TcpProbe extends ReadinessProbe {
+
+        /**
+         * The address to connect to.
+         */
+        protected final InetSocketAddress isa;
+        /**
+         * The channel of the current attempt.
+         */
+        protected SocketChannel channel;
+
+        /**
+         * Constructor.
+         *
+         * @param isa the address to connect to.
+         * @param timeout the time (milliseconds) to wait for the process.
+         * @param alive returns false when probing is no longer needed.
+         * @param onResult receives the result of the probe.
+         */
+        TcpProbe(InetSocketAddress isa, long timeout, BooleanSupplier alive, Consumer<Boolean> onResult) {
+            this("tcp://" + isa.getHostString() + ":" + isa.getPort(), isa, timeout, alive, onResult);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param description a description of the probe, for logging.
+         * @param isa the address to connect to.
+         * @param timeout the time (milliseconds) to wait for the process.
+         * @param alive returns false when probing is no longer needed.
+         * @param onResult receives the result of the probe.
+         */
+        TcpProbe(String description, InetSocketAddress isa, long timeout, BooleanSupplier alive, Consumer<Boolean> onResult) {
+            super(description, timeout, alive, onResult);
+            this.isa = isa;
+        }
+
+        @Override
+        protected OUTCOME start(Selector selector) throws IOException {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(isa)) {
+                return onConnected(selector);
+            }
+            channel.register(selector, SelectionKey.OP_CONNECT, this);
+            return OUTCOME.PENDING;
+        }
+
+        @Override
+        protected OUTCOME onSelected(SelectionKey key) throws IOException {
+            if (key.isConnectable() && channel.finishConnect()) {
+                return onConnected(key.selector());
+            }
+            return OUTCOME.PENDING;
+        }
+
+        /**
+         * Handles an established connection.
+         *
+         * @param selector the selector the channel is registered with.
+         * @return the outcome of the attempt.
+         * @throws IOException if I/O fails.
+         */
+        protected OUTCOME onConnected(Selector selector) throws IOException {
+            return OUTCOME.READY;
+        }
+
+        @Override
+        protected void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    // nothing to do, the channel is discarded
+                }
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * A probe that sends an HTTP GET request and expects a 2xx or 3xx status.
+     */
+    private static final class HttpProbe extends TcpProbe {
+
+        /**
+         * Matches the status line of an HTTP response.
+         */
+        private static final Pattern STATUS_LINE = Pattern.compile("^HTTP/\\d\\.\\d\\s+(\\d{3})");
+        /**
+         * The request to send.
+         */
+        private final byte[] request;
+        /**
+         * The buffer of the request being sent.
+         */
+        private ByteBuffer out;
+        /**
+         * The buffer of the response being received.
+         */
+        private ByteBuffer in;
+
+        /**
+         * Constructor.
+         *
+         * @param isa the address to connect to.
+         * @param path the path of the request.
+         * @param timeout the time (milliseconds) to wait for the process.
+         * @param alive returns false when probing is no longer needed.
+         * @param onResult receives the result of the probe.
+         */
+        HttpProbe(InetSocketAddress isa, String path, long timeout, BooleanSupplier alive, Consumer<Boolean> onResult) {
+            super("http://" + isa.getHostString() + ":" + isa.getPort() + path, isa, timeout, alive, onResult);
+            String req = "GET " + path + " HTTP/1.0\r\n"
+                    + "Host: " + isa.getHostString() + ":" + isa.getPort() + "\r\n"
+                    + "Connection: close\r\n\r\n";
+            request = req.getBytes(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        protected OUTCOME onConnected(Selector selector) throws IOException {
+            out = ByteBuffer.wrap(request);
+            in = ByteBuffer.allocate(256);
+            channel.register(selector, SelectionKey.OP_WRITE, this);
+            return OUTCOME.PENDING;
+        }
+
+        @Override
+        protected OUTCOME onSelected(SelectionKey key) throws IOException {
+            if (key.isConnectable()) {
+                return super.onSelected(key);
+            }
+            if (key.isWritable()) {
+                channel.write(out);
+                if (!out.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } else if (key.isReadable()) {
+                int read = channel.read(in);
+                // check the status line once received
+                String received = new String(in.array(), 0, in.position(), StandardCharsets.US_ASCII);
+                int eol = received.indexOf("\r\n");
+                if (eol >= 0 || read < 0 || !in.hasRemaining()) {
+                    Matcher m = STATUS_LINE.matcher(eol >= 0 ? received.substring(0, eol) : received);
+                    if (m.find()) {
+                        int status = Integer.parseInt(m.group(1));
+                        return status >= 200 && status < 400 ? OUTCOME.READY : OUTCOME.FAILED;
+                    }
+                    return OUTCOME.FAILED;
+                }
+            }
+            return OUTCOME.PENDING;
+        }
+    }
+
+    /**
+     * A probe that executes a command and expects exit code 0.
+     */
+    private static final class ExecProbe extends ReadinessProbe {
+
+        /**
+         * The maximum interval (milliseconds) to check if the command exited.
+         */
+        private static final long MAX_POLL_INTERVAL = 100;
+        /**
+         * Discards the output of the command.
+         */
+        private static final File NULL_FILE = new File("/dev/null");
+        /**
+         * The command and its arguments.
+         */
+        private final List<String> cmdArgs;
+        /**
+         * The environment of the command.
+         */
+        private final Map<String, String> env;
+        /**
+         * The command of the current attempt.
+         */
+        private Process proc;
+        /**
+         * The interval (milliseconds) to check if the command exited.
+         */
+        private long pollInterval;
+
+        /**
+         * Constructor.
+         *
+         * @param cmdArgs the command and its arguments.
+         * @param env the environment of the command.
+         * @param timeout the time (milliseconds) to wait for the process.
+         * @param alive returns false when probing is no longer needed.
+         * @param onResult receives the result of the probe.
+         */
+        ExecProbe(List<String> cmdArgs, Map<String, String> env, long timeout, BooleanSupplier alive, Consumer<Boolean> onResult) {
+            super("exec:" + String.join(" ", cmdArgs), timeout, alive, onResult);
+            this.cmdArgs = cmdArgs;
+            this.env = env;
+        }
+
+        @Override
+        protected OUTCOME start(Selector selector) throws IOException {
+            ProcessBuilder pb = new ProcessBuilder(cmdArgs);
+            pb.environment().putAll(env);
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(Redirect.appendTo(NULL_FILE));
+            proc = pb.start();
+            pollInterval = 1;
+            return OUTCOME.PENDING;
+        }
+
+        @Override
+        protected OUTCOME poll() {
+            if (proc.isAlive()) {
+                // check less often while the command runs
+                pollInterval = Math.min(pollInterval * 2, MAX_POLL_INTERVAL);
+                return OUTCOME.PENDING;
+            }
+            return proc.exitValue() == 0 ? OUTCOME.READY : OUTCOME.FAILED;
+        }
+
+        @Override
+        protected long getPollInterval() {
+            return pollInterval;
+        }
+
+        @Override
+        protected void close() {
+            if (proc != null) {
+                proc.destroyForcibly();
+                proc = null;
+            }
+        }
+    }
+
+    /**
+     * A probe that waits for a line of the process output to match a pattern.
+     * The probe makes a single attempt that lasts until the deadline and is
+     * completed as soon as the {@link LogWatcher LogWatcher} reports a match.
+     */
+    private static final class LogProbe extends ReadinessProbe {
+
+        /**
+         * The watcher of the process output.
+         */
+        private final LogWatcher watcher;
+
+        /**
+         * Constructor.
+         *
+         * @param watcher the watcher of the process output.
+         * @param timeout the time (milliseconds) to wait for the process.
+         * @param alive returns false when probing is no longer needed.
+         * @param onResult receives the result of the probe.
+         */
+        LogProbe(LogWatcher watcher, long timeout, BooleanSupplier alive, Consumer<Boolean> onResult) {
+            super("log:/" + watcher.getPattern() + "/", timeout, alive, onResult);
+            this.watcher = watcher;
+        }
+
+        @Override
+        protected void attach(ProbeMultiplexer mux) {
+            // check the probe as soon as the pattern is matched
+            watcher.setOnMatch(mux::wakeup);
+        }
+
+        @Override
+        protected OUTCOME start(Selector selector) {
+            return poll();
+        }
+
+        @Override
+        protected OUTCOME poll() {
+            return watcher.isMatched() ? OUTCOME.READY : OUTCOME.PENDING;
+        }
+
+        @Override
+        protected long getAttemptTimeout() {
+            // bounded by the deadline of the probe
+            return TimeUnit.DAYS.toMillis(1);
+        }
+
+        @Override
+        protected void close() {
+            watcher.setOnMatch(null);
+        }
+    }
+}
@@ -19,6 +19,7 @@ package net.freelabs.maestro.broker.process.start;
 import java.util.List;
 import net.freelabs.maestro.broker.process.GroupProcessHandler;
 import net.freelabs.maestro.broker.process.ProcessHandler;
+import net.freelabs.maestro.core.generated.Reload;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,7 +70,8 @@ public final class StartGroupProcessHandler extends GroupProcessHandler {
      * <p>
      * If declared, any processes to be run before the main are executed. Then,
      * the main container process is started. If executed successfully the other
-     * processes are spawned.
+     * processes are spawned. Processes of a group that declare an execution
+     * order are executed concurrently, as their order allows.
      * <p>
      * The method waits for every process to finish execution, except main. Main
      * process returns after initialization is complete. That is because a main
@@ -89,19 +91,7 @@ public final class StartGroupProcessHandler extends GroupProcessHandler {
 
         // execute pre-main processes, if any
         if (!preMainHandlers.isEmpty()) {
-            for (ProcessHandler procHandler : preMainHandlers) {
-                // execute process and get success value
-                preMainSuccess = procHandler.execute();
-                // get user requirement in case of failure
-                boolean abortOnFail = procHandler.getpData().getRes().isAbortOnFail();
-                // if there was an error and user concurs exit
-                if (!preMainSuccess && abortOnFail) {
-                    break;
-                } else {
-                    // correct flag if error is ignored to execute main proc
-                    preMainSuccess = true;
-                }
-            }
+            preMainSuccess = ProcessGraphExecutor.execute(preMainHandlers, "pre-main");
         }
 
         // if preMain procs executed successfully, execute main
@@ -113,19 +103,7 @@ public final class StartGroupProcessHandler extends GroupProcessHandler {
             if (mainSuccess) {
                 // execute post-main processes, if any
                 if (!postMainHandlers.isEmpty()) {
-                    for (ProcessHandler procHandler : postMainHandlers) {
-                        // execute process and get success value
-                        postMainSuccess = procHandler.execute();
-                        // get user requirement in case of failure
-                        boolean abortOnFail = procHandler.getpData().getRes().isAbortOnFail();
-                        // if there was an error and user concurs exit
-                        if (!postMainSuccess && abortOnFail) {
-                            break;
-                        } else {
-                            // correct flag if error is ignored
-                            postMainSuccess = true;
-                        }
-                    }
+                    postMainSuccess = ProcessGraphExecutor.execute(postMainHandlers, "post-main");
                     // check for errors on postMain proc execution to abort
                     if (!postMainSuccess) {
                         LOG.error("Post-main process execution FAILED.");
@@ -180,6 +158,42 @@ public final class StartGroupProcessHandler extends GroupProcessHandler {
         mainHandler.waitForMainProc();
     }
 
+    /**
+     *
+     * @return the exit code of the main process or -1 if the process was not
+     * started or is still running.
+     */
+    public int getMainExitCode() {
+        return mainHandler.getExitCode();
+    }
+
+    /**
+     * Reloads the configuration of the main process, without restarting it.
+     *
+     * @param reload the declared reload of the main process.
+     * @return true if the main process was reloaded.
+     */
+    public boolean reloadMainProc(Reload reload) {
+        return mainHandler.reload(reload);
+    }
+
+    /**
+     *
+     * @return the pid of the main process or -1 if not available.
+     */
+    public int getMainProcPid() {
+        return mainHandler.getProcPid();
+    }
+
+    /**
+     * Stops the main process, if running.
+     */
+    public void stopMainProc() {
+        if (mainHandler.isMainProcRunning()) {
+            mainHandler.stop();
+        }
+    }
+
     @Override
     protected void cleanup() {
     }
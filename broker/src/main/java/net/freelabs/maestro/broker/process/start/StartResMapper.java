@@ -16,6 +16,7 @@
  */
 package net.freelabs.maestro.broker.process.start;
 
+import java.util.ArrayList;
 import java.util.List;
 import net.freelabs.maestro.broker.process.Resource;
 import net.freelabs.maestro.broker.process.ResourceMapper;
@@ -45,17 +46,18 @@ public final class StartResMapper extends ResourceMapper<StartElem, String> {
     @Override
     public void initResources(List<StartElem> preMain, List<StartElem> postMain, String main) {
         // create preMain resource list
-        preMain.stream().forEach((elem) -> {
-
-            Resource res = new Resource(elem.getValue(), elem.isAbortOnFail());
+        for (int i = 0; i < preMain.size(); i++) {
+            StartElem elem = preMain.get(i);
+            Resource res = new Resource(elem.getValue(), elem.isAbortOnFail(), elem.getName(), elem.getAfter(), "start.preMain." + i);
             preMainRes.add(res);
-        });
+        }
         // create postMain resource list
-        postMain.stream().forEach((elem) -> {
-            Resource res = new Resource(elem.getValue(), elem.isAbortOnFail());
+        for (int i = 0; i < postMain.size(); i++) {
+            StartElem elem = postMain.get(i);
+            Resource res = new Resource(elem.getValue(), elem.isAbortOnFail(), elem.getName(), elem.getAfter(), "start.postMain." + i);
             postMainRes.add(res);
-        });
+        }
         // create main resource
-        mainRes = new Resource(main, true);
+        mainRes = new Resource(main, true, null, new ArrayList<>(), "start.main");
     }
 }
@@ -16,6 +16,7 @@
  */
 package net.freelabs.maestro.broker.process.stop;
 
+import java.util.ArrayList;
 import java.util.List;
 import net.freelabs.maestro.broker.process.Resource;
 import net.freelabs.maestro.broker.process.ResourceMapper;
@@ -43,17 +44,17 @@ public final class StopResMapper extends ResourceMapper<String, String> {
     @Override
     public void initResources(List<String> preMain, List<String> postMain, String main) {
         // create preMain resource list
-        preMain.stream().forEach((elem) -> {
-            Resource res = new Resource(elem, false);
+        for (int i = 0; i < preMain.size(); i++) {
+            Resource res = new Resource(preMain.get(i), false, null, new ArrayList<>(), "stop.preMain." + i);
             preMainRes.add(res);
-        });
+        }
         // create postMain resource list
-        postMain.stream().forEach((elem) -> {
-            Resource res = new Resource(elem, false);
+        for (int i = 0; i < postMain.size(); i++) {
+            Resource res = new Resource(postMain.get(i), false, null, new ArrayList<>(), "stop.postMain." + i);
             postMainRes.add(res);
-        });
+        }
         // create main resource
-        mainRes = new Resource(main, true);
+        mainRes = new Resource(main, true, null, new ArrayList<>(), "stop.main");
     }
 
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.tasks;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * Class whose instances represent a tokenized file with environment variables.
+ * A template is the sequence: literal, variable, literal, ..., literal. It is
+ * compiled once and can be rendered with different environments without
+ * parsing the file again.
+ */
+final class CompiledTemplate {
+
+    /**
+     * The literal text between the variables. Always one more than the
+     * variables.
+     */
+    private final List<String> literals;
+    /**
+     * The variables, in order of appearance.
+     */
+    private final List<String> vars;
+    /**
+     * The names of the variables the template depends on.
+     */
+    private final Set<String> varNames;
+    /**
+     * The number of characters of the literal text.
+     */
+    private final long size;
+
+    /**
+     * Constructor
+     *
+     * @param literals the literal text between the variables.
+     * @param vars the variables, in order of appearance.
+     * @param size the number of characters of the literal text.
+     */
+    private CompiledTemplate(List<String> literals, List<String> vars, long size) {
+        this.literals = literals;
+        this.vars = vars;
+        this.size = size;
+        varNames = Collections.unmodifiableSet(new LinkedHashSet<>(vars));
+    }
+
+    /**
+     * Compiles a template. The reader is not closed.
+     *
+     * @param in the input to read the template from.
+     * @return the compiled template.
+     * @throws IOException if reading from the input fails.
+     */
+    static CompiledTemplate compile(Reader in) throws IOException {
+        List<String> literals = new ArrayList<>();
+        List<String> vars = new ArrayList<>();
+        // holds the literal text since the last variable
+        StringBuilder literal = new StringBuilder();
+        long[] size = new long[1];
+
+        EnvSubstitutor.tokenize(in, new EnvSubstitutor.TokenHandler() {
+            @Override
+            public void text(char[] cbuf, int off, int len) {
+                literal.append(cbuf, off, len);
+                size[0] += len;
+            }
+
+            @Override
+            public void var(String name) {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                vars.add(name);
+            }
+        });
+        literals.add(literal.toString());
+
+        return new CompiledTemplate(literals, vars, size[0]);
+    }
+
+    /**
+     * Renders the template with the values of an environment. Variables not
+     * found in the environment are written unchanged. The writer is not
+     * closed.
+     *
+     * @param out the output to write to.
+     * @param env the environment with the values of the variables.
+     * @throws IOException if writing to the output fails.
+     */
+    void render(Writer out, Map<String, String> env) throws IOException {
+        out.write(literals.get(0));
+        for (int i = 0; i < vars.size(); i++) {
+            out.write(EnvSubstitutor.expand(vars.get(i), env));
+            out.write(literals.get(i + 1));
+        }
+    }
+
+    /**
+     * @return the names of the variables the template depends on, in order of
+     * first appearance.
+     */
+    Set<String> getVarNames() {
+        return varNames;
+    }
+
+    /**
+     * @return the number of characters of the literal text.
+     */
+    long getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.tasks;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * <p>
+ * Class that provides a streaming substitution engine for environment
+ * variables in the format: ${ENV_VAR}.
+ * <p>
+ * The input is tokenized once, in a single pass, with a small state machine.
+ * Literal text is passed to a {@link TokenHandler TokenHandler} as it is read
+ * along with every variable found. Memory use is independent of the size of
+ * the input.
+ */
+final class EnvSubstitutor {
+
+    /**
+     * The size of the buffer used to read the input.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The states of the tokenizer.
+     */
+    private static enum STATE {
+        TEXT, DOLLAR, NAME
+    };
+
+    /**
+     * Handles the tokens found in the input.
+     */
+    interface TokenHandler {
+
+        /**
+         * Handles literal text.
+         *
+         * @param cbuf the buffer with the text.
+         * @param off the offset of the text in the buffer.
+         * @param len the length of the text.
+         * @throws IOException if handling fails.
+         */
+        void text(char[] cbuf, int off, int len) throws IOException;
+
+        /**
+         * Handles a variable.
+         *
+         * @param name the name of the variable.
+         * @throws IOException if handling fails.
+         */
+        void var(String name) throws IOException;
+    }
+
+    /**
+     * Private constructor. Class provides static methods.
+     */
+    private EnvSubstitutor() {
+    }
+
+    /**
+     * <p>
+     * Copies the input to the output, expanding environment variables.
+     * Variables not found in the environment are written unchanged.
+     * <p>
+     * The reader and the writer are not closed.
+     *
+     * @param in the input to read from.
+     * @param out the output to write to.
+     * @param env the environment with the values of the variables.
+     * @return the names of all the variables found in the input, in order of
+     * first appearance.
+     * @throws IOException if reading from the input or writing to the output
+     * fails.
+     */
+    static Set<String> substitute(Reader in, Writer out, Map<String, String> env) throws IOException {
+        // the variable names found
+        Set<String> varNames = new LinkedHashSet<>();
+
+        tokenize(in, new TokenHandler() {
+            @Override
+            public void text(char[] cbuf, int off, int len) throws IOException {
+                out.write(cbuf, off, len);
+            }
+
+            @Override
+            public void var(String name) throws IOException {
+                varNames.add(name);
+                out.write(expand(name, env));
+            }
+        });
+        return varNames;
+    }
+
+    /**
+     * Returns the value of a variable or the variable unchanged, if not found
+     * in the environment.
+     *
+     * @param name the name of the variable.
+     * @param env the environment with the values of the variables.
+     * @return the expanded variable.
+     */
+    static String expand(String name, Map<String, String> env) {
+        String value = env.get(name);
+        return value != null ? value : "${" + name + "}";
+    }
+
+    /**
+     * Tokenizes the input and passes literal text and variables to a handler,
+     * in the order found. The reader is not closed.
+     *
+     * @param in the input to read from.
+     * @param handler the handler of the tokens.
+     * @throws IOException if reading from the input or handling a token fails.
+     */
+    static void tokenize(Reader in, TokenHandler handler) throws IOException {
+        // holds the name of the variable being read
+        StringBuilder name = new StringBuilder();
+        // the read buffer
+        char[] buf = new char[BUFFER_SIZE];
+        STATE state = STATE.TEXT;
+        int len;
+
+        while ((len = in.read(buf)) != -1) {
+            // the start of the literal text not yet handled
+            int start = 0;
+            int i = 0;
+            while (i < len) {
+                char c = buf[i];
+                switch (state) {
+                    case TEXT:
+                        if (c == '$') {
+                            // flush literal text read so far
+                            handler.text(buf, start, i - start);
+                            state = STATE.DOLLAR;
+                        }
+                        i++;
+                        break;
+                    case DOLLAR:
+                        if (c == '{') {
+                            state = STATE.NAME;
+                            i++;
+                        } else {
+                            // not a variable, handle the '$' and re-process char
+                            text(handler, "$");
+                            start = i;
+                            state = STATE.TEXT;
+                        }
+                        break;
+                    case NAME:
+                        if (isNameChar(c)) {
+                            name.append(c);
+                            i++;
+                        } else if (c == '}' && name.length() > 0) {
+                            // end of variable
+                            handler.var(name.toString());
+                            name.setLength(0);
+                            i++;
+                            start = i;
+                            state = STATE.TEXT;
+                        } else {
+                            // not a variable, handle what was read and re-process char
+                            text(handler, "${" + name);
+                            name.setLength(0);
+                            start = i;
+                            state = STATE.TEXT;
+                        }
+                        break;
+                }
+            }
+            // flush literal text of the buffer
+            if (state == STATE.TEXT) {
+                handler.text(buf, start, len - start);
+            }
+        }
+        // flush an unterminated variable at the end of the input
+        if (state == STATE.DOLLAR) {
+            text(handler, "$");
+        } else if (state == STATE.NAME) {
+            text(handler, "${" + name);
+        }
+    }
+
+    /**
+     * Passes a string as literal text to a handler.
+     *
+     * @param handler the handler of the tokens.
+     * @param str the literal text.
+     * @throws IOException if handling fails.
+     */
+    private static void text(TokenHandler handler, String str) throws IOException {
+        handler.text(str.toCharArray(), 0, str.length());
+    }
+
+    /**
+     * Checks if a character is allowed in an environment variable name.
+     *
+     * @param c the character to check.
+     * @return true if the character is a letter, a digit or underscore.
+     */
+    private static boolean isNameChar(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
@@ -16,15 +16,18 @@
  */
 package net.freelabs.maestro.broker.tasks;
 
-import java.io.File;
-import java.io.FileFilter;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.util.HashMap;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import net.freelabs.maestro.broker.BrokerConf;
 import net.freelabs.maestro.core.generated.SubstEnv;
 import net.freelabs.maestro.core.generated.SubstEnvElem;
@@ -33,15 +36,28 @@ import org.slf4j.LoggerFactory;
 /**
  *
  * Class whose instances implement the task of restoring files to which
- * environment substitution has been applied.
+ * environment substitution has been applied. Files are restored in parallel
+ * from their snapshots in a {@link SnapshotStore SnapshotStore}.
  */
 final class RestoreFilesTask implements Task {
 
     /**
-     * Tag from application description containing all the files to apply
+     * Tags from application description containing all the files to apply
      * environment variables substitution.
      */
-    private final SubstEnv substEnv;
+    private final List<SubstEnv> substEnvs;
+    /**
+     * The name of the task.
+     */
+    public static final String NAME = "restoreFiles";
+    /**
+     * The store with the snapshots of the files to restore.
+     */
+    private final SnapshotStore store;
+    /**
+     * The maximum time (minutes) to wait for all files to be restored.
+     */
+    private static final long RESTORE_TIMEOUT = 2;
     /**
      * A Logger object.
      */
@@ -50,50 +66,72 @@ final class RestoreFilesTask implements Task {
     /**
      * Constructor
      *
-     * @param substEnv tag from application description containing all the files
-     * to apply environment variables substitution.
+     * @param substEnvs tags from application description containing all the
+     * files to apply environment variables substitution.
      */
-    public RestoreFilesTask(SubstEnv substEnv) {
-        this.substEnv = substEnv;
+    public RestoreFilesTask(List<SubstEnv> substEnvs) {
+        this.substEnvs = substEnvs;
+        store = new SnapshotStore(BrokerConf.RESTORE_DIR);
     }
 
     @Override
-    public void run() {
-        List<SubstEnvElem> substEnvElems = substEnv.getFilePath();
-
-        Map<String, File> origFilesMap = new HashMap<>();
-        // get original files as declared in substEnv tag
-        for (SubstEnvElem elem : substEnvElems) {
-            File file = new File(elem.getValue());
-            String name = file.getName();
-            origFilesMap.put(name, file);
+    public boolean run() {
+        // get the declared files that have a snapshot
+        List<Path> filesToRestore = new ArrayList<>();
+        for (SubstEnv substEnv : substEnvs) {
+            for (SubstEnvElem elem : substEnv.getFilePath()) {
+                Path file = Paths.get(elem.getValue());
+                if (store.contains(file) && !filesToRestore.contains(file)) {
+                    filesToRestore.add(file);
+                }
+            }
         }
-
-        // get all files in program's restore filder
-        File restoreDir = new File(BrokerConf.RESTORE_DIR);
-        // create filter to get only declared files from restore folder
-        FileFilter filter = (File pathname) -> origFilesMap.containsKey(pathname.getName());
-        // get files
-        File[] filesToRestore = restoreDir.listFiles(filter);
-
-        for (File fileToRestore : filesToRestore) {
-            // get the name of the file to restore
-            String nameOfRestFile = fileToRestore.getName();
-            // get the source path for copy
-            Path src = fileToRestore.toPath();
-            // get the original file
-            File origFile = origFilesMap.get(nameOfRestFile);
-            // get the destination path for copy
-            Path dst = origFile.toPath();
-            // restore file
+        if (filesToRestore.isEmpty()) {
+            return true;
+        }
+        // create a thread per file, up to the number of available cpus
+        int threads = Math.min(filesToRestore.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> results = new ArrayList<>();
+        filesToRestore.stream().forEach((file) -> {
+            results.add(executor.submit(() -> store.restore(file)));
+        });
+        // do not allow new tasks, wait for running to finish
+        executor.shutdown();
+        boolean success = true;
+        for (Future<Boolean> result : results) {
             try {
-                Files.copy(src, dst, StandardCopyOption.REPLACE_EXISTING);
-                Files.delete(src);
-                LOG.info("Restored file: {}", dst);
-            } catch (IOException ex) {
-                LOG.error("FAILED to restore file: {}. {}", src, ex.getMessage());
+                success = result.get(RESTORE_TIMEOUT, TimeUnit.MINUTES) && success;
+            } catch (InterruptedException ex) {
+                LOG.warn("Thread Interrupted. Stopping.");
+                Thread.currentThread().interrupt();
+                success = false;
+                break;
+            } catch (ExecutionException | TimeoutException ex) {
+                LOG.error("Something went wrong: {}", ex.getMessage());
+                success = false;
             }
         }
+        executor.shutdownNow();
+        // remove contents no longer needed, keep them if a restore failed
+        if (success) {
+            store.prune();
+        }
+        return success;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Set<String> getResources() {
+        Set<String> files = new HashSet<>();
+        substEnvs.stream().flatMap((substEnv) -> substEnv.getFilePath().stream()).forEach((elem) -> {
+            files.add(Paths.get(elem.getValue()).toAbsolutePath().normalize().toString());
+        });
+        return files;
     }
 
 }
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.tasks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.Set;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * <p>
+ * Class whose instances keep snapshots of files, so that they can be restored
+ * later.
+ * <p>
+ * The contents of the files are stored once, keyed by their hash, under
+ * {@link #OBJECTS_DIR OBJECTS_DIR}. For every file an entry is kept under
+ * {@link #ENTRIES_DIR ENTRIES_DIR}, keyed by a hash of its absolute path, that
+ * maps the path to the hash of the contents. Files with the same name in
+ * different directories do not collide.
+ * <p>
+ * Contents are always stored as a copy, never as a hard link to the file, so
+ * that a process that rewrites the file in place cannot change them. Every
+ * copy is checked against the hash of the contents, both when it is stored and
+ * when a file is restored from it. Contents that do not match their hash are
+ * never restored.
+ */
+final class SnapshotStore {
+
+    /**
+     * The directory with the contents of the files, relative to the store.
+     */
+    static final String OBJECTS_DIR = "objects";
+    /**
+     * The directory with the entries of the files, relative to the store.
+     */
+    static final String ENTRIES_DIR = "entries";
+    /**
+     * The directory with the contents of the files.
+     */
+    private final Path objectsDir;
+    /**
+     * The directory with the entries of the files.
+     */
+    private final Path entriesDir;
+    /**
+     * A Logger object.
+     */
+    private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(SnapshotStore.class);
+
+    /**
+     * Constructor
+     *
+     * @param storeDir the directory of the store.
+     */
+    SnapshotStore(String storeDir) {
+        objectsDir = Paths.get(storeDir, OBJECTS_DIR);
+        entriesDir = Paths.get(storeDir, ENTRIES_DIR);
+    }
+
+    /**
+     * Takes a snapshot of a file. A previous snapshot of the same file is kept,
+     * unless replacing is requested, so that the first snapshot, taken before
+     * the file was ever rewritten, is the one restored.
+     *
+     * @param file the file.
+     * @param hash the hash of the contents of the file.
+     * @param replace true to replace a previous snapshot of the file.
+     * @return true if the snapshot was taken or kept without errors.
+     */
+    boolean save(Path file, String hash, boolean replace) {
+        boolean success = false;
+        Path abs = file.toAbsolutePath().normalize();
+        Path entry = getEntry(abs);
+        if (!replace && Files.exists(entry)) {
+            LOG.debug("Keeping previous snapshot of file {}", abs);
+            return true;
+        }
+        try {
+            Files.createDirectories(objectsDir);
+            Files.createDirectories(entriesDir);
+            // store contents, unless already stored
+            Path object = objectsDir.resolve(hash);
+            if (!isIntact(object, hash)) {
+                copyVerified(abs, object, hash);
+            }
+            // map the path of the file to its contents
+            Path tmp = Files.createTempFile(entriesDir, ".entry", ".tmp");
+            try {
+                try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                    out.write(hash);
+                    out.newLine();
+                    out.write(abs.toString());
+                    out.newLine();
+                }
+                Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            success = true;
+        } catch (IOException ex) {
+            LOG.error("FAILED to take snapshot of file {}: {}", abs, ex.getMessage());
+        }
+        return success;
+    }
+
+    /**
+     * Stores the contents of a file, without an entry. The contents are kept
+     * until removed by {@link #retainContents(java.util.Set) retainContents}.
+     *
+     * @param file the file.
+     * @param hash the hash of the contents of the file.
+     * @return true if the contents were stored without errors.
+     */
+    boolean saveContents(Path file, String hash) {
+        Path object = objectsDir.resolve(hash);
+        try {
+            if (isIntact(object, hash)) {
+                return true;
+            }
+            Files.createDirectories(objectsDir);
+            copyVerified(file.toAbsolutePath().normalize(), object, hash);
+            return true;
+        } catch (IOException ex) {
+            LOG.error("FAILED to store contents of file {}: {}", file, ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @param hash the hash of contents.
+     * @return the stored contents with the given hash or null if not stored.
+     */
+    Path getContents(String hash) {
+        Path object = objectsDir.resolve(hash);
+        return Files.isRegularFile(object) ? object : null;
+    }
+
+    /**
+     * Checks if a snapshot of a file exists.
+     *
+     * @param file the file.
+     * @return true if a snapshot of the file exists.
+     */
+    boolean contains(Path file) {
+        return Files.isRegularFile(getEntry(file.toAbsolutePath().normalize()));
+    }
+
+    /**
+     * Restores a file from its snapshot and removes the snapshot. The file is
+     * not rewritten if its contents are already the same.
+     *
+     * @param file the file to restore.
+     * @return true if the file was restored without errors.
+     */
+    boolean restore(Path file) {
+        boolean success = false;
+        Path abs = file.toAbsolutePath().normalize();
+        Path entry = getEntry(abs);
+        try {
+            String hash;
+            try (BufferedReader in = Files.newBufferedReader(entry, StandardCharsets.UTF_8)) {
+                hash = in.readLine();
+            }
+            Path object = getContents(hash);
+            if (object == null) {
+                LOG.error("FAILED to restore file {}: snapshot contents missing.", abs);
+                return false;
+            }
+            if (Files.exists(abs) && hash.equals(TemplateCache.hashFile(abs))) {
+                LOG.info("File already restored: {}", abs);
+            } else {
+                Path tmp = abs.resolveSibling("." + abs.getFileName() + ".restore");
+                try {
+                    Files.deleteIfExists(tmp);
+                    // refuses contents that do not match the hash of the snapshot
+                    copyVerified(object, tmp, hash);
+                    Files.move(tmp, abs, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+                LOG.info("Restored file: {}", abs);
+            }
+            Files.delete(entry);
+            success = true;
+        } catch (IOException ex) {
+            LOG.error("FAILED to restore file: {}. {}", abs, ex.getMessage());
+        }
+        return success;
+    }
+
+    /**
+     * Removes the stored contents that no entry refers to.
+     */
+    void prune() {
+        if (!Files.isDirectory(objectsDir)) {
+            return;
+        }
+        // the hashes of the contents still referred to
+        Set<String> refs = new HashSet<>();
+        try {
+            if (Files.isDirectory(entriesDir)) {
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(entriesDir)) {
+                    for (Path entry : entries) {
+                        try (BufferedReader in = Files.newBufferedReader(entry, StandardCharsets.UTF_8)) {
+                            refs.add(in.readLine());
+                        }
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            LOG.warn("Could not prune snapshots: {}", ex.getMessage());
+            return;
+        }
+        retainContents(refs);
+    }
+
+    /**
+     * Removes the stored contents whose hash is not in the given set.
+     *
+     * @param hashes the hashes of the contents to keep.
+     */
+    void retainContents(Set<String> hashes) {
+        if (!Files.isDirectory(objectsDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> objects = Files.newDirectoryStream(objectsDir)) {
+            for (Path object : objects) {
+                if (!hashes.contains(object.getFileName().toString())) {
+                    Files.deleteIfExists(object);
+                }
+            }
+        } catch (IOException ex) {
+            LOG.warn("Could not remove stored contents: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * @param abs the absolute path of a file.
+     * @return the path of the entry of the file.
+     */
+    private Path getEntry(Path abs) {
+        byte[] path = abs.toString().getBytes(StandardCharsets.UTF_8);
+        return entriesDir.resolve(TemplateCache.toHex(TemplateCache.newDigest().digest(path)));
+    }
+
+    /**
+     * Checks if stored contents exist and match their hash.
+     *
+     * @param object the stored contents.
+     * @param hash the hash of the contents.
+     * @return true if the contents exist and match the hash.
+     * @throws IOException if the contents cannot be read.
+     */
+    private static boolean isIntact(Path object, String hash) throws IOException {
+        if (!Files.isRegularFile(object)) {
+            return false;
+        }
+        if (hash.equals(TemplateCache.hashFile(object))) {
+            return true;
+        }
+        LOG.warn("Stored contents {} do NOT match their hash. Replacing.", object);
+        return false;
+    }
+
+    /**
+     * Copies a file and checks that the copied contents match a hash. The copy
+     * is written to a temporary file and renamed, so that the destination is
+     * never partially written.
+     *
+     * @param src the existing file.
+     * @param dst the file to create or replace.
+     * @param hash the expected hash of the contents.
+     * @throws IOException if the file cannot be copied or its contents do not
+     * match the hash.
+     */
+    private static void copyVerified(Path src, Path dst, String hash) throws IOException {
+        Path tmp = Files.createTempFile(dst.toAbsolutePath().getParent(), "." + dst.getFileName(), ".copy");
+        try {
+            MessageDigest md = TemplateCache.newDigest();
+            try (InputStream in = new DigestInputStream(Files.newInputStream(src), md)) {
+                Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String copied = TemplateCache.toHex(md.digest());
+            if (!hash.equals(copied)) {
+                throw new IOException(String.format("contents of %s do not match hash %s", src, hash));
+            }
+            // keep the permissions of the source file
+            try {
+                Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(src));
+            } catch (UnsupportedOperationException ex) {
+                LOG.debug("File system does not support posix permissions: {}", src);
+            }
+            Files.move(tmp, dst, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -16,17 +16,35 @@
  */
 package net.freelabs.maestro.broker.tasks;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import net.freelabs.maestro.broker.BrokerConf;
 import net.freelabs.maestro.core.generated.SubstEnv;
 import net.freelabs.maestro.core.generated.SubstEnvElem;
@@ -41,7 +59,15 @@ import org.slf4j.LoggerFactory;
  * <p>
  * The environment variables used in files must be written in the following
  * format: ${ENV_VAR}. No other format will be acceptable and substituted.
- *
+ * <p>
+ * Every file is streamed once through an {@link EnvSubstitutor
+ * EnvSubstitutor} to a temporary file in the same directory, which then
+ * atomically replaces the original. The declared files are processed in
+ * parallel.
+ * <p>
+ * The state of every processed file is kept in a {@link TemplateCache
+ * TemplateCache}. A file is rewritten only when its template or the values of
+ * the variables it depends on changed.
  */
 public final class SubstEnvTask implements Task {
 
@@ -50,20 +76,35 @@ public final class SubstEnvTask implements Task {
      * environment variables substitution.
      */
     private final SubstEnv substEnv;
+    /**
+     * The name of the task, if no name is declared.
+     */
+    public static final String NAME = "substEnv";
     /**
      * The environment of the processes that will be used to substitute the
      * values of the environment variables to files.
      */
     private final Map<String, String> env;
     /**
-     * The pattern to match for environment variables. Format matched:
-     * ${ENV_VAR}
+     * The cache with the state of the processed files.
      */
-    private final Pattern regex = Pattern.compile("\\$\\{([A-Za-z0-9_]+)\\}");
+    private final TemplateCache cache;
+    /**
+     * The store with the snapshots of the files to restore.
+     */
+    private final SnapshotStore store;
+    /**
+     * The declared files that were rewritten by the task.
+     */
+    private final Set<String> updatedFiles = ConcurrentHashMap.newKeySet();
     /**
      * The charset to use for read/write on files.
      */
     private static final Charset UTF8_CHARSET = StandardCharsets.UTF_8;
+    /**
+     * The maximum time (minutes) to wait for all files to be processed.
+     */
+    private static final long SUBST_TIMEOUT = 2;
     /**
      * A Logger object.
      */
@@ -80,53 +121,303 @@ public final class SubstEnvTask implements Task {
     public SubstEnvTask(SubstEnv substEnv, Map<String, String> env) {
         this.substEnv = substEnv;
         this.env = env;
+        cache = TemplateCache.getInstance();
+        store = new SnapshotStore(BrokerConf.RESTORE_DIR);
     }
 
     @Override
-    public void run() {
+    public boolean run() {
         // get list of elements from substEnv tag
         List<SubstEnvElem> substEnvElems = substEnv.getFilePath();
+        if (substEnvElems.isEmpty()) {
+            return true;
+        }
+        // create a thread per file, up to the number of available cpus
+        int threads = Math.min(substEnvElems.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> results = new ArrayList<>();
         // for every element
         substEnvElems.stream().forEach((elem) -> {
-            // get declared file path 
-            String path = elem.getValue();
-            // verify file's state
-            if (isFileOk(path)) {
-                // if restore is set backup file to restore it later
-                if (elem.isRestoreOnExit()) {
-                    Path src = Paths.get(path);
-                    Path dst = Paths.get(BrokerConf.RESTORE_DIR);
-                    try {
-                        Files.copy(src, dst.resolve(src.getFileName()), StandardCopyOption.COPY_ATTRIBUTES);
-                    } catch (IOException ex) {
-                        LOG.error("FAILED to copy file {} for restore: {}", src, ex.getMessage());
+            results.add(executor.submit(() -> processFile(elem)));
+        });
+        // do not allow new tasks, wait for running to finish
+        executor.shutdown();
+        boolean success = true;
+        for (Future<Boolean> result : results) {
+            try {
+                success = result.get(SUBST_TIMEOUT, TimeUnit.MINUTES) && success;
+            } catch (InterruptedException ex) {
+                LOG.warn("Thread Interrupted. Stopping.");
+                Thread.currentThread().interrupt();
+                success = false;
+                break;
+            } catch (ExecutionException | TimeoutException ex) {
+                LOG.error("Something went wrong: {}", ex.getMessage());
+                success = false;
+            }
+        }
+        executor.shutdownNow();
+        // persist the state of the processed files
+        cache.save();
+        return success;
+    }
+
+    /**
+     * The files are rewritten only if their contents changed.
+     *
+     * @return the declared files that were rewritten by the task.
+     */
+    public Set<String> getUpdatedFiles() {
+        return updatedFiles;
+    }
+
+    /**
+     * Several substEnv tasks may be declared. A task is named to be referred
+     * to by the other tasks.
+     *
+     * @return the declared name of the task or {@link #NAME NAME} if not
+     * declared.
+     */
+    @Override
+    public String getName() {
+        return (substEnv.getName() != null) ? substEnv.getName() : NAME;
+    }
+
+    @Override
+    public Set<String> getDependencies() {
+        return new HashSet<>(substEnv.getAfter());
+    }
+
+    @Override
+    public Set<String> getResources() {
+        Set<String> files = new HashSet<>();
+        substEnv.getFilePath().stream().forEach((elem) -> {
+            files.add(Paths.get(elem.getValue()).toAbsolutePath().normalize().toString());
+        });
+        return files;
+    }
+
+    @Override
+    public boolean isAbortOnFail() {
+        return substEnv.isAbortOnFail();
+    }
+
+    /**
+     * <p>
+     * Expands the environment variables to a declared file. If restore is set,
+     * a snapshot of the file is taken first.
+     * <p>
+     * The file is skipped if it holds the output of a previous run and the
+     * values of the variables it depends on have not changed. If they have
+     * changed, the file is rendered again from its stored template, or left
+     * unchanged if the template is not available.
+     *
+     * @param elem the declared file.
+     * @return true if the file was updated without errors.
+     */
+    private boolean processFile(SubstEnvElem elem) {
+        boolean success = false;
+        // get declared file path 
+        String path = elem.getValue();
+        // verify file's state
+        if (isFileOk(path)) {
+            Path file = Paths.get(path);
+            try {
+                String fileHash = TemplateCache.hashFile(file);
+                TemplateCache.Record rec = cache.getRecord(path);
+                if (rec != null && fileHash.equals(rec.getOutputHash())) {
+                    // the file holds the output of a previous run
+                    if (!rec.inputsChanged(env)) {
+                        LOG.info("File is up to date: {}", path);
+                        return true;
+                    }
+                    // render again from the template of the previous run
+                    String templateHash = rec.getTemplateHash();
+                    CompiledTemplate template = cache.getCompiled(templateHash);
+                    Path source = (template == null) ? findTemplate(templateHash) : file;
+                    if (source == null) {
+                        LOG.warn("Template of file {} NOT available. File left unchanged.", path);
+                        return true;
                     }
+                    if (template == null && cache.hasRoom(Files.size(source))) {
+                        template = compile(source);
+                        cache.putCompiled(templateHash, template);
+                    }
+                    update(file, source, path, templateHash, template);
+                } else {
+                    // the file is a template, if restore is set backup file to restore it later.
+                    // A previous backup is replaced only by the recorded template, never by
+                    // contents that may be the output of a run whose record was lost.
+                    if (elem.isRestoreOnExit()) {
+                        boolean replace = rec != null && fileHash.equals(rec.getTemplateHash());
+                        store.save(file, fileHash, replace);
+                    }
+                    // keep the template to render the file again later
+                    if (!cache.storeTemplate(file, fileHash)) {
+                        LOG.warn("Template of file {} NOT stored. File will not be rendered again.", path);
+                    }
+                    CompiledTemplate template = cache.getCompiled(fileHash);
+                    if (template == null && cache.hasRoom(Files.size(file))) {
+                        template = compile(file);
+                        cache.putCompiled(fileHash, template);
+                    }
+                    update(file, file, path, fileHash, template);
+                }
+                success = true;
+            } catch (IOException ex) {
+                LOG.error("FAILED to update file: {}. {}", path, ex.getMessage());
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Finds the stored template of a file that holds the output of a previous
+     * run, either in the template cache or in the snapshots of the files.
+     *
+     * @param templateHash the hash of the template.
+     * @return the stored template or null if the template is not available.
+     */
+    private Path findTemplate(String templateHash) {
+        Path template = cache.getTemplate(templateHash);
+        return (template != null) ? template : store.getContents(templateHash);
+    }
+
+    /**
+     * Compiles the template of a file.
+     *
+     * @param file the file with the template.
+     * @return the compiled template.
+     * @throws IOException if the file cannot be read.
+     */
+    private CompiledTemplate compile(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, UTF8_CHARSET)) {
+            return CompiledTemplate.compile(in);
+        }
+    }
+
+    /**
+     * Renders a file and records its new state.
+     *
+     * @param file the file to update.
+     * @param source the file with the template.
+     * @param path the declared file path.
+     * @param templateHash the hash of the template.
+     * @param template the compiled template or null to stream the source
+     * through the substitution engine.
+     * @throws IOException if the file cannot be read or replaced.
+     */
+    private void update(Path file, Path source, String path, String templateHash, CompiledTemplate template) throws IOException {
+        Set<String> varNames = new LinkedHashSet<>();
+        String outputHash;
+        if (template != null) {
+            outputHash = substitute(file, (out) -> {
+                template.render(out, env);
+                varNames.addAll(template.getVarNames());
+            });
+        } else {
+            outputHash = substitute(file, (out) -> {
+                try (BufferedReader in = Files.newBufferedReader(source, UTF8_CHARSET)) {
+                    varNames.addAll(EnvSubstitutor.substitute(in, out, env));
                 }
-                try {
-                    // read file and get the content    
-                    String fileContent = new String(Files.readAllBytes(Paths.get(path)), UTF8_CHARSET);
-                    // create object to match pattern
-                    Matcher regexMatcher = regex.matcher(fileContent);
-                    while (regexMatcher.find()) {
-                        // get the name of the environment variable matched, eg: $test->test
-                        String envVarName = regexMatcher.group(1);
-                        // search the environment for the variable name and get value
-                        String envVarValue = env.get(envVarName);
-                        // check if there was such variable
-                        if (envVarValue != null) {
-                            // expand environment variabe
-                            String envVar = regexMatcher.group();
-                            fileContent = fileContent.replace(envVar, envVarValue);
-                        }
+            });
+        }
+        cache.putRecord(path, new TemplateCache.Record(templateHash, outputHash, varNames, TemplateCache.hashValues(varNames, env)));
+        LOG.info("Updated ENV VARS to file: {}", path);
+    }
+
+    /**
+     * <p>
+     * Writes the output of a file to a temporary file and atomically replaces
+     * the original file with it. The file is not replaced if the output is
+     * identical to its contents.
+     * <p>
+     * If the file is a symbolic link, the file it points to is replaced and the
+     * link is kept. The temporary file gets the permissions, owner and group of
+     * the original file. If the owner or group cannot be set, the original file
+     * is rewritten in place instead, which keeps them.
+     *
+     * @param file the file to update.
+     * @param renderer writes the output of the file.
+     * @return the hash of the output.
+     * @throws IOException if the file cannot be read or replaced.
+     */
+    private String substitute(Path file, Renderer renderer) throws IOException {
+        // replace the file a symbolic link points to, not the link
+        Path target = file.toRealPath();
+        Path dir = target.getParent();
+        // the temporary file must be on the same file system for atomic rename
+        Path tmp = Files.createTempFile(dir, "." + target.getFileName(), ".tmp");
+        try {
+            MessageDigest md = TemplateCache.newDigest();
+            try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                    new DigestOutputStream(Files.newOutputStream(tmp), md), UTF8_CHARSET))) {
+                renderer.render(out);
+            }
+            String outputHash = TemplateCache.toHex(md.digest());
+            // rewrite file only if its contents changed
+            if (!outputHash.equals(TemplateCache.hashFile(target))) {
+                if (copyAttributes(target, tmp)) {
+                    // replace the original file
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    // rewrite the original file in place, to keep its owner and group
+                    try (OutputStream out = Files.newOutputStream(target)) {
+                        Files.copy(tmp, out);
                     }
-                    // write updated file to disk
-                    Files.write(Paths.get(path), fileContent.getBytes(UTF8_CHARSET));
-                    LOG.info("Updated ENV VARS to file: {}", path);
-                } catch (IOException ex) {
-                    LOG.error("FAILED to read file: {}. {}", path, ex.getMessage());
                 }
+                updatedFiles.add(file.toString());
             }
-        });
+            return outputHash;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Copies the permissions, owner and group of a file to another file.
+     *
+     * @param src the file to copy the attributes from.
+     * @param dst the file to copy the attributes to.
+     * @return false if the owner or group could not be copied, e.g. because
+     * the process is not privileged to change them.
+     * @throws IOException if the attributes cannot be read.
+     */
+    private static boolean copyAttributes(Path src, Path dst) throws IOException {
+        PosixFileAttributeView srcView = Files.getFileAttributeView(src, PosixFileAttributeView.class);
+        PosixFileAttributeView dstView = Files.getFileAttributeView(dst, PosixFileAttributeView.class);
+        if (srcView == null || dstView == null) {
+            LOG.debug("File system does not support posix attributes: {}", src.getParent());
+            return true;
+        }
+        PosixFileAttributes attrs = srcView.readAttributes();
+        dstView.setPermissions(attrs.permissions());
+        try {
+            // set the group first, only a privileged process may change the owner
+            if (!attrs.group().equals(dstView.readAttributes().group())) {
+                dstView.setGroup(attrs.group());
+            }
+            if (!attrs.owner().equals(dstView.getOwner())) {
+                dstView.setOwner(attrs.owner());
+            }
+            return true;
+        } catch (IOException ex) {
+            LOG.debug("Cannot set owner and group of {}: {}", dst, ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes the output of a file.
+     */
+    @FunctionalInterface
+    private interface Renderer {
+
+        /**
+         * @param out the output to write to.
+         * @throws IOException if writing to the output fails.
+         */
+        void render(Writer out) throws IOException;
     }
 
     /**
@@ -16,17 +16,58 @@
  */
 package net.freelabs.maestro.broker.tasks;
 
+import java.util.Collections;
+import java.util.Set;
+
 /**
  *
- * The Task interface should be implemented by any class whose instances are 
- * intended to provide a function of some type for the application. The class must 
- * define a method of no arguments called run.
+ * <p>
+ * The Task interface should be implemented by any class whose instances are
+ * intended to provide a function of some type for the application. The class
+ * must define a method of no arguments called run.
+ * <p>
+ * A task may declare the tasks it must run after and the resources it uses.
+ * Tasks with no dependencies between them and no common resources are
+ * executed concurrently by a {@link TaskHandler TaskHandler}.
  */
 @FunctionalInterface
 public interface Task {
+
     /**
      * The method may take any action whatsoever.
+     *
+     * @return true if the task completed without errors.
+     */
+    public boolean run();
+
+    /**
+     * @return the name of the task, used to declare dependencies.
+     */
+    public default String getName() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * @return the names of the tasks that must complete before this task.
      */
-    public void run();
-    
+    public default Set<String> getDependencies() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return the resources the task uses, such as files. Tasks with common
+     * resources are executed one after the other, in the order declared.
+     */
+    public default Set<String> getResources() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return true if the failure of the task must abort the execution of the
+     * tasks not yet started.
+     */
+    public default boolean isAbortOnFail() {
+        return false;
+    }
+
 }
@@ -60,23 +60,23 @@ public abstract class TaskCreator {
         postStopTasks = new ArrayList<>();
 
         // ALL CREATE METHODS MUST BE CALLED HERE
-        // create substEnv task
-        Task substEnv = createSubstEnvTask();
+        // create substEnv tasks
+        List<Task> substEnvs = createSubstEnvTasks();
         Task restoreFiles = createRestoreTask();
 
         // ALL CREATED TASKS MUST BE ADDED TO THE LIST OF TASKS
-        preStartTasks.add(substEnv);
+        preStartTasks.addAll(substEnvs);
         
         postStopTasks.add(restoreFiles);
     }
 
     /**
-     * Creates the substEnv task, that expands environment variables to
-     * configuration files. environment variables.
+     * Creates the substEnv tasks, that expand environment variables to
+     * configuration files. A task is created for every declared substEnv.
      *
-     * @return a task for execution.
+     * @return the tasks for execution, in declaration order.
      */
-    protected abstract Task createSubstEnvTask();
+    protected abstract List<Task> createSubstEnvTasks();
     /**
      * Restores the original files where environment substitution has been applied.
      * @return a task for execution.
@@ -17,13 +17,28 @@
 package net.freelabs.maestro.broker.tasks;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.freelabs.maestro.broker.metrics.BrokerMetrics;
+import net.freelabs.maestro.broker.utils.DagExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  *
+ * <p>
  * Class that defines an executor for Tasks.
+ * <p>
+ * Tasks are executed as a graph on a bounded thread pool, by a
+ * {@link DagExecutor DagExecutor}. A task starts when
+ * the tasks it depends on have completed. Tasks that use a common resource run
+ * one after the other, in the order declared. All other tasks run
+ * concurrently.
+ * <p>
+ * If a task fails and the task is set to abort on failure, no more tasks are
+ * started and execution fails. Otherwise, the failure is logged and execution
+ * continues, as with processes.
  */
 public final class TaskHandler {
 
@@ -35,11 +50,83 @@ public final class TaskHandler {
      * List of postStopTasks to execute.
      */
     private final List<Task> postStopTasks;
+    /**
+     * The results of the last executed tasks.
+     */
+    private volatile List<TaskResult> results = Collections.emptyList();
+    /**
+     * The maximum time (minutes) to wait for a task to complete.
+     */
+    private static final long TASK_TIMEOUT = 5;
+    /**
+     * Executes the tasks as a graph. A task runs after the tasks it depends on
+     * and the previously declared tasks it has common resources with.
+     */
+    private static final DagExecutor<Task> EXECUTOR = new DagExecutor<>("Task", "Tasks",
+            Task::getName, Task::getName, Task::getDependencies, Task::getResources, TASK_TIMEOUT);
     /**
      * A Logger object.
      */
     private static final Logger LOG = LoggerFactory.getLogger(TaskHandler.class);
 
+    /**
+     * Class whose instances hold the outcome of a task execution.
+     */
+    public static final class TaskResult {
+
+        /**
+         * The name of the task.
+         */
+        private final String name;
+        /**
+         * Indicates if the task completed without errors.
+         */
+        private final boolean success;
+        /**
+         * The execution time of the task in milliseconds.
+         */
+        private final long duration;
+
+        /**
+         * Constructor.
+         *
+         * @param name the name of the task.
+         * @param success true if the task completed without errors.
+         * @param duration the execution time of the task in milliseconds.
+         */
+        private TaskResult(String name, boolean success, long duration) {
+            this.name = name;
+            this.success = success;
+            this.duration = duration;
+        }
+
+        /**
+         * @return the name of the task.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return true if the task completed without errors.
+         */
+        public boolean isSuccess() {
+            return success;
+        }
+
+        /**
+         * @return the execution time of the task in milliseconds.
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %s in %d ms", name, success ? "OK" : "FAILED", duration);
+        }
+    }
+
     /**
      * Constructor.
      *
@@ -79,22 +166,67 @@ public final class TaskHandler {
 
     /**
      * Executes defined preStartTasks.
+     *
+     * @return true if no task set to abort on failure failed.
      */
-    public void execPreStartTasks() {
+    public boolean execPreStartTasks() {
         LOG.info("Executing pre-start tasks.");
-        preStartTasks.stream().forEach((task) -> {
-            task.run();
-        });
+        return execTasks(preStartTasks);
     }
 
     /**
      * Executes defined postStopTasks.
+     *
+     * @return true if no task set to abort on failure failed.
      */
-    public void execPostStopTasks() {
+    public boolean execPostStopTasks() {
         LOG.info("Executing post-stop tasks.");
-        postStopTasks.stream().forEach((task) -> {
-            task.run();
+        return execTasks(postStopTasks);
+    }
+
+    /**
+     * @return the results of the last executed tasks, in order of completion.
+     */
+    public List<TaskResult> getResults() {
+        return results;
+    }
+
+    /**
+     * <p>
+     * Executes a list of tasks as a graph.
+     * <p>
+     * The method blocks.
+     *
+     * @param tasks the tasks to execute.
+     * @return true if no task set to abort on failure failed.
+     */
+    private boolean execTasks(List<Task> tasks) {
+        List<TaskResult> execResults = Collections.synchronizedList(new ArrayList<>());
+        results = Collections.unmodifiableList(execResults);
+        if (tasks.isEmpty()) {
+            return true;
+        }
+        long startTime = System.nanoTime();
+        // create a thread per task, up to the number of available cpus
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean success = EXECUTOR.execute(tasks, threads, Task::run, (task, ok, duration) -> {
+            TaskResult res = new TaskResult(task.getName(), ok, duration);
+            execResults.add(res);
+            BrokerMetrics.TASK_DURATION.observe(res.getDuration() / 1000.0, res.getName(), String.valueOf(res.isSuccess()));
+            if (res.isSuccess()) {
+                LOG.info("Task {} completed in {} ms.", res.getName(), res.getDuration());
+            } else if (task.isAbortOnFail()) {
+                LOG.error("Task {} FAILED in {} ms. Aborting task execution.", res.getName(), res.getDuration());
+                return true;
+            } else {
+                LOG.warn("Task {} FAILED in {} ms. Ignoring.", res.getName(), res.getDuration());
+            }
+            return false;
         });
+        LOG.info("Executed {} of {} tasks in {} ms.", execResults.size(), tasks.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+        return success;
     }
 
 }
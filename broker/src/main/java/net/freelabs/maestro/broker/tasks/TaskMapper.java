@@ -16,8 +16,10 @@
  */
 package net.freelabs.maestro.broker.tasks;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import net.freelabs.maestro.core.generated.SubstEnv;
 import net.freelabs.maestro.core.generated.Tasks;
 
 /**
@@ -51,8 +53,12 @@ public final class TaskMapper extends TaskCreator {
     }
 
     @Override
-    protected Task createSubstEnvTask() {
-        return  (new SubstEnvTask(taskResources.getSubstEnv(), env));
+    protected List<Task> createSubstEnvTasks() {
+        List<Task> tasks = new ArrayList<>();
+        for (SubstEnv substEnv : taskResources.getSubstEnv()) {
+            tasks.add(new SubstEnvTask(substEnv, env));
+        }
+        return tasks;
     }
 
     /**
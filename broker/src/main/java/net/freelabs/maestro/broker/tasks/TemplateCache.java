@@ -0,0 +1,407 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.tasks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import net.freelabs.maestro.broker.BrokerConf;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * <p>
+ * Class that caches the state of the files processed by {@link SubstEnvTask
+ * SubstEnvTask}.
+ * <p>
+ * For every file a {@link Record Record} is kept with the hash of the
+ * template, the hash of the rendered output and the variables the file
+ * depends on, along with a hash of their values. The records are persisted
+ * to {@link #CACHE_FILE CACHE_FILE}, so that they survive restarts. A file is
+ * rendered again only if the template or the values of its variables changed.
+ * <p>
+ * Compiled templates are kept in memory, keyed by the hash of the template,
+ * so that a file can be rendered again during the lifetime of the broker
+ * without being parsed. The templates themselves are stored on disk under
+ * {@link #TEMPLATES_DIR TEMPLATES_DIR}, so that a file can be rendered again
+ * after a restart or when its template does not fit in memory. Templates no
+ * record refers to are removed when the records are loaded.
+ */
+final class TemplateCache {
+
+    /**
+     * The file where the records are persisted.
+     */
+    static final String CACHE_FILE = BrokerConf.CACHE_DIR + "/substEnv.properties";
+    /**
+     * The directory where the templates are stored.
+     */
+    static final String TEMPLATES_DIR = BrokerConf.CACHE_DIR + "/templates";
+    /**
+     * The maximum number of characters of all compiled templates held in
+     * memory.
+     */
+    private static final long MAX_CACHED_CHARS = 8 * 1024 * 1024;
+    /**
+     * The hash algorithm.
+     */
+    private static final String HASH_ALGORITHM = "SHA-1";
+    /**
+     * The separator of the fields of a persisted record.
+     */
+    private static final String FIELD_SEP = ";";
+    /**
+     * The separator of the variable names of a persisted record.
+     */
+    private static final String NAME_SEP = ",";
+    /**
+     * The single instance of the class.
+     */
+    private static final TemplateCache INSTANCE = new TemplateCache();
+    /**
+     * The records of the processed files. Key is the file path.
+     */
+    private final Map<String, Record> records = new ConcurrentHashMap<>();
+    /**
+     * The compiled templates. Key is the hash of the template.
+     */
+    private final Map<String, CompiledTemplate> compiled = new ConcurrentHashMap<>();
+    /**
+     * The number of characters of all compiled templates held in memory.
+     */
+    private final AtomicLong cachedChars = new AtomicLong();
+    /**
+     * The store with the templates of the processed files.
+     */
+    private final SnapshotStore templates = new SnapshotStore(TEMPLATES_DIR);
+    /**
+     * Indicates if the persisted records are loaded.
+     */
+    private boolean loaded;
+    /**
+     * A Logger object.
+     */
+    private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(TemplateCache.class);
+
+    /**
+     * Class whose instances hold the state of a processed file.
+     */
+    static final class Record {
+
+        /**
+         * The hash of the template.
+         */
+        private final String templateHash;
+        /**
+         * The hash of the rendered output.
+         */
+        private final String outputHash;
+        /**
+         * The names of the variables the file depends on.
+         */
+        private final Set<String> varNames;
+        /**
+         * The hash of the values of the variables the file depends on.
+         */
+        private final String valuesHash;
+
+        /**
+         * Constructor
+         *
+         * @param templateHash the hash of the template.
+         * @param outputHash the hash of the rendered output.
+         * @param varNames the names of the variables the file depends on.
+         * @param valuesHash the hash of the values of the variables.
+         */
+        Record(String templateHash, String outputHash, Set<String> varNames, String valuesHash) {
+            this.templateHash = templateHash;
+            this.outputHash = outputHash;
+            this.varNames = Collections.unmodifiableSet(new LinkedHashSet<>(varNames));
+            this.valuesHash = valuesHash;
+        }
+
+        /**
+         * @return the hash of the template.
+         */
+        String getTemplateHash() {
+            return templateHash;
+        }
+
+        /**
+         * @return the hash of the rendered output.
+         */
+        String getOutputHash() {
+            return outputHash;
+        }
+
+        /**
+         * @return the names of the variables the file depends on.
+         */
+        Set<String> getVarNames() {
+            return varNames;
+        }
+
+        /**
+         * Checks if the values of the variables the file depends on have
+         * changed.
+         *
+         * @param env the environment with the values of the variables.
+         * @return true if any value differs from the recorded one.
+         */
+        boolean inputsChanged(Map<String, String> env) {
+            return !valuesHash.equals(hashValues(varNames, env));
+        }
+    }
+
+    /**
+     * Private constructor. The instance is acquired with {@link #getInstance()
+     * getInstance}.
+     */
+    private TemplateCache() {
+    }
+
+    /**
+     * @return the single instance of the class. Persisted records are loaded
+     * on first call.
+     */
+    static TemplateCache getInstance() {
+        INSTANCE.load();
+        return INSTANCE;
+    }
+
+    /**
+     * @param path the path of a file.
+     * @return the record of the file or null if the file was not processed.
+     */
+    Record getRecord(String path) {
+        return records.get(path);
+    }
+
+    /**
+     * Saves the record of a processed file.
+     *
+     * @param path the path of the file.
+     * @param record the state of the file.
+     */
+    void putRecord(String path, Record record) {
+        records.put(path, record);
+    }
+
+    /**
+     * @param templateHash the hash of a template.
+     * @return the compiled template or null if not cached.
+     */
+    CompiledTemplate getCompiled(String templateHash) {
+        return compiled.get(templateHash);
+    }
+
+    /**
+     * Caches a compiled template, if the cache has room for it.
+     *
+     * @param templateHash the hash of the template.
+     * @param template the compiled template.
+     */
+    void putCompiled(String templateHash, CompiledTemplate template) {
+        if (cachedChars.addAndGet(template.getSize()) <= MAX_CACHED_CHARS) {
+            if (compiled.putIfAbsent(templateHash, template) == null) {
+                return;
+            }
+        }
+        cachedChars.addAndGet(-template.getSize());
+    }
+
+    /**
+     * Stores a template on disk, keyed by its hash.
+     *
+     * @param file the file with the template.
+     * @param templateHash the hash of the template.
+     * @return true if the template was stored without errors.
+     */
+    boolean storeTemplate(Path file, String templateHash) {
+        return templates.saveContents(file, templateHash);
+    }
+
+    /**
+     * @param templateHash the hash of a template.
+     * @return the stored template or null if not stored.
+     */
+    Path getTemplate(String templateHash) {
+        return templates.getContents(templateHash);
+    }
+
+    /**
+     * @param size the number of characters of a template.
+     * @return true if a template of the given size fits in the cache.
+     */
+    boolean hasRoom(long size) {
+        return cachedChars.get() + size <= MAX_CACHED_CHARS;
+    }
+
+    /**
+     * Loads the persisted records, once.
+     */
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        Path cacheFile = Paths.get(CACHE_FILE);
+        if (!Files.exists(cacheFile)) {
+            templates.retainContents(Collections.emptySet());
+            return;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(cacheFile)) {
+            props.load(in);
+        } catch (IOException ex) {
+            LOG.warn("Could not load template cache: {}", ex.getMessage());
+            return;
+        }
+        for (String path : props.stringPropertyNames()) {
+            String[] fields = props.getProperty(path).split(FIELD_SEP, -1);
+            if (fields.length != 4) {
+                LOG.warn("Invalid template cache entry for file: {}", path);
+                continue;
+            }
+            Set<String> varNames = new LinkedHashSet<>();
+            if (!fields[2].isEmpty()) {
+                varNames.addAll(Arrays.asList(fields[2].split(NAME_SEP)));
+            }
+            records.put(path, new Record(fields[0], fields[1], varNames, fields[3]));
+        }
+        // remove the templates of files no longer processed
+        Set<String> templateHashes = new HashSet<>();
+        records.values().forEach((rec) -> templateHashes.add(rec.templateHash));
+        templates.retainContents(templateHashes);
+        LOG.debug("Loaded template cache: {} entries.", records.size());
+    }
+
+    /**
+     * Persists the records. The cache file is replaced atomically.
+     *
+     * @return true if the records were persisted without errors.
+     */
+    synchronized boolean save() {
+        Properties props = new Properties();
+        records.forEach((path, rec) -> {
+            String entry = rec.templateHash + FIELD_SEP + rec.outputHash + FIELD_SEP
+                    + String.join(NAME_SEP, rec.varNames) + FIELD_SEP + rec.valuesHash;
+            props.setProperty(path, entry);
+        });
+        try {
+            Path cacheFile = Paths.get(CACHE_FILE);
+            Files.createDirectories(cacheFile.getParent());
+            Path tmp = Files.createTempFile(cacheFile.getParent(), ".substEnv", ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    props.store(out, null);
+                }
+                Files.move(tmp, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            return true;
+        } catch (IOException ex) {
+            LOG.warn("Could not save template cache: {}", ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Computes the hash of the contents of a file.
+     *
+     * @param file the file.
+     * @return the hash as a hex string.
+     * @throws IOException if the file cannot be read.
+     */
+    static String hashFile(Path file) throws IOException {
+        MessageDigest md = newDigest();
+        byte[] buf = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                md.update(buf, 0, len);
+            }
+        }
+        return toHex(md.digest());
+    }
+
+    /**
+     * Computes a hash of the values of a set of variables. The names are
+     * sorted so that the hash does not depend on their order.
+     *
+     * @param varNames the names of the variables.
+     * @param env the environment with the values of the variables.
+     * @return the hash as a hex string.
+     */
+    static String hashValues(Set<String> varNames, Map<String, String> env) {
+        MessageDigest md = newDigest();
+        for (String name : new TreeSet<>(varNames)) {
+            String value = env.get(name);
+            md.update(name.getBytes(StandardCharsets.UTF_8));
+            // distinguish an unset variable from an empty one
+            md.update(value == null ? (byte) 0 : (byte) 1);
+            if (value != null) {
+                md.update(value.getBytes(StandardCharsets.UTF_8));
+            }
+            md.update((byte) '\n');
+        }
+        return toHex(md.digest());
+    }
+
+    /**
+     * @return a new message digest for the hash algorithm.
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            // every java platform is required to support SHA-1
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @param bytes the bytes to convert.
+     * @return the bytes as a lower case hex string.
+     */
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.broker.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * <p>
+ * Class whose instances execute a group of nodes, such as tasks or processes,
+ * as a directed acyclic graph.
+ * <p>
+ * A node starts as soon as the nodes it is declared after have completed. A
+ * node also runs after the previously declared nodes it has common resources
+ * with. All other nodes run concurrently, on a bounded thread pool (Kahn's
+ * algorithm).
+ * <p>
+ * When a node completes, the {@link CompletionHandler CompletionHandler}
+ * decides if execution must abort. If so, no more nodes are started and
+ * execution fails. Nodes that never start because they form a circular
+ * dependency also fail execution.
+ *
+ * @param <N> the type of the nodes.
+ */
+public final class DagExecutor<N> {
+
+    /**
+     * The kind of the nodes (e.g. Task), for logging.
+     */
+    private final String kind;
+    /**
+     * The kind of the nodes in plural (e.g. Tasks), for logging.
+     */
+    private final String kinds;
+    /**
+     * Returns the name of a node, used to declare dependencies. May return
+     * null if the node has no name.
+     */
+    private final Function<N, String> name;
+    /**
+     * Returns the name of a node for logging.
+     */
+    private final Function<N, String> label;
+    /**
+     * Returns the names of the nodes a node must run after.
+     */
+    private final Function<N, ? extends Collection<String>> after;
+    /**
+     * Returns the resources of a node. Null if nodes have no resources.
+     */
+    private final Function<N, ? extends Collection<String>> resources;
+    /**
+     * The maximum time (minutes) to wait for a node to complete.
+     */
+    private final long timeout;
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(DagExecutor.class);
+
+    /**
+     * Handles the completion of a node.
+     *
+     * @param <N> the type of the nodes.
+     */
+    @FunctionalInterface
+    public interface CompletionHandler<N> {
+
+        /**
+         * Handles the completion of a node.
+         *
+         * @param node the node.
+         * @param success true if the node completed without errors.
+         * @param duration the execution time of the node in milliseconds.
+         * @return true if execution must abort.
+         */
+        public boolean onComplete(N node, boolean success, long duration);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param kind the kind of the nodes (e.g. Task), for logging.
+     * @param kinds the kind of the nodes in plural (e.g. Tasks), for logging.
+     * @param name returns the name of a node, used to declare dependencies.
+     * May return null if the node has no name.
+     * @param label returns the name of a node for logging.
+     * @param after returns the names of the nodes a node must run after.
+     * @param resources returns the resources of a node. Null if nodes have no
+     * resources.
+     * @param timeout the maximum time (minutes) to wait for a node to complete.
+     */
+    public DagExecutor(String kind, String kinds, Function<N, String> name, Function<N, String> label,
+            Function<N, ? extends Collection<String>> after, Function<N, ? extends Collection<String>> resources, long timeout) {
+        this.kind = kind;
+        this.kinds = kinds;
+        this.name = name;
+        this.label = label;
+        this.after = after;
+        this.resources = resources;
+        this.timeout = timeout;
+    }
+
+    /**
+     * <p>
+     * Executes a group of nodes as a graph.
+     * <p>
+     * The method blocks.
+     *
+     * @param nodes the nodes to execute.
+     * @param threads the maximum number of nodes executed at the same time.
+     * @param run executes a node and returns true if the node completed
+     * without errors.
+     * @param handler handles the completion of every node and decides if
+     * execution must abort.
+     * @return true if execution was not aborted and all the nodes were
+     * executed.
+     */
+    public boolean execute(List<N> nodes, int threads, Predicate<N> run, CompletionHandler<N> handler) {
+        int numOfNodes = nodes.size();
+        if (numOfNodes == 0) {
+            return true;
+        }
+        // the nodes that depend on every node and the number of pending dependencies
+        List<List<Integer>> dependents = new ArrayList<>();
+        int[] pending = new int[numOfNodes];
+        initGraph(nodes, dependents, pending);
+
+        // nodes with no pending dependencies are ready
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < numOfNodes; i++) {
+            if (pending[i] == 0) {
+                ready.add(i);
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(numOfNodes, threads)));
+        CompletionService<Integer> completed = new ExecutorCompletionService<>(executor);
+        // the outcome of every node
+        boolean[] started = new boolean[numOfNodes];
+        boolean[] succeeded = new boolean[numOfNodes];
+        long[] durations = new long[numOfNodes];
+
+        boolean success = true;
+        int running = 0;
+        while (true) {
+            // start ready nodes, unless aborted
+            while (success && !ready.isEmpty()) {
+                int i = ready.poll();
+                started[i] = true;
+                N node = nodes.get(i);
+                completed.submit(() -> {
+                    long nodeStart = System.nanoTime();
+                    try {
+                        succeeded[i] = run.test(node);
+                    } catch (RuntimeException ex) {
+                        LOG.error("{} {} threw exception: {}", kind, label.apply(node), ex.getMessage());
+                        LOG.trace("{} {} threw exception: ", kind, label.apply(node), ex);
+                    }
+                    durations[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nodeStart);
+                    return i;
+                });
+                running++;
+            }
+            if (running == 0) {
+                break;
+            }
+            try {
+                Future<Integer> future = completed.poll(timeout, TimeUnit.MINUTES);
+                if (future == null) {
+                    LOG.error("Execution of {} timed out.", kinds.toLowerCase());
+                    success = false;
+                    break;
+                }
+                int i = future.get();
+                running--;
+                // let the caller decide if execution must abort
+                if (handler.onComplete(nodes.get(i), succeeded[i], durations[i])) {
+                    success = false;
+                }
+                // release the dependents of the node
+                for (int dependent : dependents.get(i)) {
+                    if (--pending[dependent] == 0) {
+                        ready.add(dependent);
+                    }
+                }
+            } catch (InterruptedException ex) {
+                LOG.warn("Thread Interrupted. Stopping.");
+                Thread.currentThread().interrupt();
+                success = false;
+                break;
+            } catch (ExecutionException ex) {
+                LOG.error("Something went wrong: {}", ex.getMessage());
+                success = false;
+                break;
+            }
+        }
+        executor.shutdownNow();
+
+        // report nodes that never started
+        List<String> notStarted = new ArrayList<>();
+        for (int i = 0; i < numOfNodes; i++) {
+            if (!started[i]) {
+                notStarted.add(label.apply(nodes.get(i)));
+            }
+        }
+        if (!notStarted.isEmpty()) {
+            if (success) {
+                LOG.error("{} {} are declared as a CIRCULAR DEPENDENCY. NOT executed.", kinds, notStarted);
+                success = false;
+            } else {
+                LOG.warn("{} {} NOT executed.", kinds, notStarted);
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Builds the graph. A node depends on the nodes it is declared after and
+     * on the previously declared nodes it has common resources with.
+     *
+     * @param nodes the nodes.
+     * @param dependents the list to fill with the dependents of every node.
+     * @param pending the array to fill with the number of dependencies of
+     * every node.
+     */
+    private void initGraph(List<N> nodes, List<List<Integer>> dependents, int[] pending) {
+        // index the nodes by name
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            dependents.add(new ArrayList<>());
+            String nodeName = name.apply(nodes.get(i));
+            if (nodeName != null && index.putIfAbsent(nodeName, i) != null) {
+                LOG.warn("{} name {} is declared more than once.", kind, nodeName);
+            }
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            N node = nodes.get(i);
+            List<Integer> deps = new ArrayList<>();
+            // declared dependencies
+            for (String depName : after.apply(node)) {
+                Integer dep = index.get(depName);
+                if (dep == null) {
+                    LOG.warn("{} {} depends on undeclared {} {}. Ignoring.", kind, label.apply(node), kind.toLowerCase(), depName);
+                } else if (dep != i && !deps.contains(dep)) {
+                    deps.add(dep);
+                }
+            }
+            // previously declared nodes with common resources
+            if (resources != null) {
+                for (int j = 0; j < i; j++) {
+                    if (!deps.contains(j) && !Collections.disjoint(resources.apply(node), resources.apply(nodes.get(j)))) {
+                        deps.add(j);
+                    }
+                }
+            }
+            for (int dep : deps) {
+                dependents.get(dep).add(i);
+            }
+            pending[i] = deps.size();
+        }
+    }
+
+}
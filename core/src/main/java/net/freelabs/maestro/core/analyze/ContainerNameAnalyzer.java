@@ -16,8 +16,9 @@
  */
 package net.freelabs.maestro.core.analyze;
 
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import net.freelabs.maestro.core.generated.Container;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +36,7 @@ public class ContainerNameAnalyzer {
     /**
      * A Logger object.
      */
-    private static final Logger LOG = LoggerFactory.getLogger(DependencyAnalyzer.class);
+    private static final Logger LOG = LoggerFactory.getLogger(ContainerNameAnalyzer.class);
 
     /**
      * Constructor.
@@ -54,19 +55,17 @@ public class ContainerNameAnalyzer {
     public boolean detectDuplicateNames() {
         // indicates if duplicate container name is found
         boolean found = false;
-        // list to hold all the container names
-        List<String> nameList = new ArrayList<>();
+        // set to hold all the container names
+        Set<String> nameSet = new HashSet<>();
         // add container names to list and check for repeating names
         for (Container con : containers) {
             // get the container name
             String name = con.getName();
-            // check if name is already in name list
-            if (nameList.contains(name)) {
+            // add name to set, fails if name already exists
+            if (!nameSet.add(name)) {
                 LOG.error("DUPLICATE container name found: {}", name);
                 found = true;
                 break;
-            } else {
-                nameList.add(name);
             }
         }
         return found;
@@ -16,8 +16,13 @@
  */
 package net.freelabs.maestro.core.analyze;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import net.freelabs.maestro.core.generated.Container;
@@ -26,8 +31,15 @@ import org.slf4j.LoggerFactory;
 
 /**
  *
+ * <p>
  * Class that provides methods to analyze container dependencies in order to
- * detect circular dependencies.
+ * detect circular dependencies and dependencies on undeclared containers.
+ * <p>
+ * The analysis runs in linear time to the number of containers and declared
+ * dependencies. Strongly connected components are detected with Tarjan's
+ * algorithm, so that every cycle is reported in a single pass. If no cycle is
+ * found, Kahn's algorithm produces a start order of the containers, the depth
+ * level of every container and the longest dependency chain (critical path).
  */
 public class DependencyAnalyzer {
 
@@ -35,6 +47,33 @@ public class DependencyAnalyzer {
      * List of containers declared on application schema.
      */
     private final List<Container> containers;
+    /**
+     * The circular dependencies found. Every element is a list with the names
+     * of the containers that form the cycle.
+     */
+    private final List<List<String>> cycles = new ArrayList<>();
+    /**
+     * The dependencies on undeclared containers found. Every element is a
+     * 2-element array. Element [0] -> name of the container. Element [1] ->
+     * name of the undeclared container it requires.
+     */
+    private final List<String[]> undeclared = new ArrayList<>();
+    /**
+     * The container names in the order they must be started. Dependencies
+     * always precede the containers that require them.
+     */
+    private final List<String> startOrder = new ArrayList<>();
+    /**
+     * The container names grouped by depth level. Containers of level 0 have no
+     * dependencies, containers of level N depend on at least one container of
+     * level N-1.
+     */
+    private final List<List<String>> levels = new ArrayList<>();
+    /**
+     * The longest dependency chain, starting from a container without
+     * dependencies.
+     */
+    private final List<String> criticalPath = new ArrayList<>();
     /**
      * A Logger object.
      */
@@ -51,72 +90,284 @@ public class DependencyAnalyzer {
 
     /**
      * <p>
-     * Analyzes declared container dependencies for circular dependencies.
+     * Analyzes declared container dependencies for circular dependencies and
+     * dependencies on undeclared containers.
      * <p>
-     * Calls recursive method {@link #detectCircular(net.freelabs.maestro.core.generated.Container, java.util.List, java.util.Map)
-     * detectCircular}.
+     * All circular and undeclared dependencies are reported. If none is found,
+     * the start order, the depth levels and the critical path are computed and
+     * can be queried with the respective getters.
      *
-     * @return true if a circular dependency is found.
+     * @return true if a circular dependency or a dependency on an undeclared
+     * container is found.
      */
     public boolean analyzeDependencies() {
-        boolean found = false;
-        // create map with the dependency lists of all contaienrs
-        Map<String, List<String>> conDepMap = new HashMap<>();
-
-        containers.stream().forEach((con) -> {
-            String key = con.getName();
-            List<String> value = con.getRequires();
-            conDepMap.put(key, value);
-        });
-        // iterate through containers
-        for (Container con : containers) {
-            // if container has no dependencies skip it
-            if (!con.getRequires().isEmpty()) {
-                found = detectCircular(con.getName(), new ArrayList<>(), conDepMap);
-                if (found) {
-                    break;
+        // clear the results of any previous analysis
+        cycles.clear();
+        undeclared.clear();
+        startOrder.clear();
+        levels.clear();
+        criticalPath.clear();
+        // the number of containers
+        int size = containers.size();
+        // map container names to indexes
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            ids.put(containers.get(i).getName(), i);
+        }
+        // create the adjacency lists, container -> required containers
+        int[][] deps = new int[size][];
+        for (int i = 0; i < size; i++) {
+            Container con = containers.get(i);
+            int[] conDeps = new int[con.getRequires().size()];
+            int count = 0;
+            for (String dep : con.getRequires()) {
+                Integer id = ids.get(dep);
+                if (id == null) {
+                    // the container would wait forever for the service
+                    LOG.error("Container \'{}\' requires UNDECLARED container \'{}\'.", con.getName(), dep);
+                    undeclared.add(new String[]{con.getName(), dep});
+                } else {
+                    conDeps[count++] = id;
                 }
             }
+            deps[i] = Arrays.copyOf(conDeps, count);
+        }
+        // detect all circular dependencies
+        detectCycles(deps);
+        // log every circular dependency found
+        for (List<String> cycle : cycles) {
+            LOG.error("Containers {} are declared as a CIRCULAR DEPENDENCY in application description.", cycle);
+        }
+        // if no errors, compute the start order and the critical path
+        boolean found = !cycles.isEmpty() || !undeclared.isEmpty();
+        if (!found) {
+            sortTopologically(deps);
         }
         return found;
     }
 
     /**
-     * Detects circular dependencies. Recursive method.
+     * <p>
+     * Detects circular dependencies with Tarjan's strongly connected components
+     * algorithm.
+     * <p>
+     * The algorithm is implemented iteratively so that long dependency chains
+     * do not exhaust the thread stack. Every component with more than one
+     * container, or a container that requires itself, is a circular dependency.
      *
-     * @param src the container to check if it is declared as a circular
-     * dependency.
-     * @param depChain the list of dependencies forming a chain in which every
-     * dependency must appear only once.
-     * @param conDepMap map with the dependency lists of all containers.
-     * @return true if a circular dependency is found.
-     */
-    private boolean detectCircular(String src, List<String> depChain, Map<String, List<String>> conDepMap) {
-        // indicates if a circular dependency was found
-        boolean found = false;
-        // get dependency list of container
-        List<String> dependencies = conDepMap.get(src);
-        // check conditions
-        if (depChain.contains(src)) {
-            // container already exists in the dependency chain
-            LOG.error("Container \'{}\' is declared as a CIRCULAR DEPENDENCY in application description.", src);
-            found = true;
-        } else {
-            // add container to the list of depending nodes that were visited
-            // and must appear only once
-            depChain.add(src);
-            // get dependency list of dependency and recurse
-            for (String dep : dependencies) {
-                // recurse
-                List<String> depChainCopy = new ArrayList<>();
-                depChainCopy.addAll(depChain);
-                found = detectCircular(dep, depChainCopy, conDepMap);
-                // if found circular dependency stop
-                if (found) {
-                    break;
+     * @param deps the adjacency lists of the dependency graph.
+     */
+    private void detectCycles(int[][] deps) {
+        int size = deps.length;
+        // the discovery index of every node, -1 if not visited
+        int[] index = new int[size];
+        Arrays.fill(index, -1);
+        // the lowest index reachable from every node
+        int[] low = new int[size];
+        // indicates if a node is on the component stack
+        boolean[] onStack = new boolean[size];
+        // the next edge to visit for every node on the call stack
+        int[] edge = new int[size];
+        // stack with the nodes of the components under construction
+        Deque<Integer> compStack = new ArrayDeque<>();
+        // stack that replaces the recursion
+        Deque<Integer> callStack = new ArrayDeque<>();
+        // the next discovery index
+        int next = 0;
+
+        for (int root = 0; root < size; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            // visit root
+            index[root] = low[root] = next++;
+            compStack.push(root);
+            onStack[root] = true;
+            callStack.push(root);
+
+            while (!callStack.isEmpty()) {
+                int node = callStack.peek();
+                if (edge[node] < deps[node].length) {
+                    // visit the next dependency of node
+                    int dep = deps[node][edge[node]++];
+                    if (index[dep] == -1) {
+                        index[dep] = low[dep] = next++;
+                        compStack.push(dep);
+                        onStack[dep] = true;
+                        callStack.push(dep);
+                    } else if (onStack[dep]) {
+                        low[node] = Math.min(low[node], index[dep]);
+                    }
+                } else {
+                    // all dependencies of node visited, return to caller
+                    callStack.pop();
+                    if (!callStack.isEmpty()) {
+                        int caller = callStack.peek();
+                        low[caller] = Math.min(low[caller], low[node]);
+                    }
+                    // node is the root of a component
+                    if (low[node] == index[node]) {
+                        List<String> comp = new ArrayList<>();
+                        int member;
+                        do {
+                            member = compStack.pop();
+                            onStack[member] = false;
+                            comp.add(containers.get(member).getName());
+                        } while (member != node);
+                        // check if component is a circular dependency
+                        if (comp.size() > 1 || requiresItself(deps, node)) {
+                            Collections.reverse(comp);
+                            cycles.add(comp);
+                        }
+                    }
                 }
             }
         }
-        return found;
+    }
+
+    /**
+     * Checks if a container declares itself as a dependency.
+     *
+     * @param deps the adjacency lists of the dependency graph.
+     * @param node the container index.
+     * @return true if the container requires itself.
+     */
+    private static boolean requiresItself(int[][] deps, int node) {
+        for (int dep : deps[node]) {
+            if (dep == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p>
+     * Sorts the containers topologically with Kahn's algorithm.
+     * <p>
+     * Computes the start order, the depth level of every container and the
+     * critical path. The dependency graph must be acyclic.
+     *
+     * @param deps the adjacency lists of the dependency graph.
+     */
+    private void sortTopologically(int[][] deps) {
+        int size = deps.length;
+        // the number of unresolved dependencies of every container
+        int[] inDegree = new int[size];
+        // the containers that require every container
+        List<List<Integer>> dependents = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            dependents.add(new ArrayList<>());
+        }
+        for (int i = 0; i < size; i++) {
+            inDegree[i] = deps[i].length;
+            for (int dep : deps[i]) {
+                dependents.get(dep).add(i);
+            }
+        }
+        // the depth level of every container
+        int[] level = new int[size];
+        // the dependency of every container on the critical path
+        int[] prev = new int[size];
+        Arrays.fill(prev, -1);
+        // containers with all dependencies resolved
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            if (inDegree[i] == 0) {
+                ready.add(i);
+            }
+        }
+        // the last container of the critical path
+        int last = -1;
+
+        while (!ready.isEmpty()) {
+            int node = ready.poll();
+            String name = containers.get(node).getName();
+            // add to start order and depth level
+            startOrder.add(name);
+            while (levels.size() <= level[node]) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(level[node]).add(name);
+            // keep the deepest container
+            if (last == -1 || level[node] > level[last]) {
+                last = node;
+            }
+            // resolve the dependency for every dependent
+            for (int dependent : dependents.get(node)) {
+                if (level[node] + 1 > level[dependent]) {
+                    level[dependent] = level[node] + 1;
+                    prev[dependent] = node;
+                }
+                if (--inDegree[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        // follow the chain backwards to create the critical path
+        for (int node = last; node != -1; node = prev[node]) {
+            criticalPath.add(containers.get(node).getName());
+        }
+        Collections.reverse(criticalPath);
+    }
+
+    /**
+     *
+     * @return the circular dependencies found. Every element is a list with the
+     * names of the containers that form the cycle.
+     */
+    public List<List<String>> getCycles() {
+        return Collections.unmodifiableList(cycles);
+    }
+
+    /**
+     *
+     * @return the dependencies on undeclared containers found. Every element
+     * is a 2-element array. Element [0] -> name of the container. Element [1]
+     * -> name of the undeclared container it requires.
+     */
+    public List<String[]> getUndeclared() {
+        return Collections.unmodifiableList(undeclared);
+    }
+
+    /**
+     *
+     * @return the container names in the order they must be started. Empty if
+     * a circular or undeclared dependency was found.
+     */
+    public List<String> getStartOrder() {
+        return Collections.unmodifiableList(startOrder);
+    }
+
+    /**
+     *
+     * @return the container names grouped by depth level. Empty if a circular
+     * or undeclared dependency was found.
+     */
+    public List<List<String>> getLevels() {
+        return Collections.unmodifiableList(levels);
+    }
+
+    /**
+     *
+     * @return a map with K=container name and V=depth level of the container.
+     */
+    public Map<String, Integer> getDepthLevels() {
+        Map<String, Integer> depthLevels = new LinkedHashMap<>();
+        for (int i = 0; i < levels.size(); i++) {
+            for (String name : levels.get(i)) {
+                depthLevels.put(name, i);
+            }
+        }
+        return depthLevels;
+    }
+
+    /**
+     *
+     * @return the longest dependency chain, starting from a container without
+     * dependencies. Empty if a circular or undeclared dependency was found.
+     */
+    public List<String> getCriticalPath() {
+        return Collections.unmodifiableList(criticalPath);
     }
 }
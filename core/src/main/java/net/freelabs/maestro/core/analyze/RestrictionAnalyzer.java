@@ -18,6 +18,7 @@ package net.freelabs.maestro.core.analyze;
 
 import java.util.List;
 import net.freelabs.maestro.core.generated.Container;
+import net.freelabs.maestro.core.handler.ContainerHandler;
 
 /**
  *
@@ -34,6 +35,11 @@ public class RestrictionAnalyzer {
      * List of containers declared on schema.
      */
     private final List<Container> containers;
+    /**
+     * The container handler with the indexed containers, null if the analyzer
+     * was created with a list of containers.
+     */
+    private final ContainerHandler handler;
 
     /**
      * Constructor.
@@ -42,12 +48,26 @@ public class RestrictionAnalyzer {
      */
     public RestrictionAnalyzer(List<Container> containers) {
         this.containers = containers;
+        handler = null;
     }
 
     /**
-     * Analyzes declared container dependencies for circular dependencies.
+     * Constructor.
      *
-     * @return true if a circular dependency is found.
+     * @param handler the container handler with the indexed containers
+     * declared on schema.
+     */
+    public RestrictionAnalyzer(ContainerHandler handler) {
+        this.containers = handler.listContainers();
+        this.handler = handler;
+    }
+
+    /**
+     * Analyzes declared container dependencies for circular dependencies and
+     * dependencies on undeclared containers.
+     *
+     * @return true if a circular dependency or a dependency on an undeclared
+     * container is found.
      */
     public boolean detectCircularDependencies() {
         // create dependency analyzer
@@ -56,12 +76,36 @@ public class RestrictionAnalyzer {
         return depAnalyzer.analyzeDependencies();
     }
 
+    /**
+     * Returns the longest dependency chain of the application. Must be called
+     * after {@link #detectCircularDependencies() detectCircularDependencies}.
+     *
+     * @return the container names forming the critical path.
+     */
+    public List<String> getCriticalPath() {
+        return depAnalyzer.getCriticalPath();
+    }
+
+    /**
+     * Returns the container names grouped by depth level. Must be called after
+     * {@link #detectCircularDependencies() detectCircularDependencies}.
+     *
+     * @return the depth levels of the application containers.
+     */
+    public List<List<String>> getDepLevels() {
+        return depAnalyzer.getLevels();
+    }
+
     /**
      * Detects duplicate container names.
      *
      * @return true if a duplicate container name is found.
      */
     public boolean detectDuplicateNames() {
+        // every name is indexed once, no duplicates if the index holds them all
+        if (handler != null && handler.getContainersByName().size() == handler.getNumOfCons()) {
+            return false;
+        }
         // create name analyzer
         ContainerNameAnalyzer nameAnalyzer = new ContainerNameAnalyzer(containers);
         // check for duplicate contaier names
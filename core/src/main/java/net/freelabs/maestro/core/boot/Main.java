@@ -22,11 +22,25 @@ import com.beust.jcommander.ParameterException;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import net.freelabs.maestro.core.boot.cl.CliOptions;
+import net.freelabs.maestro.core.cmd.CommandException;
+import net.freelabs.maestro.core.cmd.ReconcileCmd;
+import net.freelabs.maestro.core.daemon.Daemon;
+import net.freelabs.maestro.core.daemon.DaemonClient;
+import net.freelabs.maestro.core.docker.DockerEventListener;
+import net.freelabs.maestro.core.docker.DockerInitializer;
+import net.freelabs.maestro.core.zookeeper.ZkServiceState;
+import net.freelabs.maestro.core.zookeeper.ZkSessions;
 import org.apache.log4j.PropertyConfigurator;
+import org.apache.zookeeper.ZooKeeper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,6 +54,10 @@ public final class Main {
      * A Logger object.
      */
     private static final Logger LOG = LoggerFactory.getLogger(Main.class);
+    /**
+     * The name of the command that runs the program as a daemon.
+     */
+    private static final String DAEMON_CMD = "daemon";
 
     /**
      * Main.
@@ -54,10 +72,32 @@ public final class Main {
         args = inputArgs;
         //-------------------------------------------------------------------- 
 
+        // execute the command from the current working directory
+        boolean success = run(args, Paths.get(""), false);
+        if (!success) {
+            errExit();
+        }
+    }
+
+    /**
+     * <p>
+     * Parses the command line arguments and executes the command.
+     * <p>
+     * Relative paths are resolved against the working directory. From the
+     * command line, if a daemon port is configured the command is sent to the
+     * {@link Daemon Daemon}, and executed by the program only if the daemon is
+     * not running.
+     *
+     * @param args command line arguments.
+     * @param workDir the directory relative paths are resolved against.
+     * @param inDaemon true if the command is executed by the daemon.
+     * @return true if the command was executed without errors.
+     */
+    public static boolean run(String[] args, Path workDir, boolean inDaemon) {
         // create object that holds program's configuration
         ProgramConf pConf = new ProgramConf();
         // create commnad handler to execute commands
-        CommandHandler cmdExec = new CommandHandler(pConf);
+        CommandHandler cmdExec = new CommandHandler(pConf, inDaemon);
         // create object with supported command line parameters and commands
         CliOptions opts = new CliOptions();
         // create the command line parser, initialize with cli options-cmds defined
@@ -72,16 +112,24 @@ public final class Main {
         CliOptions.StopCmdOpt stopCmdOpt = opts.new StopCmdOpt();
         CliOptions.RestartCmdOpt restartCmdOpt = opts.new RestartCmdOpt();
         CliOptions.DeleteCmdOpt deleteCmdOpt = opts.new DeleteCmdOpt();
+        CliOptions.StatusCmdOpt statusCmdOpt = opts.new StatusCmdOpt();
+        CliOptions.ReconcileCmdOpt reconcileCmdOpt = opts.new ReconcileCmdOpt();
+        CliOptions.DaemonCmdOpt daemonCmdOpt = opts.new DaemonCmdOpt();
         // get command names
         String start = cmdExec.getStartCmd().getCmdName();
         String stop = cmdExec.getStopCmd().getCmdName();
         String restart = cmdExec.getRestartCmd().getCmdName();
         String delete = cmdExec.getDeleteCmd().getCmdName();
+        String status = cmdExec.getStatusCmd().getCmdName();
+        String reconcile = cmdExec.getReconcileCmd().getCmdName();
         // add commands defined to parser
         cl.addCommand(start, startCmdOpt);
         cl.addCommand(stop, stopCmdOpt);
         cl.addCommand(restart, restartCmdOpt);
         cl.addCommand(delete, deleteCmdOpt);
+        cl.addCommand(status, statusCmdOpt);
+        cl.addCommand(reconcile, reconcileCmdOpt);
+        cl.addCommand(DAEMON_CMD, daemonCmdOpt);
 
         // parse cli arguments
         try {
@@ -90,7 +138,7 @@ public final class Main {
             // show error msg
             System.err.print(e.getMessage() + ". See \'maestro --help\'");
             // exit
-            errExit();
+            return false;
         }
 
         // get the command, if any, entered by the user
@@ -101,14 +149,14 @@ public final class Main {
             boolean parsed = opts.parseDockerOpts();
             if (!parsed) {
                 // print usage
-                errExit();
+                return false;
             }
         }
         if (opts.getZkOptions() != null) {
             boolean parsed = opts.parseZkOpts();
             if (!parsed) {
                 // print usage
-                errExit();
+                return false;
             }
         }
 
@@ -127,19 +175,25 @@ public final class Main {
         pConf.setDockerRegistryPass(opts.getDockerRegPass());
         pConf.setDockerRegistryMail(opts.getDockerRegMail());
         // xml
-        pConf.setXmlSchemaPath(startCmdOpt.getSchema());
-        pConf.setXmlFilePath(startCmdOpt.getXml());
+        pConf.setXmlSchemaPath(resolve(workDir, startCmdOpt.getSchema()));
+        List<String> xmlFiles = resolve(workDir, startCmdOpt.getXml());
+        pConf.setXmlFilePath(xmlFiles.isEmpty() ? null : xmlFiles.get(0));
         // log
-        pConf.setLog4jPropertiesPath(opts.getLog4j());
+        pConf.setLog4jPropertiesPath(resolve(workDir, opts.getLog4j()));
+        // daemon
+        pConf.setDaemonPort(daemonCmdOpt.getPort());
 
         // if custom path for program configuration is set load values
         // only those not set by the uer
         if (opts.getConf() != null) {
-            pConf.loadFromFileUnset(opts.getConf());
+            pConf.loadFromFileUnset(resolve(workDir, opts.getConf()));
         } else {
             // load from current running path, if exists, options not set by user
-            pConf.loadFromFileUnset("");
+            pConf.loadFromFileUnset(resolve(workDir, ProgramConf.getPROPERTIES_FILE_NAME()));
         }
+        // resolve the paths loaded from the file
+        pConf.setXmlSchemaPath(resolve(workDir, pConf.getXmlSchemaPath()));
+        pConf.setXmlFilePath(resolve(workDir, pConf.getXmlFilePath()));
 
         if (opts.isHelp()) {
             // program help
@@ -147,77 +201,304 @@ public final class Main {
         } else if (opts.isVersion()) {
             // program version
             LOG.info("Maestro  v" + ProgramConf.getVERSION());
-        } else if (pConf.getLog4jPropertiesPath() == null) {
+        } else if (!inDaemon && pConf.getLog4jPropertiesPath() == null) {
             // no log4j.properties file
              java.util.logging.Logger.getLogger(Main.class.getName()).log(Level.SEVERE,
                      "FAILED to locate log4j.properties file. Check the program's .properties file and/or user input.");
-            errExit();
+            return false;
         } else {
-            // load log4j properties file to initialize logging
-            loadLod4jProperties(pConf.getLog4jPropertiesPath());
+            // load log4j properties file to initialize logging, once per program
+            if (!inDaemon) {
+                loadLod4jProperties(pConf.getLog4jPropertiesPath());
+            }
+            // send the command to the daemon, if configured and running
+            boolean cmdHelp = startCmdOpt.isHelp() || stopCmdOpt.isHelp() || restartCmdOpt.isHelp() || deleteCmdOpt.isHelp() || statusCmdOpt.isHelp()
+                    || reconcileCmdOpt.isHelp();
+            if (!inDaemon && pConf.getDaemonPort() != null && parsedCmd != null && !parsedCmd.equals(DAEMON_CMD) && !cmdHelp) {
+                int exitCode = new DaemonClient(pConf.getDaemonPort()).exec(args, workDir);
+                if (exitCode != DaemonClient.NOT_RUNNING) {
+                    return exitCode == 0;
+                }
+                LOG.warn("Executing command {} without the daemon.", parsedCmd);
+            }
 
-            if (parsedCmd.equals(start)) {
-                // start command
-                if (startCmdOpt.isHelp()) {
-                    cl.usage(start);
-                } else {
-                    // check if program configuration is complete
-                    boolean confInitialized = pConf.isConfInit();
-                    if (confInitialized) {
-                        // execute START command
-                        cmdExec.exec_start();
+            try {
+                if (parsedCmd.equals(start)) {
+                    // start command
+                    if (startCmdOpt.isHelp()) {
+                        cl.usage(start);
                     } else {
-                        LOG.error("Program configuration NOT initialized. Check the .properties file and/or user input.");
-                        errExit();
+                        // check if program configuration is complete
+                        boolean confInitialized = pConf.isConfInit();
+                        if (confInitialized && startCmdOpt.getResume() != null) {
+                            // resume a failed deployment
+                            cmdExec.getStartCmd().setResumeId(startCmdOpt.getResume());
+                            cmdExec.exec_start();
+                        } else if (confInitialized && xmlFiles.size() > 1) {
+                            // deploy the applications at the same time
+                            return cmdExec.exec_all(start, xmlFiles).isEmpty();
+                        } else if (confInitialized) {
+                            // execute START command
+                            cmdExec.exec_start();
+                        } else {
+                            LOG.error("Program configuration NOT initialized. Check the .properties file and/or user input.");
+                            return false;
+                        }
                     }
-                }
-            } else if (parsedCmd.equals(stop)) {
-                // stop command
-                if (stopCmdOpt.isHelp()) {
-                    cl.usage(stop);
-                } else {
-                    // check if program configuration is complete
-                    boolean confInitialized = pConf.isConfInit();
-                    if (confInitialized) {
-                        // execute STOP command
-                        cmdExec.exec_stop(stopCmdOpt.getArgs().get(0));
+                } else if (parsedCmd.equals(stop)) {
+                    // stop command
+                    if (stopCmdOpt.isHelp()) {
+                        cl.usage(stop);
                     } else {
-                        LOG.error("Program configuration NOT initialized. Check the .properties file and/or user input.");
-                        errExit();
+                        // check if program configuration is complete
+                        boolean confInitialized = pConf.isConfInit();
+                        if (confInitialized) {
+                            // the applications defined and selected
+                            List<String> targets = resolveTargets(cmdExec, stopCmdOpt.getArgs(), stopCmdOpt);
+                            if (targets == null) {
+                                return false;
+                            } else if (targets.size() > 1 || stopCmdOpt.getOlderThan() != null) {
+                                // stop the applications at the same time
+                                return cmdExec.exec_all(stop, targets).isEmpty();
+                            } else {
+                                // execute STOP command
+                                cmdExec.exec_stop(targets.get(0));
+                            }
+                        } else {
+                            LOG.error("Program configuration NOT initialized. Check the .properties file and/or user input.");
+                            return false;
+                        }
                     }
-                }
-            } else if (parsedCmd.equals(restart)) {
-                // restart command
-                if (restartCmdOpt.isHelp()) {
-                    cl.usage(restart);
-                } else {
-                    // check if program configuration is complete
-                    boolean confInitialized = pConf.isConfInit();
-                    if (confInitialized) {
-                        // execute RESTART command
-                        cmdExec.exec_restart(restartCmdOpt.getArgs().get(0));
+                } else if (parsedCmd.equals(restart)) {
+                    // restart command
+                    if (restartCmdOpt.isHelp()) {
+                        cl.usage(restart);
                     } else {
-                        LOG.error("Program configuration NOT initialized. Check the .properties file and/or user input.");
-                        errExit();
+                        // check if program configuration is complete
+                        boolean confInitialized = pConf.isConfInit();
+                        if (confInitialized) {
+                            // the applications defined and selected
+                            List<String> targets = resolveTargets(cmdExec, restartCmdOpt.getArgs(), restartCmdOpt);
+                            if (targets == null) {
+                                return false;
+                            } else if (targets.size() > 1 || restartCmdOpt.getOlderThan() != null) {
+                                // restart the applications at the same time
+                                return cmdExec.exec_all(restart, targets).isEmpty();
+                            } else {
+                                // execute RESTART command
+                                cmdExec.exec_restart(targets.get(0));
+                            }
+                        } else {
+                            LOG.error("Program configuration NOT initialized. Check the .properties file and/or user input.");
+                            return false;
+                        }
                     }
-                }
-            } else if (parsedCmd.equals(delete)) {
-                // delete command
-                if (deleteCmdOpt.isHelp()) {
-                    cl.usage(delete);
-                } else {
-                    // check if program configuration is complete
-                    boolean confInitialized = pConf.isConfInit();
-                    if (confInitialized) {
-                        // execute DELETE command
-                        cmdExec.exec_delete(deleteCmdOpt.getArgs().get(0));
+                } else if (parsedCmd.equals(delete)) {
+                    // delete command
+                    if (deleteCmdOpt.isHelp()) {
+                        cl.usage(delete);
+                    } else {
+                        // check if program configuration is complete
+                        boolean confInitialized = pConf.isConfInit();
+                        if (confInitialized) {
+                            // the applications defined and selected
+                            List<String> targets = resolveTargets(cmdExec, deleteCmdOpt.getArgs(), deleteCmdOpt);
+                            if (targets == null) {
+                                return false;
+                            } else if (targets.size() > 1 || deleteCmdOpt.getOlderThan() != null) {
+                                // delete the applications at the same time
+                                return cmdExec.exec_all(delete, targets).isEmpty();
+                            } else {
+                                // execute DELETE command
+                                cmdExec.exec_delete(targets.get(0));
+                            }
+                        } else {
+                            LOG.error("Program configuration NOT initialized. Check the .properties file and/or user input.");
+                            return false;
+                        }
+                    }
+                } else if (parsedCmd.equals(status)) {
+                    // status command
+                    if (statusCmdOpt.isHelp()) {
+                        cl.usage(status);
+                    } else {
+                        // check if program configuration is complete
+                        boolean confInitialized = pConf.isConfInit();
+                        if (confInitialized) {
+                            // execute STATUS command
+                            cmdExec.getStatusCmd().setWatch(statusCmdOpt.isWatch());
+                            cmdExec.exec_status(statusCmdOpt.getArgs().toArray(new String[0]));
+                        } else {
+                            LOG.error("Program configuration NOT initialized. Check the .properties file and/or user input.");
+                            return false;
+                        }
+                    }
+                } else if (parsedCmd.equals(reconcile)) {
+                    // reconcile command
+                    if (reconcileCmdOpt.isHelp()) {
+                        cl.usage(reconcile);
                     } else {
-                        LOG.error("Program configuration NOT initialized. Check the .properties file and/or user input.");
-                        errExit();
+                        // check if program configuration is complete
+                        boolean confInitialized = pConf.isConfInit();
+                        if (!confInitialized) {
+                            LOG.error("Program configuration NOT initialized. Check the .properties file and/or user input.");
+                            return false;
+                        } else if (!isPositive(reconcileCmdOpt.getInterval()) || !isPositive(reconcileCmdOpt.getJobs())
+                                || !isPositive(reconcileCmdOpt.getRate())) {
+                            LOG.error("Interval, jobs and rate must be positive numbers.");
+                            return false;
+                        } else {
+                            // execute RECONCILE command
+                            ReconcileCmd reconcileCmd = cmdExec.getReconcileCmd();
+                            reconcileCmd.setDryRun(reconcileCmdOpt.isDryRun());
+                            reconcileCmd.setInterval(reconcileCmdOpt.getInterval());
+                            if (reconcileCmdOpt.getJobs() != null) {
+                                reconcileCmd.setMaxActions(reconcileCmdOpt.getJobs());
+                            }
+                            if (reconcileCmdOpt.getRate() != null) {
+                                reconcileCmd.setActionRate(reconcileCmdOpt.getRate());
+                            }
+                            cmdExec.exec_reconcile();
+                        }
+                    }
+                } else if (parsedCmd.equals(DAEMON_CMD)) {
+                    // daemon command
+                    if (daemonCmdOpt.isHelp()) {
+                        cl.usage(DAEMON_CMD);
+                    } else if (inDaemon) {
+                        LOG.error("Daemon already running.");
+                        return false;
+                    } else {
+                        // run as a daemon until the program is terminated
+                        return runDaemon(pConf);
                     }
                 }
+            } catch (CommandException ex) {
+                // the command ended with errors in the daemon
+                LOG.error(ex.getMessage());
+                return false;
             }
         }
+        return true;
+    }
+
+    /**
+     * Resolves the applications that a command acts on, the applications
+     * defined by id and the applications selected by age.
+     *
+     * @param cmdExec the handler of the commands.
+     * @param appIds the ids of the applications defined.
+     * @param selectOpt the selection options of the command.
+     * @return the ids of the applications or null on error.
+     */
+    private static List<String> resolveTargets(CommandHandler cmdExec, List<String> appIds, CliOptions.AppSelectOpt selectOpt) {
+        if (selectOpt.getJobs() != null) {
+            if (selectOpt.getJobs() < 1) {
+                LOG.error("Invalid number of jobs: {}.", selectOpt.getJobs());
+                return null;
+            }
+            cmdExec.setMaxApps(selectOpt.getJobs());
+        }
+        // a negative age puts the cutoff in the future and selects every application
+        if (selectOpt.getOlderThan() != null && selectOpt.getOlderThan() < 0) {
+            LOG.error("Invalid number of hours: {}.", selectOpt.getOlderThan());
+            return null;
+        }
+        List<String> targets = new ArrayList<>(appIds);
+        if (selectOpt.getOlderThan() != null) {
+            List<String> selected = cmdExec.selectApps(selectOpt.getOlderThan(), TimeUnit.HOURS);
+            if (selected == null) {
+                return null;
+            }
+            selected.stream().filter((appId) -> !targets.contains(appId)).forEach(targets::add);
+        } else if (targets.isEmpty()) {
+            LOG.error("No application defined. See \'maestro --help\'.");
+            return null;
+        }
+        return targets;
+    }
+
+    /**
+     *
+     * @param num an optional number.
+     * @return true if the number is not set or is positive.
+     */
+    private static boolean isPositive(Integer num) {
+        return num == null || num > 0;
+    }
+
+    /**
+     * Runs the program as a {@link Daemon Daemon}, until the program is
+     * terminated.
+     *
+     * @param pConf the configuration of the program.
+     * @return false if the daemon could not be started.
+     */
+    private static boolean runDaemon(ProgramConf pConf) {
+        int port = pConf.getDaemonPort() != null ? pConf.getDaemonPort() : Daemon.DEFAULT_PORT;
+        Daemon daemon = new Daemon(port);
+        if (!daemon.start()) {
+            return false;
+        }
+        // map the events of the containers to the state of the services
+        DockerEventListener events = null;
+        ZooKeeper zk = null;
+        if (pConf.getZkHosts() != null && pConf.getDockerHost() != null) {
+            try {
+                zk = ZkSessions.acquire(pConf.getZkHosts(), pConf.getZkSessionTimeout());
+                events = DockerEventListener.acquire(new DockerInitializer(pConf.getDockerConf()).getDockerClient());
+                events.addHandler(new ZkServiceState(zk, pConf.getZkHosts(), pConf.getZkSessionTimeout()));
+            } catch (IOException | RuntimeException ex) {
+                LOG.warn("Container events NOT mapped to service state: {}", ex.getMessage());
+            } catch (InterruptedException ex) {
+                LOG.warn("Thread Interrupted. Stopping.");
+                Thread.currentThread().interrupt();
+            }
+        }
+        daemon.waitForShutdown();
+        if (events != null) {
+            DockerEventListener.release(events);
+        }
+        if (zk != null) {
+            try {
+                ZkSessions.release(zk);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves a path against the working directory.
+     *
+     * @param workDir the working directory.
+     * @param path the path to resolve.
+     * @return the resolved path, the path itself if absolute. Null if the path
+     * is not set.
+     */
+    private static String resolve(Path workDir, String path) {
+        if (path == null) {
+            return null;
+        }
+        return workDir.resolve(path).toString();
+    }
+
+    /**
+     * Resolves paths against the working directory.
+     *
+     * @param workDir the working directory.
+     * @param paths the paths to resolve, may be null.
+     * @return the resolved paths. An empty list if no paths are set.
+     */
+    private static List<String> resolve(Path workDir, List<String> paths) {
+        List<String> resolved = new ArrayList<>();
+        if (paths != null) {
+            paths.stream().forEach((path) -> {
+                resolved.add(resolve(workDir, path));
+            });
+        }
+        return resolved;
     }
 
     /**
@@ -52,8 +52,13 @@ public final class ProgramConf {
     private String dockerRegistryUser;
     private String dockerRegistryPass;
     private String dockerRegistryMail;
+    // network conf
+    private Boolean netDnsDiscovery;
+    private Boolean netPerTier;
     // log4j conf
     private String log4jPropertiesPath;
+
+    private Integer daemonPort;
     // program general conf
     private static final String PROPERTIES_FILE_NAME = "maestro.properties";
     private static final String PROGRAM_NAME = "maestro";
@@ -123,9 +128,18 @@ public final class ProgramConf {
             if (dockerRegistryMail == null) {
                 dockerRegistryMail = prop.getProperty("docker.registry.email");
             }
+            if (netDnsDiscovery == null) {
+                netDnsDiscovery = Boolean.parseBoolean(prop.getProperty("network.dns.discovery", "true"));
+            }
+            if (netPerTier == null) {
+                netPerTier = Boolean.parseBoolean(prop.getProperty("network.per.tier"));
+            }
             if (log4jPropertiesPath == null) {
                 log4jPropertiesPath = prop.getProperty("log4j.properties.path");
             }
+            if (daemonPort == null) {
+                daemonPort = parsePort(prop.getProperty("daemon.port"));
+            }
         } catch (IOException ex) {
             loaded = false;
         }
@@ -170,13 +184,29 @@ public final class ProgramConf {
             dockerRegistryUser = prop.getProperty("docker.registry.username");
             dockerRegistryPass = prop.getProperty("docker.registry.password");
             dockerRegistryMail = prop.getProperty("docker.registry.email");
+            netDnsDiscovery = Boolean.parseBoolean(prop.getProperty("network.dns.discovery", "true"));
+            netPerTier = Boolean.parseBoolean(prop.getProperty("network.per.tier"));
             log4jPropertiesPath = prop.getProperty("log4j.properties.path");
+            daemonPort = parsePort(prop.getProperty("daemon.port"));
         } catch (IOException ex) {
             loaded = false;
         }
         return loaded;
     }
 
+    /**
+     * Parses an optional port property.
+     *
+     * @param value the value of the property.
+     * @return the port or null if the property is not set.
+     */
+    private Integer parsePort(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return Integer.parseInt(value.trim());
+    }
+
     /**
      * Check if program's configuration fields where all initialized.
      *
@@ -336,10 +366,46 @@ public final class ProgramConf {
         return VERSION;
     }
 
+    public static String getPROPERTIES_FILE_NAME() {
+        return PROPERTIES_FILE_NAME;
+    }
+
     public static String getPROGRAM_NAME() {
         return PROGRAM_NAME;
     }
 
+    /**
+     *
+     * @return true if services are discovered through their network alias
+     * (DNS name) instead of their IP. Defaults to true.
+     */
+    public Boolean getNetDnsDiscovery() {
+        if (netDnsDiscovery == null) {
+            netDnsDiscovery = true;
+        }
+        return netDnsDiscovery;
+    }
+
+    public void setNetDnsDiscovery(Boolean netDnsDiscovery) {
+        this.netDnsDiscovery = netDnsDiscovery;
+    }
+
+    /**
+     *
+     * @return true if a separate network is created for every container type
+     * (tier). Defaults to false.
+     */
+    public Boolean getNetPerTier() {
+        if (netPerTier == null) {
+            netPerTier = false;
+        }
+        return netPerTier;
+    }
+
+    public void setNetPerTier(Boolean netPerTier) {
+        this.netPerTier = netPerTier;
+    }
+
     public Boolean getDockerTlsVerify() {
         return dockerTlsVerify;
     }
@@ -411,4 +477,17 @@ public final class ProgramConf {
     public void setLog4jPropertiesPath(String log4jPropertiesPath) {
         this.log4jPropertiesPath = log4jPropertiesPath;
     }
+
+    /**
+     *
+     * @return the localhost port of the daemon that executes the commands.
+     * Null if commands are executed by the program itself.
+     */
+    public Integer getDaemonPort() {
+        return daemonPort;
+    }
+
+    public void setDaemonPort(Integer daemonPort) {
+        this.daemonPort = daemonPort;
+    }
 }
@@ -19,6 +19,7 @@ package net.freelabs.maestro.core.boot.cl;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import com.beust.jcommander.converters.CommaParameterSplitter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import net.freelabs.maestro.core.boot.Main;
@@ -104,8 +105,13 @@ public class CliOptions {
         @Parameter(names = {"-s", "--xmlSchema"}, description = "<schema file> Path to xml schema file.", required = false)
         private String schema;
 
-        @Parameter(names = {"-x", "--xmlFile"}, description = "<app xml file> Path to application description xml file.", required = false)
-        private String xml;
+        @Parameter(names = {"-x", "--xmlFile"}, description = "<app xml file> Path to application description xml file. "
+                + "Repeat to deploy many applications at the same time.", required = false)
+        private List<String> xml;
+
+        @Parameter(names = {"-r", "--resume"}, description = "<appId> Resume the failed deployment of an application. "
+                + "Only the services that did not complete deployment are deployed again.", required = false)
+        private String resume;
 
         // Getters
         public boolean isHelp() {
@@ -119,20 +125,45 @@ public class CliOptions {
             return schema;
         }
 
-        public String getXml() {
+        public List<String> getXml() {
             return xml;
         }
+
+        public String getResume() {
+            return resume;
+        }
+    }
+
+    // options of the commands that act on many deployed applications
+    public abstract class AppSelectOpt {
+
+        @Parameter(names = {"-o", "--older-than"}, description = "<hours> Also select the registered applications "
+                + "deployed more than <hours> hours ago.", required = false)
+        private Integer olderThan;
+
+        @Parameter(names = {"-j", "--jobs"}, description = "<num> The maximum number of applications handled "
+                + "at the same time.", required = false)
+        private Integer jobs;
+
+        // Getters
+        public Integer getOlderThan() {
+            return olderThan;
+        }
+
+        public Integer getJobs() {
+            return jobs;
+        }
     }
 
     // stop command
     @Parameters(commandDescription = "Stop deployed application.")
-    public class StopCmdOpt {
+    public class StopCmdOpt extends AppSelectOpt {
 
         @Parameter(names = {"-h", "--help"}, description = "Help for stop command.", help = true)
         private Boolean help;
 
-        @Parameter(description = "<appId> The Id of the deployed application to stop.", required = true)
-        private List<String> args;
+        @Parameter(description = "[<appId>...] The Ids of the deployed applications to stop.", required = false)
+        private List<String> args = new ArrayList<>();
 
         // Getters
         public boolean isHelp() {
@@ -149,13 +180,13 @@ public class CliOptions {
 
     // restart command
     @Parameters(commandDescription = "Restart deployed application.")
-    public class RestartCmdOpt {
+    public class RestartCmdOpt extends AppSelectOpt {
 
         @Parameter(names = {"-h", "--help"}, description = "Help for restart command.", help = true)
         private Boolean help;
 
-        @Parameter(description = "<appId> The Id of the deployed application to restart.", required = true)
-        private List<String> args;
+        @Parameter(description = "[<appId>...] The Ids of the deployed applications to restart.", required = false)
+        private List<String> args = new ArrayList<>();
 
         // Getters
         public boolean isHelp() {
@@ -172,13 +203,13 @@ public class CliOptions {
 
     // delete command
     @Parameters(commandDescription = "Delete deployed application (zookeeper namespace and docker containers).")
-    public class DeleteCmdOpt {
+    public class DeleteCmdOpt extends AppSelectOpt {
 
         @Parameter(names = {"-h", "--help"}, description = "Help for delete command.", help = true)
         private Boolean help;
 
-        @Parameter(description = "<appId> The Id of the deployed application to delete.", required = true)
-        private List<String> args;
+        @Parameter(description = "[<appId>...] The Ids of the deployed applications to delete.", required = false)
+        private List<String> args = new ArrayList<>();
 
         // Getters
         public boolean isHelp() {
@@ -193,6 +224,110 @@ public class CliOptions {
         }
     }
 
+    // status command
+    @Parameters(commandDescription = "Show the state of the services of deployed applications.")
+    public class StatusCmdOpt {
+
+        @Parameter(names = {"-h", "--help"}, description = "Help for status command.", help = true)
+        private Boolean help;
+
+        @Parameter(names = {"-w", "--watch"}, description = "Show the state again on every change.", required = false)
+        private Boolean watch;
+
+        @Parameter(description = "[<appId>...] The Ids of the deployed applications. All if omitted.", required = false)
+        private List<String> args = new ArrayList<>();
+
+        // Getters
+        public boolean isHelp() {
+            if (help == null) {
+                help = false;
+            }
+            return this.help;
+        }
+
+        public boolean isWatch() {
+            if (watch == null) {
+                watch = false;
+            }
+            return this.watch;
+        }
+
+        public List<String> getArgs() {
+            return args;
+        }
+    }
+
+    // reconcile command
+    @Parameters(commandDescription = "Compare the deployed applications with the docker host and converge the differences.")
+    public class ReconcileCmdOpt {
+
+        @Parameter(names = {"-h", "--help"}, description = "Help for reconcile command.", help = true)
+        private Boolean help;
+
+        @Parameter(names = {"-n", "--dry-run"}, description = "Only report the differences.", required = false)
+        private Boolean dryRun;
+
+        @Parameter(names = {"-i", "--interval"}, description = "<seconds> Reconcile again every <seconds> seconds, "
+                + "until the program is terminated.", required = false)
+        private Integer interval;
+
+        @Parameter(names = {"-j", "--jobs"}, description = "<num> The maximum number of actions run at the same time.", required = false)
+        private Integer jobs;
+
+        @Parameter(names = {"-r", "--rate"}, description = "<num> The maximum number of actions started per second.", required = false)
+        private Integer rate;
+
+        // Getters
+        public boolean isHelp() {
+            if (help == null) {
+                help = false;
+            }
+            return this.help;
+        }
+
+        public boolean isDryRun() {
+            if (dryRun == null) {
+                dryRun = false;
+            }
+            return this.dryRun;
+        }
+
+        public Integer getInterval() {
+            return interval;
+        }
+
+        public Integer getJobs() {
+            return jobs;
+        }
+
+        public Integer getRate() {
+            return rate;
+        }
+    }
+
+    // daemon command
+    @Parameters(commandDescription = "Run as a daemon that executes commands sent to a localhost port.")
+    public class DaemonCmdOpt {
+
+        @Parameter(names = {"-h", "--help"}, description = "Help for daemon command.", help = true)
+        private Boolean help;
+
+        @Parameter(names = {"-p", "--port"}, description = "<port> The localhost port to listen to for commands.", required = false)
+        private Integer port;
+
+        // Getters
+        public boolean isHelp() {
+            if (help == null) {
+                help = false;
+            }
+            return this.help;
+        }
+
+        public Integer getPort() {
+            return port;
+        }
+    }
+
     // --------------------------- Processing ---------------------------
     public boolean parseZkOpts() {
         boolean parsedOptions = true;
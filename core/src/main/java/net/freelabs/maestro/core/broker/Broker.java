@@ -17,6 +17,7 @@
 package net.freelabs.maestro.core.broker;
 
 import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.CreateContainerCmd;
 import com.github.dockerjava.api.command.CreateContainerResponse;
 import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.github.dockerjava.api.exception.ConflictException;
@@ -30,22 +31,37 @@ import com.github.dockerjava.api.model.Ports.Binding;
 import com.github.dockerjava.api.model.Volume;
 import com.github.dockerjava.api.model.VolumesFrom;
 import com.github.dockerjava.core.command.PullImageResultCallback;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.xml.bind.JAXBException;
+import net.freelabs.maestro.core.docker.CpuPinner;
+import net.freelabs.maestro.core.docker.DockerDispatcher;
+import net.freelabs.maestro.core.docker.DockerEventListener;
 import net.freelabs.maestro.core.generated.BindMnt;
 import net.freelabs.maestro.core.generated.Container;
 import net.freelabs.maestro.core.generated.Docker;
 import net.freelabs.maestro.core.generated.ExposePort;
 import net.freelabs.maestro.core.generated.Protocol;
 import net.freelabs.maestro.core.generated.PublishPort;
+import net.freelabs.maestro.core.generated.Resources;
 import net.freelabs.maestro.core.handler.NetworkHandler;
+import net.freelabs.maestro.core.serializer.EnvSerializer;
 import net.freelabs.maestro.core.serializer.JAXBSerializer;
+import net.freelabs.maestro.core.utils.LogContext;
 import net.freelabs.maestro.core.zookeeper.ZkConf;
 import net.freelabs.maestro.core.zookeeper.ZkMaster;
 import net.freelabs.maestro.core.zookeeper.ZkNode;
@@ -118,6 +134,11 @@ public abstract class Broker implements ContainerLifecycle {
      * Handles requests and interaction with zookeeper.
      */
     private final ZkMaster zkMaster;
+    /**
+     * Shares the docker host with the other applications deployed at the same
+     * time.
+     */
+    private final DockerDispatcher dispatcher = DockerDispatcher.getInstance();
     /**
      * Flag for errors from zookeeper operations.
      */
@@ -134,12 +155,45 @@ public abstract class Broker implements ContainerLifecycle {
      * The path of the .jar file to execute the Broker in the container.
      */
     private static final String BROKER_JAR_IN_CONTAINER = "/opt/maestro/bin/broker.jar";
+    /**
+     * Label of the containers with the id of the application.
+     */
+    public static final String APP_LABEL = "net.freelabs.maestro.app";
+    /**
+     * Label of the containers with the defined name of the service.
+     */
+    public static final String SERVICE_LABEL = "net.freelabs.maestro.service";
+    /**
+     * Checkpoint of a container that was created and started.
+     */
+    public static final String CHECKPOINT_BOOTED = "BOOTED";
+    /**
+     * Checkpoint of a container that completed deployment.
+     */
+    public static final String CHECKPOINT_DEPLOYED = "DEPLOYED";
+    /**
+     * Checkpoint of a container that was stopped on purpose.
+     */
+    public static final String CHECKPOINT_STOPPED = "STOPPED";
     /**
      * Time that services are waited to stop.
      */
     private static final long SERVICES_TIMEOUT = 2;
 
     private static final TimeUnit SERVICES_TIMEOUT_UNIT = TimeUnit.MINUTES;
+    /**
+     * Time that every service is waited to stop, before its container is
+     * stopped by force.
+     */
+    private static final long SRV_STOP_TIMEOUT = 30;
+
+    private static final TimeUnit SRV_STOP_TIMEOUT_UNIT = TimeUnit.SECONDS;
+    /**
+     * Time (seconds) that the start event of a restarted container is waited.
+     * The restart request returns after the container started, so the event
+     * is expected without delay.
+     */
+    private static final long RESTART_EVENT_TIMEOUT = 10;
 
     /**
      * Handles errors.
@@ -182,6 +236,76 @@ public abstract class Broker implements ContainerLifecycle {
         boolean success = false;
         // create configration to initialize parameters
         createContainerEnv();
+        // wait for a turn on the docker host, shared with other applications
+        String cid = null;
+        if (dispatcher.acquire(zkConf.getRoot().getName())) {
+            try {
+                cid = bootContainer();
+            } finally {
+                dispatcher.release();
+            }
+        }
+        if (cid != null) {
+            checkpoint(CHECKPOINT_BOOTED);
+            // get container IP
+            success = onPostStart(cid);
+        }
+        if (success) {
+            checkpoint(CHECKPOINT_DEPLOYED);
+        } else {
+            shutdown();
+        }
+        return success;
+    }
+
+    /**
+     * <p>
+     * Runs the resume state for the Broker. A container that completed
+     * deployment and is running is left as it is. Otherwise, any partial
+     * deployment of the container is removed and the start state is run.
+     *
+     * @return true if there were no errors during execution.
+     */
+    public boolean onResume() {
+        String deplName = zkConf.getDeplCons().get(con.getName());
+        // keep the container if deployed and running
+        if (CHECKPOINT_DEPLOYED.equals(zkMaster.getCheckpoint(con.getName()))
+                && !getRunningCons(Collections.singletonMap(con.getName(), deplName)).isEmpty()) {
+            LOG.info("Service {} is deployed. Skipping.", con.getName());
+            return true;
+        }
+        LOG.info("Resuming deployment of service {}...", con.getName());
+        // remove the partial deployment of the container
+        if (!deleteContainer(deplName, con.getName())) {
+            return false;
+        }
+        zkMaster.deleteNode(zNode.getConfNodePath(), -1);
+        // the ephemeral zNodes of the removed container outlive it until its session expires
+        zkMaster.deleteNode(zNode.getPath(), -1);
+        zkMaster.deleteNode(zkConf.getServices().getPath() + "/" + con.getName(), -1);
+        // deploy the container from the start
+        return onStart();
+    }
+
+    /**
+     * Saves the deployment progress of the container, if the application is
+     * deployed with checkpoints.
+     *
+     * @param stage the deployment stage reached by the container.
+     */
+    private void checkpoint(String stage) {
+        if (zkConf.getCheckpoints() != null) {
+            zkMaster.setCheckpoint(con.getName(), stage);
+        }
+    }
+
+    /**
+     * Creates and starts the container, attaches it to the networks of its
+     * dependencies and copies data to it.
+     *
+     * @return the id of the container. Null in case of error.
+     */
+    private String bootContainer() {
         // create container instance
         CreateContainerResponse container = createContainer();
         // check if container was created 
@@ -190,20 +314,18 @@ public abstract class Broker implements ContainerLifecycle {
             String cid = startContainer(container, con.getName());
             // check for errors
             if (cid != null) {
+                // attach to the networks of the dependencies, if any
+                boolean attached = attachToDependencyNets(cid);
                 // copy data, if any, to container
-                boolean copied = copyToContainer(cid);
+                boolean copied = attached && copyToContainer(cid);
                 if (copied) {
-                    // get container IP
-                    success = onPostStart(cid);
+                    return cid;
                 }
             } else {
                 LOG.error("FAILED to start container.");
             }
         }
-        if (!success) {
-            shutdown();
-        }
-        return success;
+        return null;
     }
 
     /**
@@ -236,25 +358,35 @@ public abstract class Broker implements ContainerLifecycle {
     }
 
     /**
-     * Attaches the container to a network.
+     * <p>
+     * Attaches the container to the tier networks of its dependencies, if
+     * networks per tier are used.
+     * <p>
+     * The container is attached with its defined name as network alias, so
+     * that the container and its dependencies can resolve each other by name.
      *
      * @param cid the container id.
-     * @param netId the network id.
-     * @return true if the container connected to application network
-     * successfully.
+     * @return true if the container connected to the networks successfully.
      */
-    private boolean attachToNetwork(String cid, String netId) {
-        LOG.info("Attaching container for service {} to network...", con.getName());
-        boolean success = false;
-        if (netId != null) {
-            try {
-                docker.connectToNetworkCmd()
-                        .withContainerId(cid)
-                        .withNetworkId(netId)
-                        .exec();
-                success = true;
-            } catch (Exception ex) {
-                LOG.error("Something went wrong: {}", ex);
+    private boolean attachToDependencyNets(String cid) {
+        boolean success = true;
+        // the network the container was created with
+        String conNetName = zkConf.getConNetName(con.getName());
+        // the networks of the dependencies
+        List<String> attached = new ArrayList<>();
+        for (String dep : con.getRequires()) {
+            if (!zkConf.getContainers().containsKey(dep)) {
+                continue;
+            }
+            String netName = zkConf.getConNetName(dep);
+            // attach only once to every network
+            if (!netName.equals(conNetName) && !attached.contains(netName)) {
+                LOG.info("Attaching container for service {} to network {}...", con.getName(), netName);
+                success = netHandler.connectToNetwork(cid, netName, con.getName());
+                if (!success) {
+                    break;
+                }
+                attached.add(netName);
             }
         }
         return success;
@@ -269,9 +401,20 @@ public abstract class Broker implements ContainerLifecycle {
      */
     public boolean onPostStart(String cid) {
         boolean success = false;
-        String IP = getContainerIP(cid);
+        String IP;
+        // resolve the container by its network alias or by its IP
+        if (zkConf.getpConf() == null || zkConf.getpConf().getNetDnsDiscovery()) {
+            // the alias is resolved by the docker DNS server, no inspect needed
+            IP = con.getName();
+        } else {
+            IP = getContainerIP(cid);
+        }
         // update container ip
         updateIP(IP);
+        // publish the environment of the container to its dependents
+        if (!publishEnv()) {
+            return false;
+        }
 
         try {
             LOG.info("Updating zookeeper configuration for service {}...", zNode.getName());
@@ -295,42 +438,53 @@ public abstract class Broker implements ContainerLifecycle {
         boolean success = false;
         // restart the container with the deployed name
         String deplName = zkConf.getDeplCons().get(con.getName());
-        boolean restarted = restartContainer(deplName, con.getName());
+        // wait for a turn on the docker host, shared with other applications
+        boolean restarted = false;
+        if (dispatcher.acquire(zkConf.getRoot().getName())) {
+            try {
+                restarted = restartContainer(deplName, con.getName());
+            } finally {
+                dispatcher.release();
+            }
+        }
 
         if (restarted) {
             // run post start state
             success = onPostStart(deplName);
         }
+        if (success) {
+            checkpoint(CHECKPOINT_DEPLOYED);
+        }
         return success;
     }
 
     public boolean onStop() {
         boolean success = false;
-        // register watch to services
-        List<String> services = zkMaster.watchServices();
+        // get running services
+        List<String> services = zkMaster.listServices();
         // if no error
         if (services != null) {
             // if no services
             if (!services.isEmpty()) {
-                // create shutdown node
-                zkMaster.signalAppShutdown();
-                // if shutdown node was created without errors
-                if (!zkMaster.isMasterError()) {
-                    // wait services to stop
-                    boolean  stoppedSrvsWithoutError = zkMaster.waitServicesToStop(services, SERVICES_TIMEOUT, SERVICES_TIMEOUT_UNIT);
-                    // check for running containers
-                    Map<String, String> runningCons = getRunningCons(zkConf.getDeplCons());
-                    // if containers still running force stop
-                    boolean stoppedContainersWithoutError = true;
-                    if (!runningCons.isEmpty()) {
-                        stoppedContainersWithoutError = stopRunningCons(runningCons);
-                    }
-                    // check that running cons stopped successfully
-                    if (stoppedContainersWithoutError) {
-                        LOG.info("All Containers stopped.");
-                    }
-                    success = stoppedContainersWithoutError && stoppedSrvsWithoutError;
+                boolean stoppedSrvsWithoutError;
+                // configurations without dependencies are stopped all at once
+                if (zkConf.getConRequires() != null) {
+                    stoppedSrvsWithoutError = stopSrvsInOrder(services);
+                } else {
+                    stoppedSrvsWithoutError = stopSrvsAtOnce();
                 }
+                // check for running containers
+                Map<String, String> runningCons = getRunningCons(zkConf.getDeplCons());
+                // if containers still running force stop
+                boolean stoppedContainersWithoutError = true;
+                if (!runningCons.isEmpty()) {
+                    stoppedContainersWithoutError = stopRunningCons(runningCons);
+                }
+                // check that running cons stopped successfully
+                if (stoppedContainersWithoutError) {
+                    LOG.info("All Containers stopped.");
+                }
+                success = stoppedContainersWithoutError && stoppedSrvsWithoutError;
             } else {
                 LOG.info("All Services stopped.");
                 // check for running containers even though services are not running
@@ -352,6 +506,157 @@ public abstract class Broker implements ContainerLifecycle {
         return success;
     }
 
+    /**
+     * Signals all the services to stop at the same time and waits for them to
+     * stop.
+     *
+     * @return true if all services stopped without errors.
+     */
+    private boolean stopSrvsAtOnce() {
+        // register watch to services
+        List<String> services = zkMaster.watchServices();
+        // create shutdown node
+        zkMaster.signalAppShutdown();
+        // if shutdown node was created without errors wait services to stop
+        return !zkMaster.isMasterError()
+                && zkMaster.waitServicesToStop(services, SERVICES_TIMEOUT, SERVICES_TIMEOUT_UNIT);
+    }
+
+    /**
+     * <p>
+     * Stops the services in reverse dependency order.
+     * <p>
+     * The services are stopped in waves. A service is stopped after all the
+     * services that require it. The services of a wave are stopped in
+     * parallel, every service is given {@link #SRV_STOP_TIMEOUT
+     * SRV_STOP_TIMEOUT} to stop before its container is stopped by force. The
+     * total stop time is bounded by the depth of the dependency graph.
+     *
+     * @param services the running services.
+     * @return true if all services stopped without errors.
+     */
+    private boolean stopSrvsInOrder(List<String> services) {
+        boolean success = true;
+        List<List<String>> waves = getStopWaves(zkConf.getDeplCons().keySet());
+        for (int i = 0; i < waves.size(); i++) {
+            List<String> wave = waves.get(i);
+            LOG.info("Stopping services {} ({}/{})...", wave, i + 1, waves.size());
+            success = stopWave(wave, services) && success;
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Stops the services of a wave in parallel.
+     *
+     * @param wave the names of the services to stop.
+     * @param services the running services.
+     * @return true if all the services of the wave stopped without errors.
+     */
+    private boolean stopWave(List<String> wave, List<String> services) {
+        ExecutorService executor = Executors.newFixedThreadPool(wave.size());
+        List<Future<Boolean>> results = new ArrayList<>();
+        wave.stream().forEach((name) -> {
+            results.add(executor.submit(() -> stopService(name, services.contains(name))));
+        });
+        // do not allow new tasks, wait for running to finish
+        executor.shutdown();
+        boolean success = true;
+        for (Future<Boolean> result : results) {
+            try {
+                success = result.get(2 * SRV_STOP_TIMEOUT, SRV_STOP_TIMEOUT_UNIT) && success;
+            } catch (InterruptedException ex) {
+                LOG.warn("Thread Interrupted. Stopping.");
+                Thread.currentThread().interrupt();
+                success = false;
+                break;
+            } catch (ExecutionException | TimeoutException ex) {
+                LOG.error("Something went wrong: {}", ex.getMessage());
+                success = false;
+            }
+        }
+        executor.shutdownNow();
+        return success;
+    }
+
+    /**
+     * Signals a service to stop and waits for it to stop. If the service does
+     * not stop in time, or is not registered, its container is stopped by
+     * force.
+     *
+     * @param defName the defined name of the container of the service.
+     * @param running true if the service is registered to the naming service.
+     * @return true if the service stopped without errors.
+     */
+    private boolean stopService(String defName, boolean running) {
+        if (running) {
+            zkMaster.signalConShutdown(defName);
+            if (zkMaster.waitServiceToStop(defName, SRV_STOP_TIMEOUT, SRV_STOP_TIMEOUT_UNIT)) {
+                return true;
+            }
+            LOG.warn("Service {} did NOT stop in time.", defName);
+        }
+        // force stop the container if running
+        Map<String, String> runningCons = getRunningCons(Collections.singletonMap(defName, zkConf.getDeplCons().get(defName)));
+        return runningCons.isEmpty() || stopRunningCons(runningCons);
+    }
+
+    /**
+     * <p>
+     * Groups the containers to waves for stopping, with Kahn's algorithm on
+     * the reverse dependency graph.
+     * <p>
+     * The first wave holds the containers that no other container requires.
+     * Every next wave holds the containers whose dependents are all in
+     * previous waves. Containers that form a dependency cycle are placed
+     * together in a last wave.
+     *
+     * @param conNames the defined names of the containers.
+     * @return the waves of container names, in stop order.
+     */
+    private List<List<String>> getStopWaves(Set<String> conNames) {
+        // count the dependents of every container
+        Map<String, Integer> dependents = new HashMap<>();
+        conNames.stream().forEach((name) -> {
+            dependents.put(name, 0);
+        });
+        for (String name : conNames) {
+            for (String dep : zkConf.listConRequires(name)) {
+                if (dependents.containsKey(dep)) {
+                    dependents.merge(dep, 1, Integer::sum);
+                }
+            }
+        }
+        // the containers not yet placed in a wave
+        Set<String> pending = new HashSet<>(conNames);
+        List<String> wave = new ArrayList<>();
+        conNames.stream().filter((name) -> dependents.get(name) == 0).forEach(wave::add);
+
+        List<List<String>> waves = new ArrayList<>();
+        while (!wave.isEmpty()) {
+            waves.add(wave);
+            pending.removeAll(wave);
+            // a container is ready when all its dependents are placed
+            List<String> next = new ArrayList<>();
+            for (String name : wave) {
+                for (String dep : zkConf.listConRequires(name)) {
+                    if (pending.contains(dep) && dependents.merge(dep, -1, Integer::sum) == 0) {
+                        next.add(dep);
+                    }
+                }
+            }
+            wave = next;
+        }
+        if (!pending.isEmpty()) {
+            LOG.warn("Circular dependencies between services {}. Stopping them together.", pending);
+            waves.add(new ArrayList<>(pending));
+        }
+        return waves;
+    }
+
     /**
      * Gets a map with the defined-deployed container names of the containers
      * that are running.
@@ -409,9 +714,41 @@ public abstract class Broker implements ContainerLifecycle {
     }
 
     /**
-     * Updates the IP of the container.
+     * <p>
+     * Publishes the environment of the container to the resolved environment
+     * zNodes of the containers that require it.
+     * <p>
+     * Every dependent reads a single zNode with the prefixed environment of all
+     * its dependencies, instead of fetching and de-serializing the description
+     * of every dependency.
      *
-     * @param IP the container IP.
+     * @return true if the environment was published to all dependents.
+     */
+    private boolean publishEnv() {
+        boolean success = true;
+        Map<String, List<String>> conDependents = zkConf.getConDependents();
+        if (conDependents != null) {
+            List<String> dependents = conDependents.getOrDefault(con.getName(), new ArrayList<>());
+            if (!dependents.isEmpty()) {
+                LOG.info("Publishing environment of service {} to dependents: {}", con.getName(), dependents);
+                // prefix the environment with the container name
+                Map<String, String> env = EnvSerializer.prefixEnv(con.getName(), con.getEnv().createEnvMap());
+                for (String dependent : dependents) {
+                    success = zkMaster.mergeEnvNodeData(zkConf.getEnvNodePath(dependent), env) && success;
+                }
+                if (!success) {
+                    LOG.error("FAILED to publish environment of service {}.", con.getName());
+                }
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Updates the IP of the container. The IP may also be the network alias
+     * of the container, if services are discovered by DNS name.
+     *
+     * @param IP the container IP or network alias.
      */
     private void updateIP(String IP) {
         con.getEnv().setHost_IP(IP);
@@ -430,8 +767,8 @@ public abstract class Broker implements ContainerLifecycle {
         NetworkSettings settings = response.getNetworkSettings();
         // get Networks
         Map<String, NetworkSettings.Network> netMap = settings.getNetworks();
-        // return the cotnainer's IP  FROM THE DEFAULT APP NETWORK
-        String netName = zkConf.getAppDefaultNetName();
+        // return the cotnainer's IP FROM THE CONTAINER'S APP NETWORK
+        String netName = zkConf.getConNetName(con.getName());
         return netMap.get(netName).getIpAddress();
     }
 
@@ -449,7 +786,7 @@ public abstract class Broker implements ContainerLifecycle {
      * Callback object to be used with
      * {@link #createNode(String, byte[]) createNode} method.
      */
-    private final AsyncCallback.StringCallback createNodeCallback = new AsyncCallback.StringCallback() {
+    private final AsyncCallback.StringCallback createNodeCallback = LogContext.wrap(new AsyncCallback.StringCallback() {
         @Override
         public void processResult(int rc, String path, Object ctx, String name) {
             switch (KeeperException.Code.get(rc)) {
@@ -473,7 +810,7 @@ public abstract class Broker implements ContainerLifecycle {
                     shutdown();
             }
         }
-    };
+    });
 
     /**
      * Checks if a zNode is created.
@@ -489,7 +826,7 @@ public abstract class Broker implements ContainerLifecycle {
      * Callback object to be used with
      * {@link #checkNode(String, byte[]) checkNode} method.
      */
-    private final AsyncCallback.DataCallback checkNodeCallback = new AsyncCallback.DataCallback() {
+    private final AsyncCallback.DataCallback checkNodeCallback = LogContext.wrap(new AsyncCallback.DataCallback() {
         @Override
         public void processResult(int rc, String path, Object ctx, byte[] data, Stat stat) {
             switch (KeeperException.Code.get(rc)) {
@@ -521,7 +858,7 @@ public abstract class Broker implements ContainerLifecycle {
                     shutdown();
             }
         }
-    };
+    });
 
     public void waitForShutdown() {
         try {
@@ -550,11 +887,12 @@ public abstract class Broker implements ContainerLifecycle {
         String ZK_NAMING_SERVICE = zkConf.getServices().getPath();
         String SHUTDOWN_NODE = zkConf.getShutdown().getPath();
         String CONF_NODE = zNode.getConfNodePath();
+        String ENV_NODE = zkConf.getEnvNodePath(con.getName());
         // create a string with all the key-value pairs (env vars)
         conBootEnv = "";
         // set the arguments for the container boot command
-        conBootArgs = String.format("%s %s %s %s %s %s", ZK_HOSTS, ZK_SESSION_TIMEOUT,
-                ZK_CONTAINER_PATH, ZK_NAMING_SERVICE, SHUTDOWN_NODE, CONF_NODE);
+        conBootArgs = String.format("%s %s %s %s %s %s %s", ZK_HOSTS, ZK_SESSION_TIMEOUT,
+                ZK_CONTAINER_PATH, ZK_NAMING_SERVICE, SHUTDOWN_NODE, CONF_NODE, ENV_NODE);
         // create the boot command
 
         // FOR TESTING
@@ -577,8 +915,8 @@ public abstract class Broker implements ContainerLifecycle {
         String conCmd = conBootCmd;
         // env var passed
         String[] conEnvArr = conBootEnv.split(",");
-        // get network
-        String netName = zkConf.getAppDefaultNetName();
+        // get network, the default or the tier network of the container
+        String netName = zkConf.getConNetName(con.getName());
         // get hostName
         String hostName = con.getName();
         // get container image
@@ -597,48 +935,98 @@ public abstract class Broker implements ContainerLifecycle {
         Ports portBindings = dcp.getPublishedPorts();
         // process publishAllPorts
         boolean publishAllPorts = dcp.areAllPortsPublished();
+        // label the container with the application and the service
+        Map<String, String> labels = new HashMap<>();
+        labels.put(APP_LABEL, zkConf.getRoot().getName());
+        labels.put(SERVICE_LABEL, con.getName());
+        // pin to dedicated cpus, if requested
+        CpuPinner.Pin pin = pinCpus(dcp);
 
         // set container configuration
         CreateContainerResponse container = null;
-        while (container == null) {
-            try {
-                container = docker.createContainerCmd(conImg)
-                        .withNetworkMode(netName)
-                        .withHostName(hostName)
-                        .withVolumes(volList.toArray(new Volume[0]))
-                        .withVolumesFrom(volsFromList.toArray(new VolumesFrom[0]))
-                        .withBinds(bindList.toArray(new Bind[0]))
-                        .withExposedPorts(expPortList.toArray(new ExposedPort[0]))
-                        .withPortBindings(portBindings)
-                        .withPublishAllPorts(publishAllPorts)
-                        .withName(conName)
-                        .withCmd("/bin/sh", "-c", conCmd)
-                        .withEnv(conEnvArr)
-                        .withPrivileged(privileged)
-                        .exec();
-            } catch (ConflictException ex) {
-                // container with this name already exists
-                LOG.error("Something went wrong {}", ex.getMessage());
-                break;
-            } catch (NotFoundException ex) {
-                // image not found locally
-                LOG.warn("Image {} does not exist locally. Pulling from docker hub...", conImg);
-                // pull image from docker hub
-                boolean runSuccess = runAndRetry(() -> {
-                    pullContainerImg(conImg);
-                }, PULL_ATTEMPTS);
-                // check if code executed successfully
-                if (runSuccess) {
-                    LOG.info("Image {} pulled successfully.", conImg);
-                } else {
-                    LOG.error("FAILED to pull image");
+        try {
+            while (container == null) {
+                try {
+                    CreateContainerCmd createCmd = docker.createContainerCmd(conImg)
+                            .withNetworkMode(netName)
+                            .withHostName(hostName)
+                            .withAliases(hostName)
+                            .withVolumes(volList.toArray(new Volume[0]))
+                            .withVolumesFrom(volsFromList.toArray(new VolumesFrom[0]))
+                            .withBinds(bindList.toArray(new Bind[0]))
+                            .withExposedPorts(expPortList.toArray(new ExposedPort[0]))
+                            .withPortBindings(portBindings)
+                            .withPublishAllPorts(publishAllPorts)
+                            .withName(conName)
+                            .withCmd("/bin/sh", "-c", conCmd)
+                            .withEnv(conEnvArr)
+                            .withPrivileged(privileged)
+                            .withLabels(labels);
+                    // set resource limits
+                    dcp.setResources(createCmd);
+                    if (pin != null) {
+                        createCmd.withCpusetCpus(pin.getCpusetCpus())
+                                .withCpusetMems(pin.getCpusetMems());
+                    }
+                    container = createCmd.exec();
+                } catch (ConflictException ex) {
+                    // container with this name already exists
+                    LOG.error("Something went wrong {}", ex.getMessage());
                     break;
+                } catch (NotFoundException ex) {
+                    // image not found locally
+                    LOG.warn("Image {} does not exist locally. Pulling from docker hub...", conImg);
+                    // pull image from docker hub
+                    boolean runSuccess = runAndRetry(() -> {
+                        pullContainerImg(conImg);
+                    }, PULL_ATTEMPTS);
+                    // check if code executed successfully
+                    if (runSuccess) {
+                        LOG.info("Image {} pulled successfully.", conImg);
+                    } else {
+                        LOG.error("FAILED to pull image");
+                        break;
+                    }
                 }
             }
+        } finally {
+            // the pinned cpus are held by the cpuset of the created container,
+            // or no longer needed if creation failed
+            if (pin != null) {
+                CpuPinner.release(pin);
+            }
         }
         return container;
     }
 
+    /**
+     * Assigns dedicated cpus to the container, if declared. Pinning is skipped
+     * if an explicit cpuset is declared or docker is a remote host, whose
+     * topology cannot be read.
+     *
+     * @param dcp the docker configuration of the container.
+     * @return the assigned cpus. Null if not declared or not possible.
+     */
+    private CpuPinner.Pin pinCpus(DockerConfProcessor dcp) {
+        Integer count = dcp.getPinCpus();
+        if (count == null) {
+            return null;
+        }
+        if (dcp.getCpusetCpus() != null) {
+            LOG.warn("Both cpusetCpus and pinCpus declared for service {}. Using cpusetCpus.", con.getName());
+            return null;
+        }
+        if (zkConf.getpConf().getDockerRemote()) {
+            LOG.warn("Cannot pin cpus on a remote docker host. Service {} runs unpinned.", con.getName());
+            return null;
+        }
+        CpuPinner.Pin pin = CpuPinner.pin(docker, con.getName(), count);
+        if (pin == null) {
+            LOG.warn("FAILED to pin {} cpus. Service {} runs unpinned.", count, con.getName());
+        }
+        return pin;
+    }
+
     @Override
     public void pullContainerImg(String img) {
         docker.pullImageCmd(img)
@@ -684,23 +1072,32 @@ public abstract class Broker implements ContainerLifecycle {
     @Override
     public boolean restartContainer(String con, String srv) {
         boolean success = false;
-        // get first start time
-        InspectContainerResponse inspResp = docker.inspectContainerCmd(con).exec();
-        String startTime1 = inspResp.getState().getStartedAt();
+        // confirm the restart by the start event of the container
+        DockerEventListener events = DockerEventListener.acquire(docker);
+        DockerEventListener.Expectation started = events.expect(zkConf.getRoot().getName(), srv, "start");
+        Instant restartTime = Instant.now();
         // restart
         LOG.info("Restarting container for service {}...", srv);
         try {
             docker.restartContainerCmd(con).exec();
+            success = started.await(RESTART_EVENT_TIMEOUT, TimeUnit.SECONDS);
+            if (!success) {
+                // containers created without labels have no events, check the start time
+                InspectContainerResponse inspResp = docker.inspectContainerCmd(con).exec();
+                success = inspResp.getState().getRunning()
+                        && !Instant.parse(inspResp.getState().getStartedAt()).isBefore(restartTime);
+            }
         } catch (NotFoundException e) {
             LOG.error("FAILED to restart container for service {}. Container does NOT exist.", srv);
+        } catch (InterruptedException ex) {
+            // log the event
+            LOG.warn("Thread Interrupted. Stopping");
+            // set the interrupt status
+            Thread.currentThread().interrupt();
+        } finally {
+            DockerEventListener.release(events);
         }
-        // get second start time of the container
-        InspectContainerResponse inspResp2 = docker.inspectContainerCmd(con).exec();
-        String startTime2 = inspResp2.getState().getStartedAt();
-        // confirm restart
-        if (!startTime1.equals(startTime2)) {
-            success = true;
-        } else {
+        if (!success) {
             LOG.error("FAILED to restart container for service {}", srv);
         }
         return success;
@@ -923,6 +1320,84 @@ public abstract class Broker implements ContainerLifecycle {
             return dockerConf.getImage();
         }
 
+        /**
+         * Sets the declared resource limits to the create command. Limits not
+         * declared are left to the docker defaults.
+         *
+         * @param cmd the command that creates the container.
+         */
+        public void setResources(CreateContainerCmd cmd) {
+            Resources res = dockerConf.getResources();
+            // resources are optional
+            if (res == null) {
+                return;
+            }
+            if (res.getCpuShares() != null) {
+                cmd.withCpuShares(res.getCpuShares());
+            }
+            if (res.getCpuPeriod() != null) {
+                cmd.withCpuPeriod(res.getCpuPeriod());
+            }
+            if (res.getCpuQuota() != null) {
+                cmd.withCpuQuota(res.getCpuQuota());
+            }
+            if (res.getCpusetCpus() != null) {
+                cmd.withCpusetCpus(res.getCpusetCpus());
+            }
+            if (res.getCpusetMems() != null) {
+                cmd.withCpusetMems(res.getCpusetMems());
+            }
+            if (res.getMemory() != null) {
+                cmd.withMemory(toBytes(res.getMemory()));
+            }
+            if (res.getMemorySwap() != null) {
+                cmd.withMemorySwap(toBytes(res.getMemorySwap()));
+            }
+        }
+
+        /**
+         *
+         * @return the declared cpuset of the container. Null if not declared.
+         */
+        public String getCpusetCpus() {
+            Resources res = dockerConf.getResources();
+            return res != null ? res.getCpusetCpus() : null;
+        }
+
+        /**
+         *
+         * @return the number of cpus to pin the container to. Null if not
+         * declared.
+         */
+        public Integer getPinCpus() {
+            Resources res = dockerConf.getResources();
+            return res != null ? res.getPinCpus() : null;
+        }
+
+        /**
+         * Converts a memory size, e.g. 512m, to bytes.
+         *
+         * @param size a number with an optional b, k, m or g unit.
+         * @return the size in bytes.
+         */
+        private long toBytes(String size) {
+            char unit = Character.toLowerCase(size.charAt(size.length() - 1));
+            if (Character.isDigit(unit)) {
+                return Long.parseLong(size);
+            }
+            long value = Long.parseLong(size.substring(0, size.length() - 1));
+            switch (unit) {
+                case 'k':
+                    return value << 10;
+                case 'm':
+                    return value << 20;
+                case 'g':
+                    return value << 30;
+                default:
+                    return value;
+            }
+        }
+
     }
 
 }
@@ -18,6 +18,7 @@ package net.freelabs.maestro.core.broker;
 
 import com.github.dockerjava.api.DockerClient;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -28,6 +29,10 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Predicate;
 import static net.freelabs.maestro.core.broker.Broker.LOG;
+import net.freelabs.maestro.core.generated.BusinessContainer;
+import net.freelabs.maestro.core.generated.Container;
+import net.freelabs.maestro.core.generated.DataContainer;
+import net.freelabs.maestro.core.generated.WebContainer;
 import net.freelabs.maestro.core.handler.ContainerHandler;
 import net.freelabs.maestro.core.handler.NetworkHandler;
 import net.freelabs.maestro.core.zookeeper.ZkConf;
@@ -73,6 +78,11 @@ public final class BrokerInit {
      * out.
      */
     private static final long TASK_TIMEOUT = 15;
+    /**
+     * The container types, in the order their Brokers are run.
+     */
+    private static final List<String> BROKER_ORDER = Arrays.asList(
+            DataContainer.class.getSimpleName(), BusinessContainer.class.getSimpleName(), WebContainer.class.getSimpleName());
 
     /**
      * Constructor
@@ -94,30 +104,16 @@ public final class BrokerInit {
             executor = null;
         } else {
             executor = Executors.newFixedThreadPool(handler.getNumOfCons());
+            // Brokers publish their environment to the dependents
+            zkConf.setConDependents(handler.getDependents());
         }
         execResults = new ArrayList<>();
     }
 
     public boolean runStart() {
         LOG.info("Starting application...");
-        // execute Brokers for data containers
-        handler.listDataContainers().stream().forEach((con) -> {
-            Broker broker = new DataBroker(zkConf, con, docker, master, netHandler);
-            String logMsg = String.format("Starting handler for %s service...", con.getName());
-            runBroker(broker, Broker::onStart, logMsg, con.getName());
-        });
-        // execute Brokers for business containers
-        handler.listBusinessContainers().stream().forEach((con) -> {
-            Broker broker = new BusinessBroker(zkConf, con, docker, master, netHandler);
-            String logMsg = String.format("Starting handler for %s service...", con.getName());
-            runBroker(broker, Broker::onStart, logMsg, con.getName());
-        });
-        // execute Brokers for web containers
-        handler.listWebContainers().stream().forEach((con) -> {
-            Broker broker = new WebBroker(zkConf, con, docker, master, netHandler);
-            String logMsg = String.format("Starting handler for %s service...", con.getName());
-            runBroker(broker, Broker::onStart, logMsg, con.getName());
-        });
+        // execute Brokers for data, business and web containers
+        runBrokers(Broker::onStart, "Starting handler for %s service...");
         // do not allow new tasks wait for running to finish
         executor.shutdown();
         // await execution termination and return true if successful
@@ -127,6 +123,58 @@ public final class BrokerInit {
         return success;
     }
 
+    /**
+     * Resumes a failed deployment. Containers that completed deployment and
+     * are running are kept, the rest are deployed again.
+     *
+     * @return true if all the containers are deployed.
+     */
+    public boolean runResume() {
+        LOG.info("Resuming application deployment...");
+        // run Brokers with resume for data, business and web containers
+        runBrokers(Broker::onResume, "");
+        // do not allow new tasks wait for running to finish
+        executor.shutdown();
+        // await execution termination and return true if successful
+        boolean success = awaitExecution();
+        // shutdown executor normally or force shutdown in case of error
+        shutdownExecutor();
+        return success;
+    }
+
+    /**
+     * Runs a Broker for every declared container. The containers are queried
+     * from the type index of the handler, in data, business, web order.
+     *
+     * @param pred the operation of the Brokers.
+     * @param logMsg the message to log for every container, formatted with the
+     * name of the container. Not logged if empty.
+     */
+    private void runBrokers(Predicate<Broker> pred, String logMsg) {
+        for (String type : BROKER_ORDER) {
+            for (Container con : handler.listContainersOfType(type)) {
+                String msg = logMsg.isEmpty() ? logMsg : String.format(logMsg, con.getName());
+                runBroker(createBroker(con), pred, msg, con.getName());
+            }
+        }
+    }
+
+    /**
+     * Creates the Broker for a container, according to the container type.
+     *
+     * @param con the container.
+     * @return the Broker of the container.
+     */
+    private Broker createBroker(Container con) {
+        if (con instanceof WebContainer) {
+            return new WebBroker(zkConf, (WebContainer) con, docker, master, netHandler);
+        } else if (con instanceof BusinessContainer) {
+            return new BusinessBroker(zkConf, (BusinessContainer) con, docker, master, netHandler);
+        } else {
+            return new DataBroker(zkConf, (DataContainer) con, docker, master, netHandler);
+        }
+    }
+
     private void runBroker(Broker cb, Predicate<Broker> pred, String logMsg, String conName) {
         if (!logMsg.isEmpty()) {
             LOG.info(logMsg);
@@ -145,7 +193,14 @@ public final class BrokerInit {
         // create a broker of any type
         Broker broker = new DataBroker(zkConf, null, docker, master, netHandler);
         // runStop services and containers
-        return broker.onStop();
+        boolean success = broker.onStop();
+        // the containers are stopped on purpose, not to be recovered
+        if (success && zkConf.getCheckpoints() != null) {
+            zkConf.getDeplCons().keySet().stream().forEach((conName) -> {
+                master.setCheckpoint(conName, Broker.CHECKPOINT_STOPPED);
+            });
+        }
+        return success;
     }
 
     public boolean runRestart() {
@@ -157,21 +212,8 @@ public final class BrokerInit {
         if (success) {
             // re-start application
             LOG.info("Restarting application...");
-            // run Brokers with restart for data containers
-            handler.listDataContainers().stream().forEach((con) -> {
-                Broker broker = new DataBroker(zkConf, con, docker, master, netHandler);
-                runBroker(broker, Broker::onRestart, "", con.getName());
-            });
-            // run Brokers with restart Brokers for business containers
-            handler.listBusinessContainers().stream().forEach((con) -> {
-                Broker broker = new BusinessBroker(zkConf, con, docker, master, netHandler);
-                runBroker(broker, Broker::onRestart, "", con.getName());
-            });
-            // run Brokers with restart Brokers for web containers
-            handler.listWebContainers().stream().forEach((con) -> {
-                Broker broker = new WebBroker(zkConf, con, docker, master, netHandler);
-                runBroker(broker, Broker::onRestart, "", con.getName());
-            });
+            // run Brokers with restart for data, business and web containers
+            runBrokers(Broker::onRestart, "");
             // do not allow new tasks wait for running to finish
             executor.shutdown();
             // await execution termination and return true if successful
@@ -28,6 +28,11 @@ abstract class Command {
      * The name of the user command.
      */
     protected String cmdName;
+    /**
+     * Set when the command runs in the daemon. Errors then end the command
+     * instead of the program.
+     */
+    private boolean inDaemon;
 
     /**
      * Constructor.
@@ -48,6 +53,27 @@ abstract class Command {
      */
     protected abstract void errExit();
 
+    /**
+     * Exits program with an exit code. If the command runs in the daemon, only
+     * the command is ended with a {@link CommandException CommandException}.
+     *
+     * @param status the exit code.
+     */
+    protected void exit(int status) {
+        if (inDaemon) {
+            throw new CommandException(cmdName, status);
+        }
+        System.exit(status);
+    }
+
+    /**
+     *
+     * @param inDaemon true if the command runs in the daemon.
+     */
+    void setInDaemon(boolean inDaemon) {
+        this.inDaemon = inDaemon;
+    }
+
     /**
      *
      * @return the name of the command.
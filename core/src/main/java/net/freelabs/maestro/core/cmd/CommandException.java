@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.core.cmd;
+
+/**
+ *
+ * Exception thrown when a {@link Command Command} that runs in the daemon ends
+ * with errors. Commands run from the command line exit the program instead.
+ */
+public final class CommandException extends RuntimeException {
+
+    /**
+     * The exit code of the command.
+     */
+    private final int status;
+
+    /**
+     * Constructor.
+     *
+     * @param cmdName the name of the command.
+     * @param status the exit code of the command.
+     */
+    public CommandException(String cmdName, int status) {
+        super(String.format("Command %s exited with code %d.", cmdName, status));
+        this.status = status;
+    }
+
+    /**
+     *
+     * @return the exit code of the command.
+     */
+    public int getStatus() {
+        return status;
+    }
+}
@@ -16,9 +16,29 @@
  */
 package net.freelabs.maestro.core.cmd;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 import net.freelabs.maestro.core.boot.ProgramConf;
+import net.freelabs.maestro.core.zookeeper.ZkConf;
+import net.freelabs.maestro.core.zookeeper.ZkSessions;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.NoNodeException;
+import org.apache.zookeeper.ZooKeeper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 /**
  *
@@ -47,10 +67,43 @@ public final class CommandHandler implements Commandable {
      * Delete command.
      */
     private final DeleteCmd deleteCmd;
+    /**
+     * Status command.
+     */
+    private final StatusCmd statusCmd;
+    /**
+     * Reconcile command.
+     */
+    private final ReconcileCmd reconcileCmd;
     /**
      * List with names of the supported commands.
      */
     private final List<String> cmdNames;
+    /**
+     * The default maximum number of applications a command acts on at the
+     * same time.
+     */
+    private static final int MAX_APPS = 8;
+    /**
+     * The maximum number of applications a command acts on at the same time.
+     */
+    private int maxApps = MAX_APPS;
+    /**
+     * The maximum time (seconds) to wait for the registry to be read.
+     */
+    private static final long SELECT_TIMEOUT = 30;
+    /**
+     * The maximum time (minutes) a command may act on an application.
+     */
+    private static final long APP_TIMEOUT = 30;
+    /**
+     * The key of the application in the mapped diagnostic context of the log.
+     */
+    private static final String MDC_APP_KEY = "id";
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(CommandHandler.class);
 
     /**
      * Constructor.
@@ -58,12 +111,32 @@ public final class CommandHandler implements Commandable {
      * @param pConf
      */
     public CommandHandler(ProgramConf pConf) {
+        this(pConf, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param pConf the configuration of the program.
+     * @param inDaemon true if the commands run in the daemon. A command that
+     * fails then throws a {@link CommandException CommandException} instead of
+     * exiting the program.
+     */
+    public CommandHandler(ProgramConf pConf, boolean inDaemon) {
         this.pConf = pConf;
         // initialize commands
         startCmd = new StartCmd("start");
         stopCmd = new StopCmd("stop");
         restartCmd = new RestartCmd("restart");
         deleteCmd = new DeleteCmd("delete");
+        statusCmd = new StatusCmd("status");
+        reconcileCmd = new ReconcileCmd("reconcile");
+        startCmd.setInDaemon(inDaemon);
+        stopCmd.setInDaemon(inDaemon);
+        restartCmd.setInDaemon(inDaemon);
+        deleteCmd.setInDaemon(inDaemon);
+        statusCmd.setInDaemon(inDaemon);
+        reconcileCmd.setInDaemon(inDaemon);
 
         // create list
         cmdNames = new ArrayList<>();
@@ -72,6 +145,8 @@ public final class CommandHandler implements Commandable {
         cmdNames.add(stopCmd.getCmdName());
         cmdNames.add(restartCmd.getCmdName());
         cmdNames.add(deleteCmd.getCmdName());
+        cmdNames.add(statusCmd.getCmdName());
+        cmdNames.add(reconcileCmd.getCmdName());
 
     }
 
@@ -95,6 +170,177 @@ public final class CommandHandler implements Commandable {
         deleteCmd.exec(pConf, args);
     }
 
+    @Override
+    public void exec_status(String... args) {
+        statusCmd.exec(pConf, args);
+    }
+
+    @Override
+    public void exec_reconcile(String... args) {
+        reconcileCmd.exec(pConf, args);
+    }
+
+    /**
+     * <p>
+     * Executes a command for many applications at the same time.
+     * <p>
+     * Every application is handled by its own {@link Command Command}, in its
+     * own failure domain. A command that fails cleans up its application and
+     * does not affect the rest. The applications share the zookeeper sessions,
+     * the docker clients and, fairly, the docker host.
+     *
+     * @param cmdName the name of the command.
+     * @param targets the application description files for the start command,
+     * the application ids for the rest.
+     * @return the targets for which the command failed.
+     */
+    public List<String> exec_all(String cmdName, List<String> targets) {
+        if (targets.isEmpty()) {
+            LOG.info("Command {}: no applications selected.", cmdName);
+            return new ArrayList<>();
+        }
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(targets.size(), maxApps));
+        Map<String, Future<Boolean>> results = new LinkedHashMap<>();
+        targets.stream().forEach((target) -> {
+            Command cmd = newCmd(cmdName);
+            results.put(target, executor.submit(() -> {
+                // tag the log of the application
+                MDC.put(MDC_APP_KEY, target);
+                try {
+                    cmd.exec(pConf, target);
+                    return true;
+                } catch (CommandException ex) {
+                    return false;
+                } catch (RuntimeException ex) {
+                    LOG.error("Something went wrong: ", ex);
+                    return false;
+                } finally {
+                    MDC.remove(MDC_APP_KEY);
+                }
+            }));
+        });
+        // do not allow new tasks, wait for running to finish
+        executor.shutdown();
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, Future<Boolean>> entry : results.entrySet()) {
+            try {
+                if (!entry.getValue().get(APP_TIMEOUT, TimeUnit.MINUTES)) {
+                    failed.add(entry.getKey());
+                }
+            } catch (InterruptedException ex) {
+                LOG.warn("Thread Interrupted. Stopping.");
+                Thread.currentThread().interrupt();
+                failed.add(entry.getKey());
+            } catch (ExecutionException | TimeoutException ex) {
+                LOG.error("Command {} for {} FAILED: {}", cmdName, entry.getKey(), ex.getMessage());
+                failed.add(entry.getKey());
+            }
+        }
+        executor.shutdownNow();
+        LOG.info("Command {} completed for {} of {} applications in {} seconds.", cmdName, targets.size() - failed.size(),
+                targets.size(), (System.currentTimeMillis() - startTime) / 1000);
+        if (!failed.isEmpty()) {
+            LOG.error("Command {} FAILED for: {}", cmdName, failed);
+        }
+        return failed;
+    }
+
+    /**
+     * Selects the registered applications that were deployed before a time.
+     * The creation times of the registry entries are read with asynchronous
+     * requests, without waiting for one to complete before sending the next.
+     *
+     * @param olderThan the minimum age of the applications.
+     * @param unit the time unit of the age.
+     * @return the ids of the selected applications or null on error.
+     */
+    public List<String> selectApps(long olderThan, TimeUnit unit) {
+        long deployedBefore = System.currentTimeMillis() - unit.toMillis(olderThan);
+        ZooKeeper zk = null;
+        try {
+            zk = ZkSessions.acquire(pConf.getZkHosts(), pConf.getZkSessionTimeout());
+            List<String> apps;
+            try {
+                apps = zk.getChildren(ZkConf.REGISTRY_PATH, false);
+            } catch (NoNodeException ex) {
+                // no application was ever registered
+                apps = new ArrayList<>();
+            }
+            // the creation time of every registry entry
+            Map<String, Long> ctimes = new ConcurrentHashMap<>();
+            CountDownLatch reads = new CountDownLatch(apps.size());
+            for (String app : apps) {
+                zk.exists(ZkConf.REGISTRY_PATH + "/" + app, false, (rc, path, ctx, stat) -> {
+                    // a deleted entry has no stat
+                    if (stat != null) {
+                        ctimes.put((String) ctx, stat.getCtime());
+                    }
+                    reads.countDown();
+                }, app);
+            }
+            if (!reads.await(SELECT_TIMEOUT, TimeUnit.SECONDS)) {
+                LOG.error("Reading the application registry timed out.");
+                return null;
+            }
+            List<String> selected = apps.stream()
+                    .filter((app) -> ctimes.containsKey(app) && ctimes.get(app) < deployedBefore)
+                    .sorted()
+                    .collect(Collectors.toList());
+            LOG.info("Selected {} of {} registered applications.", selected.size(), apps.size());
+            return selected;
+        } catch (IOException | KeeperException ex) {
+            LOG.error("Something went wrong: ", ex);
+            return null;
+        } catch (InterruptedException ex) {
+            LOG.warn("Thread Interrupted. Stopping.");
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            if (zk != null) {
+                try {
+                    ZkSessions.release(zk);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum number of applications a command acts on at the same
+     * time.
+     *
+     * @param maxApps the maximum number of applications.
+     */
+    public void setMaxApps(int maxApps) {
+        this.maxApps = maxApps;
+    }
+
+    /**
+     * Creates a command that ends with a {@link CommandException
+     * CommandException} instead of exiting the program.
+     *
+     * @param cmdName the name of the command.
+     * @return a new command instance.
+     */
+    private Command newCmd(String cmdName) {
+        Command cmd;
+        if (cmdName.equals(startCmd.getCmdName())) {
+            cmd = new StartCmd(cmdName);
+        } else if (cmdName.equals(stopCmd.getCmdName())) {
+            cmd = new StopCmd(cmdName);
+        } else if (cmdName.equals(restartCmd.getCmdName())) {
+            cmd = new RestartCmd(cmdName);
+        } else if (cmdName.equals(deleteCmd.getCmdName())) {
+            cmd = new DeleteCmd(cmdName);
+        } else {
+            throw new IllegalArgumentException("Unknown command: " + cmdName);
+        }
+        cmd.setInDaemon(true);
+        return cmd;
+    }
+
     /**
      *
      * @return the list with the names of the supported commands.
@@ -134,4 +380,20 @@ public final class CommandHandler implements Commandable {
     public DeleteCmd getDeleteCmd() {
         return deleteCmd;
     }
+
+    /**
+     *
+     * @return the status Command object.
+     */
+    public StatusCmd getStatusCmd() {
+        return statusCmd;
+    }
+
+    /**
+     *
+     * @return the reconcile Command object.
+     */
+    public ReconcileCmd getReconcileCmd() {
+        return reconcileCmd;
+    }
 }
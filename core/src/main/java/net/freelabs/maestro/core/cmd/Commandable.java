@@ -45,5 +45,9 @@ public interface Commandable {
     public void exec_restart(String... args);
 
     public void exec_delete(String... args);
+
+    public void exec_status(String... args);
+
+    public void exec_reconcile(String... args);
     
 }
@@ -21,7 +21,6 @@ import javax.xml.bind.JAXBException;
 import net.freelabs.maestro.core.boot.ProgramConf;
 import net.freelabs.maestro.core.broker.BrokerInit;
 import net.freelabs.maestro.core.docker.DockerInitializer;
-import net.freelabs.maestro.core.handler.ContainerHandler;
 import net.freelabs.maestro.core.handler.NetworkHandler;
 import net.freelabs.maestro.core.serializer.JAXBSerializer;
 import net.freelabs.maestro.core.zookeeper.ZkConf;
@@ -93,8 +92,8 @@ public final class DeleteCmd extends Command {
                     success = master.cleanZkNamespace();
                     // remove containers
                     success = brokerInit.runDelete() && success;
-                    // remove default network
-                    netHandler.deleteNetwork(zkConf.getAppDefaultNetName());
+                    // remove application networks
+                    netHandler.deleteNetworks(zkConf.getAppNetNames());
                 }
             } else {
                 LOG.error("Application with id {} does NOT exist.", appID);
@@ -119,11 +118,11 @@ public final class DeleteCmd extends Command {
      * @return an initialized instance of {@link BrokerInit BrokerInit}.
      */
     private BrokerInit runBrokerInit() {
-        // create container handler
-        ContainerHandler handler = new ContainerHandler(zkConf.getWebApp().getContainers());
-        // create and initialize the Broker Initializer
+        // create network handler
         netHandler = new NetworkHandler(docker);
-        return new BrokerInit(handler, zkConf, docker, master, null);
+        // create and initialize the Broker Initializer, deployed container 
+        // names from the manifest are enough to delete the containers
+        return new BrokerInit(null, zkConf, docker, master, null);
     }
 
     /**
@@ -185,7 +184,7 @@ public final class DeleteCmd extends Command {
     @Override
     protected void errExit() {
         LOG.error("FAILED to delete application with id {}. Exiting...", appID);
-        System.exit(1);
+        exit(1);
     }
 
 }
@@ -0,0 +1,644 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.core.cmd;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.Network;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.bind.JAXBException;
+import net.freelabs.maestro.core.boot.ProgramConf;
+import net.freelabs.maestro.core.broker.Broker;
+import net.freelabs.maestro.core.docker.DockerInitializer;
+import net.freelabs.maestro.core.handler.NetworkHandler;
+import net.freelabs.maestro.core.serializer.JAXBSerializer;
+import net.freelabs.maestro.core.zookeeper.ZkConf;
+import net.freelabs.maestro.core.zookeeper.ZkMaster;
+import net.freelabs.maestro.core.zookeeper.ZkSessions;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.ConnectionLossException;
+import org.apache.zookeeper.KeeperException.NoNodeException;
+import org.apache.zookeeper.KeeperException.NodeExistsException;
+import static org.apache.zookeeper.ZooDefs.Ids.OPEN_ACL_UNSAFE;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Class that reconciles the desired state of the deployed applications, as
+ * saved to zookeeper, with the actual state of the docker host.
+ * <p>
+ * Every pass reads the application namespaces, the registry, the checkpoints
+ * of the containers and lists the containers and networks of the docker host
+ * once. The differences found (drift) are reported and, unless in dry run,
+ * converged by actions that run in parallel at a limited rate.
+ */
+public final class ReconcileCmd extends Command {
+
+    /**
+     * Configuration of the program.
+     */
+    private ProgramConf pConf;
+    /**
+     * A zookeeper handle.
+     */
+    private ZooKeeper zk;
+    /**
+     * A docker client.
+     */
+    private DockerClient docker;
+    /**
+     * Set if the drift is only reported.
+     */
+    private boolean dryRun;
+    /**
+     * The time (seconds) between passes. If null, one pass is run.
+     */
+    private Integer interval;
+    /**
+     * The maximum number of actions that run at the same time.
+     */
+    private int maxActions = MAX_ACTIONS;
+    /**
+     * The minimum time (nanoseconds) between the start of two actions.
+     */
+    private long actionPeriod = TimeUnit.SECONDS.toNanos(1) / ACTION_RATE;
+    /**
+     * The earliest time (nanoseconds) the next action may start.
+     */
+    private long nextAction;
+    /**
+     * The default maximum number of actions that run at the same time.
+     */
+    private static final int MAX_ACTIONS = 4;
+    /**
+     * The default maximum number of actions started per second.
+     */
+    private static final int ACTION_RATE = 2;
+    /**
+     * The maximum time (minutes) an action may run.
+     */
+    private static final long ACTION_TIMEOUT = 30;
+    /**
+     * The minimum age (minutes) of an application namespace before it is
+     * reconciled, so that deployments in progress are not mistaken for drift.
+     */
+    private static final long GRACE_PERIOD = 10;
+    /**
+     * The names of the application root zNodes.
+     */
+    private static final Pattern APP_PATTERN = Pattern.compile("maestro-\\d{10}");
+    /**
+     * The names of the application networks, the application id is the first
+     * group.
+     */
+    private static final Pattern NET_PATTERN = Pattern.compile("(maestro-\\d{10})(-[a-z]+)?-net");
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(ReconcileCmd.class);
+
+    /**
+     * The kinds of drift between desired and actual state.
+     */
+    private static enum DriftKind {
+        /**
+         * Deployed containers of an application that are not running.
+         */
+        CRASHED_SERVICES,
+        /**
+         * A network of an application that does not exist.
+         */
+        MISSING_NETWORK,
+        /**
+         * A labeled container that no application declares.
+         */
+        ORPHAN_CONTAINER,
+        /**
+         * An application network of an application that does not exist.
+         */
+        ORPHAN_NETWORK,
+        /**
+         * A registry entry of an application that does not exist.
+         */
+        STALE_REGISTRY_ENTRY,
+        /**
+         * An application that is not in the registry.
+         */
+        UNREGISTERED_APP,
+        /**
+         * An application namespace without configuration, left by a killed
+         * deployment.
+         */
+        INCOMPLETE_NAMESPACE
+    };
+
+    /**
+     * A difference between desired and actual state and the action that
+     * converges it.
+     */
+    private static final class Drift {
+
+        /**
+         * The kind of drift.
+         */
+        private final DriftKind kind;
+        /**
+         * The application, container or network that drifted.
+         */
+        private final String target;
+        /**
+         * Description of the drift.
+         */
+        private final String detail;
+        /**
+         * The action that converges the drift, returns true on success.
+         */
+        private final Supplier<Boolean> action;
+
+        /**
+         * Constructor.
+         *
+         * @param kind the kind of drift.
+         * @param target the application, container or network that drifted.
+         * @param detail description of the drift.
+         * @param action the action that converges the drift.
+         */
+        private Drift(DriftKind kind, String target, String detail, Supplier<Boolean> action) {
+            this.kind = kind;
+            this.target = target;
+            this.detail = detail;
+            this.action = action;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cmdName the name of the command.
+     */
+    public ReconcileCmd(String cmdName) {
+        super(cmdName);
+    }
+
+    /**
+     * Sets the dry run mode.
+     *
+     * @param dryRun true to only report the drift.
+     */
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Sets the time between passes. If not set, one pass is run.
+     *
+     * @param interval the time (seconds) between passes.
+     */
+    public void setInterval(Integer interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Sets the maximum number of actions that run at the same time.
+     *
+     * @param maxActions the maximum number of actions.
+     */
+    public void setMaxActions(int maxActions) {
+        this.maxActions = maxActions;
+    }
+
+    /**
+     * Sets the maximum number of actions started per second.
+     *
+     * @param rate the number of actions per second.
+     */
+    public void setActionRate(int rate) {
+        actionPeriod = TimeUnit.SECONDS.toNanos(1) / rate;
+    }
+
+    @Override
+    protected void exec(ProgramConf pConf, String... args) {
+        this.pConf = pConf;
+        boolean converged = false;
+        try {
+            // connect to zk
+            zk = ZkSessions.acquire(pConf.getZkHosts(), pConf.getZkSessionTimeout());
+            // initialize docker client
+            docker = new DockerInitializer(pConf.getDockerConf()).getDockerClient();
+            // run passes until interrupted, if an interval is set
+            do {
+                converged = reconcile();
+                if (interval != null) {
+                    TimeUnit.SECONDS.sleep(interval);
+                }
+            } while (interval != null);
+        } catch (IOException ex) {
+            LOG.error("Something went wrong: ", ex);
+        } catch (InterruptedException ex) {
+            // log the event
+            LOG.warn("Thread Interrupted. Stopping.");
+            // set the interrupt status
+            Thread.currentThread().interrupt();
+        } finally {
+            if (zk != null) {
+                try {
+                    ZkSessions.release(zk);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        if (!converged) {
+            errExit();
+        }
+    }
+
+    /**
+     * Runs a pass: finds the drift, reports it and converges it.
+     *
+     * @return true if the state was read and all the drift was converged.
+     * @throws InterruptedException if thread is interrupted.
+     */
+    private boolean reconcile() throws InterruptedException {
+        LOG.info("Reconciling desired and actual state...");
+        List<Drift> drift;
+        try {
+            drift = findDrift();
+        } catch (KeeperException | JAXBException | RuntimeException ex) {
+            LOG.error("FAILED to read state: {}", ex.getMessage());
+            return false;
+        }
+        // report
+        Map<DriftKind, Integer> counts = new HashMap<>();
+        drift.stream().forEach((d) -> {
+            LOG.info("[Drift] {} {}: {}", d.kind, d.target, d.detail);
+            counts.merge(d.kind, 1, Integer::sum);
+        });
+        LOG.info("Drift found: {}", drift.isEmpty() ? "none" : counts);
+        if (dryRun || drift.isEmpty()) {
+            return true;
+        }
+        return converge(drift);
+    }
+
+    /**
+     * Compares the desired state with the actual state.
+     *
+     * @return the drift found.
+     * @throws KeeperException in case of zookeeper error.
+     * @throws JAXBException if an application configuration cannot be read.
+     * @throws InterruptedException if thread is interrupted.
+     */
+    private List<Drift> findDrift() throws KeeperException, JAXBException, InterruptedException {
+        List<Drift> drift = new ArrayList<>();
+        long gracePeriodEnd = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(GRACE_PERIOD);
+        // the applications in zookeeper
+        Set<String> apps = new HashSet<>();
+        for (String child : getChildren("/")) {
+            if (APP_PATTERN.matcher(child).matches()) {
+                apps.add(child);
+            }
+        }
+        Set<String> registry = new HashSet<>(getChildren(ZkConf.REGISTRY_PATH));
+        // the containers and networks of the docker host, one call each
+        Map<String, Container> cons = new HashMap<>();
+        for (Container con : docker.listContainersCmd().withShowAll(true).exec()) {
+            for (String name : con.getNames()) {
+                cons.put(name.substring(name.lastIndexOf("/") + 1), con);
+            }
+        }
+        Set<String> nets = new HashSet<>();
+        for (Network net : docker.listNetworksCmd().exec()) {
+            nets.add(net.getName());
+        }
+        // the containers declared by the applications
+        Set<String> declared = new HashSet<>();
+
+        for (String app : apps) {
+            Stat stat = new Stat();
+            ZkConf zkConf = new ZkConf(app, pConf.getZkHosts(), pConf.getZkSessionTimeout());
+            byte[] data = getData(zkConf.getZkConf().getPath(), stat);
+            if (data == null) {
+                stat = zk.exists(zkConf.getRoot().getPath(), false);
+                if (stat != null && stat.getCtime() < gracePeriodEnd) {
+                    drift.add(new Drift(DriftKind.INCOMPLETE_NAMESPACE, app, "no application configuration",
+                            () -> cleanNamespace(app)));
+                }
+                continue;
+            }
+            zkConf = JAXBSerializer.deserializeToZkConf(data);
+            declared.addAll(zkConf.getDeplCons().values());
+            if (stat.getCtime() >= gracePeriodEnd) {
+                // the deployment may be in progress
+                continue;
+            }
+            if (!registry.contains(app)) {
+                drift.add(new Drift(DriftKind.UNREGISTERED_APP, app, "not in the registry",
+                        () -> register(app)));
+            }
+            for (String net : zkConf.getAppNetNames()) {
+                if (!nets.contains(net)) {
+                    drift.add(new Drift(DriftKind.MISSING_NETWORK, net, "network of " + app + " does not exist",
+                            () -> new NetworkHandler(docker).createNetwork(net)));
+                }
+            }
+            // containers deployed and not stopped on purpose must be running
+            if (zkConf.getCheckpoints() != null) {
+                List<String> crashed = new ArrayList<>();
+                for (Map.Entry<String, String> entry : zkConf.getDeplCons().entrySet()) {
+                    byte[] checkpoint = getData(zkConf.getCheckpointPath(entry.getKey()), null);
+                    Container con = cons.get(entry.getValue());
+                    if (checkpoint != null && new String(checkpoint, StandardCharsets.UTF_8).equals(Broker.CHECKPOINT_DEPLOYED)
+                            && (con == null || !con.getStatus().startsWith("Up"))) {
+                        crashed.add(entry.getKey());
+                    }
+                }
+                if (!crashed.isEmpty()) {
+                    drift.add(new Drift(DriftKind.CRASHED_SERVICES, app, "not running: " + crashed,
+                            () -> resume(app)));
+                }
+            }
+        }
+        for (String app : registry) {
+            if (!apps.contains(app)) {
+                drift.add(new Drift(DriftKind.STALE_REGISTRY_ENTRY, app, "application does not exist",
+                        () -> unregister(app)));
+            }
+        }
+        for (Map.Entry<String, Container> entry : cons.entrySet()) {
+            Map<String, String> labels = entry.getValue().getLabels();
+            if (labels == null || !labels.containsKey(Broker.APP_LABEL)) {
+                continue;
+            }
+            String app = labels.get(Broker.APP_LABEL);
+            if (!apps.contains(app) || !declared.contains(entry.getKey())) {
+                String cid = entry.getValue().getId();
+                drift.add(new Drift(DriftKind.ORPHAN_CONTAINER, entry.getKey(), "not declared by " + app,
+                        () -> removeContainer(cid)));
+            }
+        }
+        for (String net : nets) {
+            Matcher matcher = NET_PATTERN.matcher(net);
+            if (matcher.matches() && !apps.contains(matcher.group(1))) {
+                drift.add(new Drift(DriftKind.ORPHAN_NETWORK, net, "application does not exist",
+                        () -> removeNetwork(net)));
+            }
+        }
+        return drift;
+    }
+
+    /**
+     * Runs the actions that converge the drift, in parallel and at a limited
+     * rate.
+     *
+     * @param drift the drift to converge.
+     * @return true if all actions succeeded.
+     */
+    private boolean converge(List<Drift> drift) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(drift.size(), maxActions));
+        List<Future<Boolean>> results = new ArrayList<>();
+        drift.stream().forEach((d) -> {
+            results.add(executor.submit(() -> {
+                pace();
+                try {
+                    boolean converged = d.action.get();
+                    if (!converged) {
+                        LOG.error("FAILED to converge {} {}.", d.kind, d.target);
+                    }
+                    return converged;
+                } catch (RuntimeException ex) {
+                    LOG.error("FAILED to converge {} {}: {}", d.kind, d.target, ex.getMessage());
+                    return false;
+                }
+            }));
+        });
+        // do not allow new tasks, wait for running to finish
+        executor.shutdown();
+        int converged = 0;
+        for (Future<Boolean> result : results) {
+            try {
+                if (result.get(ACTION_TIMEOUT, TimeUnit.MINUTES)) {
+                    converged++;
+                }
+            } catch (InterruptedException ex) {
+                LOG.warn("Thread Interrupted. Stopping.");
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | TimeoutException ex) {
+                LOG.error("Something went wrong: {}", ex.getMessage());
+            }
+        }
+        executor.shutdownNow();
+        LOG.info("Converged {} of {} differences.", converged, drift.size());
+        return converged == drift.size();
+    }
+
+    /**
+     * Waits until the next action may start, so that actions start at most at
+     * the configured rate.
+     *
+     * @throws InterruptedException if thread is interrupted.
+     */
+    private synchronized void pace() throws InterruptedException {
+        long now = System.nanoTime();
+        long wait = nextAction - now;
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        nextAction = Math.max(now, nextAction) + actionPeriod;
+    }
+
+    /**
+     * Resumes the deployment of an application, to re-deploy its containers
+     * that are not running.
+     *
+     * @param app the application id.
+     * @return true if the application was resumed.
+     */
+    private boolean resume(String app) {
+        StartCmd startCmd = new StartCmd("start");
+        startCmd.setInDaemon(true);
+        startCmd.setResumeId(app);
+        try {
+            startCmd.exec(pConf);
+            return true;
+        } catch (CommandException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Removes the namespace of an application.
+     *
+     * @param app the application id.
+     * @return true if the namespace was removed.
+     */
+    private boolean cleanNamespace(String app) {
+        ZkMaster master = new ZkMaster(new ZkConf(app, pConf.getZkHosts(), pConf.getZkSessionTimeout()));
+        master.connectToZk();
+        boolean cleaned = !master.isMasterError() && master.cleanZkNamespace();
+        master.shutdownMaster();
+        return cleaned;
+    }
+
+    /**
+     * Adds an application to the registry.
+     *
+     * @param app the application id.
+     * @return true if the application was registered.
+     */
+    private boolean register(String app) {
+        return create(ZkConf.REGISTRY_PATH) && create(ZkConf.REGISTRY_PATH + "/" + app);
+    }
+
+    /**
+     * Removes an application from the registry.
+     *
+     * @param app the application id.
+     * @return true if the application was removed.
+     */
+    private boolean unregister(String app) {
+        try {
+            zk.delete(ZkConf.REGISTRY_PATH + "/" + app, -1);
+            return true;
+        } catch (NoNodeException ex) {
+            return true;
+        } catch (KeeperException ex) {
+            LOG.error("Something went wrong: {}", ex.getMessage());
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Creates a persistent zNode without data, if it does not exist.
+     *
+     * @param path the path of the zNode.
+     * @return true if the zNode exists.
+     */
+    private boolean create(String path) {
+        try {
+            zk.create(path, new byte[0], OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+            return true;
+        } catch (NodeExistsException ex) {
+            return true;
+        } catch (KeeperException ex) {
+            LOG.error("Something went wrong: {}", ex.getMessage());
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Removes a container and its volumes.
+     *
+     * @param cid the container id.
+     * @return true if the container was removed.
+     */
+    private boolean removeContainer(String cid) {
+        docker.removeContainerCmd(cid)
+                .withForce(true)
+                .withRemoveVolumes(true)
+                .exec();
+        return true;
+    }
+
+    /**
+     * Removes a network.
+     *
+     * @param net the network name.
+     * @return true if the network was removed.
+     */
+    private boolean removeNetwork(String net) {
+        docker.removeNetworkCmd(net).exec();
+        return true;
+    }
+
+    /**
+     * Lists the children of a zNode, retrying on connection loss.
+     *
+     * @param path the path of the zNode.
+     * @return the names of the children. Empty if the zNode does not exist.
+     * @throws KeeperException in case of zookeeper error.
+     * @throws InterruptedException if thread is interrupted.
+     */
+    private List<String> getChildren(String path) throws KeeperException, InterruptedException {
+        while (true) {
+            try {
+                return zk.getChildren(path, false);
+            } catch (NoNodeException ex) {
+                return new ArrayList<>();
+            } catch (ConnectionLossException ex) {
+                LOG.warn("Connection loss was detected. Retrying...");
+            }
+        }
+    }
+
+    /**
+     * Reads the data of a zNode, retrying on connection loss.
+     *
+     * @param path the path of the zNode.
+     * @param stat the stat of the zNode is returned here. May be null.
+     * @return the data of the zNode. Null if the zNode does not exist.
+     * @throws KeeperException in case of zookeeper error.
+     * @throws InterruptedException if thread is interrupted.
+     */
+    private byte[] getData(String path, Stat stat) throws KeeperException, InterruptedException {
+        while (true) {
+            try {
+                return zk.getData(path, false, stat);
+            } catch (NoNodeException ex) {
+                return null;
+            } catch (ConnectionLossException ex) {
+                LOG.warn("Connection loss was detected. Retrying...");
+            }
+        }
+    }
+
+    /**
+     * Exit with error code (1).
+     */
+    @Override
+    protected void errExit() {
+        exit(1);
+    }
+}
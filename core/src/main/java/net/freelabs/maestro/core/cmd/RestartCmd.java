@@ -17,12 +17,11 @@
 package net.freelabs.maestro.core.cmd;
 
 import com.github.dockerjava.api.DockerClient;
-import javax.xml.bind.JAXBException;
 import net.freelabs.maestro.core.boot.ProgramConf;
 import net.freelabs.maestro.core.broker.BrokerInit;
 import net.freelabs.maestro.core.docker.DockerInitializer;
+import net.freelabs.maestro.core.generated.Containers;
 import net.freelabs.maestro.core.handler.ContainerHandler;
-import net.freelabs.maestro.core.serializer.JAXBSerializer;
 import net.freelabs.maestro.core.zookeeper.ZkConf;
 import net.freelabs.maestro.core.zookeeper.ZkMaster;
 import org.slf4j.Logger;
@@ -77,19 +76,22 @@ public final class RestartCmd extends Command {
             boolean exists = master.nodeExists(zkConf.getRoot().getPath());
             if (exists) {
                 // download application conf
-                boolean downloadedZkConf = downloadZkConf();
+                ZkConf deployed = master.downloadZkConf();
                 // if conf was downloaded
-                if (downloadedZkConf) {
+                if (deployed != null) {
+                    zkConf = deployed;
                     // initialize docker client
                     initDockerClient(pConf.getDockerConf());
                     // create and initialize Broker initializer to act on containers
                     BrokerInit brokerInit = runBrokerInit();
-                    // restart application
-                    success = brokerInit.runRestart();
-                    // check if operation succeeded
-                    if (!success) {
-                        // error occurred so stop any runnin services and containers
-                        brokerInit.runStop();
+                    // restart application if all the containers were loaded
+                    if (brokerInit != null) {
+                        success = brokerInit.runRestart();
+                        // check if operation succeeded
+                        if (!success) {
+                            // error occurred so stop any runnin services and containers
+                            brokerInit.runStop();
+                        }
                     }
                 }
             } else {
@@ -112,42 +114,20 @@ public final class RestartCmd extends Command {
      * Creates and initializes the {@link BrokerInit Broker Initializer} that
      * will handle interaction with containers.
      *
-     * @return an initialized instance of {@link BrokerInit BrokerInit}.
+     * @return an initialized instance of {@link BrokerInit BrokerInit}. Null if
+     * the description of any container could not be loaded.
      */
     private BrokerInit runBrokerInit() {
+        Containers cons = master.downloadContainers(zkConf);
+        if (cons == null) {
+            return null;
+        }
         // create container handler
-        ContainerHandler handler = new ContainerHandler(zkConf.getWebApp().getContainers());
+        ContainerHandler handler = new ContainerHandler(cons);
         // create and initialize the Broker Initializer
         return new BrokerInit(handler, zkConf, docker, master, null);
     }
 
-    /**
-     * Downloads node zkConf from zookeeper application tree and re-initializes
-     * {@link #zkConf zkConf} with the configuration of the application as
-     * deployed.
-     *
-     * @return true if zkConf node was successfully downloaded from zookeeper.
-     */
-    private boolean downloadZkConf() {
-        LOG.info("Fetching application configuration...");
-        boolean downloaded = false;
-        byte[] data = master.nodeData(zkConf.getZkConf().getPath(), null);
-        // check for errors
-        if (data != null) {
-            try {
-                zkConf = JAXBSerializer.deserializeToZkConf(data);
-                String dataStr = JAXBSerializer.deserializeToString(data);
-                LOG.debug("Downloaded application configuration. Printing. {}", dataStr);
-                downloaded = true;
-            } catch (JAXBException ex) {
-                LOG.error("Something went wrong: ", ex);
-            }
-        } else {
-            LOG.error("Application data NOT found in zookeeper configuration node.");
-        }
-        return downloaded;
-    }
-
     /**
      * Initializes necessary parameters.
      *
@@ -180,7 +160,7 @@ public final class RestartCmd extends Command {
     @Override
     protected void errExit() {
         LOG.error("Restart of {} FAILED. Exiting...", appID);
-        System.exit(1);
+        exit(1);
     }
 
 }
@@ -18,6 +18,7 @@ package net.freelabs.maestro.core.cmd;
 
 import com.github.dockerjava.api.DockerClient;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import javax.xml.bind.JAXBException;
 import net.freelabs.maestro.core.broker.Broker;
 import net.freelabs.maestro.core.analyze.RestrictionAnalyzer;
@@ -26,11 +27,11 @@ import net.freelabs.maestro.core.broker.BrokerInit;
 import net.freelabs.maestro.core.xml.XmlProcessor;
 import net.freelabs.maestro.core.docker.DockerInitializer;
 import net.freelabs.maestro.core.generated.Container;
+import net.freelabs.maestro.core.generated.Containers;
 import net.freelabs.maestro.core.generated.WebApp;
 import net.freelabs.maestro.core.handler.ContainerHandler;
 import net.freelabs.maestro.core.handler.NetworkHandler;
 import net.freelabs.maestro.core.serializer.JAXBSerializer;
-import net.freelabs.maestro.core.utils.Utils;
 import net.freelabs.maestro.core.zookeeper.ZkConf;
 import net.freelabs.maestro.core.zookeeper.ZkMaster;
 import org.slf4j.Logger;
@@ -49,6 +50,10 @@ public final class StartCmd extends Command {
      * The thread running the master process
      */
     private Thread masterThread;
+    /**
+     * The id of the application whose deployment is resumed, if any.
+     */
+    private String resumeId;
     /**
      * A Logger object.
      */
@@ -63,11 +68,27 @@ public final class StartCmd extends Command {
         super(cmd);
     }
 
+    /**
+     * Sets the application whose failed deployment is resumed, instead of
+     * deploying a new application.
+     *
+     * @param resumeId the id of the application.
+     */
+    public void setResumeId(String resumeId) {
+        this.resumeId = resumeId;
+    }
+
     @Override
     public void exec(ProgramConf pConf, String... args) {
+        if (resumeId != null) {
+            resume(pConf, resumeId);
+            return;
+        }
         try {
+            // the application description, if not given the configured one
+            String xmlFilePath = args.length > 0 ? args[0] : pConf.getXmlFilePath();
             // unmarshall xml file into a top-level object
-            WebApp webApp = unmarshalXml(pConf.getXmlSchemaPath(), pConf.getXmlFilePath());
+            WebApp webApp = unmarshalXml(pConf.getXmlSchemaPath(), xmlFilePath);
             // create a handler to query for container information
             ContainerHandler handler = createConHandler(webApp);
             // analyze restrictions and check if apply on schema
@@ -76,15 +97,20 @@ public final class StartCmd extends Command {
             ZkConf zkConf = createZkConf(webApp, pConf.getZkHosts(), pConf.getZkSessionTimeout(), handler, pConf);
             // initialize zk and start master process
             initZk(zkConf);
+            // add the application to the registry of deployed applications
+            master.registerApp(xmlFilePath.getBytes(StandardCharsets.UTF_8));
             // create a docker client customized for the app
             DockerInitializer dockerInit = new DockerInitializer(pConf.getDockerConf());
             DockerClient docker = dockerInit.getDockerClient();
             // creaet application network handler
             NetworkHandler netHandler = new NetworkHandler(docker);
-            // create network for application
-            netHandler.createNetwork(zkConf.getAppDefaultNetName());
+            // create networks for application, default or one per tier
+            netHandler.createNetworks(zkConf.getAppNetNames());
             // launch the CoreBrokers to boot containers, wait to finish
             runBrokerInit(handler, zkConf, docker, netHandler);
+        } catch (CommandException ex) {
+            // the command already ended with errors
+            throw ex;
         } catch (Exception ex) {
             exitProgram(ex);
         }
@@ -109,28 +135,87 @@ public final class StartCmd extends Command {
         }
     }
 
+    /**
+     * <p>
+     * Resumes a failed deployment of an application.
+     * <p>
+     * The deployment progress of every container is read from its checkpoint.
+     * Only the containers that did not complete deployment, or are not
+     * running, are deployed again.
+     *
+     * @param pConf the configuration of the program.
+     * @param appID the id of the application.
+     */
+    private void resume(ProgramConf pConf, String appID) {
+        boolean success = false;
+        ZkConf zkConf = new ZkConf(appID, pConf.getZkHosts(), pConf.getZkSessionTimeout());
+        master = new ZkMaster(zkConf);
+        // connect to zk
+        master.connectToZk();
+        // if no connection errors
+        if (!master.isMasterError()) {
+            // check if node with appID exists
+            if (master.nodeExists(zkConf.getRoot().getPath())) {
+                // download application conf
+                zkConf = master.downloadZkConf();
+                if (zkConf != null && zkConf.getCheckpoints() == null) {
+                    LOG.error("Application {} was deployed without checkpoints and cannot be resumed.", appID);
+                } else if (zkConf != null) {
+                    // download the container definitions, fails if any is missing
+                    Containers cons = master.downloadContainers(zkConf);
+                    if (cons != null) {
+                        // initialize docker client
+                        DockerClient docker = new DockerInitializer(pConf.getDockerConf()).getDockerClient();
+                        // the networks of the application are kept on failure
+                        NetworkHandler netHandler = new NetworkHandler(docker);
+                        // create container handler from the container definitions
+                        ContainerHandler handler = new ContainerHandler(cons);
+                        // deploy the containers that did not complete deployment
+                        BrokerInit brokerInit = new BrokerInit(handler, zkConf, docker, master, netHandler);
+                        success = brokerInit.runResume();
+                    }
+                }
+            } else {
+                LOG.error("Application with id {} does NOT exist.", appID);
+            }
+        }
+
+        master.shutdownMaster();
+
+        if (success) {
+            LOG.info("[Application Deployed] - id: {}", appID);
+        } else {
+            LOG.error("Resume of application {} FAILED.", appID);
+            exit(1);
+        }
+    }
+
     /**
      * <p>
      * Analyzes the restrictions that must apply on the schema.
      * <p>
      * No circular dependencies are allowed.
      * <p>
+     * No dependencies on undeclared containers are allowed.
+     * <p>
      * No duplicate container names are allowed.
      *
      * @param handler object to query for containers.
      */
     private void analyzeRestrictions(ContainerHandler handler) {
         // create analyzer to check restrictions on schema
-        RestrictionAnalyzer ra = new RestrictionAnalyzer(handler.listContainers());
+        RestrictionAnalyzer ra = new RestrictionAnalyzer(handler);
 
         // analyze dependencies
         LOG.info("Checking service dependencies...");
-        // search for circular dependencies
+        // search for circular dependencies and dependencies on undeclared containers
         boolean found = ra.detectCircularDependencies();
-        // if circular dependencies found exit
+        // if any found exit
         if (found) {
             errExit();
         }
+        // print the longest dependency chain and the number of depth levels
+        LOG.info("Dependency levels: {}, critical path: {}", ra.getDepLevels().size(), String.join(" -> ", ra.getCriticalPath()));
 
         // analyze container names 
         LOG.info("Checking service names...");
@@ -169,17 +254,11 @@ public final class StartCmd extends Command {
         boolean success = brokerInit.runStart();
         // check if operation was successful 
         if (!success) {
-            LOG.info("Performing cleanup...");
-            // error occurred so stop any running services and containers
-            brokerInit.runStop();
-            // delete application namespace
-            master.cleanZkNamespace();
-            // remove containers
-            brokerInit.runDelete();
-            // remove default network
-            netHandler.deleteNetwork(zkConf.getAppDefaultNetName());
-            // shutdown master
+            // keep the deployed containers, the deployment may be resumed
+            String id = master.getDeployedID();
             shutdownMaster();
+            LOG.error("Deployment of application {} FAILED. Resume with \'maestro start --resume {}\' "
+                    + "or remove with \'maestro delete {}\'.", id, id, id);
             errExit();
         } else {
             // shutdown master
@@ -274,37 +353,40 @@ public final class StartCmd extends Command {
          We query the Container Handler for the available Container Types and then
          we initialize the zookeeper parent nodes. We store no data to these nodes.
          Parent nodes are Persistent zNodes.
-         */
-        for (String type : handler.getContainerTypes()) {
-            LOG.debug("Initializing container type: {}", type);
-            zkConf.initZkContainerType(type);
-        }
-
-        /*
+        
          Initialize zookeeper child nodes. Every child node (Container) belongs to
          a parent node (Container Type). Child nodes are Ephemeral zNodes and cannot 
          have children of their own.
         
-         We query the Container Handler for the available Containers and then we
-         initialize the zookeeper child nodes. The data of a child node is a 
-         serialized Container object.
+         We query the type index of the Container Handler for the Containers of
+         every type and then we initialize the zookeeper child nodes. The serialized 
+         Container object is stored once, to the definition node of the container.
          */
-        for (Container con : handler.listContainers()) {
-            // generate JSON from container and return the generated JSON as a byte array
-            byte[] data = JAXBSerializer.serialize(con);
-            LOG.debug("Serialized container description of service {}: {}", con.getName(), JAXBSerializer.deserializeToString(data));
-            // get the name for the child node
-            String name = con.getName();
-            // get the container type
-            String type = Utils.getType(con);
-            // initialize child node
-            LOG.debug("Initializing zkConf node for service {} of type {} with data {} bytes", con.getName(), type, data.length);
-            zkConf.initZkContainer(name, type, data);
+        for (String type : handler.getContainerTypes()) {
+            LOG.debug("Initializing container type: {}", type);
+            zkConf.initZkContainerType(type);
+            for (Container con : handler.listContainersOfType(type)) {
+                // generate JSON from container and return the generated JSON as a byte array
+                byte[] data = JAXBSerializer.serialize(con);
+                LOG.debug("Serialized container description of service {}: {}", con.getName(), JAXBSerializer.deserializeToString(data));
+                // get the name for the child node
+                String name = con.getName();
+                // initialize child node
+                LOG.debug("Initializing zkConf node for service {} of type {} with data {} bytes", con.getName(), type, data.length);
+                zkConf.initZkContainer(name, type, data);
+                // record the dependencies, used to stop the containers in order
+                zkConf.initConRequires(name, con.getRequires());
+            }
         }
 
         // store program configuration 
         zkConf.setpConf(pConf);
 
+        // initialize a network per container type if requested
+        if (pConf.getNetPerTier()) {
+            zkConf.initTierNets(handler.getContainerTypes());
+        }
+
         // initialize  deployed container names
         zkConf.initDeplCons(handler.listContainerNames());
 
@@ -366,6 +448,6 @@ public final class StartCmd extends Command {
     protected void errExit() {
         // log 
         LOG.error("FAILED to deploy application.");
-        System.exit(1);
+        exit(1);
     }
 }
@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.core.cmd;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.model.Container;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.xml.bind.JAXBException;
+import net.freelabs.maestro.core.boot.ProgramConf;
+import net.freelabs.maestro.core.broker.Broker;
+import net.freelabs.maestro.core.docker.DockerInitializer;
+import net.freelabs.maestro.core.serializer.JAXBSerializer;
+import net.freelabs.maestro.core.utils.LogContext;
+import net.freelabs.maestro.core.zookeeper.ZkConf;
+import net.freelabs.maestro.core.zookeeper.ZkNamingServiceNode;
+import net.freelabs.maestro.core.zookeeper.ZkSessions;
+import org.apache.zookeeper.AsyncCallback.ChildrenCallback;
+import org.apache.zookeeper.AsyncCallback.DataCallback;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.KeeperException.NoNodeException;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Class that reports the state of the services of the deployed applications.
+ * <p>
+ * The service nodes of all the applications are read with asynchronous
+ * requests that are pipelined to zookeeper, and joined with the containers
+ * of the applications as returned by one docker call. In watch mode the reads
+ * set watches and the report is repeated on every change.
+ */
+public final class StatusCmd extends Command {
+
+    /**
+     * Configuration of the program.
+     */
+    private ProgramConf pConf;
+    /**
+     * A zookeeper handle.
+     */
+    private ZooKeeper zk;
+    /**
+     * A docker client to query for the state of containers.
+     */
+    private DockerClient docker;
+    /**
+     * Set if the status is reported on every change.
+     */
+    private boolean watch;
+    /**
+     * Released on every change in watch mode.
+     */
+    private final Semaphore changes = new Semaphore(0);
+    /**
+     * Watch set by the reads in watch mode.
+     */
+    private final Watcher changeWatcher = (event) -> changes.release();
+    /**
+     * Waits for the asynchronous reads of a report.
+     */
+    private Phaser reads;
+    /**
+     * The maximum time (seconds) to wait for the reads of a report.
+     */
+    private static final long READ_TIMEOUT = 30;
+    /**
+     * Time (milliseconds) to wait for more changes before reporting in watch
+     * mode, so that a burst of changes results in one report.
+     */
+    private static final long WATCH_DELAY = 500;
+    /**
+     * Value shown for unknown fields.
+     */
+    private static final String NONE = "-";
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(StatusCmd.class);
+
+    /**
+     * Constructor.
+     *
+     * @param cmdName the name of the command.
+     */
+    public StatusCmd(String cmdName) {
+        super(cmdName);
+    }
+
+    /**
+     * Sets the watch mode.
+     *
+     * @param watch true to report the status on every change.
+     */
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    @Override
+    protected void exec(ProgramConf pConf, String... args) {
+        this.pConf = pConf;
+        boolean reported = false;
+        try {
+            // connect to zk
+            zk = ZkSessions.acquire(pConf.getZkHosts(), pConf.getZkSessionTimeout());
+            // initialize docker client
+            docker = new DockerInitializer(pConf.getDockerConf()).getDockerClient();
+            // report until interrupted in watch mode
+            do {
+                reported = report(args);
+                if (watch) {
+                    changes.acquire();
+                    Thread.sleep(WATCH_DELAY);
+                    changes.drainPermits();
+                }
+            } while (watch);
+        } catch (IOException ex) {
+            LOG.error("Something went wrong: ", ex);
+        } catch (InterruptedException ex) {
+            // log the event
+            LOG.warn("Thread Interrupted. Stopping.");
+            // set the interrupt status
+            Thread.currentThread().interrupt();
+        } finally {
+            if (zk != null) {
+                try {
+                    ZkSessions.release(zk);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        if (!reported) {
+            errExit();
+        }
+    }
+
+    /**
+     * Reads the state of the applications and prints it.
+     *
+     * @param appIds the ids of the applications. If empty, all the
+     * applications in the registry.
+     * @return true if all the applications were found.
+     * @throws InterruptedException if thread is interrupted.
+     */
+    private boolean report(String... appIds) throws InterruptedException {
+        boolean found = true;
+        // the applications to report
+        List<String> apps = appIds.length > 0 ? Arrays.asList(appIds) : listRegistry();
+        if (apps == null) {
+            return false;
+        }
+        // read the service nodes of all the applications
+        Map<String, Map<String, ZkNamingServiceNode>> services = readServices(apps);
+        if (services == null) {
+            return false;
+        }
+        // the containers of all the applications, by application and service
+        Map<String, Map<String, Container>> cons = listContainers();
+
+        if (apps.isEmpty()) {
+            LOG.info("No deployed applications.");
+        }
+        for (String appId : apps) {
+            Map<String, ZkNamingServiceNode> srvs = services.get(appId);
+            Map<String, Container> appCons = cons.getOrDefault(appId, Collections.emptyMap());
+            if (srvs == null && appCons.isEmpty()) {
+                LOG.error("Application {} does NOT exist.", appId);
+                found = false;
+                continue;
+            }
+            if (srvs == null) {
+                srvs = Collections.emptyMap();
+            }
+            LOG.info("Application {}:", appId);
+            LOG.info(String.format("  %-24s %-16s %-8s %-32s %s", "SERVICE", "STATE", "RESTARTS", "CONTAINER", "USAGE"));
+            // services registered in zookeeper or found in docker
+            Set<String> srvNames = new TreeSet<>(srvs.keySet());
+            srvNames.addAll(appCons.keySet());
+            for (String srvName : srvNames) {
+                ZkNamingServiceNode node = srvs.get(srvName);
+                Container con = appCons.get(srvName);
+                LOG.info(String.format("  %-24s %-16s %-8s %-32s %s", srvName,
+                        node != null ? node.getStatus() : NONE,
+                        node != null ? node.getRestarts() : NONE,
+                        con != null ? con.getStatus() : NONE,
+                        node != null && node.getUsage() != null ? node.getUsage() : NONE));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Lists the applications in the registry.
+     *
+     * @return the ids of the registered applications or null on error.
+     * @throws InterruptedException if thread is interrupted.
+     */
+    private List<String> listRegistry() throws InterruptedException {
+        while (true) {
+            try {
+                List<String> apps = zk.getChildren(ZkConf.REGISTRY_PATH, watch ? changeWatcher : null);
+                Collections.sort(apps);
+                return apps;
+            } catch (NoNodeException ex) {
+                // no application was ever registered
+                if (watch) {
+                    try {
+                        zk.exists(ZkConf.REGISTRY_PATH, changeWatcher);
+                    } catch (KeeperException e) {
+                        LOG.warn("Registry NOT watched: {}", e.getMessage());
+                    }
+                }
+                return new ArrayList<>();
+            } catch (KeeperException.ConnectionLossException ex) {
+                LOG.warn("Connection loss was detected. Retrying...");
+            } catch (KeeperException ex) {
+                LOG.error("Something went wrong: ", ex);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Reads the service nodes of the applications. The children of every
+     * services zNode and the data of every service zNode are read with
+     * asynchronous requests, without waiting for the previous to complete.
+     *
+     * @param apps the ids of the applications.
+     * @return the service nodes, by application and service name. An
+     * application that does not exist is not included. Null on timeout.
+     * @throws InterruptedException if thread is interrupted.
+     */
+    private Map<String, Map<String, ZkNamingServiceNode>> readServices(List<String> apps) throws InterruptedException {
+        Map<String, Map<String, ZkNamingServiceNode>> services = new ConcurrentHashMap<>();
+        Watcher watcher = watch ? changeWatcher : null;
+        // the reads of the report, the thread is also a party
+        reads = new Phaser(1);
+
+        ChildrenCallback childrenCallback = LogContext.wrap((int rc, String path, Object ctx, List<String> children) -> {
+            String appId = (String) ctx;
+            if (Code.get(rc) == Code.OK) {
+                Map<String, ZkNamingServiceNode> srvs = new ConcurrentHashMap<>();
+                services.put(appId, srvs);
+                // the service nodes of the application are collected to srvs
+                DataCallback dataCallback = serviceCallback(srvs);
+                for (String child : children) {
+                    reads.register();
+                    zk.getData(path + "/" + child, watcher, dataCallback, null);
+                }
+            } else if (Code.get(rc) == Code.NONODE) {
+                // the application is not deployed or not yet initialized
+                if (watcher != null) {
+                    zk.exists(path, watcher, (rc1, path1, ctx1, stat) -> {
+                    }, null);
+                }
+            } else {
+                LOG.error("Something went wrong: {}", KeeperException.create(Code.get(rc), path).getMessage());
+            }
+            reads.arriveAndDeregister();
+        });
+
+        for (String appId : apps) {
+            String srvsPath = new ZkConf(appId, pConf.getZkHosts(), pConf.getZkSessionTimeout()).getServices().getPath();
+            reads.register();
+            zk.getChildren(srvsPath, watcher, childrenCallback, appId);
+        }
+
+        try {
+            reads.awaitAdvanceInterruptibly(reads.arrive(), READ_TIMEOUT, TimeUnit.SECONDS);
+        } catch (TimeoutException ex) {
+            LOG.error("Reading service nodes timed out.");
+            return null;
+        }
+        return services;
+    }
+
+    /**
+     * Creates the callback that reads the service nodes of an application.
+     *
+     * @param srvs the map to put the service nodes to, by service name.
+     * @return the callback.
+     */
+    private DataCallback serviceCallback(Map<String, ZkNamingServiceNode> srvs) {
+        return LogContext.wrap((int rc, String path, Object ctx, byte[] data, Stat stat) -> {
+            if (Code.get(rc) == Code.OK) {
+                try {
+                    ZkNamingServiceNode node = JAXBSerializer.deserializeToServiceNode(data);
+                    String srvName = path.substring(path.lastIndexOf("/") + 1);
+                    srvs.put(srvName, node);
+                } catch (JAXBException ex) {
+                    LOG.error("Service node de-serialization FAILED: {}", path);
+                }
+            } else if (Code.get(rc) != Code.NONODE) {
+                LOG.error("Something went wrong: {}", KeeperException.create(Code.get(rc), path).getMessage());
+            }
+            reads.arriveAndDeregister();
+        });
+    }
+
+    /**
+     * Lists the containers of all the applications with one docker call.
+     *
+     * @return the containers, by application id and service name. Empty if
+     * docker cannot be queried.
+     */
+    private Map<String, Map<String, Container>> listContainers() {
+        Map<String, Map<String, Container>> cons = new HashMap<>();
+        try {
+            List<Container> list = docker.listContainersCmd()
+                    .withShowAll(true)
+                    .withLabelFilter(Broker.APP_LABEL)
+                    .exec();
+            for (Container con : list) {
+                Map<String, String> labels = con.getLabels();
+                if (labels == null || !labels.containsKey(Broker.SERVICE_LABEL)) {
+                    continue;
+                }
+                cons.computeIfAbsent(labels.get(Broker.APP_LABEL), (k) -> new HashMap<>())
+                        .put(labels.get(Broker.SERVICE_LABEL), con);
+            }
+        } catch (RuntimeException ex) {
+            LOG.warn("Container state NOT available: {}", ex.getMessage());
+        }
+        return cons;
+    }
+
+    /**
+     * Exit with error code (1).
+     */
+    @Override
+    protected void errExit() {
+        exit(1);
+    }
+}
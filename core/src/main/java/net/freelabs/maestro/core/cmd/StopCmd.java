@@ -175,6 +175,6 @@ public final class StopCmd extends Command {
      */
     @Override
     protected void errExit() {
-        System.exit(1);
+        exit(1);
     }
 }
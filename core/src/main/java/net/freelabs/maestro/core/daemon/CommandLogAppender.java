@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.core.daemon;
+
+import java.io.PrintWriter;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Layout;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ *
+ * Class whose instances stream the log of a command executed by the
+ * {@link Daemon Daemon} to the client that sent it.
+ * <p>
+ * The events of a command are recognized by the id of the command in the
+ * mapped diagnostic context, which is inherited by the threads the command
+ * creates. Shared threads, like the zookeeper event thread and the docker
+ * events thread, are created without a context. The zookeeper callbacks and
+ * watchers of a command carry its context through {@link
+ * net.freelabs.maestro.core.utils.LogContext LogContext}. Other events of
+ * shared threads, e.g. the service state updates from docker events, are not
+ * on behalf of a command and go only to the log of the daemon.
+ */
+final class CommandLogAppender extends AppenderSkeleton {
+
+    /**
+     * The key of the id of the command in the mapped diagnostic context.
+     */
+    static final String MDC_KEY = "cmd";
+    /**
+     * The id of the command.
+     */
+    private final String cmdId;
+    /**
+     * The output to the client.
+     */
+    private final PrintWriter out;
+    /**
+     * The layout of the streamed events.
+     */
+    private static final Layout LAYOUT = new PatternLayout("%d{ISO8601} - %-5p [%t:%C{1}@%L] - %m%n");
+
+    /**
+     * Constructor.
+     *
+     * @param cmdId the id of the command.
+     * @param out the output to the client.
+     */
+    CommandLogAppender(String cmdId, PrintWriter out) {
+        this.cmdId = cmdId;
+        this.out = out;
+        setLayout(LAYOUT);
+    }
+
+    @Override
+    protected void append(LoggingEvent event) {
+        if (cmdId.equals(event.getMDC(MDC_KEY))) {
+            synchronized (out) {
+                out.print(layout.format(event));
+                out.flush();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    @Override
+    public boolean requiresLayout() {
+        return true;
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.core.daemon;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import net.freelabs.maestro.core.boot.Main;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ *
+ * Class whose instances run the program as a daemon. The daemon executes the
+ * commands sent to a localhost port and streams their log back to the client.
+ * <p>
+ * The program is loaded once, so a command does not pay for starting a new
+ * JVM, loading the classes and creating the JAXB contexts and docker clients.
+ * Commands are executed concurrently, every command with its own
+ * {@link net.freelabs.maestro.core.cmd.CommandHandler CommandHandler}.
+ * <p>
+ * A command is sent as a POST request to {@link #CMD_PATH CMD_PATH}, with one
+ * command line argument per line. The working directory of the client is sent
+ * in the {@link #WORKDIR_HEADER WORKDIR_HEADER} header, to resolve relative
+ * paths.
+ * <p>
+ * Commands are executed with the rights of the daemon, so every request must
+ * carry in the {@link #TOKEN_HEADER TOKEN_HEADER} header the token that the
+ * daemon generates when it starts. The token is written to a
+ * {@link #tokenFile(int) file} that only the user of the daemon can read.
+ * Requests without the token are rejected. The last line of the response holds the exit code of the command,
+ * prefixed by {@link #EXIT_PREFIX EXIT_PREFIX}.
+ */
+public final class Daemon {
+
+    /**
+     * The default port of the daemon.
+     */
+    public static final int DEFAULT_PORT = 9405;
+    /**
+     * The path that commands are sent to.
+     */
+    static final String CMD_PATH = "/commands";
+    /**
+     * The header with the working directory of the client.
+     */
+    static final String WORKDIR_HEADER = "X-Maestro-Workdir";
+    /**
+     * The header with the token of the daemon.
+     */
+    static final String TOKEN_HEADER = "X-Maestro-Token";
+    /**
+     * The number of random bytes of the token.
+     */
+    private static final int TOKEN_BYTES = 32;
+    /**
+     * The prefix of the last line of a response, with the exit code.
+     */
+    static final String EXIT_PREFIX = "maestro-exit: ";
+    /**
+     * The maximum number of commands executed at the same time.
+     */
+    private static final int MAX_COMMANDS = 8;
+    /**
+     * The localhost port to listen to.
+     */
+    private final int port;
+    /**
+     * The token that requests must carry.
+     */
+    private byte[] token;
+    /**
+     * The server that receives the commands.
+     */
+    private HttpServer server;
+    /**
+     * The executor of the commands.
+     */
+    private ExecutorService executor;
+    /**
+     * Counter to generate the ids of the commands.
+     */
+    private final AtomicLong cmdIds = new AtomicLong();
+    /**
+     * Latch to wait until the daemon stops.
+     */
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(Daemon.class);
+
+    /**
+     * Constructor.
+     *
+     * @param port the localhost port to listen to.
+     */
+    public Daemon(int port) {
+        this.port = port;
+    }
+
+    /**
+     *
+     * @param port the localhost port of the daemon.
+     * @return the file with the token of the daemon listening on the port.
+     */
+    static Path tokenFile(int port) {
+        return Paths.get(System.getProperty("user.home"), ".maestro", "daemon-" + port + ".token");
+    }
+
+    /**
+     * Starts the daemon. The daemon is bound to the loopback address only and
+     * executes the requests that carry its token.
+     *
+     * @return true if the daemon started.
+     */
+    public boolean start() {
+        // generate the token and make it readable by the user of the daemon only
+        if (!writeToken()) {
+            return false;
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException ex) {
+            LOG.error("FAILED to start daemon on port {}: {}", port, ex.getMessage());
+            return false;
+        }
+        server.createContext(CMD_PATH, this::handleCommand);
+        executor = Executors.newFixedThreadPool(MAX_COMMANDS);
+        server.setExecutor(executor);
+        server.start();
+        // stop the daemon on program termination
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "Daemon-shutdown"));
+        LOG.info("Daemon listening on {}:{}", InetAddress.getLoopbackAddress().getHostAddress(), port);
+        return true;
+    }
+
+    /**
+     * Stops the daemon. Running commands are interrupted.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+        if (token != null) {
+            try {
+                Files.deleteIfExists(tokenFile(port));
+            } catch (IOException ex) {
+                LOG.warn("FAILED to delete daemon token: {}", ex.getMessage());
+            }
+        }
+        stopped.countDown();
+    }
+
+    /**
+     * Blocks until the daemon stops.
+     */
+    public void waitForShutdown() {
+        try {
+            stopped.await();
+        } catch (InterruptedException ex) {
+            // log the event
+            LOG.warn("Thread Interruped. Stopping.");
+            // set the interrupt status
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Generates the token of the daemon and writes it to the
+     * {@link #tokenFile(int) token file}. The file is created with owner-only
+     * permissions, in a directory with owner-only permissions.
+     *
+     * @return true if the token was written.
+     */
+    private boolean writeToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        Path file = tokenFile(port);
+        try {
+            Path dir = file.getParent();
+            if (!Files.isDirectory(dir)) {
+                Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(
+                        EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE)));
+            }
+            // re-create the file, so that it never holds the token with wider permissions
+            Files.deleteIfExists(file);
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(
+                    EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE)));
+            Files.write(file, hex.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | UnsupportedOperationException ex) {
+            LOG.error("FAILED to write daemon token to {}: {}", file, ex.getMessage());
+            return false;
+        }
+        token = hex.toString().getBytes(StandardCharsets.UTF_8);
+        return true;
+    }
+
+    /**
+     *
+     * @param exchange a request.
+     * @return true if the request carries the token of the daemon.
+     */
+    private boolean isAuthorized(HttpExchange exchange) {
+        String value = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+        // compare in constant time, not to leak the token through timing
+        return value != null && MessageDigest.isEqual(token, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Executes a command and streams its log to the client.
+     *
+     * @param exchange the request with the command.
+     * @throws IOException if the response cannot be written.
+     */
+    private void handleCommand(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        if (!isAuthorized(exchange)) {
+            LOG.warn("Rejected command without a valid token from {}.", exchange.getRemoteAddress());
+            exchange.sendResponseHeaders(401, -1);
+            exchange.close();
+            return;
+        }
+        // read the command line arguments
+        List<String> args = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    args.add(line);
+                }
+            }
+        }
+        String dir = exchange.getRequestHeaders().getFirst(WORKDIR_HEADER);
+        Path workDir = Paths.get(dir != null ? dir : System.getProperty("user.dir"));
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            String cmdId = String.valueOf(cmdIds.incrementAndGet());
+            CommandLogAppender appender = new CommandLogAppender(cmdId, out);
+            org.apache.log4j.Logger.getRootLogger().addAppender(appender);
+            MDC.put(CommandLogAppender.MDC_KEY, cmdId);
+            boolean success = false;
+            try {
+                LOG.info("Executing command {}: {}", cmdId, String.join(" ", args));
+                success = Main.run(args.toArray(new String[args.size()]), workDir, true);
+            } catch (RuntimeException ex) {
+                LOG.error("Something went wrong: ", ex);
+            } finally {
+                MDC.remove(CommandLogAppender.MDC_KEY);
+                org.apache.log4j.Logger.getRootLogger().removeAppender(appender);
+            }
+            synchronized (out) {
+                out.println(EXIT_PREFIX + (success ? 0 : 1));
+            }
+        }
+    }
+}
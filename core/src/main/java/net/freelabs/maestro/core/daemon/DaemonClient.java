@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.core.daemon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Class whose instances send commands to a {@link Daemon Daemon} and print the
+ * log of the commands as it is streamed back. Every command carries the token
+ * that the daemon wrote to its token file.
+ */
+public final class DaemonClient {
+
+    /**
+     * The localhost port of the daemon.
+     */
+    private final int port;
+    /**
+     * The exit code returned if the daemon is not running.
+     */
+    public static final int NOT_RUNNING = -1;
+    /**
+     * The maximum time (milliseconds) to wait to connect to the daemon.
+     */
+    private static final int CONNECT_TIMEOUT = 1000;
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(DaemonClient.class);
+
+    /**
+     * Constructor.
+     *
+     * @param port the localhost port of the daemon.
+     */
+    public DaemonClient(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Sends a command to the daemon and blocks until it is executed.
+     *
+     * @param args the command line arguments.
+     * @param workDir the directory relative paths are resolved against.
+     * @return the exit code of the command, {@link #NOT_RUNNING NOT_RUNNING} if
+     * the daemon is not running.
+     */
+    public int exec(String[] args, Path workDir) {
+        // read the token of the daemon, the daemon deletes it when it stops
+        String token;
+        try {
+            token = new String(Files.readAllBytes(Daemon.tokenFile(port)), StandardCharsets.UTF_8).trim();
+        } catch (NoSuchFileException ex) {
+            LOG.warn("Daemon NOT running on port {}.", port);
+            return NOT_RUNNING;
+        } catch (IOException ex) {
+            LOG.error("FAILED to read daemon token: {}", ex.getMessage());
+            return 1;
+        }
+        HttpURLConnection con = null;
+        try {
+            URL url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), port, Daemon.CMD_PATH);
+            con = (HttpURLConnection) url.openConnection();
+            con.setConnectTimeout(CONNECT_TIMEOUT);
+            con.setRequestMethod("POST");
+            con.setRequestProperty(Daemon.WORKDIR_HEADER, workDir.toAbsolutePath().toString());
+            con.setRequestProperty(Daemon.TOKEN_HEADER, token);
+            con.setDoOutput(true);
+            try (OutputStream out = con.getOutputStream()) {
+                out.write(String.join("\n", args).getBytes(StandardCharsets.UTF_8));
+            }
+            // print the log of the command, the last line holds the exit code
+            int status = 1;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith(Daemon.EXIT_PREFIX)) {
+                        status = Integer.parseInt(line.substring(Daemon.EXIT_PREFIX.length()).trim());
+                    } else {
+                        System.out.println(line);
+                    }
+                }
+            }
+            return status;
+        } catch (ConnectException ex) {
+            LOG.warn("Daemon NOT running on port {}.", port);
+            return NOT_RUNNING;
+        } catch (IOException | NumberFormatException ex) {
+            LOG.error("FAILED to execute command on daemon: {}", ex.getMessage());
+            return 1;
+        } finally {
+            if (con != null) {
+                con.disconnect();
+            }
+        }
+    }
+}
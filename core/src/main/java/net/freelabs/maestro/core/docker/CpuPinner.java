@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.core.docker;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.HostConfig;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import net.freelabs.maestro.core.broker.Broker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * <p>
+ * Class that assigns dedicated cpus to the containers of latency-sensitive
+ * services.
+ * <p>
+ * The host topology is read from {@code /sys/devices/system/node}. The cpus
+ * of a pin are taken from a single NUMA node, together with its memory node,
+ * and never overlap with the cpusets of the other containers of the
+ * applications or with pins not yet applied to a container. Only applies to a
+ * local docker host.
+ */
+public final class CpuPinner {
+
+    /**
+     * The directory with the NUMA nodes of the host.
+     */
+    private static final String NODE_DIR = "/sys/devices/system/node";
+    /**
+     * The cpus of the host, by NUMA node. Read once.
+     */
+    private static Map<Integer, Set<Integer>> topology;
+    /**
+     * The cpusets of the containers of the applications, by container id.
+     */
+    private static final Map<String, Set<Integer>> CON_CPUS = new HashMap<>();
+    /**
+     * The pins handed out and not yet applied to a container.
+     */
+    private static final Set<Pin> PENDING = new HashSet<>();
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(CpuPinner.class);
+
+    /**
+     * The cpus and memory node assigned to a container.
+     */
+    public static final class Pin {
+
+        /**
+         * The service the pin was assigned to.
+         */
+        private final String srvName;
+        /**
+         * The assigned cpus.
+         */
+        private final Set<Integer> cpus;
+        /**
+         * The NUMA node of the cpus.
+         */
+        private final int node;
+
+        /**
+         * Constructor.
+         *
+         * @param srvName the service the pin is assigned to.
+         * @param cpus the assigned cpus.
+         * @param node the NUMA node of the cpus.
+         */
+        private Pin(String srvName, Set<Integer> cpus, int node) {
+            this.srvName = srvName;
+            this.cpus = cpus;
+            this.node = node;
+        }
+
+        /**
+         *
+         * @return the assigned cpus, in the docker cpuset format.
+         */
+        public String getCpusetCpus() {
+            return cpus.stream().map(String::valueOf).collect(Collectors.joining(","));
+        }
+
+        /**
+         *
+         * @return the memory node of the cpus, in the docker cpuset format.
+         */
+        public String getCpusetMems() {
+            return String.valueOf(node);
+        }
+
+        @Override
+        public String toString() {
+            return srvName + ": cpus " + getCpusetCpus() + " on node " + node;
+        }
+    }
+
+    /**
+     * Private constructor. Static methods only.
+     */
+    private CpuPinner() {
+    }
+
+    /**
+     * <p>
+     * Assigns dedicated cpus of a single NUMA node to the container of a
+     * service.
+     * <p>
+     * The node with the most free cpus is chosen. The pin must be {@link
+     * #release(net.freelabs.maestro.core.docker.CpuPinner.Pin) released} when
+     * the container is created, or its creation failed.
+     *
+     * @param docker the docker client.
+     * @param srvName the service of the container.
+     * @param count the number of cpus.
+     * @return the assigned cpus. Null if no node has enough free cpus or the
+     * topology could not be read.
+     */
+    public static synchronized Pin pin(DockerClient docker, String srvName, int count) {
+        // read the host topology
+        if (topology == null) {
+            topology = readTopology();
+        }
+        if (topology.isEmpty()) {
+            return null;
+        }
+        // get the cpus in use by containers and pending pins
+        Set<Integer> used = getUsedCpus(docker);
+        if (used == null) {
+            return null;
+        }
+        // find the node with the most free cpus
+        int bestNode = -1;
+        List<Integer> bestFree = new ArrayList<>();
+        for (Map.Entry<Integer, Set<Integer>> entry : topology.entrySet()) {
+            List<Integer> free = new ArrayList<>(entry.getValue());
+            free.removeAll(used);
+            if (free.size() >= count && free.size() > bestFree.size()) {
+                bestNode = entry.getKey();
+                bestFree = free;
+            }
+        }
+        if (bestNode < 0) {
+            LOG.warn("No NUMA node has {} free cpus for service {}.", count, srvName);
+            return null;
+        }
+        // take the lowest free cpus of the node
+        Pin pin = new Pin(srvName, new TreeSet<>(bestFree.subList(0, count)), bestNode);
+        PENDING.add(pin);
+        LOG.info("Pinned service {}", pin);
+        return pin;
+    }
+
+    /**
+     * Releases a pending pin. The cpus remain assigned through the cpuset of
+     * the created container.
+     *
+     * @param pin the pin to release.
+     */
+    public static synchronized void release(Pin pin) {
+        PENDING.remove(pin);
+    }
+
+    /**
+     * Collects the cpus in use by the containers of the applications and by
+     * the pending pins. The cpusets of stopped containers are counted, as they
+     * apply again when the containers restart.
+     *
+     * @param docker the docker client.
+     * @return the used cpus. Null if the containers could not be listed.
+     */
+    private static Set<Integer> getUsedCpus(DockerClient docker) {
+        Set<Integer> used = new HashSet<>();
+        try {
+            List<Container> list = docker.listContainersCmd()
+                    .withShowAll(true)
+                    .withLabelFilter(Broker.APP_LABEL)
+                    .exec();
+            // forget removed containers
+            Set<String> ids = list.stream().map(Container::getId).collect(Collectors.toSet());
+            CON_CPUS.keySet().retainAll(ids);
+            for (String cid : ids) {
+                // the cpuset of a container does not change, inspect once
+                Set<Integer> cpus = CON_CPUS.get(cid);
+                if (cpus == null) {
+                    HostConfig hostConf = docker.inspectContainerCmd(cid).exec().getHostConfig();
+                    cpus = parseCpuList(hostConf == null ? null : hostConf.getCpusetCpus());
+                    CON_CPUS.put(cid, cpus);
+                }
+                used.addAll(cpus);
+            }
+        } catch (RuntimeException ex) {
+            LOG.error("Could not get the cpusets of the containers: {}", ex.getMessage());
+            return null;
+        }
+        // add the pins not yet applied
+        for (Pin pin : PENDING) {
+            used.addAll(pin.cpus);
+        }
+        return used;
+    }
+
+    /**
+     * Reads the cpus of every NUMA node of the host.
+     *
+     * @return the cpus, by node. Empty if the topology is not available.
+     */
+    private static Map<Integer, Set<Integer>> readTopology() {
+        Map<Integer, Set<Integer>> nodes = new TreeMap<>();
+        File[] nodeDirs = new File(NODE_DIR).listFiles((dir, name) -> name.matches("node[0-9]+"));
+        if (nodeDirs == null) {
+            LOG.warn("Host topology not available at {}.", NODE_DIR);
+            return nodes;
+        }
+        for (File nodeDir : nodeDirs) {
+            int node = Integer.parseInt(nodeDir.getName().substring("node".length()));
+            try {
+                String cpuList = new String(Files.readAllBytes(Paths.get(nodeDir.getPath(), "cpulist")), StandardCharsets.UTF_8);
+                Set<Integer> cpus = parseCpuList(cpuList);
+                // skip memory-only nodes
+                if (!cpus.isEmpty()) {
+                    nodes.put(node, cpus);
+                }
+            } catch (IOException | NumberFormatException ex) {
+                LOG.warn("Could not read the cpus of NUMA node {}: {}", node, ex.getMessage());
+            }
+        }
+        LOG.info("Host topology: {}", nodes);
+        return nodes;
+    }
+
+    /**
+     * Parses a cpu list, e.g. {@code 0-3,8,10-11}.
+     *
+     * @param cpuList the cpu list.
+     * @return the cpus of the list. Empty if the list is null or empty.
+     */
+    private static Set<Integer> parseCpuList(String cpuList) {
+        Set<Integer> cpus = new TreeSet<>();
+        if (cpuList == null || cpuList.trim().isEmpty()) {
+            return cpus;
+        }
+        for (String range : cpuList.trim().split(",")) {
+            String[] bounds = range.trim().split("-");
+            int first = Integer.parseInt(bounds[0]);
+            int last = bounds.length > 1 ? Integer.parseInt(bounds[1]) : first;
+            for (int cpu = first; cpu <= last; cpu++) {
+                cpus.add(cpu);
+            }
+        }
+        return cpus;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.core.docker;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * <p>
+ * Class that shares the docker host among the applications deployed at the
+ * same time.
+ * <p>
+ * Container boots are bounded to {@link #MAX_BOOTS MAX_BOOTS} at a time.
+ * Waiting boots are granted round-robin among applications, so an application
+ * with many containers does not delay the boot of an application with few
+ * containers that was started after it.
+ */
+public final class DockerDispatcher {
+
+    /**
+     * The single instance of the class.
+     */
+    private static final DockerDispatcher INSTANCE = new DockerDispatcher();
+    /**
+     * The maximum number of containers booted at the same time.
+     */
+    private static final int MAX_BOOTS = 8;
+    /**
+     * The waiting boots, by application, in round-robin order.
+     */
+    private final Map<String, Deque<Turn>> waiting = new LinkedHashMap<>();
+    /**
+     * The number of containers booting.
+     */
+    private int booting;
+    /**
+     * Lock that guards the state of the dispatcher.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(DockerDispatcher.class);
+
+    /**
+     * Constructor.
+     */
+    private DockerDispatcher() {
+    }
+
+    /**
+     *
+     * @return the single instance of the class.
+     */
+    public static DockerDispatcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Waits for a turn to boot a container. Every successful call must be
+     * followed by a call to {@link #release() release}.
+     *
+     * @param appId the id of the application of the container.
+     * @return true if a turn was granted, false if the thread was interrupted.
+     */
+    public boolean acquire(String appId) {
+        lock.lock();
+        try {
+            if (booting < MAX_BOOTS && waiting.isEmpty()) {
+                booting++;
+                return true;
+            }
+            Turn turn = new Turn(lock.newCondition());
+            waiting.computeIfAbsent(appId, (key) -> new ArrayDeque<>()).add(turn);
+            LOG.debug("Waiting for the docker host, application {}.", appId);
+            try {
+                while (!turn.granted) {
+                    turn.signal.await();
+                }
+                return true;
+            } catch (InterruptedException ex) {
+                // give up the turn, or the place in the queue
+                if (turn.granted) {
+                    grantNext();
+                } else {
+                    removeWaiting(appId, turn);
+                }
+                LOG.warn("Thread Interrupted. Stopping.");
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends a turn and grants the next one.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            grantNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Passes a finished turn to the next application in round-robin order. The
+     * application is moved to the end of the order.
+     */
+    private void grantNext() {
+        if (waiting.isEmpty()) {
+            booting--;
+            return;
+        }
+        String appId = waiting.keySet().iterator().next();
+        Deque<Turn> turns = waiting.remove(appId);
+        Turn turn = turns.poll();
+        turn.granted = true;
+        turn.signal.signal();
+        if (!turns.isEmpty()) {
+            waiting.put(appId, turns);
+        }
+    }
+
+    /**
+     * Removes a waiting boot.
+     *
+     * @param appId the id of the application of the container.
+     * @param turn the turn of the waiting boot.
+     */
+    private void removeWaiting(String appId, Turn turn) {
+        Deque<Turn> turns = waiting.get(appId);
+        turns.remove(turn);
+        if (turns.isEmpty()) {
+            waiting.remove(appId);
+        }
+    }
+
+    /**
+     * The turn of a waiting boot.
+     */
+    private static final class Turn {
+
+        /**
+         * Condition signaled when the turn is granted.
+         */
+        private final Condition signal;
+        /**
+         * Set when the turn is granted.
+         */
+        private boolean granted;
+
+        /**
+         * Constructor.
+         *
+         * @param signal condition signaled when the turn is granted.
+         */
+        private Turn(Condition signal) {
+            this.signal = signal;
+        }
+    }
+}
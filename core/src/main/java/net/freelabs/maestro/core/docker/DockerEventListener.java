@@ -0,0 +1,462 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.core.docker;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.core.command.EventsResultCallback;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import net.freelabs.maestro.core.broker.Broker;
+import net.freelabs.maestro.core.utils.LogContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * <p>
+ * Class that listens to the docker events stream for the containers of the
+ * deployed applications.
+ * <p>
+ * One stream is opened per docker client and shared by the holders, filtered
+ * by the application label. Events are delivered to the registered {@link
+ * EventHandler handlers} and to the callers {@link #expect(java.lang.String,
+ * java.lang.String, java.lang.String) expecting} an event. The stream is
+ * closed when the last holder releases it.
+ * <p>
+ * If the stream ends while held, e.g. when the docker daemon restarts, it is
+ * re-opened with exponential backoff from the time of the last received
+ * event, so the handlers and expectations carry over to the new stream. The
+ * application and service of a container are read from its labels when the
+ * stream opens and when the container is created or started, so that the
+ * events of a removed container are still delivered.
+ */
+public final class DockerEventListener {
+
+    /**
+     * The open listeners, by docker client.
+     */
+    private static final Map<DockerClient, DockerEventListener> LISTENERS = new HashMap<>();
+    /**
+     * The docker client of the stream.
+     */
+    private final DockerClient docker;
+    /**
+     * The number of holders of the listener.
+     */
+    private int refs;
+    /**
+     * Set when the last holder released the listener.
+     */
+    private boolean closed;
+    /**
+     * The open stream. Null while re-opening.
+     */
+    private Stream stream;
+    /**
+     * The time (seconds) of the last received event, initially the time the
+     * listener was created. A stream opens from this time, so no event is
+     * lost while re-opening.
+     */
+    private volatile long since;
+    /**
+     * The time (seconds) to wait before re-opening the stream.
+     */
+    private long reopenDelay = MIN_REOPEN_DELAY;
+    /**
+     * Re-opens the stream when it ends.
+     */
+    private final ScheduledExecutorService reopener;
+    /**
+     * The application id and service name of the containers, by container
+     * id.
+     */
+    private final Map<String, String[]> conServices = new ConcurrentHashMap<>();
+    /**
+     * The registered event handlers.
+     */
+    private final List<EventHandler> handlers = new CopyOnWriteArrayList<>();
+    /**
+     * The expected events not yet received.
+     */
+    private final List<Expectation> expectations = new CopyOnWriteArrayList<>();
+    /**
+     * The minimum time (seconds) to wait before re-opening the stream.
+     */
+    private static final long MIN_REOPEN_DELAY = 1;
+    /**
+     * The maximum time (seconds) to wait before re-opening the stream.
+     */
+    private static final long MAX_REOPEN_DELAY = 60;
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(DockerEventListener.class);
+
+    /**
+     * Handles the events of the containers of the applications.
+     */
+    @FunctionalInterface
+    public interface EventHandler {
+
+        /**
+         * Handles an event.
+         *
+         * @param appId the id of the application of the container.
+         * @param srvName the service of the container.
+         * @param cid the container id.
+         * @param status the event, e.g. start, die, oom or health_status.
+         */
+        public void onEvent(String appId, String srvName, String cid, String status);
+    }
+
+    /**
+     * An event expected for the container of a service.
+     */
+    public final class Expectation {
+
+        /**
+         * The id of the application.
+         */
+        private final String appId;
+        /**
+         * The name of the service.
+         */
+        private final String srvName;
+        /**
+         * The expected event.
+         */
+        private final String status;
+        /**
+         * The time (seconds) from which events match.
+         */
+        private final long from;
+        /**
+         * Latch released when the event is received.
+         */
+        private final CountDownLatch received = new CountDownLatch(1);
+
+        /**
+         * Constructor.
+         *
+         * @param appId the id of the application.
+         * @param srvName the name of the service.
+         * @param status the expected event.
+         */
+        private Expectation(String appId, String srvName, String status) {
+            this.appId = appId;
+            this.srvName = srvName;
+            this.status = status;
+            from = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        }
+
+        /**
+         * Waits for the event. The expectation is removed in any case.
+         *
+         * @param timeout the maximum time to wait.
+         * @param unit the time unit of the timeout.
+         * @return true if the event was received.
+         * @throws InterruptedException if thread is interrupted while waiting.
+         */
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            try {
+                return received.await(timeout, unit);
+            } finally {
+                expectations.remove(this);
+            }
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param docker the docker client of the stream.
+     */
+    private DockerEventListener(DockerClient docker) {
+        this.docker = docker;
+        since = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        reopener = Executors.newSingleThreadScheduledExecutor((r) -> {
+            Thread t = new Thread(r, "Docker-Events-Reopen");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * A connection to the docker events stream.
+     */
+    private final class Stream extends EventsResultCallback {
+
+        @Override
+        public void onStart(Closeable stream) {
+            super.onStart(stream);
+            synchronized (DockerEventListener.this) {
+                reopenDelay = MIN_REOPEN_DELAY;
+            }
+        }
+
+        @Override
+        public void onNext(Event event) {
+            handle(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            LOG.warn("Docker events stream FAILED: {}", throwable.getMessage());
+            ended(this);
+            super.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            ended(this);
+            super.onComplete();
+        }
+    }
+
+    /**
+     * Returns the listener of a docker client, opening the events stream if
+     * needed.
+     *
+     * @param docker the docker client.
+     * @return the listener.
+     */
+    public static DockerEventListener acquire(DockerClient docker) {
+        synchronized (LISTENERS) {
+            DockerEventListener listener = LISTENERS.get(docker);
+            if (listener == null) {
+                listener = new DockerEventListener(docker);
+                LISTENERS.put(docker, listener);
+                listener.open();
+            }
+            listener.refs++;
+            return listener;
+        }
+    }
+
+    /**
+     * Releases a listener. The events stream is closed if no other holder
+     * uses it.
+     *
+     * @param listener the listener.
+     */
+    public static void release(DockerEventListener listener) {
+        synchronized (LISTENERS) {
+            listener.refs--;
+            if (listener.refs > 0) {
+                return;
+            }
+            LISTENERS.remove(listener.docker, listener);
+        }
+        listener.close();
+    }
+
+    /**
+     * Opens the stream from the time of the last received event. The
+     * services of the existing containers are read first, so that the events
+     * of containers removed later are delivered.
+     */
+    private synchronized void open() {
+        if (closed) {
+            return;
+        }
+        Stream newStream = new Stream();
+        stream = newStream;
+        // the stream thread is shared, it must not inherit the log context
+        // of the command that opens it
+        Map<String, String> logContext = LogContext.detach();
+        try {
+            loadServices();
+            docker.eventsCmd()
+                    .withSince(String.valueOf(since))
+                    .withLabelFilter(Broker.APP_LABEL)
+                    .exec(newStream);
+        } catch (RuntimeException ex) {
+            LOG.warn("FAILED to open docker events stream: {}", ex.getMessage());
+            ended(newStream);
+        } finally {
+            LogContext.restore(logContext);
+        }
+    }
+
+    /**
+     * Schedules the stream to re-open, if it ended while held. The delay
+     * doubles on every attempt, up to {@link #MAX_REOPEN_DELAY
+     * MAX_REOPEN_DELAY}, and is reset when a stream starts.
+     *
+     * @param ended the stream that ended.
+     */
+    private synchronized void ended(Stream ended) {
+        if (closed || stream != ended) {
+            return;
+        }
+        stream = null;
+        LOG.warn("Docker events stream ended. Re-opening in {} seconds.", reopenDelay);
+        reopener.schedule(this::open, reopenDelay, TimeUnit.SECONDS);
+        reopenDelay = Math.min(reopenDelay * 2, MAX_REOPEN_DELAY);
+    }
+
+    /**
+     * Closes the stream and stops re-opening it.
+     */
+    private void close() {
+        Stream toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = stream;
+            stream = null;
+        }
+        reopener.shutdownNow();
+        if (toClose != null) {
+            try {
+                toClose.close();
+            } catch (IOException ex) {
+                LOG.warn("FAILED to close events stream: {}", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Registers an event handler.
+     *
+     * @param handler the handler.
+     */
+    public void addHandler(EventHandler handler) {
+        handlers.add(handler);
+    }
+
+    /**
+     * Removes an event handler.
+     *
+     * @param handler the handler.
+     */
+    public void removeHandler(EventHandler handler) {
+        handlers.remove(handler);
+    }
+
+    /**
+     * Registers an expected event for the container of a service. Must be
+     * called before the action that causes the event.
+     *
+     * @param appId the id of the application.
+     * @param srvName the name of the service.
+     * @param status the expected event.
+     * @return the expectation to wait on.
+     */
+    public Expectation expect(String appId, String srvName, String status) {
+        Expectation expectation = new Expectation(appId, srvName, status);
+        expectations.add(expectation);
+        return expectation;
+    }
+
+    /**
+     * Delivers an event to the expectations and the handlers.
+     *
+     * @param event the event.
+     */
+    private void handle(Event event) {
+        String cid = event.getId();
+        String status = event.getStatus();
+        if (cid == null || status == null) {
+            return;
+        }
+        long time = event.getTime() != null ? event.getTime() : since;
+        // re-open from the last event
+        since = Math.max(since, time);
+        String[] conService = conServices.get(cid);
+        if (conService == null) {
+            // resolve while the container exists, later events may follow its removal
+            if (!status.equals("create") && !status.equals("start")) {
+                LOG.debug("Event {} of unknown container {} ignored.", status, cid);
+                return;
+            }
+            conService = inspectService(cid);
+            if (conService == null) {
+                return;
+            }
+            conServices.put(cid, conService);
+        }
+        String[] srv = conService;
+        LOG.debug("Container event {} for service {} of {}.", status, srv[1], srv[0]);
+        expectations.stream().filter((e) -> e.appId.equals(srv[0]) && e.srvName.equals(srv[1])
+                && e.status.equals(status) && time >= e.from).forEach((e) -> {
+            e.received.countDown();
+        });
+        handlers.stream().forEach((handler) -> {
+            handler.onEvent(srv[0], srv[1], cid, status);
+        });
+        if (status.equals("destroy")) {
+            conServices.remove(cid);
+        }
+    }
+
+    /**
+     * Reads the application id and service name of the existing containers
+     * of the applications.
+     */
+    private void loadServices() {
+        List<Container> cons = docker.listContainersCmd()
+                .withShowAll(true)
+                .withLabelFilter(Broker.APP_LABEL)
+                .exec();
+        for (Container con : cons) {
+            String[] conService = toService(con.getLabels());
+            if (conService != null) {
+                conServices.put(con.getId(), conService);
+            }
+        }
+    }
+
+    /**
+     * Reads the application id and service name of a container from its
+     * labels.
+     *
+     * @param cid the container id.
+     * @return the application id and service name. Null if the container
+     * does not exist or is not labeled.
+     */
+    private String[] inspectService(String cid) {
+        try {
+            return toService(docker.inspectContainerCmd(cid).exec().getConfig().getLabels());
+        } catch (RuntimeException ex) {
+            LOG.debug("Container {} NOT inspected: {}", cid, ex.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * @param labels the labels of a container.
+     * @return the application id and service name. Null if the container is
+     * not labeled.
+     */
+    private static String[] toService(Map<String, String> labels) {
+        if (labels != null && labels.containsKey(Broker.APP_LABEL) && labels.containsKey(Broker.SERVICE_LABEL)) {
+            return new String[]{labels.get(Broker.APP_LABEL), labels.get(Broker.SERVICE_LABEL)};
+        }
+        return null;
+    }
+}
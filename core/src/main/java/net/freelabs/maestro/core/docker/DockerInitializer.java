@@ -20,6 +20,9 @@ import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.model.Info;
 import com.github.dockerjava.core.DockerClientBuilder;
 import com.github.dockerjava.core.DockerClientConfig;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +37,11 @@ public final class DockerInitializer {
      * The docker client that will communicate with the docker daemon.
      */
     private final DockerClient dockerClient;
+    /**
+     * The docker clients created, by configuration. A client is created once
+     * per configuration and shared by the commands of a long running program.
+     */
+    private static final Map<String, DockerClient> CLIENTS = new ConcurrentHashMap<>();
     /**
      * A Logger object.
      */
@@ -53,7 +61,7 @@ public final class DockerInitializer {
      * --> your registry email
      */
     public DockerInitializer(String... dockerArgs) {
-        dockerClient = initDockerClient(dockerArgs);
+        dockerClient = CLIENTS.computeIfAbsent(Arrays.toString(dockerArgs), (key) -> initDockerClient(dockerArgs));
     }
 
     /**
@@ -38,6 +38,7 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
  *         &lt;element name="stop" type="{}stopRes" minOccurs="0"/>
  *         &lt;element name="tasks" type="{}tasks" minOccurs="0"/>
  *         &lt;element name="env" type="{}containerEnvironment"/>
+ *         &lt;element name="metrics" type="{}metrics" minOccurs="0"/>
  *       &lt;/sequence>
  *     &lt;/restriction>
  *   &lt;/complexContent>
@@ -54,7 +55,8 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
     "start",
     "stop",
     "tasks",
-    "env"
+    "env",
+    "metrics"
 })
 @XmlSeeAlso({
     BusinessContainer.class,
@@ -77,6 +79,7 @@ public abstract class Container {
     protected Tasks tasks;
     @XmlElement(required = true)
     protected ContainerEnvironment env;
+    protected Metrics metrics;
 
     @Override
     public String toString() {
@@ -234,4 +237,24 @@ public abstract class Container {
         this.env = value;
     }
 
+    /**
+     * Gets the value of the metrics property.
+     *
+     * @return possible object is {@link Metrics }
+     *
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the value of the metrics property.
+     *
+     * @param value allowed object is {@link Metrics }
+     *
+     */
+    public void setMetrics(Metrics value) {
+        this.metrics = value;
+    }
+
 }
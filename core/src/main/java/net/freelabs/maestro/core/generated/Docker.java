@@ -35,6 +35,7 @@ import javax.xml.bind.annotation.XmlType;
  *         &lt;element name="publishPort" type="{}publishPort" maxOccurs="unbounded" minOccurs="0"/>
  *         &lt;element name="publishAllPorts" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/>
  *         &lt;element name="privileged" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/>
+ *         &lt;element name="resources" type="{}resources" minOccurs="0"/>
  *       &lt;/sequence>
  *     &lt;/restriction>
  *   &lt;/complexContent>
@@ -52,7 +53,8 @@ import javax.xml.bind.annotation.XmlType;
     "exposePorts",
     "publishPort",
     "publishAllPorts",
-    "privileged"
+    "privileged",
+    "resources"
 })
 public class Docker {
 
@@ -67,6 +69,7 @@ public class Docker {
     protected List<PublishPort> publishPort;
     protected Boolean publishAllPorts;
     protected Boolean privileged;
+    protected Resources resources;
 
     /**
      * Gets the value of the image property.
@@ -270,4 +273,24 @@ public class Docker {
         this.privileged = value;
     }
 
+    /**
+     * Gets the value of the resources property.
+     *
+     * @return possible object is {@link Resources }
+     *
+     */
+    public Resources getResources() {
+        return resources;
+    }
+
+    /**
+     * Sets the value of the resources property.
+     *
+     * @param value allowed object is {@link Resources }
+     *
+     */
+    public void setResources(Resources value) {
+        this.resources = value;
+    }
+
 }
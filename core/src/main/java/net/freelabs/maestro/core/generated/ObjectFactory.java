@@ -52,6 +52,46 @@ public class ObjectFactory {
         return new Containers();
     }
 
+    /**
+     * Create an instance of {@link Probe }
+     * 
+     */
+    public Probe createProbe() {
+        return new Probe();
+    }
+
+    /**
+     * Create an instance of {@link RestartPolicy }
+     * 
+     */
+    public RestartPolicy createRestartPolicy() {
+        return new RestartPolicy();
+    }
+
+    /**
+     * Create an instance of {@link Reload }
+     * 
+     */
+    public Reload createReload() {
+        return new Reload();
+    }
+
+    /**
+     * Create an instance of {@link Sampling }
+     * 
+     */
+    public Sampling createSampling() {
+        return new Sampling();
+    }
+
+    /**
+     * Create an instance of {@link Metrics }
+     * 
+     */
+    public Metrics createMetrics() {
+        return new Metrics();
+    }
+
     /**
      * Create an instance of {@link StartRes }
      * 
@@ -172,4 +212,12 @@ public class ObjectFactory {
         return new StartElem();
     }
 
+    /**
+     * Create an instance of {@link Resources }
+     * 
+     */
+    public Resources createResources() {
+        return new Resources();
+    }
+
 }
@@ -29,6 +29,10 @@ import javax.xml.bind.annotation.XmlType;
  *         &lt;element name="preMain" type="{}startElem" maxOccurs="unbounded" minOccurs="0"/>
  *         &lt;element name="main" type="{http://www.w3.org/2001/XMLSchema}string"/>
  *         &lt;element name="postMain" type="{}startElem" maxOccurs="unbounded" minOccurs="0"/>
+ *         &lt;element name="probe" type="{}probe" minOccurs="0"/>
+ *         &lt;element name="restart" type="{}restartPolicy" minOccurs="0"/>
+ *         &lt;element name="reload" type="{}reload" minOccurs="0"/>
+ *         &lt;element name="sampling" type="{}sampling" minOccurs="0"/>
  *       &lt;/sequence>
  *     &lt;/restriction>
  *   &lt;/complexContent>
@@ -41,7 +45,11 @@ import javax.xml.bind.annotation.XmlType;
 @XmlType(name = "startRes", propOrder = {
     "preMain",
     "main",
-    "postMain"
+    "postMain",
+    "probe",
+    "restart",
+    "reload",
+    "sampling"
 })
 public class StartRes {
 
@@ -49,6 +57,10 @@ public class StartRes {
     @XmlElement(required = true)
     protected String main;
     protected List<StartElem> postMain;
+    protected Probe probe;
+    protected RestartPolicy restart;
+    protected Reload reload;
+    protected Sampling sampling;
 
     /**
      * Gets the value of the preMain property.
@@ -132,4 +144,100 @@ public class StartRes {
         return this.postMain;
     }
 
+    /**
+     * Gets the value of the probe property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Probe }
+     *     
+     */
+    public Probe getProbe() {
+        return probe;
+    }
+
+    /**
+     * Sets the value of the probe property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Probe }
+     *     
+     */
+    public void setProbe(Probe value) {
+        this.probe = value;
+    }
+
+    /**
+     * Gets the value of the restart property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link RestartPolicy }
+     *     
+     */
+    public RestartPolicy getRestart() {
+        return restart;
+    }
+
+    /**
+     * Sets the value of the restart property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link RestartPolicy }
+     *     
+     */
+    public void setRestart(RestartPolicy value) {
+        this.restart = value;
+    }
+
+    /**
+     * Gets the value of the reload property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Reload }
+     *     
+     */
+    public Reload getReload() {
+        return reload;
+    }
+
+    /**
+     * Sets the value of the reload property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Reload }
+     *     
+     */
+    public void setReload(Reload value) {
+        this.reload = value;
+    }
+
+    /**
+     * Gets the value of the sampling property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Sampling }
+     *     
+     */
+    public Sampling getSampling() {
+        return sampling;
+    }
+
+    /**
+     * Sets the value of the sampling property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Sampling }
+     *     
+     */
+    public void setSampling(Sampling value) {
+        this.sampling = value;
+    }
+
 }
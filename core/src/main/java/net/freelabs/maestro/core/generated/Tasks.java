@@ -8,6 +8,8 @@
 
 package net.freelabs.maestro.core.generated;
 
+import java.util.ArrayList;
+import java.util.List;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
@@ -24,7 +26,7 @@ import javax.xml.bind.annotation.XmlType;
  *   &lt;complexContent>
  *     &lt;restriction base="{http://www.w3.org/2001/XMLSchema}anyType">
  *       &lt;sequence>
- *         &lt;element name="substEnv" type="{}substEnv"/>
+ *         &lt;element name="substEnv" type="{}substEnv" maxOccurs="unbounded"/>
  *       &lt;/sequence>
  *     &lt;/restriction>
  *   &lt;/complexContent>
@@ -40,30 +42,35 @@ import javax.xml.bind.annotation.XmlType;
 public class Tasks {
 
     @XmlElement(required = true)
-    protected SubstEnv substEnv;
+    protected List<SubstEnv> substEnv;
 
     /**
      * Gets the value of the substEnv property.
      * 
-     * @return
-     *     possible object is
-     *     {@link SubstEnv }
-     *     
-     */
-    public SubstEnv getSubstEnv() {
-        return substEnv;
-    }
-
-    /**
-     * Sets the value of the substEnv property.
+     * <p>
+     * This accessor method returns a reference to the live list,
+     * not a snapshot. Therefore any modification you make to the
+     * returned list will be present inside the JAXB object.
+     * This is why there is not a <CODE>set</CODE> method for the substEnv property.
+     * 
+     * <p>
+     * For example, to add a new item, do as follows:
+     * <pre>
+     *    getSubstEnv().add(newItem);
+     * </pre>
+     * 
+     * 
+     * <p>
+     * Objects of the following type(s) are allowed in the list
+     * {@link SubstEnv }
+     * 
      * 
-     * @param value
-     *     allowed object is
-     *     {@link SubstEnv }
-     *     
      */
-    public void setSubstEnv(SubstEnv value) {
-        this.substEnv = value;
+    public List<SubstEnv> getSubstEnv() {
+        if (substEnv == null) {
+            substEnv = new ArrayList<SubstEnv>();
+        }
+        return this.substEnv;
     }
 
 }
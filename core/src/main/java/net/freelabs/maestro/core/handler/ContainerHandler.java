@@ -17,8 +17,11 @@
 package net.freelabs.maestro.core.handler;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import net.freelabs.maestro.core.generated.BusinessContainer;
 import net.freelabs.maestro.core.generated.Container;
 import net.freelabs.maestro.core.generated.Containers;
@@ -32,16 +35,18 @@ import net.freelabs.maestro.core.utils.Utils;
  * the declared container types, get containers from the collection of every
  * container type or get the available containers exhaustively.
  * <p>
+ * An immutable index of the declared containers is built once on construction.
+ * The index maps container names to containers, container types to containers
+ * and container names to the containers that require them (dependents). The
+ * methods that get the containers exhaustively read from the index and never
+ * modify the {@link Containers Containers} object the handler was created
+ * with.
+ * <p>
  * This Class may be extended to add extra functionality if any new container
  * types are declared and need to be handled.
  */
 public class ContainerHandler {
 
-    /**
-     * The object of class Containers that holds the container types
-     * Collections.
-     */
-    private final Containers ct;
     /**
      * The types of the containers.
      */
@@ -59,6 +64,47 @@ public class ContainerHandler {
      * Number of containers declared.
      */
     private final int numOfCons;
+    /**
+     * The declared containers in web, business, data order.
+     */
+    private final List<Container> conList;
+    /**
+     * The declared web containers.
+     */
+    private final List<WebContainer> webCons;
+    /**
+     * The declared business containers.
+     */
+    private final List<BusinessContainer> businessCons;
+    /**
+     * The declared data containers.
+     */
+    private final List<DataContainer> dataCons;
+    /**
+     * Index with K=container name and V=container.
+     */
+    private final Map<String, Container> consByName;
+    /**
+     * Index with K=container type and V=containers of that type.
+     */
+    private final Map<String, List<Container>> consByType;
+    /**
+     * The position of the next web container to return.
+     */
+    private int nextWeb;
+    /**
+     * The position of the next business container to return.
+     */
+    private int nextBusiness;
+    /**
+     * The position of the next data container to return.
+     */
+    private int nextData;
+    /**
+     * Reverse dependency index with K=container name and V=names of the
+     * containers that require it.
+     */
+    private final Map<String, List<String>> dependents;
 
     /**
      * Constructor.
@@ -66,10 +112,43 @@ public class ContainerHandler {
      * @param ct an object of class Containers.
      */
     public ContainerHandler(Containers ct) {
-        this.ct = ct;
-        containerTypes = listContainerTypes();
-        containerNames = listContainerNames();
-        conNameTypeList = listconNamesTypes();
+        // snapshot the declared containers of every type
+        webCons = Collections.unmodifiableList(new ArrayList<>(ct.getWebContainer()));
+        businessCons = Collections.unmodifiableList(new ArrayList<>(ct.getBusinessContainer()));
+        dataCons = Collections.unmodifiableList(new ArrayList<>(ct.getDataContainer()));
+        // create the list with all the containers
+        List<Container> cons = new ArrayList<>(webCons.size() + businessCons.size() + dataCons.size());
+        cons.addAll(webCons);
+        cons.addAll(businessCons);
+        cons.addAll(dataCons);
+        conList = Collections.unmodifiableList(cons);
+        // build the indexes in a single pass
+        Map<String, Container> byName = new LinkedHashMap<>();
+        Map<String, List<Container>> byType = new LinkedHashMap<>();
+        Map<String, List<String>> reqBy = new HashMap<>();
+        List<String> names = new ArrayList<>(conList.size());
+        List<NameType> nameTypes = new ArrayList<>(conList.size());
+        for (Container con : conList) {
+            String name = con.getName();
+            String type = Utils.getType(con);
+            // keep the first declaration, duplicates are reported by analyzers
+            byName.putIfAbsent(name, con);
+            byType.computeIfAbsent(type, k -> new ArrayList<>()).add(con);
+            for (String dep : con.getRequires()) {
+                reqBy.computeIfAbsent(dep, k -> new ArrayList<>()).add(name);
+            }
+            names.add(name);
+            nameTypes.add(new NameType(name, type));
+        }
+        // make the indexes immutable
+        byType.replaceAll((type, list) -> Collections.unmodifiableList(list));
+        reqBy.replaceAll((name, list) -> Collections.unmodifiableList(list));
+        consByName = Collections.unmodifiableMap(byName);
+        consByType = Collections.unmodifiableMap(byType);
+        dependents = Collections.unmodifiableMap(reqBy);
+        containerNames = Collections.unmodifiableList(names);
+        containerTypes = Collections.unmodifiableList(new ArrayList<>(byType.keySet()));
+        conNameTypeList = Collections.unmodifiableList(nameTypes);
         numOfCons = containerNames.size();
     }
 
@@ -95,25 +174,7 @@ public class ContainerHandler {
      * Element [1] - type of container.
      */
     public final List<NameType> listconNamesTypes() {
-        List<Container> containersList = listContainers();
-
-        List<NameType> list = new ArrayList<>();
-
-        // if there are containers
-        if (containersList.isEmpty() == false) {
-            for (Container con : containersList) {
-                // Get container name 
-                String name = con.getName();
-                // Get container type
-                String type = Utils.getType(con);
-                // create a NameType object
-                NameType nameType = new NameType(name, type);
-                // Add to list
-                list.add(nameType);
-            }
-        }
-
-        return list;
+        return conNameTypeList;
     }
 
     /**
@@ -122,20 +183,7 @@ public class ContainerHandler {
      * @return the list of the names of the containers.
      */
     public final List<String> listContainerNames() {
-        List<Container> containersList = listContainers();
-        List<String> names = new ArrayList<>();
-        String containerName;
-
-        // if there are containers
-        if (containersList.isEmpty() == false) {
-            // Get the container name 
-            for (Container con : containersList) {
-                containerName = con.getName();
-                names.add(containerName);
-            }
-        }
-
-        return names;
+        return containerNames;
     }
 
     /**
@@ -144,73 +192,24 @@ public class ContainerHandler {
      * @return the list of the available container types.
      */
     public final List<String> listContainerTypes() {
-        List<Container> containersList = listContainers();
-        List<String> types = new ArrayList<>();
-
-        // for every container in the list
-        for (Container con : containersList) {
-            // get the simple class name of the container (container type)
-            String containerType = Utils.getType(con);
-            // if container type is not on the list, ADD It
-            if (types.contains(containerType) == false) {
-                types.add(containerType);
-            }
-        }
-        return types;
+        return containerTypes;
     }
 
     /**
      * Lists the available containers.
      *
-     * @return the list with the available containers.
+     * @return an unmodifiable list with the available containers.
      */
     public List<Container> listContainers() {
-        List<Container> containerList = new ArrayList<>();
-
-        // Get iterator for each container type
-        Iterator<WebContainer> webIter = ct.getWebContainer().iterator();
-        Iterator<BusinessContainer> BusinessIter = ct.getBusinessContainer().iterator();
-        Iterator<DataContainer> dataIter = ct.getDataContainer().iterator();
-
-        // while there are elements in the collection
-        while (webIter.hasNext()) {
-            // get a web container
-            WebContainer con = webIter.next();
-            // add container to list
-            containerList.add(con);
-        }
-
-        // while there are elements in the collection
-        while (BusinessIter.hasNext()) {
-            // get a web container
-            BusinessContainer con = BusinessIter.next();
-            // add container to list
-            containerList.add(con);
-        }
-
-        // while there are elements in the collection
-        while (dataIter.hasNext()) {
-            // get a web container
-            DataContainer con = dataIter.next();
-            // add container to list
-            containerList.add(con);
-        }
-
-        return containerList;
+        return conList;
     }
 
     /**
      * Lists the available containers of {@link WebContainer WebContainer} type.
      *
-     * @return the list with the available containers.
+     * @return an unmodifiable list with the available containers.
      */
     public List<WebContainer> listWebContainers() {
-        // create a new list to store webContainer because changes to returned list
-        // are reflected to original list
-        List<WebContainer> webCons = new ArrayList<>();
-        // add all elemenents to the new list 
-        webCons.addAll(ct.getWebContainer());
-
         return webCons;
     }
 
@@ -218,185 +217,113 @@ public class ContainerHandler {
      * Lists the available containers of
      * {@link BusinessContainer BusinessContainer} type.
      *
-     * @return the list with the available containers.
+     * @return an unmodifiable list with the available containers.
      */
     public List<BusinessContainer> listBusinessContainers() {
-        // create a new list to store webContainer because changes to returned list
-        // are reflected to original list
-        List<BusinessContainer> busCons = new ArrayList<>();
-        // add all elemenents to the new list 
-        busCons.addAll(ct.getBusinessContainer());
-
-        return busCons;
+        return businessCons;
     }
 
     /**
      * Lists the available containers of {@link DataContainer DataContainer}
      * type.
      *
-     * @return the list with the available containers.
+     * @return an unmodifiable list with the available containers.
      */
     public List<DataContainer> listDataContainers() {
-        // create a new list to store webContainer because changes to returned list
-        // are reflected to original list
-        List<DataContainer> webCons = new ArrayList<>();
-        // add all elemenents to the new list 
-        webCons.addAll(ct.getDataContainer());
-
-        return webCons;
+        return dataCons;
     }
 
     /**
      * <p>
-     * Returns a container of type: web, business, data and then removes it from
-     * the collection.
+     * Returns the next container of type: web, business, data.
      * <p>
-     * This method may be used to exhaustively get all the containers.
+     * This method may be used to exhaustively get all the containers. Every
+     * declared container is returned once.
      * <p>
      * Override this method to return more container types.
      *
-     * @return a container type: web, business, data. NULL if there is no
-     * container in the collection
-     */
-    public Container getContainer() {
-        // Get iterator for each container type
-        Iterator<WebContainer> webIter = ct.getWebContainer().iterator();
-        Iterator<BusinessContainer> BusinessIter = ct.getBusinessContainer().iterator();
-        Iterator<DataContainer> dataIter = ct.getDataContainer().iterator();
-
-        // while there are elements in the collection
-        while (webIter.hasNext()) {
-            // get a web container
-            WebContainer con = webIter.next();
-            // remove the container from the collection
-            webIter.remove();
-            return con;
+     * @return a container type: web, business, data. NULL if all the containers
+     * have been returned.
+     */
+    public synchronized Container getContainer() {
+        if (nextWeb < webCons.size()) {
+            return webCons.get(nextWeb++);
         }
-
-        // while there are elements in the collection
-        while (BusinessIter.hasNext()) {
-            // get a web container
-            BusinessContainer con = BusinessIter.next();
-            // remove the container from the collection
-            BusinessIter.remove();
-            return con;
+        if (nextBusiness < businessCons.size()) {
+            return businessCons.get(nextBusiness++);
         }
-
-        // while there are elements in the collection
-        while (dataIter.hasNext()) {
-            // get a web container
-            DataContainer con = dataIter.next();
-            // remove the container from the collection
-            dataIter.remove();
-            return con;
+        if (nextData < dataCons.size()) {
+            return dataCons.get(nextData++);
         }
-
-        // If collections are empty, there's no container to return
+        // all the containers have been returned
         return null;
     }
 
     /**
-     * Checks if there are any containers in any collection.
+     * Checks if there are any containers not yet returned.
      *
-     * @return true if there is at least one container in any of the collection.
+     * @return true if there is at least one container of any type not yet
+     * returned.
      */
-    public Boolean hasContainers() {
-        // Get iterator for each container type
-        Iterator<WebContainer> webIter = ct.getWebContainer().iterator();
-        Iterator<BusinessContainer> BusinessIter = ct.getBusinessContainer().iterator();
-        Iterator<DataContainer> dataIter = ct.getDataContainer().iterator();
-
-        return (webIter.hasNext() || BusinessIter.hasNext() || dataIter.hasNext());
+    public synchronized Boolean hasContainers() {
+        return hasWebContainers() || hasBusinessContainers() || hasDataContainers();
     }
 
     /**
-     * Checks if there are any containers in the web container collection.
+     * Checks if there are any web containers not yet returned.
      *
-     * @return true if there are web containers in the collection.
+     * @return true if there are web containers not yet returned.
      */
-    public final Boolean hasWebContainers() {
-        return !ct.getWebContainer().isEmpty();
+    public final synchronized Boolean hasWebContainers() {
+        return nextWeb < webCons.size();
     }
 
     /**
-     * Checks if there are any containers in the business container collection.
+     * Checks if there are any business containers not yet returned.
      *
-     * @return true if there are business containers in the collection.
+     * @return true if there are business containers not yet returned.
      */
-    public final Boolean hasBusinessContainers() {
-        return !ct.getBusinessContainer().isEmpty();
+    public final synchronized Boolean hasBusinessContainers() {
+        return nextBusiness < businessCons.size();
     }
 
     /**
-     * Checks if there are any containers in the data container collection.
+     * Checks if there are any data containers not yet returned.
      *
-     * @return true if there are data containers in the collection.
+     * @return true if there are data containers not yet returned.
      */
-    public final Boolean hasDataContainers() {
-        return !ct.getDataContainer().isEmpty();
+    public final synchronized Boolean hasDataContainers() {
+        return nextData < dataCons.size();
     }
 
     /**
-     * Returns a container of web container type and then removes it from the
-     * collection.
+     * Returns the next container of web container type.
      *
-     * @return a container of web container type.
-     */
-    public final WebContainer getWebContainer() {
-        // Get iterator for web container type
-        Iterator<WebContainer> webIter = ct.getWebContainer().iterator();
-        // while there are elements in the collection
-        while (webIter.hasNext()) {
-            // get a web container
-            WebContainer con = webIter.next();
-            // remove the container from the collection
-            webIter.remove();
-            return con;
-        }
-        // If collection is empty, there's no container to return
-        return null;
+     * @return a container of web container type. NULL if all the web
+     * containers have been returned.
+     */
+    public final synchronized WebContainer getWebContainer() {
+        return nextWeb < webCons.size() ? webCons.get(nextWeb++) : null;
     }
 
     /**
-     * Returns a container of business container type and then removes it from
-     * the collection.
+     * Returns the next container of business container type.
      *
-     * @return a container of business container type.
-     */
-    public final BusinessContainer getBusinessContainer() {
-        // Get iterator for business container type
-        Iterator<BusinessContainer> BusinessIter = ct.getBusinessContainer().iterator();
-        // while there are elements in the collection
-        while (BusinessIter.hasNext()) {
-            // get a business container
-            BusinessContainer con = BusinessIter.next();
-            // remove the container from the collection
-            BusinessIter.remove();
-            return con;
-        }
-        // If collection is empty, there's no container to return
-        return null;
+     * @return a container of business container type. NULL if all the business
+     * containers have been returned.
+     */
+    public final synchronized BusinessContainer getBusinessContainer() {
+        return nextBusiness < businessCons.size() ? businessCons.get(nextBusiness++) : null;
     }
 
     /**
-     * Returns a container of data container type and then removes it from the
-     * collection.
+     * Returns the next container of data container type.
      *
-     * @return a container of data container type.
-     */
-    public final DataContainer getDataContainer() {
-        // Get iterator for data container type
-        Iterator<DataContainer> DataIter = ct.getDataContainer().iterator();
-        // while there are elements in the collection
-        while (DataIter.hasNext()) {
-            // get a data container
-            DataContainer con = DataIter.next();
-            // remove the container from the collection
-            DataIter.remove();
-            return con;
-        }
-        // If collection is empty, there's no container to return
-        return null;
+     * @return a container of data container type. NULL if all the data
+     * containers have been returned.
+     */
+    public final synchronized DataContainer getDataContainer() {
+        return nextData < dataCons.size() ? dataCons.get(nextData++) : null;
     }
 
     /**
@@ -416,4 +343,55 @@ public class ContainerHandler {
     public int getNumOfCons() {
         return numOfCons;
     }
+
+    /**
+     * Looks up a container by name.
+     *
+     * @param name the name of the container.
+     * @return the container with the specified name or null if no such
+     * container is declared.
+     */
+    public Container getContainerByName(String name) {
+        return consByName.get(name);
+    }
+
+    /**
+     *
+     * @return an unmodifiable index with K=container name and V=container. A
+     * name declared more than once maps to its first declaration.
+     */
+    public Map<String, Container> getContainersByName() {
+        return consByName;
+    }
+
+    /**
+     * Lists the containers of a container type.
+     *
+     * @param type the container type (e.g. WebContainer).
+     * @return an unmodifiable list with the containers of the specified type.
+     * Empty if no container of that type is declared.
+     */
+    public List<Container> listContainersOfType(String type) {
+        return consByType.getOrDefault(type, Collections.emptyList());
+    }
+
+    /**
+     * Lists the containers that require a container.
+     *
+     * @param name the name of the container.
+     * @return an unmodifiable list with the names of the containers that
+     * declare the specified container as a dependency.
+     */
+    public List<String> listDependents(String name) {
+        return dependents.getOrDefault(name, Collections.emptyList());
+    }
+
+    /**
+     *
+     * @return an unmodifiable reverse dependency index with K=container name
+     * and V=names of the containers that require it.
+     */
+    public Map<String, List<String>> getDependents() {
+        return dependents;
+    }
 }
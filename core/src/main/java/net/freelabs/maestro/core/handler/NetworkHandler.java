@@ -18,6 +18,8 @@ package net.freelabs.maestro.core.handler;
 
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.CreateNetworkResponse;
+import com.github.dockerjava.api.model.ContainerNetwork;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -71,11 +73,65 @@ public final class NetworkHandler {
         return appNetId != null;
     }
 
+    /**
+     * Creates the networks of the application.
+     *
+     * @param netNames the names of the networks to create.
+     * @return true if all the networks were created without errors.
+     */
+    public boolean createNetworks(List<String> netNames) {
+        boolean success = true;
+        for (String netName : netNames) {
+            success = createNetwork(netName) && success;
+        }
+        return success;
+    }
+
     public void deleteNetwork(String netName) {
         LOG.info("Removing network {}...", netName);
         docker.removeNetworkCmd(netName).exec();
     }
 
+    /**
+     * Removes the networks of the application. Removal continues for the rest
+     * of the networks if a network cannot be removed.
+     *
+     * @param netNames the names of the networks to remove.
+     */
+    public void deleteNetworks(List<String> netNames) {
+        for (String netName : netNames) {
+            try {
+                deleteNetwork(netName);
+            } catch (Exception ex) {
+                LOG.error("FAILED to remove network {}: {}", netName, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Connects a running container to a network with a network alias.
+     *
+     * @param cid the container id.
+     * @param netName the name of the network.
+     * @param alias the alias with which the container is resolved on the
+     * network.
+     * @return true if the container was connected to the network.
+     */
+    public boolean connectToNetwork(String cid, String netName, String alias) {
+        boolean success = false;
+        try {
+            docker.connectToNetworkCmd()
+                    .withContainerId(cid)
+                    .withNetworkId(netName)
+                    .withContainerNetwork(new ContainerNetwork().withAliases(alias))
+                    .exec();
+            success = true;
+        } catch (Exception ex) {
+            LOG.error("FAILED to connect container {} to network {}: {}", alias, netName, ex.getMessage());
+        }
+        return success;
+    }
+
     public String getAppNetId() {
         return appNetId;
     }
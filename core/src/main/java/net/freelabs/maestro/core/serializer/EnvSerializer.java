@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.core.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * <p>
+ * Class that defines methods to serialize and de-serialize a resolved
+ * environment from/to byte arrays.
+ * <p>
+ * A resolved environment is a flat map of environment variable names to values.
+ * It is stored in the compact .properties text format, one sorted key=value
+ * pair per line.
+ */
+public final class EnvSerializer {
+
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(EnvSerializer.class);
+
+    /**
+     * Serializes an environment.
+     *
+     * @param env the environment to serialize.
+     * @return the serialized environment.
+     */
+    public static byte[] serialize(Map<String, String> env) {
+        StringBuilder sb = new StringBuilder();
+        // sort keys so that the same environment produces the same data
+        for (Map.Entry<String, String> entry : new TreeMap<>(env).entrySet()) {
+            Properties prop = new Properties();
+            prop.setProperty(entry.getKey(), entry.getValue() == null ? "" : entry.getValue());
+            // escape the key-value pair according to the .properties format
+            StringWriter writer = new StringWriter();
+            try {
+                prop.store(writer, null);
+            } catch (IOException ex) {
+                LOG.error("Something went wrong: {}", ex.getMessage());
+            }
+            // skip the timestamp comment written by store
+            String line = writer.toString();
+            sb.append(line.substring(line.indexOf('\n') + 1));
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * De-serializes an environment.
+     *
+     * @param data the serialized environment.
+     * @return the environment. Empty if there was no data or data could not be
+     * read.
+     */
+    public static Map<String, String> deserialize(byte[] data) {
+        Map<String, String> env = new HashMap<>();
+        if (data != null && data.length > 0) {
+            Properties prop = new Properties();
+            try {
+                prop.load(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8));
+                prop.stringPropertyNames().stream().forEach((key) -> {
+                    env.put(key, prop.getProperty(key));
+                });
+            } catch (IOException | IllegalArgumentException ex) {
+                LOG.error("De-serialization of environment FAILED: {}", ex.getMessage());
+            }
+        }
+        return env;
+    }
+
+    /**
+     * Prefixes the environment of a container with the container name, in the
+     * format: CONTAINERNAME_VARNAME.
+     *
+     * @param conName the name of the container.
+     * @param conEnv the environment variables of the container.
+     * @return the prefixed environment.
+     */
+    public static Map<String, String> prefixEnv(String conName, Map<String, String> conEnv) {
+        Map<String, String> env = new HashMap<>();
+        conEnv.entrySet().stream().forEach((entry) -> {
+            env.put((conName + "_" + entry.getKey()).toUpperCase(), entry.getValue());
+        });
+        return env;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.core.utils;
+
+import java.util.Map;
+import org.apache.zookeeper.AsyncCallback.ChildrenCallback;
+import org.apache.zookeeper.AsyncCallback.DataCallback;
+import org.apache.zookeeper.AsyncCallback.StatCallback;
+import org.apache.zookeeper.AsyncCallback.StringCallback;
+import org.apache.zookeeper.Watcher;
+import org.slf4j.MDC;
+
+/**
+ *
+ * <p>
+ * Class that carries the mapped diagnostic context of a thread to the code
+ * that runs on its behalf on shared threads.
+ * <p>
+ * Threads inherit the context of the thread that creates them. Threads that
+ * are created once and shared, like the zookeeper event thread, keep the
+ * context of their creator and run the callbacks of every command. A callback
+ * wrapped by this class runs with the context of the thread that wrapped it,
+ * so that its log lines are attributed to the right command. Shared threads
+ * are created {@link #detach() detached} from the context of their creator.
+ */
+public final class LogContext {
+
+    /**
+     * Private constructor. Static methods only.
+     */
+    private LogContext() {
+    }
+
+    /**
+     * Clears the context of the current thread, e.g. before creating a shared
+     * thread.
+     *
+     * @return the cleared context, to {@link #restore(java.util.Map) restore}
+     * later. Null if the context was empty.
+     */
+    public static Map<String, String> detach() {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        MDC.clear();
+        return context;
+    }
+
+    /**
+     * Sets the context of the current thread.
+     *
+     * @param context the context to set. Null to clear the context.
+     */
+    public static void restore(Map<String, String> context) {
+        if (context == null || context.isEmpty()) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(context);
+        }
+    }
+
+    /**
+     * @param watcher the watcher.
+     * @return the watcher, run with the context of the current thread.
+     */
+    public static Watcher wrap(Watcher watcher) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return (event) -> run(context, () -> watcher.process(event));
+    }
+
+    /**
+     * @param cb the callback.
+     * @return the callback, run with the context of the current thread.
+     */
+    public static StatCallback wrap(StatCallback cb) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return (rc, path, ctx, stat) -> run(context, () -> cb.processResult(rc, path, ctx, stat));
+    }
+
+    /**
+     * @param cb the callback.
+     * @return the callback, run with the context of the current thread.
+     */
+    public static DataCallback wrap(DataCallback cb) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return (rc, path, ctx, data, stat) -> run(context, () -> cb.processResult(rc, path, ctx, data, stat));
+    }
+
+    /**
+     * @param cb the callback.
+     * @return the callback, run with the context of the current thread.
+     */
+    public static StringCallback wrap(StringCallback cb) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return (rc, path, ctx, name) -> run(context, () -> cb.processResult(rc, path, ctx, name));
+    }
+
+    /**
+     * @param cb the callback.
+     * @return the callback, run with the context of the current thread.
+     */
+    public static ChildrenCallback wrap(ChildrenCallback cb) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return (rc, path, ctx, children) -> run(context, () -> cb.processResult(rc, path, ctx, children));
+    }
+
+    /**
+     * Runs code with a context and then sets back the previous context of the
+     * thread.
+     *
+     * @param context the context to run with.
+     * @param code the code to run.
+     */
+    private static void run(Map<String, String> context, Runnable code) {
+        Map<String, String> previous = MDC.getCopyOfContextMap();
+        restore(context);
+        try {
+            code.run();
+        } finally {
+            restore(previous);
+        }
+    }
+}
@@ -16,6 +16,6 @@
  */
 
 /**
- * Provides a class with general purpose methods.
+ * Provides classes with general purpose methods.
  */
 package net.freelabs.maestro.core.utils;
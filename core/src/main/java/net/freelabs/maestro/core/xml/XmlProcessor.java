@@ -17,6 +17,8 @@
 package net.freelabs.maestro.core.xml;
 
 import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -37,6 +39,11 @@ public class XmlProcessor {
      * A Logger object.
      */
     private static final Logger LOG = LoggerFactory.getLogger(XmlProcessor.class);
+    /**
+     * The JAXB contexts created, by package name. A context is expensive to
+     * create and thread safe, so it is created once per package.
+     */
+    private static final Map<String, JAXBContext> CONTEXTS = new ConcurrentHashMap<>();
 
     /**
      * Unmarshals an xml document to java objects (binding) and validates the
@@ -57,7 +64,7 @@ public class XmlProcessor {
         try {
             // create a JAXBContext capable of handling classes generated into
             // the specified package
-            JAXBContext jc = JAXBContext.newInstance(packageName);
+            JAXBContext jc = getContext(packageName);
 
             /* For DEBUGGING.
              To verify that you created JAXBContext correctly, call JAXBContext.
@@ -115,4 +122,21 @@ public class XmlProcessor {
 
         return unmarshalled;
     }
+
+    /**
+     * Returns the JAXB context for a package, creating it on first use.
+     *
+     * @param packageName the name of the package that contains the classes for
+     * the binding.
+     * @return the JAXB context of the package.
+     * @throws JAXBException if the context cannot be created.
+     */
+    private static JAXBContext getContext(String packageName) throws JAXBException {
+        JAXBContext jc = CONTEXTS.get(packageName);
+        if (jc == null) {
+            jc = JAXBContext.newInstance(packageName);
+            CONTEXTS.putIfAbsent(packageName, jc);
+        }
+        return jc;
+    }
 }
@@ -19,6 +19,7 @@ package net.freelabs.maestro.core.zookeeper;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +36,11 @@ import net.freelabs.maestro.core.generated.WebApp;
  * application regarding its interaction with zookeeper service.
  * <p>
  The zookeeper namespace of the app is defined along with upData for the nodes.
+ * <p>
+ * A serialized instance is stored to the zkConf node as a lightweight
+ * manifest of the deployed application. The application description is NOT
+ * part of the manifest. Every container description is stored once, to its
+ * own definition node, and is loaded only by the commands that need it.
  */
 @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
 @XmlAccessorType(XmlAccessType.FIELD)
@@ -58,14 +64,34 @@ public final class ZkConf {
      * shutdown.
      */
     private ZkNode shutdown;
+    /**
+     * The container definitions zkNode for the application. Under this node is
+     * saved the description of every container, as declared in the application
+     * description.
+     */
+    private ZkNode conDefs;
+    /**
+     * The environment zkNode for the application. Under this node is saved the
+     * resolved environment of every container.
+     */
+    private ZkNode env;
+    /**
+     * The checkpoints zkNode for the application. Under this node is saved the
+     * deployment progress of every container. Null for applications deployed
+     * without checkpoints.
+     */
+    private ZkNode checkpoints;
     /**
      * The zkNode with all the configuration regarding zookeeper service and
      * application deployment to zookeeper service.
      */
     private ZkNode zkConf;
     /**
-     * The application description.
+     * The application description. Not stored to the manifest, container
+     * descriptions are stored to the container definition nodes.
      */
+    @JsonIgnore
+    @XmlTransient
     private WebApp webApp;
     /**
      * The zkNodes holding info about the container types.
@@ -92,10 +118,23 @@ public final class ZkConf {
     @JsonIgnore
     @XmlTransient
     private ZkSrvConf zkSrvConf;
+    /**
+     * Map of container names to the names of the containers that require
+     * them. Initialized from the application description when needed.
+     */
+    @JsonIgnore
+    @XmlTransient
+    private Map<String, List<String>> conDependents;
     /**
      * Map of the defined container names to the deployed container names.
      */
     private Map<String, String> deplCons;
+    /**
+     * Map of the defined container names to the space separated names of the
+     * containers they require. Kept with the configuration in order to stop
+     * the containers in dependency order.
+     */
+    private Map<String, String> conRequires;
     /**
      * The program's configuration
      */
@@ -104,6 +143,11 @@ public final class ZkConf {
      * The name of the default network for the application.
      */
     private String appDefaultNetName;
+    /**
+     * Map of container types to the names of the networks created for every
+     * type (tier). Empty if the application uses only the default network.
+     */
+    private Map<String, String> tierNetNames;
     /**
      * An id used as upData for nodes without upData. Also, this is the suffix to
      * the zk root node for the application.
@@ -114,6 +158,11 @@ public final class ZkConf {
      * hierarchy.
      */
     private static final String ROOT_PREFIX = "maestro-";
+    /**
+     * The path of the registry zNode. Every deployed application has a child
+     * zNode, named after the application id.
+     */
+    public static final String REGISTRY_PATH = "/maestro-registry";
 
     /**
      * Constructor.
@@ -164,6 +213,21 @@ public final class ZkConf {
         name = "conf";
         conDesc = new ZkNode(path, suffix.getBytes(), name, "");
         zkAppNamespace.add(conDesc);
+        // create zkNode for the container definitions
+        path = rootPath + "/defs";
+        name = "defs";
+        conDefs = new ZkNode(path, suffix.getBytes(), name, "");
+        zkAppNamespace.add(conDefs);
+        // create zkNode for the resolved container environments
+        path = rootPath + "/env";
+        name = "env";
+        env = new ZkNode(path, suffix.getBytes(), name, "");
+        zkAppNamespace.add(env);
+        // create zkNode for the deployment checkpoints of the containers
+        path = rootPath + "/checkpoints";
+        name = "checkpoints";
+        checkpoints = new ZkNode(path, suffix.getBytes(), name, "");
+        zkAppNamespace.add(checkpoints);
         // create shutdown zkNode
         path = rootPath + "/shutdown";
         name = "shutdown";
@@ -177,6 +241,8 @@ public final class ZkConf {
         containerTypes = new ArrayList<>();
         containers = new HashMap<>();
         deplCons = new HashMap<>();
+        conRequires = new HashMap<>();
+        tierNetNames = new HashMap<>();
         // initialize client configuration
         zkSrvConf = new ZkSrvConf(hosts, timeout);
         // set default app network name
@@ -228,7 +294,8 @@ public final class ZkConf {
      *
      * @param name the name of a container.
      * @param type the type of a container.
-     * @param data the upData of the zkNode.
+     * @param data the serialized container description, stored to the
+     * container definition node.
      */
     public void initZkContainer(String name, String type, byte[] data) {
         // create node's path
@@ -237,10 +304,67 @@ public final class ZkConf {
         String nodeName = name;
         // create the path where the container's configuration will be stored to zk
         String conConfPath = conDesc.getPath() + "/" + name;
-        // create a new zk node object
-        ZkNode zkNode = new ZkNode(nodePath, data, nodeName, conConfPath);
+        // create a new zk node object, data is set when the container starts
+        ZkNode zkNode = new ZkNode(nodePath, null, nodeName, conConfPath);
         // add to list
         containers.put(name, zkNode);
+        // create the definition zNode with the container description
+        ZkNode defNode = new ZkNode(getDefNodePath(name), data, name, "");
+        zkAppNamespace.add(defNode);
+        // create the zNode with the resolved environment of the container
+        ZkNode envNode = new ZkNode(getEnvNodePath(name), new byte[0], name, "");
+        zkAppNamespace.add(envNode);
+    }
+
+    /**
+     * Returns the path of the zNode with the description of a container.
+     *
+     * @param conName the name of the container.
+     * @return the path of the definition zNode of the container.
+     */
+    public String getDefNodePath(String conName) {
+        return conDefs.getPath() + "/" + conName;
+    }
+
+    /**
+     * Returns the type of a container.
+     *
+     * @param conName the name of the container.
+     * @return the type of the container (e.g. WebContainer).
+     */
+    public String getConType(String conName) {
+        // the container zNode path is: root/type/name
+        String[] tokens = containers.get(conName).getPath().split("/");
+        return tokens[tokens.length - 2];
+    }
+
+    /**
+     * Returns the path of the zNode with the resolved environment of a
+     * container. The resolved environment holds the prefixed environment
+     * variables of all the dependencies of the container.
+     *
+     * @param conName the name of the container.
+     * @return the path of the environment zNode of the container.
+     */
+    public String getEnvNodePath(String conName) {
+        return env.getPath() + "/" + conName;
+    }
+
+    /**
+     *
+     * @param conName the name of the container.
+     * @return the path of the checkpoint zNode of the container.
+     */
+    public String getCheckpointPath(String conName) {
+        return checkpoints.getPath() + "/" + conName;
+    }
+
+    /**
+     *
+     * @return the path of the registry zNode of the application.
+     */
+    public String getRegistryNodePath() {
+        return REGISTRY_PATH + "/" + root.getName();
     }
 
     /**
@@ -256,6 +380,89 @@ public final class ZkConf {
         });
     }
 
+    /**
+     * Records the containers that a container requires.
+     *
+     * @param conName the defined name of the container.
+     * @param requires the names of the containers it requires.
+     */
+    public void initConRequires(String conName, List<String> requires) {
+        conRequires.put(conName, String.join(" ", requires));
+    }
+
+    /**
+     * Returns the names of the containers that a container requires.
+     *
+     * @param conName the defined name of the container.
+     * @return the names of the containers it requires. An empty list if none
+     * are required or the configuration holds no dependency information.
+     */
+    public List<String> listConRequires(String conName) {
+        List<String> requires = new ArrayList<>();
+        if (conRequires != null) {
+            String names = conRequires.getOrDefault(conName, "").trim();
+            if (!names.isEmpty()) {
+                requires.addAll(Arrays.asList(names.split("\\s+")));
+            }
+        }
+        return requires;
+    }
+
+    /**
+     * Returns the path of the zNode that signals a container to initiate
+     * shutdown.
+     *
+     * @param conName the defined name of the container.
+     * @return the path of the shutdown zNode of the container.
+     */
+    public String getConShutdownPath(String conName) {
+        return shutdown.getPath() + "-" + conName;
+    }
+
+    /**
+     * Creates the map of container types to network names, in order to attach
+     * the containers of every type (tier) to a separate network.
+     *
+     * @param types the container types.
+     */
+    public void initTierNets(List<String> types) {
+        types.stream().forEach((type) -> {
+            String netName = root.getName() + "-" + type.toLowerCase() + "-net";
+            tierNetNames.put(type, netName);
+        });
+    }
+
+    /**
+     *
+     * @return the names of the networks of the application. If networks per
+     * tier are used, the tier network names. Otherwise the default network
+     * name.
+     */
+    public List<String> getAppNetNames() {
+        List<String> netNames = new ArrayList<>();
+        if (tierNetNames == null || tierNetNames.isEmpty()) {
+            netNames.add(appDefaultNetName);
+        } else {
+            netNames.addAll(tierNetNames.values());
+        }
+        return netNames;
+    }
+
+    /**
+     * Returns the name of the network that a container is attached to on
+     * creation.
+     *
+     * @param conName the defined name of the container.
+     * @return the tier network name of the container if networks per tier are
+     * used, otherwise the default network name.
+     */
+    public String getConNetName(String conName) {
+        if (tierNetNames == null || tierNetNames.isEmpty()) {
+            return appDefaultNetName;
+        }
+        return tierNetNames.getOrDefault(getConType(conName), appDefaultNetName);
+    }
+
     // Getters 
     public String getSuffix() {
         return suffix;
@@ -273,10 +480,22 @@ public final class ZkConf {
         return conDesc;
     }
 
+    public ZkNode getConDefs() {
+        return conDefs;
+    }
+
+    public ZkNode getEnv() {
+        return env;
+    }
+
     public ZkNode getShutdown() {
         return shutdown;
     }
 
+    public ZkNode getCheckpoints() {
+        return checkpoints;
+    }
+
     public ZkNode getZkConf() {
         return zkConf;
     }
@@ -301,6 +520,10 @@ public final class ZkConf {
         return deplCons;
     }
 
+    public Map<String, String> getConRequires() {
+        return conRequires;
+    }
+
     public ProgramConf getpConf() {
         return pConf;
     }
@@ -324,5 +547,17 @@ public final class ZkConf {
     public String getAppDefaultNetName() {
         return appDefaultNetName;
     }
+
+    public Map<String, List<String>> getConDependents() {
+        return conDependents;
+    }
+
+    public void setConDependents(Map<String, List<String>> conDependents) {
+        this.conDependents = conDependents;
+    }
+
+    public Map<String, String> getTierNetNames() {
+        return tierNetNames;
+    }
     
 }
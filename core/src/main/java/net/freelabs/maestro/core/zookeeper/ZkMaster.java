@@ -17,21 +17,30 @@
 package net.freelabs.maestro.core.zookeeper;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.xml.bind.JAXBException;
 import org.apache.zookeeper.AsyncCallback.DataCallback;
 import org.apache.zookeeper.AsyncCallback.StatCallback;
 import org.apache.zookeeper.AsyncCallback.StringCallback;
 import org.apache.zookeeper.CreateMode;
 import static org.apache.zookeeper.CreateMode.EPHEMERAL;
 import static org.apache.zookeeper.CreateMode.PERSISTENT;
+import net.freelabs.maestro.core.generated.Containers;
+import net.freelabs.maestro.core.serializer.EnvSerializer;
+import net.freelabs.maestro.core.serializer.JAXBSerializer;
+import net.freelabs.maestro.core.utils.LogContext;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.BadVersionException;
 import org.apache.zookeeper.KeeperException.Code;
 import org.apache.zookeeper.KeeperException.ConnectionLossException;
 import org.apache.zookeeper.KeeperException.NoNodeException;
@@ -41,6 +50,7 @@ import org.apache.zookeeper.Watcher;
 import static org.apache.zookeeper.Watcher.Event.EventType.NodeChildrenChanged;
 import static org.apache.zookeeper.Watcher.Event.EventType.NodeCreated;
 import static org.apache.zookeeper.Watcher.Event.EventType.NodeDataChanged;
+import static org.apache.zookeeper.Watcher.Event.EventType.NodeDeleted;
 import static org.apache.zookeeper.ZooDefs.Ids.OPEN_ACL_UNSAFE;
 import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.ACL;
@@ -85,6 +95,10 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
      * List of running services.
      */
     private volatile List<String> servicesCache;
+    /**
+     * Set when the shared zookeeper session is released.
+     */
+    private final AtomicBoolean sessionReleased = new AtomicBoolean();
     /**
      * A Logger object.
      */
@@ -104,6 +118,32 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
         servicesCache = new ArrayList<>();
     }
 
+    /**
+     * Connects to zookeeper through a session shared with the other
+     * applications handled by the program.
+     *
+     * @throws IOException in cases of network failure.
+     * @throws InterruptedException if thread is interrupted while waiting.
+     */
+    @Override
+    public void connect() throws IOException, InterruptedException {
+        zk = ZkSessions.acquire(zkConf.getZkSrvConf().getHosts(), zkConf.getZkSrvConf().getTimeout());
+    }
+
+    /**
+     * Releases the shared session. The session is closed if no other
+     * application uses it.
+     *
+     * @throws InterruptedException if thread is interrupted.
+     */
+    @Override
+    public void closeSession() throws InterruptedException {
+        // release once, the master may be shut down more than once
+        if (zk != null && sessionReleased.compareAndSet(false, true)) {
+            ZkSessions.release(zk);
+        }
+    }
+
     @Override
     public void run() {
         // connect to zookeeper and create a session
@@ -262,7 +302,7 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
      * @param ctx the context object.
      */
     public void createNodeAsync(String path, byte[] data, List<ACL> acl, CreateMode mode, StringCallback cb, Object ctx) {
-        zk.create(path, data, acl, mode, cb, ctx);
+        zk.create(path, data, acl, mode, LogContext.wrap(cb), ctx);
     }
 
     /**
@@ -274,7 +314,7 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
      * @param ctx context object to be used with callback.
      */
     public void getDataAsync(String path, boolean watch, DataCallback cb, Object ctx) {
-        zk.getData(path, false, cb, ctx);
+        zk.getData(path, false, LogContext.wrap(cb), ctx);
     }
 
     /**
@@ -344,10 +384,33 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
      */
     public List<String> watchServices() {
         // make a get children call to leave watch for node's children
+        return getServices(childrenWatcher);
+    }
+
+    /**
+     * Makes a getChildren call to application services node without leaving a
+     * watch. If an error occurs, the {@link #masterError masterError} flag is
+     * set to true.
+     *
+     * @return the list of children of application services node. An empty list
+     * in case there are no children, NULL if an error occurred.
+     */
+    public List<String> listServices() {
+        return getServices(null);
+    }
+
+    /**
+     * Makes a getChildren call to application services node.
+     *
+     * @param watcher the watcher to register or null to leave no watch.
+     * @return the list of children of application services node. An empty list
+     * in case there are no children, NULL if an error occurred.
+     */
+    private List<String> getServices(Watcher watcher) {
         List<String> children = null;
         while (true) {
             try {
-                children = zk.getChildren(zkConf.getServices().getPath(), childrenWatcher);
+                children = zk.getChildren(zkConf.getServices().getPath(), watcher);
                 break;
             } catch (InterruptedException ex) {
                 masterError = true;
@@ -374,7 +437,7 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
     /**
      * A watcher to activate when change in registered node's children happens.
      */
-    public final Watcher childrenWatcher = (WatchedEvent event) -> {
+    public final Watcher childrenWatcher = LogContext.wrap((WatchedEvent event) -> {
         LOG.debug(event.getType() + ", " + event.getPath());
         // re-set watch
         List<String> children = watchServices();
@@ -396,7 +459,7 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
         } else {
             servicesStopped.countDown();
         }
-    };
+    });
 
     /**
      * Prints stopped services. The method accepts two lists. The srcList is
@@ -464,6 +527,51 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
         return !masterError && stopped;
     }
 
+    /**
+     * Waits until a service has stopped or a timeout occurs, whichever happens
+     * first. A service has stopped when its zNode is deleted from the naming
+     * service.
+     *
+     * @param service the service name.
+     * @param timeout the maximum time to wait.
+     * @param timeUnit the time unit of the timeout argument.
+     * @return true if the service stopped. False if the timeout elapsed or an
+     * error occurred.
+     */
+    public boolean waitServiceToStop(String service, long timeout, TimeUnit timeUnit) {
+        String srvPath = ns.resolveSrvName(service);
+        CountDownLatch srvStopped = new CountDownLatch(1);
+        Watcher srvDeletedWatcher = LogContext.wrap((WatchedEvent event) -> {
+            if (event.getType() == NodeDeleted) {
+                srvStopped.countDown();
+            }
+        });
+        while (true) {
+            try {
+                // leave a watch, if the node does not exist the service stopped
+                if (zk.exists(srvPath, srvDeletedWatcher) == null) {
+                    return true;
+                }
+                boolean stopped = srvStopped.await(timeout, timeUnit);
+                if (stopped) {
+                    LOG.info("Service {} stopped.", service);
+                }
+                return stopped;
+            } catch (ConnectionLossException ex) {
+                LOG.warn("Connection loss was detected. Retrying...");
+            } catch (KeeperException ex) {
+                LOG.error("Something went wrong: ", ex);
+                return false;
+            } catch (InterruptedException ex) {
+                // log the event
+                LOG.warn("Thread Interruped. Stopping.");
+                // set the interrupt status
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
     /**
      * Gets data from a zNode.
      *
@@ -497,6 +605,74 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
         return null;
     }
 
+    /**
+     * Downloads node zkConf from zookeeper application tree.
+     *
+     * @return the configuration of the application as deployed. Null in case
+     * of error.
+     */
+    public ZkConf downloadZkConf() {
+        LOG.info("Fetching application configuration...");
+        byte[] data = nodeData(zkConf.getZkConf().getPath(), null);
+        // check for errors
+        if (data != null) {
+            try {
+                ZkConf deployed = JAXBSerializer.deserializeToZkConf(data);
+                LOG.debug("Downloaded application configuration. Printing. {}", JAXBSerializer.deserializeToString(data));
+                return deployed;
+            } catch (JAXBException ex) {
+                LOG.error("Something went wrong: ", ex);
+            }
+        } else {
+            LOG.error("Application data NOT found in zookeeper configuration node.");
+        }
+        return null;
+    }
+
+    /**
+     * <p>
+     * Downloads the container descriptions of the application from the
+     * container definition nodes.
+     * <p>
+     * The container descriptions are not part of the zkConf node and are
+     * loaded only when the containers need to be re-created. All the declared
+     * containers must be loaded, an application is never handled partially.
+     *
+     * @param deployed the configuration of the application as deployed.
+     * @return the containers of the application. Null if the description of
+     * any container could not be loaded.
+     */
+    public Containers downloadContainers(ZkConf deployed) {
+        LOG.info("Fetching container descriptions...");
+        Containers cons = new Containers();
+        for (String conName : deployed.getContainers().keySet()) {
+            byte[] data = nodeData(deployed.getDefNodePath(conName), null);
+            // check for errors
+            if (data == null) {
+                LOG.error("FAILED to fetch description of service {}.", conName);
+                return null;
+            }
+            try {
+                // de-serialize according to container type
+                String type = deployed.getConType(conName);
+                if ("WebContainer".equalsIgnoreCase(type)) {
+                    cons.getWebContainer().add(JAXBSerializer.deserializeToWebContainer(data));
+                } else if ("BusinessContainer".equalsIgnoreCase(type)) {
+                    cons.getBusinessContainer().add(JAXBSerializer.deserializeToBusinessContainer(data));
+                } else if ("DataContainer".equalsIgnoreCase(type)) {
+                    cons.getDataContainer().add(JAXBSerializer.deserializeToDataContainer(data));
+                } else {
+                    LOG.error("Service {} has UNKNOWN container type {}.", conName, type);
+                    return null;
+                }
+            } catch (JAXBException ex) {
+                LOG.error("De-serialization of service {} FAILED: {}", conName, ex.getMessage());
+                return null;
+            }
+        }
+        return cons;
+    }
+
     /**
      * Sets watch for services.
      */
@@ -522,7 +698,7 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
     /**
      * Callback to be used with {@link #srvExists() srvExists()} method.
      */
-    private final StatCallback srvExistsCallback = (int rc, String path, Object ctx, Stat stat) -> {
+    private final StatCallback srvExistsCallback = LogContext.wrap((int rc, String path, Object ctx, Stat stat) -> {
         switch (KeeperException.Code.get(rc)) {
             case CONNECTIONLOSS:
                 srvExists(path);
@@ -538,18 +714,18 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
                 LOG.error("Something went wrong: ",
                         KeeperException.create(KeeperException.Code.get(rc), path));
         }
-    };
+    });
 
     /**
      * A watcher to process a watch notification for shutdown node.
      */
-    private final Watcher srvExistsnWatcher = (WatchedEvent event) -> {
+    private final Watcher srvExistsnWatcher = LogContext.wrap((WatchedEvent event) -> {
         LOG.info(event.getType() + ", " + event.getPath());
 
         if (event.getType() == NodeCreated) {
             getSrvData(event.getPath());
         }
-    };
+    });
 
     /**
      * Get data from the requested service zNode.
@@ -564,7 +740,7 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
      * The callback to be used with
      * {@link #getSrvData(java.lang.String) getSrvData} method.
      */
-    private final DataCallback getSrvDataCallback = (int rc, String path, Object ctx, byte[] data, Stat stat) -> {
+    private final DataCallback getSrvDataCallback = LogContext.wrap((int rc, String path, Object ctx, byte[] data, Stat stat) -> {
         switch (KeeperException.Code.get(rc)) {
             case CONNECTIONLOSS:
                 LOG.warn("Connection loss was detected");
@@ -581,7 +757,7 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
                 LOG.error("Something went wrong: ",
                         KeeperException.create(KeeperException.Code.get(rc), path));
         }
-    };
+    });
 
     /**
      * <p>
@@ -603,11 +779,11 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
      * Watcher to be used with {@link  #getSrvData(java.lang.String) getSrvData}
      * method.
      */
-    private final Watcher getSrvDataWatcher = (WatchedEvent event) -> {
+    private final Watcher getSrvDataWatcher = LogContext.wrap((WatchedEvent event) -> {
         if (event.getType() == NodeDataChanged) {
             getSrvData(event.getPath());
         }
-    };
+    });
 
     /**
      * <p>
@@ -673,6 +849,8 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
      */
     public boolean cleanZkNamespace() {
         LOG.info("Cleaning zookeeper namespace...");
+        // remove the application from the registry
+        deleteNode(zkConf.getRegistryNodePath(), -1);
 
         List<String> nodesToDelete = getAllNodes(zkConf.getRoot().getPath());
         ListIterator<String> iter = nodesToDelete.listIterator();
@@ -747,7 +925,7 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
      * Callback object to be used with (@link #setNodeDataAsync()
      * setNodeDataAsync) method.
      */
-    private final StatCallback setNodeDataAsyncCallback = (int rc, String path, Object ctx, Stat stat) -> {
+    private final StatCallback setNodeDataAsyncCallback = LogContext.wrap((int rc, String path, Object ctx, Stat stat) -> {
         switch (Code.get(rc)) {
             case CONNECTIONLOSS:
                 LOG.warn("Connection loss was detected. Retrying...");
@@ -764,7 +942,7 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
                         KeeperException.create(Code.get(rc), path));
                 break;
         }
-    };
+    });
 
     public boolean setNodeDataSync(String path, byte[] data) {
         boolean success = false;
@@ -792,6 +970,52 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
         return success;
     }
 
+    /**
+     * <p>
+     * Merges environment variables to the resolved environment of a container.
+     * <p>
+     * The environment zNode is updated with a conditional set on the data
+     * version that was read. If another broker updated the zNode in the
+     * meantime, the update is retried with the new data.
+     *
+     * @param path the path of the environment zNode.
+     * @param env the environment variables to merge.
+     * @return true if the environment zNode was updated.
+     */
+    public boolean mergeEnvNodeData(String path, Map<String, String> env) {
+        boolean success = false;
+        while (true) {
+            try {
+                Stat stat = new Stat();
+                // get the current resolved environment and its version
+                Map<String, String> resolvedEnv = EnvSerializer.deserialize(zk.getData(path, false, stat));
+                // merge the new entries
+                resolvedEnv.putAll(env);
+                // set only if no one else updated the node
+                zk.setData(path, EnvSerializer.serialize(resolvedEnv), stat.getVersion());
+                success = true;
+                break;
+            } catch (InterruptedException ex) {
+                // log event
+                LOG.warn("Interrupted. Stopping");
+                // set interupt flag
+                Thread.currentThread().interrupt();
+                break;
+            } catch (BadVersionException ex) {
+                LOG.debug("Environment zNode {} changed concurrently. Retrying...", path);
+            } catch (ConnectionLossException ex) {
+                LOG.warn("Connection loss was detected! Retrying...");
+            } catch (NoNodeException ex) {
+                LOG.error("No zNode {} to set data.", path);
+                break;
+            } catch (KeeperException ex) {
+                LOG.error("Something went wrong", ex);
+                break;
+            }
+        }
+        return success;
+    }
+
     /**
      * Blocks until shutdown.
      *
@@ -879,6 +1103,120 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
         deleteNode(zkConf.getShutdown().getPath(), -1);
     }
 
+    /**
+     * <p>
+     * Adds the application to the registry of deployed applications.
+     * <p>
+     * The registry is auxiliary, errors do not set the {@link #masterError
+     * masterError} flag.
+     *
+     * @param data the data of the registry entry.
+     * @return true if the application was registered.
+     */
+    public boolean registerApp(byte[] data) {
+        // the registry zNode is shared by all applications and may exist
+        boolean registered = createIfAbsent(ZkConf.REGISTRY_PATH, new byte[0])
+                && createIfAbsent(zkConf.getRegistryNodePath(), data);
+        if (!registered) {
+            LOG.warn("FAILED to register application {}.", getDeployedID());
+        }
+        return registered;
+    }
+
+    /**
+     * Creates a persistent zNode if it does not exist.
+     *
+     * @param path the path of the zNode.
+     * @param data the data of the zNode.
+     * @return true if the zNode exists.
+     */
+    private boolean createIfAbsent(String path, byte[] data) {
+        while (true) {
+            try {
+                zk.create(path, data, OPEN_ACL_UNSAFE, PERSISTENT);
+                return true;
+            } catch (NodeExistsException ex) {
+                return true;
+            } catch (ConnectionLossException ex) {
+                LOG.warn("Connection loss was detected. Retrying...");
+            } catch (KeeperException ex) {
+                LOG.error("Something went wrong: ", ex);
+                return false;
+            } catch (InterruptedException ex) {
+                // log the event
+                LOG.warn("Thread Interruped. Stopping.");
+                // set the interrupt status
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Saves the deployment progress of a container to its checkpoint zNode.
+     *
+     * @param conName the name of the container.
+     * @param stage the deployment stage reached by the container.
+     * @return true if the checkpoint was saved.
+     */
+    public boolean setCheckpoint(String conName, String stage) {
+        String path = zkConf.getCheckpointPath(conName);
+        byte[] data = stage.getBytes(StandardCharsets.UTF_8);
+        while (true) {
+            try {
+                if (zk.exists(path, false) == null) {
+                    zk.create(path, data, OPEN_ACL_UNSAFE, PERSISTENT);
+                } else {
+                    zk.setData(path, data, -1);
+                }
+                LOG.debug("Checkpoint of service {}: {}", conName, stage);
+                return true;
+            } catch (NodeExistsException | NoNodeException ex) {
+                // the zNode changed meanwhile, retry
+            } catch (ConnectionLossException ex) {
+                LOG.warn("Connection loss was detected. Retrying...");
+            } catch (KeeperException ex) {
+                LOG.error("Something went wrong: ", ex);
+                return false;
+            } catch (InterruptedException ex) {
+                // log the event
+                LOG.warn("Thread Interrupted. Stopping.");
+                // set the interrupt status
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Reads the deployment progress of a container from its checkpoint zNode.
+     *
+     * @param conName the name of the container.
+     * @return the deployment stage reached by the container. Null if there is
+     * no checkpoint or it cannot be read.
+     */
+    public String getCheckpoint(String conName) {
+        String path = zkConf.getCheckpointPath(conName);
+        while (true) {
+            try {
+                return new String(zk.getData(path, false, null), StandardCharsets.UTF_8);
+            } catch (NoNodeException ex) {
+                return null;
+            } catch (ConnectionLossException ex) {
+                LOG.warn("Connection loss was detected. Retrying...");
+            } catch (KeeperException ex) {
+                LOG.error("Something went wrong: ", ex);
+                return null;
+            } catch (InterruptedException ex) {
+                // log the event
+                LOG.warn("Thread Interrupted. Stopping.");
+                // set the interrupt status
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
     /**
      * Signals the application components to initiate shutdown process.
      */
@@ -887,6 +1225,17 @@ public final class ZkMaster extends ZkConnectionWatcher implements Runnable {
         deleteShutdownNode();
     }
 
+    /**
+     * Signals a single application component to initiate shutdown process.
+     *
+     * @param conName the defined name of the container.
+     */
+    public void signalConShutdown(String conName) {
+        String path = zkConf.getConShutdownPath(conName);
+        createNode(path, zkConf.getShutdown().getData(), EPHEMERAL);
+        deleteNode(path, -1);
+    }
+
     /**
      *
      * @return the id of the root zookeeper node of the deployed application
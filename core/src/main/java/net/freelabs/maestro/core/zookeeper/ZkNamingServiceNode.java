@@ -34,6 +34,14 @@ public class ZkNamingServiceNode {
      * The status of the service.
      */
     private SRV_STATE_STATUS status;
+    /**
+     * The number of times the service was restarted by its restart policy.
+     */
+    private int restarts;
+    /**
+     * Summary of the resource usage of the service processes.
+     */
+    private String usage;
 
     /**
      * Defines the possible service state status values.
@@ -84,6 +92,42 @@ public class ZkNamingServiceNode {
     public void setStatusNotRunning() {
         this.status = SRV_STATE_STATUS.NOT_RUNNING;
     }
+    /**
+     *
+     * @return the number of times the service was restarted by its restart
+     * policy.
+     */
+    public int getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * Sets the number of times the service was restarted by its restart
+     * policy.
+     *
+     * @param restarts the number of restarts.
+     */
+    public void setRestarts(int restarts) {
+        this.restarts = restarts;
+    }
+
+    /**
+     *
+     * @return the summary of the resource usage of the service processes.
+     */
+    public String getUsage() {
+        return usage;
+    }
+
+    /**
+     * Sets the summary of the resource usage of the service processes.
+     *
+     * @param usage the summary of the resource usage.
+     */
+    public void setUsage(String usage) {
+        this.usage = usage;
+    }
+
     /**
      * 
      * @return the zNode path of the container offering the service.
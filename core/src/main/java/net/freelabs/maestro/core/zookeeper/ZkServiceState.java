@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.core.zookeeper;
+
+import javax.xml.bind.JAXBException;
+import net.freelabs.maestro.core.docker.DockerEventListener;
+import net.freelabs.maestro.core.serializer.JAXBSerializer;
+import net.freelabs.maestro.core.zookeeper.ZkNamingServiceNode.SRV_STATE_STATUS;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.BadVersionException;
+import org.apache.zookeeper.KeeperException.ConnectionLossException;
+import org.apache.zookeeper.KeeperException.NoNodeException;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * <p>
+ * Class that maps the docker events of the containers to the state of their
+ * services in the naming service.
+ * <p>
+ * A container that dies, or is killed for running out of memory, is known
+ * without waiting for the session of its Broker to expire. A container that
+ * starts or turns unhealthy is not initialized, a container that turns
+ * healthy is.
+ */
+public final class ZkServiceState implements DockerEventListener.EventHandler {
+
+    /**
+     * A zookeeper handle.
+     */
+    private final ZooKeeper zk;
+    /**
+     * The zookeeper host:port list.
+     */
+    private final String zkHosts;
+    /**
+     * The client session timeout.
+     */
+    private final int zkSessionTimeout;
+    /**
+     * A Logger object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(ZkServiceState.class);
+
+    /**
+     * Constructor.
+     *
+     * @param zk a zookeeper handle.
+     * @param zkHosts the zookeeper host:port list.
+     * @param zkSessionTimeout the client session timeout.
+     */
+    public ZkServiceState(ZooKeeper zk, String zkHosts, int zkSessionTimeout) {
+        this.zk = zk;
+        this.zkHosts = zkHosts;
+        this.zkSessionTimeout = zkSessionTimeout;
+    }
+
+    @Override
+    public void onEvent(String appId, String srvName, String cid, String status) {
+        switch (status) {
+            case "oom":
+                LOG.warn("Container for service {} of {} ran out of memory.", srvName, appId);
+                break;
+            case "die":
+                updateStatus(appId, srvName, SRV_STATE_STATUS.NOT_RUNNING);
+                break;
+            case "start":
+            case "health_status: unhealthy":
+                updateStatus(appId, srvName, SRV_STATE_STATUS.NOT_INITIALIZED);
+                break;
+            case "health_status: healthy":
+                updateStatus(appId, srvName, SRV_STATE_STATUS.INITIALIZED);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Updates the status of a service node, if the service is registered.
+     *
+     * @param appId the id of the application.
+     * @param srvName the name of the service.
+     * @param status the new status.
+     */
+    private void updateStatus(String appId, String srvName, SRV_STATE_STATUS status) {
+        ZkConf zkConf = new ZkConf(appId, zkHosts, zkSessionTimeout);
+        String path = zkConf.getServices().getPath() + "/" + srvName;
+        while (true) {
+            try {
+                Stat stat = new Stat();
+                ZkNamingServiceNode node = JAXBSerializer.deserializeToServiceNode(zk.getData(path, false, stat));
+                if (node.getStatus() == status) {
+                    return;
+                }
+                if (status == SRV_STATE_STATUS.INITIALIZED) {
+                    node.setStatusInitialized();
+                } else if (status == SRV_STATE_STATUS.NOT_INITIALIZED) {
+                    node.setStatusNotInitialized();
+                } else {
+                    node.setStatusNotRunning();
+                }
+                // update only if not changed meanwhile
+                zk.setData(path, JAXBSerializer.serialize(node), stat.getVersion());
+                LOG.info("Service {} of {} is {}.", srvName, appId, status);
+                return;
+            } catch (BadVersionException ex) {
+                // the service node changed meanwhile, retry
+            } catch (NoNodeException ex) {
+                // the service is not registered
+                return;
+            } catch (ConnectionLossException ex) {
+                LOG.warn("Connection loss was detected. Retrying...");
+            } catch (KeeperException | JAXBException ex) {
+                LOG.error("FAILED to update service {} of {}: {}", srvName, appId, ex.getMessage());
+                return;
+            } catch (InterruptedException ex) {
+                // log the event
+                LOG.warn("Thread Interrupted. Stopping.");
+                // set the interrupt status
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2015-2016 Dionysis Lappas <dio@freelabs.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.freelabs.maestro.core.zookeeper;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.Watcher.Event.KeeperState;
+import net.freelabs.maestro.core.utils.LogContext;
+import org.apache.zookeeper.ZooKeeper;
+
+/**
+ *
+ * Class that shares zookeeper sessions among the applications handled by the
+ * program. A session is created once per zookeeper service and closed when
+ * the last application releases it. An expired session is replaced on the
+ * next request.
+ */
+public final class ZkSessions {
+
+    /**
+     * The open sessions, by zookeeper host:port list and session timeout.
+     */
+    private static final Map<String, Session> SESSIONS = new HashMap<>();
+
+    /**
+     * Constructor.
+     */
+    private ZkSessions() {
+    }
+
+    /**
+     * Returns a connected zookeeper handle, creating the session if needed.
+     * The method blocks until the connection is established.
+     *
+     * @param zkHosts the zookeeper host:port list.
+     * @param zkSessionTimeout the client session timeout.
+     * @return a zookeeper handle.
+     * @throws IOException in cases of network failure.
+     * @throws InterruptedException if thread is interrupted while waiting.
+     */
+    public static ZooKeeper acquire(String zkHosts, int zkSessionTimeout) throws IOException, InterruptedException {
+        String key = zkHosts + "/" + zkSessionTimeout;
+        Session session;
+        synchronized (SESSIONS) {
+            session = SESSIONS.get(key);
+            if (session == null || !session.zk.getState().isAlive()) {
+                session = new Session(zkHosts, zkSessionTimeout);
+                SESSIONS.put(key, session);
+            }
+            session.refs++;
+        }
+        session.connectedSignal.await();
+        return session.zk;
+    }
+
+    /**
+     * Releases a zookeeper handle. The session is closed if no other
+     * application uses it.
+     *
+     * @param zk the zookeeper handle.
+     * @throws InterruptedException if thread is interrupted.
+     */
+    public static void release(ZooKeeper zk) throws InterruptedException {
+        boolean close = true;
+        synchronized (SESSIONS) {
+            for (Map.Entry<String, Session> entry : SESSIONS.entrySet()) {
+                Session session = entry.getValue();
+                if (session.zk == zk) {
+                    session.refs--;
+                    close = session.refs == 0;
+                    if (close) {
+                        SESSIONS.remove(entry.getKey());
+                    }
+                    break;
+                }
+            }
+        }
+        // a replaced handle is closed by every holder, closing is idempotent
+        if (close) {
+            zk.close();
+        }
+    }
+
+    /**
+     * A shared zookeeper session.
+     */
+    private static final class Session implements Watcher {
+
+        /**
+         * The zookeeper handle.
+         */
+        private final ZooKeeper zk;
+        /**
+         * The number of applications that use the session.
+         */
+        private int refs;
+        /**
+         * Latch released when the connection is established.
+         */
+        private final CountDownLatch connectedSignal = new CountDownLatch(1);
+
+        /**
+         * Constructor.
+         *
+         * @param zkHosts the zookeeper host:port list.
+         * @param zkSessionTimeout the client session timeout.
+         * @throws IOException in cases of network failure.
+         */
+        private Session(String zkHosts, int zkSessionTimeout) throws IOException {
+            // the threads of the session are shared, they must not inherit
+            // the log context of the command that creates them
+            Map<String, String> logContext = LogContext.detach();
+            try {
+                zk = new ZooKeeper(zkHosts, zkSessionTimeout, this);
+            } finally {
+                LogContext.restore(logContext);
+            }
+        }
+
+        @Override
+        public void process(WatchedEvent event) {
+            if (event.getState() == KeeperState.SyncConnected) {
+                connectedSignal.countDown();
+            }
+        }
+    }
+}